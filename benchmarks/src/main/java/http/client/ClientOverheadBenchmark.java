@@ -0,0 +1,123 @@
+package http.client;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * 
+ * Measures the per-request work done by {@link HttpClientImpl} itself (URL
+ * building, default headers and status handling) over an invoker that
+ * returns a canned response without any I/O.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(2)
+public class ClientOverheadBenchmark {
+	private HttpClient client;
+	private Map<String, String> headers;
+
+	@Setup
+	public void setUp() {
+		Properties properties = new Properties();
+		properties.setProperty(HttpClientProperties.BASE_URL, "http://localhost:8080/platform-webapp/rest/tenant/");
+		BasicHttpResponse httpResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		httpResponse.setEntity(new ByteArrayEntity(LocalHttpServer.SMALL_JSON, ContentType.APPLICATION_JSON));
+		client = new HttpClientImpl(new CannedRequestInvoker(new HttpClientResponse(httpResponse,
+				URI.create("http://localhost/"))), properties);
+		headers = new HashMap<>();
+		for (int i = 0; i < 5; i++) {
+			headers.put("X-Request-Header-" + i, "request-value-" + i);
+		}
+	}
+
+	@Benchmark
+	public Response doGet() {
+		return client.doGet("items/42?expand=true");
+	}
+
+	@Benchmark
+	public Response doGetWithHeaders() {
+		return client.doGet("items/42?expand=true", headers);
+	}
+
+	@Benchmark
+	public Response doPostWithDefaultHeaders() {
+		return client.doPost("items", "{}");
+	}
+
+	@Benchmark
+	public Response doPutWithHeaders() {
+		return client.doPut("items/42", headers, "{}");
+	}
+
+	private static class CannedRequestInvoker implements RequestInvoker {
+		private final Response response;
+
+		CannedRequestInvoker(Response response) {
+			this.response = response;
+		}
+
+		@Override
+		public Response doGet(URI url, Map<String, String> headers) {
+			return response;
+		}
+
+		@Override
+		public Response doGetStream(URI url, Map<String, String> headers) {
+			return response;
+		}
+
+		@Override
+		public Response doPut(URI url, String payload, Map<String, String> headers) {
+			return response;
+		}
+
+		@Override
+		public Response doPut(URI url, RequestBody payload, Map<String, String> headers) {
+			return response;
+		}
+
+		@Override
+		public Response doDelete(URI url, Map<String, String> headers) {
+			return response;
+		}
+
+		@Override
+		public Response doPost(URI url, String payload, Map<String, String> headers) {
+			return response;
+		}
+
+		@Override
+		public Response doPost(URI url, byte[] payload, Map<String, String> headers) {
+			return response;
+		}
+
+		@Override
+		public Response doPost(URI url, RequestBody payload, Map<String, String> headers) {
+			return response;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package http.client;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * 
+ * Measures {@link HttpClientResponse} parsing of in-memory responses, without
+ * any I/O.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class ResponseParsingBenchmark {
+	private static final URI URL = URI.create("http://localhost/items");
+
+	private BasicHttpResponse smallJson;
+	private BasicHttpResponse largeOctetStream;
+	private Response headerHeavy;
+	private final ByteBufferPool bufferPool = new ByteBufferPool(64 * 1024, 64, false);
+
+	@Setup
+	public void setUp() {
+		smallJson = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		smallJson.setEntity(new ByteArrayEntity(LocalHttpServer.SMALL_JSON, ContentType.APPLICATION_JSON));
+
+		largeOctetStream = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		largeOctetStream.setEntity(new ByteArrayEntity(new byte[RoundTripBenchmark.LARGE_PAYLOAD_SIZE],
+				ContentType.APPLICATION_OCTET_STREAM));
+
+		BasicHttpResponse headers = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		for (int i = 0; i < LocalHttpServer.RESPONSE_HEADER_COUNT; i++) {
+			headers.addHeader("X-Benchmark-Header-" + i, "value-" + i);
+		}
+		headers.setEntity(new ByteArrayEntity(LocalHttpServer.SMALL_JSON, ContentType.APPLICATION_JSON));
+		headerHeavy = new HttpClientResponse(headers, URL);
+	}
+
+	@Benchmark
+	public String parseSmallJson() {
+		return new HttpClientResponse(smallJson, URL).getResponseString();
+	}
+
+	@Benchmark
+	public int readSmallJsonStatusOnly() {
+		return new HttpClientResponse(smallJson, URL).getStatusCode();
+	}
+
+	@Benchmark
+	public byte[] parseLargeOctetStream() {
+		return new HttpClientResponse(largeOctetStream, URL).getResponseBytes();
+	}
+
+	@Benchmark
+	public long readLargeOctetStreamIntoPooledBuffers() {
+		try (PooledBody body = new HttpClientResponse(largeOctetStream, URL, true).getResponseBuffers(bufferPool)) {
+			return body.getLength();
+		}
+	}
+
+	@Benchmark
+	public Map<String, List<String>> listHeaders() {
+		return headerHeavy.listHeaders();
+	}
+
+	@Benchmark
+	public String getHeader() {
+		return headerHeavy.getHeader("X-Benchmark-Header-17");
+	}
+}
@@ -0,0 +1,88 @@
+package http.client;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * 
+ * End-to-end benchmarks of {@link HttpClientImpl} over
+ * {@link HttpClientRequestInvoker} against an in-process server. Run with
+ * <code>-prof gc</code> to get the allocation rate per operation.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, time = 5)
+@Measurement(iterations = 10, time = 5)
+@Fork(1)
+public class RoundTripBenchmark {
+	static final int LARGE_PAYLOAD_SIZE = 1024 * 1024;
+	static final int REQUEST_HEADER_COUNT = 30;
+	static final int FAN_OUT_THREADS = 32;
+
+	private LocalHttpServer server;
+	private ConnectionPool connectionPool;
+	private HttpClient client;
+	private byte[] largePayload;
+	private Map<String, String> manyHeaders;
+
+	@Setup
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+		Properties properties = new Properties();
+		properties.setProperty(HttpClientProperties.BASE_URL, server.getBaseURL());
+		properties.setProperty(HttpClientProperties.POOL_MAX_PER_ROUTE, String.valueOf(FAN_OUT_THREADS * 2));
+		connectionPool = HttpClientFactory.createConnectionPool(properties);
+		client = HttpClientFactory.create(connectionPool, properties);
+		largePayload = new byte[LARGE_PAYLOAD_SIZE];
+		manyHeaders = new HashMap<>();
+		for (int i = 0; i < REQUEST_HEADER_COUNT; i++) {
+			manyHeaders.put("X-Request-Header-" + i, "request-value-" + i);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		connectionPool.close();
+		server.close();
+	}
+
+	@Benchmark
+	public String smallJsonGet() {
+		return client.doGet("/json").getResponseString();
+	}
+
+	@Benchmark
+	public String largeBinaryPost() {
+		return client.doPost("/upload", largePayload).getResponseString();
+	}
+
+	@Benchmark
+	public Map<String, List<String>> headerHeavyGet() {
+		return client.doGet("/headers", manyHeaders).listHeaders();
+	}
+
+	@Benchmark
+	@Threads(FAN_OUT_THREADS)
+	public String concurrentFanOut() {
+		return client.doGet("/json").getResponseString();
+	}
+}
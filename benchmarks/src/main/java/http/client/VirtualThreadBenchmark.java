@@ -0,0 +1,91 @@
+package http.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * 
+ * Issues a burst of concurrent blocking requests against a server that takes
+ * {@link LocalHttpServer#SLOW_RESPONSE_MILLIS} to answer, from a fixed pool of
+ * platform threads or from one virtual thread per request. With fewer pooled
+ * connections than requests, the virtual threads queue for connections
+ * without pinning their carriers. The virtual mode needs Java 21.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VirtualThreadBenchmark {
+	static final int PLATFORM_THREADS = 200;
+
+	@Param({ "platform", "virtual" })
+	private String threads;
+
+	@Param({ "1000" })
+	private int requests;
+
+	@Param({ "100", "1000" })
+	private int connections;
+
+	private LocalHttpServer server;
+	private ConnectionPool connectionPool;
+	private HttpClient client;
+	private ExecutorService executor;
+
+	@Setup
+	public void setUp() throws Exception {
+		boolean virtual = "virtual".equals(threads);
+		executor = virtual ? HttpClientFactory.newVirtualThreadExecutor() : Executors.newFixedThreadPool(PLATFORM_THREADS);
+		server = new LocalHttpServer(Executors.newCachedThreadPool());
+		Properties properties = new Properties();
+		properties.setProperty(HttpClientProperties.BASE_URL, server.getBaseURL());
+		properties.setProperty(HttpClientProperties.POOL_MAX_TOTAL, String.valueOf(connections));
+		properties.setProperty(HttpClientProperties.POOL_MAX_PER_ROUTE, String.valueOf(connections));
+		properties.setProperty(HttpClientProperties.CONNECTION_REQUEST_TIMEOUT, "60000");
+		properties.setProperty(HttpClientProperties.VIRTUAL_THREADS, String.valueOf(virtual));
+		connectionPool = HttpClientFactory.createConnectionPool(properties);
+		client = HttpClientFactory.create(connectionPool, properties);
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.shutdownNow();
+		connectionPool.close();
+		server.close();
+	}
+
+	@Benchmark
+	public int concurrentSlowGets() throws Exception {
+		List<Future<Integer>> responses = new ArrayList<>(requests);
+		for (int i = 0; i < requests; i++) {
+			responses.add(executor.submit(() -> client.doGet("/slow").getStatusCode()));
+		}
+		int total = 0;
+		for (Future<Integer> response : responses) {
+			total += response.get();
+		}
+		return total;
+	}
+}
@@ -0,0 +1,181 @@
+package http.client;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ *
+ * Non-blocking counterpart of {@link HttpClient}. Every method returns
+ * immediately; the future completes with the request result, or
+ * exceptionally with {@link HttpClientException} when the request fails or
+ * the response status is not successful. Cancelling the future aborts the
+ * request and releases its connection.
+ *
+ */
+public interface AsyncHttpClient extends Closeable {
+
+    /**
+     *
+     * Sends a GET request to the specified URI.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @return The future request result.
+     *
+     */
+    public CompletableFuture<Response> doGet(String uri);
+
+    /**
+     *
+     * Sends a GET request to the specified URI.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @return The future request result.
+     *
+     */
+    public CompletableFuture<Response> doGet(String uri, Map<String, String> headers);
+
+    /**
+     * Sends a PUT request to the specified URI using
+     * {@link javax.ws.rs.core.MediaType#APPLICATION_JSON} as
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param payload
+     *            The payload to put.
+     * @return The future request result.
+     *
+     */
+    public CompletableFuture<Response> doPut(String uri, String payload);
+
+    /**
+     * Sends a PUT request to the specified URI. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_JSON} as default
+     * content type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param payload
+     *            The payload to put.
+     * @param headers
+     *            The headers to use in the request.
+     * @return The future request result.
+     *
+     */
+    public CompletableFuture<Response> doPut(String uri, Map<String, String> headers,
+                          String payload);
+
+    /**
+     * Sends a POST request to the specified URI using
+     * {@link javax.ws.rs.core.MediaType#APPLICATION_JSON} as
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param payload
+     *            The payload to post as string.
+     * @return The future request result.
+     *
+     */
+    public CompletableFuture<Response> doPost(String uri, String payload);
+
+    /**
+     * Sends a POST request to the specified URI. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_JSON} as default
+     * content type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param payload
+     *            The payload to post.
+     * @param headers
+     *            The headers to use in the request.
+     * @return The future request result.
+     *
+     */
+    public CompletableFuture<Response> doPost(String uri, Map<String, String> headers,
+                           String payload);
+
+    /**
+     * Sends a POST request to the specified URI using
+     * {@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param payload
+     *            The payload to post as byte array.
+     * @return The future request result.
+     *
+     */
+    public CompletableFuture<Response> doPost(String uri, byte[] payload);
+
+    /**
+     * Sends a POST request to the specified URI. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as default content type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param payload
+     *            The payload to post as byte array.
+     * @param headers
+     *            The headers to use in the request.
+     * @return The future request result.
+     *
+     */
+    public CompletableFuture<Response> doPost(String uri,  Map<String, String> headers, byte[] payload);
+
+    /**
+     * Sends a PUT request to the specified URI, streaming the payload to the
+     * connection. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as default content type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The payload to put.
+     * @return The future request result.
+     *
+     */
+    public CompletableFuture<Response> doPut(String uri, Map<String, String> headers, RequestBody payload);
+
+    /**
+     * Sends a POST request to the specified URI, streaming the payload to the
+     * connection. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as default content type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The payload to post.
+     * @return The future request result.
+     *
+     */
+    public CompletableFuture<Response> doPost(String uri, Map<String, String> headers, RequestBody payload);
+
+    /**
+     *
+     * Sends a Delete request to the specified URI.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @return The future request result.
+     *
+     */
+    public CompletableFuture<Response> doDelete(String uri);
+
+}
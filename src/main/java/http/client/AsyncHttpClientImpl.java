@@ -0,0 +1,114 @@
+package http.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * 
+ * Implementation of {@link AsyncHttpClient}. Resolves URIs against the base
+ * URL and applies default headers exactly as {@link HttpClientImpl} does.
+ * 
+ */
+public class AsyncHttpClientImpl extends BaseHttpClient implements AsyncHttpClient {
+
+	private final AsyncRequestInvoker requestInvoker;
+
+	public AsyncHttpClientImpl(AsyncRequestInvoker requestInvoker) {
+		this.requestInvoker = requestInvoker;
+	}
+
+	public AsyncHttpClientImpl(AsyncRequestInvoker requestInvoker, Properties connectionParameters) {
+		super(connectionParameters);
+		this.requestInvoker = requestInvoker;
+	}
+
+	@Override
+	public CompletableFuture<Response> doGet(String uri) {
+		URI url = buildURL(uri);
+		return handleResponse(uri, requestInvoker.doGet(url, Collections.<String, String>emptyMap()));
+	}
+
+	@Override
+	public CompletableFuture<Response> doGet(String uri, Map<String, String> headers) {
+		URI url = buildURL(uri);
+		return handleResponse(uri, requestInvoker.doGet(url, headers));
+	}
+
+	@Override
+	public CompletableFuture<Response> doPut(String uri, String payload) {
+		URI url = buildURL(uri);
+		return handleResponse(uri, requestInvoker.doPut(url, payload, getDefaultHeaders()));
+	}
+
+	@Override
+	public CompletableFuture<Response> doPut(String uri, Map<String, String> headers, String payload) {
+		URI url = buildURL(uri);
+		return handleResponse(uri, requestInvoker.doPut(url, payload, addDefaultHeaders(headers)));
+	}
+
+	@Override
+	public CompletableFuture<Response> doPost(String uri, String payload) {
+		URI url = buildURL(uri);
+		return handleResponse(uri, requestInvoker.doPost(url, payload, getDefaultHeaders()));
+	}
+
+	@Override
+	public CompletableFuture<Response> doPost(String uri, Map<String, String> headers, String payload) {
+		URI url = buildURL(uri);
+		return handleResponse(uri, requestInvoker.doPost(url, payload, addDefaultHeaders(headers)));
+	}
+
+	@Override
+	public CompletableFuture<Response> doPost(String uri, byte[] payload) {
+		URI url = buildURL(uri);
+		return handleResponse(uri, requestInvoker.doPost(url, payload, getDefaultOctetHeaders()));
+	}
+
+	@Override
+	public CompletableFuture<Response> doPost(String uri, Map<String, String> headers, byte[] payload) {
+		URI url = buildURL(uri);
+		return handleResponse(uri, requestInvoker.doPost(url, payload, addDefaultHeaders(headers, true)));
+	}
+
+	@Override
+	public CompletableFuture<Response> doPut(String uri, Map<String, String> headers, RequestBody payload) {
+		URI url = buildURL(uri);
+		return handleResponse(uri, requestInvoker.doPut(url, payload, addDefaultHeaders(headers, true)));
+	}
+
+	@Override
+	public CompletableFuture<Response> doPost(String uri, Map<String, String> headers, RequestBody payload) {
+		URI url = buildURL(uri);
+		return handleResponse(uri, requestInvoker.doPost(url, payload, addDefaultHeaders(headers, true)));
+	}
+
+	@Override
+	public CompletableFuture<Response> doDelete(String uri) {
+		URI url = buildURL(uri);
+		return handleResponse(uri, requestInvoker.doDelete(url, getDefaultHeaders()));
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (requestInvoker instanceof Closeable) {
+			((Closeable) requestInvoker).close();
+		}
+	}
+
+	private CompletableFuture<Response> handleResponse(String uri, CompletableFuture<Response> response) {
+		CompletableFuture<Response> handled = response.thenApply(result -> handleResponse(uri, result));
+		// a dependent future does not cancel its source: abort the exchange and free its connection
+		handled.whenComplete((result, t) -> {
+			if (handled.isCancelled()) {
+				response.cancel(true);
+			}
+		});
+		return handled;
+	}
+}
@@ -0,0 +1,112 @@
+package http.client;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * 
+ * Represents non-blocking request invoker for {@link AsyncHttpClientImpl}.
+ * The returned futures complete on the transport threads once the response
+ * has been received, or exceptionally with {@link HttpClientException}.
+ * 
+ */
+public interface AsyncRequestInvoker {
+	/**
+	 * 
+	 * Sends a Get request to the specified URI using the given headers.
+	 * 
+	 * @param url
+	 *            The resource URI.
+	 * @param headers
+	 *            The headers to use in the request.
+	 * @return The future request result.
+	 */
+	CompletableFuture<Response> doGet(URI url, Map<String, String> headers);
+
+	/**
+	 * Sends a Put request to the specified URI using the given headers.
+	 * 
+	 * @param url
+	 *            The resource URI.
+	 * @param payload
+	 *            The payload to put.
+	 * @param headers
+	 *            The headers to use in the request.
+	 * @return The future request result.
+	 */
+	CompletableFuture<Response> doPut(URI url, String payload, Map<String, String> headers);
+
+	/**
+	 * 
+	 * Sends a Delete request to the specified URI using the given headers.
+	 * 
+	 * @param url
+	 *            The resource URI.
+	 * @param headers
+	 *            The headers to use in the request.
+	 * @return The future request result.
+	 */
+	CompletableFuture<Response> doDelete(URI url, Map<String, String> headers);
+
+	/**
+	 * 
+	 * Sends a Post request to the specified URI using the given headers.
+	 * 
+	 * @param url
+	 *            The resource URI.
+	 * @param payload
+	 *            The payload to post as string.
+	 * @param headers
+	 *            The headers to use in the request.
+	 * @return The future request result.
+	 */
+	CompletableFuture<Response> doPost(URI url, String payload, Map<String, String> headers);
+
+	/**
+	 * 
+	 * Sends a Post request to the specified URI using the given headers.
+	 * 
+	 * @param url
+	 *            The resource URI.
+	 * @param payload
+	 *            The payload to post as byte array.
+	 * @param headers
+	 *            The headers to use in the request.
+	 * @return The future request result.
+	 */
+	CompletableFuture<Response> doPost(URI url, byte[] payload, Map<String, String> headers);
+
+	/**
+	 * 
+	 * Sends a Put request to the specified URI using the given headers. File
+	 * payloads are transferred from the file channel to the socket without
+	 * copying; {@link BodyWriter} payloads are not supported.
+	 * 
+	 * @param url
+	 *            The resource URI.
+	 * @param payload
+	 *            The payload to put.
+	 * @param headers
+	 *            The headers to use in the request.
+	 * @return The future request result.
+	 */
+	CompletableFuture<Response> doPut(URI url, RequestBody payload, Map<String, String> headers);
+
+	/**
+	 * 
+	 * Sends a Post request to the specified URI using the given headers. File
+	 * payloads are transferred from the file channel to the socket without
+	 * copying; {@link BodyWriter} payloads are not supported.
+	 * 
+	 * @param url
+	 *            The resource URI.
+	 * @param payload
+	 *            The payload to post.
+	 * @param headers
+	 *            The headers to use in the request.
+	 * @return The future request result.
+	 */
+	CompletableFuture<Response> doPost(URI url, RequestBody payload, Map<String, String> headers);
+}
@@ -0,0 +1,184 @@
+package http.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * 
+ * {@link AsyncRequestInvoker} decorator that retries transient failures like
+ * {@link RetryingRequestInvoker}. Backoff delays are scheduled on a timer
+ * instead of sleeping, so no thread is held while a retry is pending.
+ * Cancelling the returned future cancels the attempt in progress.
+ * 
+ */
+public class AsyncRetryingRequestInvoker implements AsyncRequestInvoker, Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncRetryingRequestInvoker.class);
+
+	private final AsyncRequestInvoker delegate;
+	private final RetryPolicy policy;
+	private final RetryBudget budget;
+	private final ScheduledExecutorService scheduler;
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder rejectedRetries = new LongAdder();
+
+	public AsyncRetryingRequestInvoker(AsyncRequestInvoker delegate, RetryPolicy policy, RetryBudget budget) {
+		this.delegate = delegate;
+		this.policy = policy;
+		this.budget = budget;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "http-client-retry-scheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public CompletableFuture<Response> doGet(URI url, Map<String, String> headers) {
+		return execute(HttpGet.METHOD_NAME, url, true, () -> delegate.doGet(url, headers));
+	}
+
+	@Override
+	public CompletableFuture<Response> doPut(URI url, String payload, Map<String, String> headers) {
+		return execute(HttpPut.METHOD_NAME, url, true, () -> delegate.doPut(url, payload, headers));
+	}
+
+	@Override
+	public CompletableFuture<Response> doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		return execute(HttpPut.METHOD_NAME, url, payload.isRepeatable(), () -> delegate.doPut(url, payload, headers));
+	}
+
+	@Override
+	public CompletableFuture<Response> doDelete(URI url, Map<String, String> headers) {
+		return execute(HttpDelete.METHOD_NAME, url, true, () -> delegate.doDelete(url, headers));
+	}
+
+	@Override
+	public CompletableFuture<Response> doPost(URI url, String payload, Map<String, String> headers) {
+		return execute(HttpPost.METHOD_NAME, url, true, () -> delegate.doPost(url, payload, headers));
+	}
+
+	@Override
+	public CompletableFuture<Response> doPost(URI url, byte[] payload, Map<String, String> headers) {
+		return execute(HttpPost.METHOD_NAME, url, true, () -> delegate.doPost(url, payload, headers));
+	}
+
+	@Override
+	public CompletableFuture<Response> doPost(URI url, RequestBody payload, Map<String, String> headers) {
+		return execute(HttpPost.METHOD_NAME, url, payload.isRepeatable(), () -> delegate.doPost(url, payload, headers));
+	}
+
+	/**
+	 * @return the number of retries sent.
+	 */
+	public long getRetryCount() {
+		return retries.sum();
+	}
+
+	/**
+	 * @return the number of retries that were not sent because the retry
+	 *         budget was exhausted.
+	 */
+	public long getRejectedRetryCount() {
+		return rejectedRetries.sum();
+	}
+
+	@Override
+	public void close() throws IOException {
+		scheduler.shutdownNow();
+		if (delegate instanceof Closeable) {
+			((Closeable) delegate).close();
+		}
+	}
+
+	private CompletableFuture<Response> execute(String method, URI url, boolean replayable,
+			Supplier<CompletableFuture<Response>> call) {
+		budget.onRequest();
+		CompletableFuture<Response> result = new CompletableFuture<>();
+		attempt(method, url, replayable, call, 1, result);
+		return result;
+	}
+
+	private void attempt(String method, URI url, boolean replayable, Supplier<CompletableFuture<Response>> call,
+			int attempt, CompletableFuture<Response> result) {
+		if (result.isDone()) {
+			return;
+		}
+		CompletableFuture<Response> current;
+		try {
+			current = call.get();
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+			return;
+		}
+		result.whenComplete((response, t) -> {
+			if (result.isCancelled()) {
+				current.cancel(false);
+			}
+		});
+		boolean lastAttempt = !replayable || attempt >= policy.getMaxAttempts();
+		current.whenComplete((response, failure) -> {
+			long backoff;
+			if (failure != null) {
+				Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+				if (lastAttempt || result.isDone() || !policy.isRetryable(method, cause) || !acquireRetry()) {
+					result.completeExceptionally(cause);
+					return;
+				}
+				backoff = policy.getBackoff(attempt, null);
+			} else {
+				if (lastAttempt || result.isDone() || !policy.isRetryable(method, response.getStatusCode())) {
+					complete(result, response);
+					return;
+				}
+				backoff = policy.getBackoff(attempt, response);
+				if (backoff < 0 || !acquireRetry()) {
+					complete(result, response);
+					return;
+				}
+				response.close();
+			}
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Retrying {} request to: {} in {} ms (attempt {})", method, url, backoff, attempt + 1);
+			}
+			try {
+				scheduler.schedule(() -> attempt(method, url, replayable, call, attempt + 1, result), backoff,
+						TimeUnit.MILLISECONDS);
+			} catch (RuntimeException e) {
+				result.completeExceptionally(
+						new HttpClientException(e, "Failed to schedule retry of request to: " + url, url.toString()));
+			}
+		});
+	}
+
+	private static void complete(CompletableFuture<Response> result, Response response) {
+		if (!result.complete(response)) {
+			response.close();
+		}
+	}
+
+	private boolean acquireRetry() {
+		if (budget.tryAcquire()) {
+			retries.increment();
+			return true;
+		}
+		rejectedRetries.increment();
+		return false;
+	}
+}
@@ -0,0 +1,133 @@
+package http.client;
+
+import static org.apache.http.entity.ContentType.APPLICATION_JSON;
+import static org.apache.http.entity.ContentType.APPLICATION_OCTET_STREAM;
+import static org.apache.http.protocol.HTTP.CONTENT_TYPE;
+
+import java.net.URI;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+
+/**
+ * 
+ * Base URL resolution, default headers and status handling shared by
+ * {@link HttpClientImpl} and {@link AsyncHttpClientImpl}.
+ * 
+ */
+abstract class BaseHttpClient {
+
+	private final String baseURL;
+	private final List<String> baseURLs;
+	private static final Map<String, String> DEFAULT_JSON_HEADERS =
+			Headers.of(CONTENT_TYPE, APPLICATION_JSON.getMimeType()).asMap();
+	private static final Map<String, String> DEFAULT_OCTET_HEADERS =
+			Headers.of(CONTENT_TYPE, APPLICATION_OCTET_STREAM.getMimeType()).asMap();
+	private static final String MOCK_BASE_URL = "http://localhost:8080/platform-webapp/rest/mockTenant/opb/remoting/";
+
+	BaseHttpClient() {
+		this(new Properties());
+	}
+
+	BaseHttpClient(Properties connectionParameters) {
+		this.baseURLs = getBaseURLs(connectionParameters);
+		this.baseURL = baseURLs.get(0);
+	}
+
+	/**
+	 * @return the base URLs of the client, the one requests are resolved
+	 *         against first.
+	 */
+	List<String> getBaseURLs() {
+		return baseURLs;
+	}
+
+	/**
+	 * @return the base URLs of the connection parameters, falling back to the
+	 *         system property. Requests are resolved against the first one;
+	 *         with several base URLs the {@link LoadBalancingRequestInvoker}
+	 *         spreads them across all of them. A single base URL is returned
+	 *         as is, and may even be empty when the request URIs are absolute.
+	 */
+	static List<String> getBaseURLs(Properties connectionParameters) {
+		String value = connectionParameters.getProperty(HttpClientProperties.BASE_URL,
+				System.getProperty(HttpClientProperties.BASE_URL, MOCK_BASE_URL));
+		List<String> baseURLs = new ArrayList<>();
+		for (String baseURL : value.split(",")) {
+			if (!baseURL.trim().isEmpty()) {
+				baseURLs.add(baseURL.trim());
+			}
+		}
+		if (baseURLs.size() <= 1) {
+			return Collections.singletonList(value);
+		}
+		for (String baseURL : baseURLs) {
+			checkBaseURL(baseURL);
+		}
+		return baseURLs;
+	}
+
+	/**
+	 * Parses a base URL the requests are spread to, so that a malformed one
+	 * fails when the client is created rather than on every request.
+	 */
+	private static void checkBaseURL(String baseURL) {
+		URI parsed = URI.create(baseURL);
+		if (!parsed.isAbsolute() || parsed.getRawQuery() != null || parsed.getRawFragment() != null) {
+			throw new IllegalArgumentException("Base URL must be absolute, without query or fragment: " + baseURL);
+		}
+	}
+
+	/**
+	 * Resolves a relative URI against the base URL. The URI must already be
+	 * encoded; use {@link UriTemplate} or {@link UriBuilder} to build it from
+	 * unencoded values.
+	 */
+	URI buildURL(String uri) {
+		return URI.create(baseURL + uri);
+	}
+
+	Response handleResponse(String uri, Response response) throws HttpClientException {
+		int statusCode = response.getStatusCode();
+		if (statusCode >= 300) {
+			// TODO: Provide better exception handling based on MaaS exception format and exception types.
+			String message = MessageFormat.format("Failed to execute request to {0}. Message: {1}. Status code: {2}",
+							uri, response.getStatusText(), statusCode);
+			response.close();
+			throw new HttpClientException(statusCode, response.getStatusText(),	message, uri);
+		}
+		return response;
+	}
+
+	Map<String, String> getDefaultHeaders() {
+		return DEFAULT_JSON_HEADERS;
+	}
+
+	Map<String, String> getDefaultOctetHeaders() {
+		return DEFAULT_OCTET_HEADERS;
+	}
+
+	Map<String, String> addDefaultHeaders(Map<String,String> headers) {
+		return addDefaultHeaders(headers, false);
+	}
+
+	/**
+	 * Adds the default content type unless the given headers already have one.
+	 * Headers that need no default are returned as is, without copying.
+	 */
+	Map<String, String> addDefaultHeaders(Map<String,String> headers, boolean octet) {
+		if (Headers.contains(headers, CONTENT_TYPE)) {
+			return headers;
+		}
+		if (headers.isEmpty()) {
+			return octet ? DEFAULT_OCTET_HEADERS : DEFAULT_JSON_HEADERS;
+		}
+		return Headers.of(headers)
+				.with(CONTENT_TYPE, octet ? APPLICATION_OCTET_STREAM.getMimeType() : APPLICATION_JSON.getMimeType())
+				.asMap();
+	}
+}
@@ -0,0 +1,165 @@
+package http.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * 
+ * Single run of a batch. The calling thread dispatches the requests to an
+ * executor, host by host in the order they were given, keeping at most
+ * <code>maxConcurrent</code> requests in flight overall and
+ * <code>maxPerHost</code> per host, and waits for all of them to complete.
+ * The requests inherit the {@link RequestScope} of the calling thread.
+ * 
+ */
+final class BatchExecution {
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+	static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "http-client-batch-" + THREAD_COUNT.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final HttpClient client;
+	private final List<BatchRequest> requests;
+	private final int maxConcurrent;
+	private final int maxPerHost;
+	private final AtomicReferenceArray<BatchResult> results;
+	private final Map<String, ArrayDeque<Integer>> pending = new LinkedHashMap<>();
+	private final Map<String, Integer> inFlightPerHost = new HashMap<>();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition completion = lock.newCondition();
+	private final RequestCancellation scope = RequestCancellation.current();
+	private int inFlight;
+	private int completed;
+
+	/**
+	 * @param hosts
+	 *            The host of every request, in the same order.
+	 */
+	BatchExecution(HttpClient client, List<BatchRequest> requests, List<String> hosts, int maxConcurrent,
+			int maxPerHost) {
+		if (maxConcurrent < 1 || maxPerHost < 1) {
+			throw new IllegalArgumentException("Batch concurrency limits must be positive: " + maxConcurrent + ", "
+					+ maxPerHost);
+		}
+		this.client = client;
+		this.requests = requests;
+		this.maxConcurrent = maxConcurrent;
+		this.maxPerHost = maxPerHost;
+		this.results = new AtomicReferenceArray<>(requests.size());
+		for (int i = 0; i < requests.size(); i++) {
+			pending.computeIfAbsent(hosts.get(i), host -> new ArrayDeque<>()).add(i);
+		}
+	}
+
+	/**
+	 * Executes the batch. If the calling thread is interrupted, the requests
+	 * that have not completed yet are reported as failed; those already sent
+	 * run to completion in the background.
+	 */
+	List<BatchResult> run(Executor executor) {
+		lock.lock();
+		try {
+			while (completed < requests.size()) {
+				dispatch(executor);
+				if (completed < requests.size()) {
+					completion.await();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			for (int i = 0; i < requests.size(); i++) {
+				String uri = requests.get(i).getUri();
+				results.compareAndSet(i, null, new BatchResult(requests.get(i), null,
+						new HttpClientException(e, "Interrupted while executing request to: " + uri, uri)));
+			}
+		} finally {
+			lock.unlock();
+		}
+		List<BatchResult> list = new ArrayList<>(requests.size());
+		for (int i = 0; i < requests.size(); i++) {
+			list.add(results.get(i));
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Sends the pending requests allowed by the limits. Called with the lock
+	 * held.
+	 */
+	private void dispatch(Executor executor) {
+		Iterator<Entry<String, ArrayDeque<Integer>>> hosts = pending.entrySet().iterator();
+		while (inFlight < maxConcurrent && hosts.hasNext()) {
+			Entry<String, ArrayDeque<Integer>> host = hosts.next();
+			int hostInFlight = inFlightPerHost.getOrDefault(host.getKey(), 0);
+			while (hostInFlight < maxPerHost && inFlight < maxConcurrent && !host.getValue().isEmpty()) {
+				int index = host.getValue().poll();
+				hostInFlight++;
+				inFlight++;
+				try {
+					executor.execute(() -> execute(index, host.getKey()));
+				} catch (RejectedExecutionException e) {
+					String uri = requests.get(index).getUri();
+					complete(index, new BatchResult(requests.get(index), null,
+							new HttpClientException(e, "Failed to execute request to: " + uri, uri)));
+					hostInFlight--;
+				}
+			}
+			inFlightPerHost.put(host.getKey(), hostInFlight);
+			if (host.getValue().isEmpty()) {
+				hosts.remove();
+			}
+		}
+	}
+
+	private void execute(int index, String host) {
+		BatchRequest request = requests.get(index);
+		RequestCancellation cancellation = scope == null ? null : new RequestCancellation(scope);
+		RequestCancellation previous = cancellation == null ? null : cancellation.bind();
+		BatchResult result;
+		try {
+			result = new BatchResult(request, BufferedResponse.of(request.execute(client)), null);
+		} catch (HttpClientException e) {
+			result = new BatchResult(request, null, e);
+		} catch (RuntimeException e) {
+			result = new BatchResult(request, null,
+					new HttpClientException(e, "Failed to execute request to: " + request.getUri(), request.getUri()));
+		} finally {
+			if (cancellation != null) {
+				cancellation.detach();
+				RequestCancellation.restore(previous);
+			}
+		}
+		lock.lock();
+		try {
+			complete(index, result);
+			inFlightPerHost.merge(host, -1, Integer::sum);
+			completion.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void complete(int index, BatchResult result) {
+		results.compareAndSet(index, null, result);
+		inFlight--;
+		completed++;
+	}
+}
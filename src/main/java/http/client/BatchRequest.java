@@ -0,0 +1,122 @@
+package http.client;
+
+import java.util.Collections;
+import java.util.Map;
+
+
+/**
+ * 
+ * Description of one request of a batch executed by
+ * {@link HttpClient#doBatch(java.util.List)}. The payload is a String (sent as
+ * JSON unless the headers say otherwise), a byte array (sent as an octet
+ * stream) or a {@link RequestBody}.
+ * 
+ */
+public final class BatchRequest {
+	private final String method;
+	private final String uri;
+	private final Map<String, String> headers;
+	private final Object payload;
+
+	private BatchRequest(String method, String uri, Map<String, String> headers, Object payload) {
+		if (uri == null) {
+			throw new IllegalArgumentException("Request URI may not be null");
+		}
+		this.method = method;
+		this.uri = uri;
+		this.headers = headers == null ? Collections.<String, String> emptyMap() : headers;
+		this.payload = payload;
+	}
+
+	public static BatchRequest get(String uri) {
+		return get(uri, null);
+	}
+
+	public static BatchRequest get(String uri, Map<String, String> headers) {
+		return new BatchRequest("GET", uri, headers, null);
+	}
+
+	public static BatchRequest put(String uri, String payload) {
+		return put(uri, null, payload);
+	}
+
+	public static BatchRequest put(String uri, Map<String, String> headers, String payload) {
+		return new BatchRequest("PUT", uri, headers, payload);
+	}
+
+	/**
+	 * Creates a PUT request with a streamed body. Bodies that are not
+	 * repeatable can only be sent once, so such a request must not be part of
+	 * more than one batch.
+	 */
+	public static BatchRequest put(String uri, Map<String, String> headers, RequestBody payload) {
+		return new BatchRequest("PUT", uri, headers, payload);
+	}
+
+	public static BatchRequest post(String uri, String payload) {
+		return post(uri, null, payload);
+	}
+
+	public static BatchRequest post(String uri, Map<String, String> headers, String payload) {
+		return new BatchRequest("POST", uri, headers, payload);
+	}
+
+	public static BatchRequest post(String uri, Map<String, String> headers, byte[] payload) {
+		return new BatchRequest("POST", uri, headers, payload);
+	}
+
+	/**
+	 * Creates a POST request with a streamed body. Bodies that are not
+	 * repeatable can only be sent once, so such a request must not be part of
+	 * more than one batch.
+	 */
+	public static BatchRequest post(String uri, Map<String, String> headers, RequestBody payload) {
+		return new BatchRequest("POST", uri, headers, payload);
+	}
+
+	public static BatchRequest delete(String uri) {
+		return new BatchRequest("DELETE", uri, null, null);
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * Sends the request through the given client.
+	 */
+	Response execute(HttpClient client) {
+		switch (method) {
+		case "GET":
+			return client.doGet(uri, headers);
+		case "DELETE":
+			return client.doDelete(uri);
+		case "PUT":
+			if (payload instanceof RequestBody) {
+				return client.doPut(uri, headers, (RequestBody) payload);
+			}
+			return client.doPut(uri, headers, (String) payload);
+		default:
+			if (payload instanceof RequestBody) {
+				return client.doPost(uri, headers, (RequestBody) payload);
+			}
+			if (payload instanceof byte[]) {
+				return client.doPost(uri, headers, (byte[]) payload);
+			}
+			return client.doPost(uri, headers, (String) payload);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return method + " " + uri;
+	}
+}
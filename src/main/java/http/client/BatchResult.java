@@ -0,0 +1,57 @@
+package http.client;
+
+
+/**
+ * 
+ * Outcome of one request of a batch: either its buffered response or the
+ * exception that would have been thrown had the request been sent on its
+ * own, including status codes of 300 and above.
+ * 
+ */
+public final class BatchResult {
+	private final BatchRequest request;
+	private final Response response;
+	private final HttpClientException exception;
+
+	BatchResult(BatchRequest request, Response response, HttpClientException exception) {
+		this.request = request;
+		this.response = response;
+		this.exception = exception;
+	}
+
+	public BatchRequest getRequest() {
+		return request;
+	}
+
+	public boolean isSuccess() {
+		return exception == null;
+	}
+
+	/**
+	 * @return the buffered response, or <code>null</code> if the request
+	 *         failed.
+	 */
+	public Response getResponse() {
+		return response;
+	}
+
+	/**
+	 * @return the failure, or <code>null</code> if the request succeeded.
+	 */
+	public HttpClientException getException() {
+		return exception;
+	}
+
+	/**
+	 * @return the status code of the response or of the failed request, or 0
+	 *         if no response was received.
+	 */
+	public int getStatusCode() {
+		return response != null ? response.getStatusCode() : exception.getStatusCode();
+	}
+
+	@Override
+	public String toString() {
+		return "BatchResult [" + request + ": " + (exception == null ? response.getStatusCode() : exception.getMessage()) + "]";
+	}
+}
@@ -0,0 +1,25 @@
+package http.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * 
+ * Callback that writes a request body directly to the connection. The body
+ * is sent with chunked transfer encoding, so it can be produced piece by
+ * piece without knowing its length up front.
+ * 
+ */
+public interface BodyWriter {
+
+	/**
+	 * Writes the request body. The writer must not close the stream. It may
+	 * be invoked again if the request has to be re-sent.
+	 * 
+	 * @param out
+	 *            The connection output stream.
+	 * @throws IOException
+	 */
+	void writeTo(OutputStream out) throws IOException;
+}
@@ -0,0 +1,198 @@
+package http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.Consts;
+import org.apache.http.entity.ContentType;
+
+
+/**
+ * 
+ * Immutable, fully buffered {@link Response} that can be shared between
+ * callers and read any number of times.
+ * 
+ */
+class BufferedResponse implements Response {
+	private final int statusCode;
+	private final String statusText;
+	private final String contentType;
+	private final long contentLength;
+	private final byte[] responseBytes;
+	private volatile String responseString;
+	private final Headers headers;
+
+	BufferedResponse(int statusCode, String statusText, String contentType, long contentLength,
+			String responseString, byte[] responseBytes, Headers headers) {
+		this.statusCode = statusCode;
+		this.statusText = statusText;
+		this.contentType = contentType;
+		this.contentLength = contentLength;
+		this.responseString = responseString;
+		this.responseBytes = responseBytes;
+		this.headers = headers;
+	}
+
+	/**
+	 * Buffers the given response, reading its content if needed, and closes it.
+	 * The raw content is kept and decoded lazily.
+	 */
+	static BufferedResponse of(Response response) {
+		if (response instanceof BufferedResponse) {
+			return (BufferedResponse) response;
+		}
+		try {
+			byte[] responseBytes = response.getResponseBytes();
+			String responseString = responseBytes == null ? response.getResponseString() : null;
+			return new BufferedResponse(response.getStatusCode(), response.getStatusText(),
+					response.getContentType(), response.getContentLength(), responseString, responseBytes,
+					response.getAllHeaders());
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * @return an estimate of the heap retained by this response, in bytes.
+	 */
+	long estimateSize() {
+		long size = 64;
+		if (responseBytes != null) {
+			// raw content plus its decoded form, once read
+			size += isText() ? 3L * responseBytes.length : responseBytes.length;
+		} else if (responseString != null) {
+			size += 2L * responseString.length();
+		}
+		for (int i = 0; i < headers.size(); i++) {
+			size += 2L * (headers.getName(i).length() + headers.getValue(i).length()) + 16;
+		}
+		return size;
+	}
+
+	@Override
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	@Override
+	public String getStatusText() {
+		return statusText;
+	}
+
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+
+	@Override
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	@Override
+	public String getResponseString() {
+		String result = responseString;
+		if (result == null && responseBytes != null && isText()) {
+			result = new String(responseBytes, getCharset());
+			responseString = result;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the content string this response was created with, which is
+	 *         only set when the raw content is not known.
+	 */
+	String getStoredString() {
+		return responseBytes == null ? responseString : null;
+	}
+
+	/**
+	 * @return the content this response was created with, not to be modified.
+	 */
+	byte[] getStoredBytes() {
+		return responseBytes;
+	}
+
+	/**
+	 * @return a copy of the content, as the response may be shared with other
+	 *         callers; {@link #getResponseBuffers(ByteBufferPool)} and
+	 *         {@link #getResponseStream()} read it without copying.
+	 */
+	@Override
+	public byte[] getResponseBytes() {
+		return responseBytes == null ? null : responseBytes.clone();
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	@Override
+	public InputStream getResponseStream() {
+		if (responseBytes != null) {
+			return new ByteArrayInputStream(responseBytes);
+		}
+		if (responseString != null) {
+			return new ByteArrayInputStream(responseString.getBytes(getCharset()));
+		}
+		return new ByteArrayInputStream(new byte[0]);
+	}
+
+	@Override
+	public PooledBody getResponseBuffers(ByteBufferPool pool) {
+		return PooledBody.wrap(responseBytes != null ? responseBytes
+				: responseString != null ? responseString.getBytes(getCharset()) : null);
+	}
+
+	private boolean isText() {
+		try {
+			ContentType type = contentType != null ? ContentType.parse(contentType) : null;
+			return type == null || !ContentType.APPLICATION_OCTET_STREAM.getMimeType().equals(type.getMimeType());
+		} catch (RuntimeException e) {
+			return true;
+		}
+	}
+
+	private Charset getCharset() {
+		try {
+			ContentType type = contentType != null ? ContentType.parse(contentType) : null;
+			return type != null && type.getCharset() != null ? type.getCharset() : Consts.UTF_8;
+		} catch (RuntimeException e) {
+			return Consts.UTF_8;
+		}
+	}
+
+	@Override
+	public String getHeader(String header) {
+		return headers.getFirst(header);
+	}
+
+	@Override
+	public List<String> getHeaders(String header) {
+		return headers.getAll(header);
+	}
+
+	@Override
+	public Map<String, List<String>> listHeaders() {
+		return headers.asMultimap();
+	}
+
+	@Override
+	public Headers getAllHeaders() {
+		return headers;
+	}
+
+	@Override
+	public void close() {
+	}
+
+	@Override
+	public String toString() {
+		return "BufferedResponse [" + statusCode + " " + statusText + "]";
+	}
+}
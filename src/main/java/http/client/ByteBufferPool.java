@@ -0,0 +1,84 @@
+package http.client;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * 
+ * Pool of fixed-size heap or direct {@link ByteBuffer}s used to hold response
+ * bodies without intermediate copies (see
+ * {@link Response#getResponseBuffers(ByteBufferPool)}). Buffers are allocated
+ * on demand and at most <code>maxPooled</code> released buffers are kept for
+ * reuse. The pool is thread-safe and can be shared by many clients.
+ * 
+ */
+public final class ByteBufferPool {
+	private final int bufferSize;
+	private final int maxPooled;
+	private final boolean direct;
+	private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * @param bufferSize
+	 *            The capacity of every buffer.
+	 * @param maxPooled
+	 *            The maximum number of idle buffers kept.
+	 * @param direct
+	 *            Whether to allocate direct buffers.
+	 */
+	public ByteBufferPool(int bufferSize, int maxPooled, boolean direct) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+		this.direct = direct;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * @return the number of idle buffers in the pool.
+	 */
+	public int getPooledCount() {
+		return pooled.get();
+	}
+
+	/**
+	 * @return a cleared buffer, reused from the pool when one is available.
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = buffers.poll();
+		if (buffer == null) {
+			return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+		}
+		pooled.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer obtained from {@link #acquire()} to the pool. The
+	 * buffer must not be used afterwards.
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer.capacity() != bufferSize || buffer.isDirect() != direct || buffer.isReadOnly()) {
+			return;
+		}
+		if (pooled.incrementAndGet() <= maxPooled) {
+			buffers.offer(buffer);
+		} else {
+			pooled.decrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package http.client;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.message.BasicHeaderValueParser;
+
+
+/**
+ * 
+ * Parsed Cache-Control directives of a request or a response.
+ * 
+ */
+final class CacheControl {
+	static final String CACHE_CONTROL = "Cache-Control";
+	static final CacheControl NONE = new CacheControl(false, false, false, -1, false);
+
+	final boolean noStore;
+	final boolean noCache;
+	final boolean mustRevalidate;
+	/** max-age in seconds, or -1 if absent. */
+	final long maxAge;
+	final boolean hasDirectives;
+
+	private CacheControl(boolean noStore, boolean noCache, boolean mustRevalidate, long maxAge,
+			boolean hasDirectives) {
+		this.noStore = noStore;
+		this.noCache = noCache;
+		this.mustRevalidate = mustRevalidate;
+		this.maxAge = maxAge;
+		this.hasDirectives = hasDirectives;
+	}
+
+	static CacheControl parse(List<String> values) {
+		if (values.isEmpty()) {
+			return NONE;
+		}
+		boolean noStore = false;
+		boolean noCache = false;
+		boolean mustRevalidate = false;
+		long maxAge = -1;
+		for (String value : values) {
+			for (HeaderElement element : BasicHeaderValueParser.parseElements(value, null)) {
+				String name = element.getName().toLowerCase(Locale.ROOT);
+				switch (name) {
+				case "no-store":
+					noStore = true;
+					break;
+				case "no-cache":
+					noCache = true;
+					break;
+				case "must-revalidate":
+				case "proxy-revalidate":
+					mustRevalidate = true;
+					break;
+				case "max-age":
+					maxAge = parseSeconds(element.getValue());
+					break;
+				default:
+					break;
+				}
+			}
+		}
+		return new CacheControl(noStore, noCache, mustRevalidate, maxAge, true);
+	}
+
+	static CacheControl parse(String value) {
+		return value == null ? NONE : parse(Collections.singletonList(value));
+	}
+
+	private static long parseSeconds(String value) {
+		if (value == null) {
+			return -1;
+		}
+		try {
+			return Math.max(0, Long.parseLong(value.trim()));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
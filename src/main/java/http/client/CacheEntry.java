@@ -0,0 +1,227 @@
+package http.client;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.client.utils.DateUtils;
+
+
+/**
+ * 
+ * Response stored by {@link CachingRequestInvoker}, together with the
+ * information needed to decide whether it is fresh and how to revalidate it.
+ * 
+ */
+final class CacheEntry {
+	static final String ETAG = "ETag";
+	static final String LAST_MODIFIED = "Last-Modified";
+	private static final String VARY = "Vary";
+	private static final String EXPIRES = "Expires";
+	private static final String DATE = "Date";
+	private static final String AGE = "Age";
+
+	final BufferedResponse response;
+	final long storedAt;
+	final long freshnessLifetime;
+	final boolean mustRevalidate;
+	final Headers varyValues;
+
+	private CacheEntry(BufferedResponse response, long storedAt, long freshnessLifetime, boolean mustRevalidate,
+			Headers varyValues) {
+		this.response = response;
+		this.storedAt = storedAt;
+		this.freshnessLifetime = freshnessLifetime;
+		this.mustRevalidate = mustRevalidate;
+		this.varyValues = varyValues;
+	}
+
+	/**
+	 * @return the entry for the given response, or <code>null</code> if the
+	 *         response may not be stored.
+	 */
+	static CacheEntry create(BufferedResponse response, Map<String, String> requestHeaders, long now) {
+		if (response.getStatusCode() != 200) {
+			return null;
+		}
+		CacheControl cacheControl = CacheControl.parse(response.getHeaders(CacheControl.CACHE_CONTROL));
+		if (cacheControl.noStore) {
+			return null;
+		}
+		Headers varyValues = Headers.EMPTY;
+		for (String vary : response.getHeaders(VARY)) {
+			for (String name : vary.split(",")) {
+				name = name.trim();
+				if (name.equals("*")) {
+					return null;
+				}
+				if (!name.isEmpty()) {
+					String value = Headers.get(requestHeaders, name);
+					varyValues = varyValues.with(name, value != null ? value : "");
+				}
+			}
+		}
+		long lifetime = cacheControl.noCache ? 0 : freshnessLifetime(response, cacheControl, now);
+		if (lifetime <= 0 && response.getHeader(ETAG) == null && response.getHeader(LAST_MODIFIED) == null) {
+			return null;
+		}
+		return new CacheEntry(response, now, Math.max(0, lifetime), cacheControl.mustRevalidate, varyValues);
+	}
+
+	private static long freshnessLifetime(Response response, CacheControl cacheControl, long now) {
+		long lifetime;
+		if (cacheControl.maxAge >= 0) {
+			lifetime = cacheControl.maxAge * 1000;
+		} else {
+			Date expires = parseDate(response.getHeader(EXPIRES));
+			if (expires == null) {
+				return 0;
+			}
+			Date date = parseDate(response.getHeader(DATE));
+			lifetime = expires.getTime() - (date != null ? date.getTime() : now);
+		}
+		String age = response.getHeader(AGE);
+		if (age != null) {
+			try {
+				lifetime -= Long.parseLong(age.trim()) * 1000;
+			} catch (NumberFormatException e) {
+				// Ignore a malformed Age header.
+			}
+		}
+		return lifetime;
+	}
+
+	private static Date parseDate(String value) {
+		return value != null ? DateUtils.parseDate(value) : null;
+	}
+
+	boolean isFresh(long now, CacheControl requestCacheControl) {
+		if (requestCacheControl.noCache) {
+			return false;
+		}
+		long age = now - storedAt;
+		if (requestCacheControl.maxAge >= 0 && age > requestCacheControl.maxAge * 1000) {
+			return false;
+		}
+		return age < freshnessLifetime;
+	}
+
+	boolean matches(Map<String, String> requestHeaders) {
+		for (int i = 0; i < varyValues.size(); i++) {
+			String value = Headers.get(requestHeaders, varyValues.getName(i));
+			if (!varyValues.getValue(i).equals(value != null ? value : "")) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	boolean canRevalidate() {
+		return response.getHeader(ETAG) != null || response.getHeader(LAST_MODIFIED) != null;
+	}
+
+	/**
+	 * @return the entry refreshed by a 304 (Not Modified) response: the stored
+	 *         headers are updated with the ones of the 304 response.
+	 */
+	CacheEntry revalidated(Response notModified, long now) {
+		Headers updates = notModified.getAllHeaders();
+		Headers current = response.getAllHeaders();
+		List<String> namesAndValues = new ArrayList<>();
+		for (int i = 0; i < current.size(); i++) {
+			if (!updates.contains(current.getName(i)) || current.getName(i).equalsIgnoreCase("Content-Length")) {
+				namesAndValues.add(current.getName(i));
+				namesAndValues.add(current.getValue(i));
+			}
+		}
+		for (int i = 0; i < updates.size(); i++) {
+			if (!updates.getName(i).equalsIgnoreCase("Content-Length")) {
+				namesAndValues.add(updates.getName(i));
+				namesAndValues.add(updates.getValue(i));
+			}
+		}
+		BufferedResponse refreshed = new BufferedResponse(response.getStatusCode(), response.getStatusText(),
+				response.getContentType(), response.getContentLength(), response.getStoredString(),
+				response.getStoredBytes(), Headers.of(namesAndValues.toArray(new String[namesAndValues.size()])));
+		CacheControl cacheControl = CacheControl.parse(refreshed.getHeaders(CacheControl.CACHE_CONTROL));
+		long lifetime = cacheControl.noCache ? 0 : freshnessLifetime(refreshed, cacheControl, now);
+		return new CacheEntry(refreshed, now, Math.max(0, lifetime), cacheControl.mustRevalidate, varyValues);
+	}
+
+	long estimateSize() {
+		return response.estimateSize() + 48;
+	}
+
+	void writeTo(DataOutput out) throws IOException {
+		out.writeLong(storedAt);
+		out.writeLong(freshnessLifetime);
+		out.writeBoolean(mustRevalidate);
+		writeHeaders(out, varyValues);
+		out.writeInt(response.getStatusCode());
+		writeString(out, response.getStatusText());
+		writeString(out, response.getContentType());
+		out.writeLong(response.getContentLength());
+		writeString(out, response.getStoredString());
+		writeBytes(out, response.getStoredBytes());
+		writeHeaders(out, response.getAllHeaders());
+	}
+
+	static CacheEntry readFrom(DataInput in) throws IOException {
+		long storedAt = in.readLong();
+		long freshnessLifetime = in.readLong();
+		boolean mustRevalidate = in.readBoolean();
+		Headers varyValues = readHeaders(in);
+		BufferedResponse response = new BufferedResponse(in.readInt(), readString(in), readString(in),
+				in.readLong(), readString(in), readBytes(in), readHeaders(in));
+		return new CacheEntry(response, storedAt, freshnessLifetime, mustRevalidate, varyValues);
+	}
+
+	private static void writeHeaders(DataOutput out, Headers headers) throws IOException {
+		out.writeInt(headers.size());
+		for (int i = 0; i < headers.size(); i++) {
+			writeString(out, headers.getName(i));
+			writeString(out, headers.getValue(i));
+		}
+	}
+
+	private static Headers readHeaders(DataInput in) throws IOException {
+		String[] namesAndValues = new String[in.readInt() * 2];
+		for (int i = 0; i < namesAndValues.length; i++) {
+			namesAndValues[i] = readString(in);
+		}
+		return Headers.of(namesAndValues);
+	}
+
+	private static void writeString(DataOutput out, String value) throws IOException {
+		writeBytes(out, value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		byte[] bytes = readBytes(in);
+		return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+	}
+
+	private static void writeBytes(DataOutput out, byte[] value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(value.length);
+			out.write(value);
+		}
+	}
+
+	private static byte[] readBytes(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+}
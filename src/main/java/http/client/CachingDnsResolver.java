@@ -0,0 +1,232 @@
+package http.client;
+
+import static http.client.HttpClientProperties.DEFAULT_DNS_CACHE_STALE;
+import static http.client.HttpClientProperties.DEFAULT_DNS_CACHE_TTL;
+import static http.client.HttpClientProperties.DNS_CACHE_STALE;
+import static http.client.HttpClientProperties.DNS_CACHE_TTL;
+import static http.client.HttpClientProperties.getLong;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ *
+ * {@link DnsResolver} that caches the addresses of the hosts it resolves for
+ * a time to live. A lookup in the last fifth of the time to live refreshes
+ * the entry in the background, so the hosts in use are re-resolved off the
+ * path of new connections; an entry that was not used before it expired is
+ * resolved again on lookup. When a resolution fails, the last addresses of
+ * the host are used for up to the stale duration after they expired, so a
+ * DNS outage does not break connections to known hosts. Concurrent lookups
+ * of a host that is not cached share one resolution; failed resolutions are
+ * not cached.
+ * <p>
+ * The JDK does not expose the TTL of DNS records: the time to live should
+ * not exceed it, keeping in mind that the delegate may cache as well (e.g.
+ * the JVM cache of <code>networkaddress.cache.ttl</code>).
+ *
+ */
+public class CachingDnsResolver implements DnsResolver {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CachingDnsResolver.class);
+	private static final ExecutorService REFRESH_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "http-client-dns-refresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final DnsResolver delegate;
+	private final long ttl;
+	private final long staleDuration;
+	private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final ConcurrentHashMap<String, CompletableFuture<InetAddress[]>> lookups = new ConcurrentHashMap<>();
+	private final LongAdder lookupCount = new LongAdder();
+
+	/**
+	 * @param delegate
+	 *            The resolver of the hosts that are not cached.
+	 * @param ttl
+	 *            The time to live of a resolution, in milliseconds.
+	 * @param staleDuration
+	 *            The time an expired resolution is still used while the host
+	 *            cannot be resolved, in milliseconds.
+	 */
+	public CachingDnsResolver(DnsResolver delegate, long ttl, long staleDuration) {
+		if (ttl <= 0) {
+			throw new IllegalArgumentException("DNS cache TTL must be positive: " + ttl);
+		}
+		this.delegate = delegate;
+		this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+		this.staleDuration = TimeUnit.MILLISECONDS.toNanos(Math.max(0, staleDuration));
+	}
+
+	/**
+	 * Creates a cache of the system resolver configured from the dns.cache.*
+	 * connection parameters.
+	 */
+	public CachingDnsResolver(Properties connectionParameters) {
+		this(SystemDefaultDnsResolver.INSTANCE, connectionParameters);
+	}
+
+	public CachingDnsResolver(DnsResolver delegate, Properties connectionParameters) {
+		this(delegate, getLong(connectionParameters, DNS_CACHE_TTL, DEFAULT_DNS_CACHE_TTL),
+				getLong(connectionParameters, DNS_CACHE_STALE, DEFAULT_DNS_CACHE_STALE));
+	}
+
+	@Override
+	public InetAddress[] resolve(String host) throws UnknownHostException {
+		String key = host.toLowerCase(Locale.ROOT);
+		long now = System.nanoTime();
+		Entry entry = cache.get(key);
+		if (entry != null && entry.isUsable(now)) {
+			hits.increment();
+			if (now - entry.refreshAt >= 0) {
+				refresh(key, entry);
+			}
+			return entry.addresses.clone();
+		}
+		try {
+			return resolveOnce(key).clone();
+		} catch (UnknownHostException e) {
+			if (entry == null || now - entry.expiresAt >= staleDuration) {
+				throw e;
+			}
+			LOGGER.warn("Failed to resolve {}, using the addresses resolved before: {}", key, e.toString());
+			cache.replace(key, entry, entry.failed(now));
+			return entry.addresses.clone();
+		}
+	}
+
+	/**
+	 * @return the number of resolutions served from the cache.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of resolutions delegated, in the background or not.
+	 */
+	public long getLookupCount() {
+		return lookupCount.sum();
+	}
+
+	/**
+	 * Removes every cached resolution.
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * Resolves a host that is not cached; concurrent callers wait for the
+	 * same lookup.
+	 */
+	private InetAddress[] resolveOnce(String host) throws UnknownHostException {
+		CompletableFuture<InetAddress[]> lookup = new CompletableFuture<>();
+		CompletableFuture<InetAddress[]> pending = lookups.putIfAbsent(host, lookup);
+		if (pending != null) {
+			return await(host, pending);
+		}
+		try {
+			lookupCount.increment();
+			InetAddress[] addresses = delegate.resolve(host);
+			if (addresses == null || addresses.length == 0) {
+				throw new UnknownHostException(host);
+			}
+			cache.put(host, new Entry(addresses, System.nanoTime(), false));
+			lookup.complete(addresses);
+			return addresses;
+		} catch (UnknownHostException | RuntimeException e) {
+			lookup.completeExceptionally(e);
+			throw e;
+		} finally {
+			lookups.remove(host, lookup);
+		}
+	}
+
+	private static InetAddress[] await(String host, CompletableFuture<InetAddress[]> lookup)
+			throws UnknownHostException {
+		try {
+			return lookup.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UnknownHostException) {
+				throw (UnknownHostException) e.getCause();
+			}
+			throw (RuntimeException) e.getCause();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UnknownHostException("Interrupted while resolving " + host);
+		}
+	}
+
+	private void refresh(String host, Entry entry) {
+		if (!entry.refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		REFRESH_EXECUTOR.execute(() -> {
+			lookupCount.increment();
+			try {
+				InetAddress[] addresses = delegate.resolve(host);
+				if (addresses == null || addresses.length == 0) {
+					throw new UnknownHostException(host);
+				}
+				cache.replace(host, entry, new Entry(addresses, System.nanoTime(), false));
+			} catch (UnknownHostException | RuntimeException e) {
+				LOGGER.warn("Failed to refresh the addresses of {}: {}", host, e.toString());
+				cache.replace(host, entry, entry.failed(System.nanoTime()));
+			}
+		});
+	}
+
+	private final class Entry {
+		final InetAddress[] addresses;
+		final long refreshAt;
+		final long expiresAt;
+		final boolean stale;
+		final AtomicBoolean refreshing = new AtomicBoolean();
+
+		Entry(InetAddress[] addresses, long resolvedAt, boolean stale) {
+			this(addresses, resolvedAt + ttl - ttl / 5, resolvedAt + ttl, stale);
+		}
+
+		private Entry(InetAddress[] addresses, long refreshAt, long expiresAt, boolean stale) {
+			this.addresses = addresses;
+			this.refreshAt = refreshAt;
+			this.expiresAt = expiresAt;
+			this.stale = stale;
+		}
+
+		/**
+		 * @return whether the entry is still valid, or could not be refreshed
+		 *         and is within the stale duration.
+		 */
+		boolean isUsable(long now) {
+			return now - expiresAt < 0 || (stale && now - expiresAt < staleDuration);
+		}
+
+		/**
+		 * @return a copy of this entry that is used while stale and refreshed
+		 *         again a fifth of the time to live later.
+		 */
+		Entry failed(long now) {
+			return new Entry(addresses, now + ttl / 5, expiresAt, true);
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package http.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * 
+ * {@link RequestInvoker} decorator that caches GET responses following HTTP
+ * caching semantics: fresh responses (Cache-Control max-age, Expires) are
+ * served from memory, stale ones are revalidated with If-None-Match /
+ * If-Modified-Since, and no-store responses are never kept. The in-memory
+ * store is bounded in bytes and evicts the least recently used entries,
+ * optionally spilling them to a memory-mapped file. Unsafe methods invalidate
+ * the entry of their URI.
+ * <p>
+ * Streamed GETs ({@link #doGetStream(URI, Map)}, and the typed JSON methods
+ * of the client built on it) are answered from the cache when a fresh entry
+ * exists, but are otherwise passed through without being revalidated or
+ * stored, since storing a response requires buffering it.
+ * 
+ */
+public class CachingRequestInvoker extends ForwardingRequestInvoker implements Closeable {
+	private static final String IF_NONE_MATCH = "If-None-Match";
+	private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+	private final ResponseCache cache;
+	private final MappedCacheStore spillStore;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder revalidations = new LongAdder();
+	private final LongAdder notModified = new LongAdder();
+
+	/**
+	 * @param maxBytes
+	 *            The maximum estimated size of the cached responses.
+	 */
+	public CachingRequestInvoker(RequestInvoker delegate, long maxBytes) {
+		super(delegate);
+		this.spillStore = null;
+		this.cache = new ResponseCache(maxBytes, null);
+	}
+
+	/**
+	 * @param maxBytes
+	 *            The maximum estimated size of the responses cached in memory.
+	 * @param spillFile
+	 *            The file that holds the responses evicted from memory.
+	 * @param maxSpillBytes
+	 *            The size of the spill file.
+	 * @throws IOException
+	 *             If the spill file cannot be mapped.
+	 */
+	public CachingRequestInvoker(RequestInvoker delegate, long maxBytes, Path spillFile, int maxSpillBytes)
+			throws IOException {
+		super(delegate);
+		this.spillStore = new MappedCacheStore(spillFile, maxSpillBytes);
+		this.cache = new ResponseCache(maxBytes, spillStore);
+	}
+
+	@Override
+	public Response doGet(URI url, Map<String, String> headers) {
+		CacheControl requestCacheControl = CacheControl.parse(Headers.get(headers, CacheControl.CACHE_CONTROL));
+		if (requestCacheControl.noStore) {
+			misses.increment();
+			return delegate.doGet(url, headers);
+		}
+
+		String key = url.toString();
+		long now = System.currentTimeMillis();
+		CacheEntry entry = lookup(key, headers);
+		if (entry != null && entry.isFresh(now, requestCacheControl)) {
+			hits.increment();
+			return entry.response;
+		}
+		if (entry == null || !entry.canRevalidate()) {
+			misses.increment();
+			return store(key, headers, delegate.doGet(url, headers), now);
+		}
+
+		revalidations.increment();
+		Headers conditional = Headers.of(headers);
+		String etag = entry.response.getHeader(CacheEntry.ETAG);
+		if (etag != null) {
+			conditional = conditional.with(IF_NONE_MATCH, etag);
+		}
+		String lastModified = entry.response.getHeader(CacheEntry.LAST_MODIFIED);
+		if (lastModified != null) {
+			conditional = conditional.with(IF_MODIFIED_SINCE, lastModified);
+		}
+		Response response = delegate.doGet(url, conditional.asMap());
+		if (response.getStatusCode() == 304) {
+			response.close();
+			notModified.increment();
+			CacheEntry refreshed = entry.revalidated(response, now);
+			cache.put(key, refreshed);
+			return refreshed.response;
+		}
+		return store(key, headers, response, now);
+	}
+
+	@Override
+	public Response doGetStream(URI url, Map<String, String> headers) {
+		CacheControl requestCacheControl = CacheControl.parse(Headers.get(headers, CacheControl.CACHE_CONTROL));
+		if (!requestCacheControl.noStore) {
+			CacheEntry entry = lookup(url.toString(), headers);
+			if (entry != null && entry.isFresh(System.currentTimeMillis(), requestCacheControl)) {
+				hits.increment();
+				return entry.response;
+			}
+		}
+		misses.increment();
+		return delegate.doGetStream(url, headers);
+	}
+
+	@Override
+	public Response doPut(URI url, String payload, Map<String, String> headers) {
+		cache.remove(url.toString());
+		return delegate.doPut(url, payload, headers);
+	}
+
+	@Override
+	public Response doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		cache.remove(url.toString());
+		return delegate.doPut(url, payload, headers);
+	}
+
+	@Override
+	public Response doDelete(URI url, Map<String, String> headers) {
+		cache.remove(url.toString());
+		return delegate.doDelete(url, headers);
+	}
+
+	@Override
+	public Response doPost(URI url, String payload, Map<String, String> headers) {
+		cache.remove(url.toString());
+		return delegate.doPost(url, payload, headers);
+	}
+
+	@Override
+	public Response doPost(URI url, byte[] payload, Map<String, String> headers) {
+		cache.remove(url.toString());
+		return delegate.doPost(url, payload, headers);
+	}
+
+	@Override
+	public Response doPost(URI url, RequestBody payload, Map<String, String> headers) {
+		cache.remove(url.toString());
+		return delegate.doPost(url, payload, headers);
+	}
+
+	private CacheEntry lookup(String key, Map<String, String> headers) {
+		CacheEntry entry = cache.get(key);
+		return entry != null && entry.matches(headers) ? entry : null;
+	}
+
+	private Response store(String key, Map<String, String> headers, Response response, long now) {
+		if (response.getStatusCode() != 200) {
+			return response;
+		}
+		BufferedResponse buffered = BufferedResponse.of(response);
+		CacheEntry entry = CacheEntry.create(buffered, headers, now);
+		if (entry != null) {
+			cache.put(key, entry);
+		} else {
+			cache.remove(key);
+		}
+		return buffered;
+	}
+
+	/**
+	 * @return the number of requests served from the cache without contacting
+	 *         the server.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of requests for which nothing usable was cached.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of conditional requests sent to revalidate a stale
+	 *         entry.
+	 */
+	public long getRevalidationCount() {
+		return revalidations.sum();
+	}
+
+	/**
+	 * @return the number of revalidations answered with 304 (Not Modified).
+	 */
+	public long getNotModifiedCount() {
+		return notModified.sum();
+	}
+
+	/**
+	 * @return the number of entries evicted from memory.
+	 */
+	public long getEvictionCount() {
+		return cache.getEvictionCount();
+	}
+
+	/**
+	 * @return the estimated size of the responses cached in memory, in bytes.
+	 */
+	public long getCachedBytes() {
+		return cache.getBytes();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (spillStore != null) {
+			spillStore.close();
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package http.client;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 
+ * Circuit breaker of a single destination. The outcomes of the last calls are
+ * kept in a count-based rolling window; when the failure rate or the slow call
+ * rate of the window reaches its threshold the breaker opens and rejects
+ * calls. After the open duration it lets a limited number of probe calls
+ * through (half-open) and closes again if they succeed.
+ * 
+ */
+public final class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private static final byte FAILED = 1;
+	private static final byte SLOW = 2;
+
+	private final String host;
+	private final int failureRateThreshold;
+	private final int slowCallRateThreshold;
+	private final long slowCallDuration;
+	private final int minimumCalls;
+	private final long openDuration;
+	private final int halfOpenCalls;
+	private final CircuitBreakerListener listener;
+
+	private final byte[] window;
+	private int next;
+	private int calls;
+	private int failures;
+	private int slowCalls;
+	private State state = State.CLOSED;
+	private long openedAt;
+	private int probesStarted;
+
+	/**
+	 * @param failureRateThreshold
+	 *            The percentage of failed calls that opens the breaker.
+	 * @param slowCallRateThreshold
+	 *            The percentage of slow calls that opens the breaker.
+	 * @param slowCallDuration
+	 *            The duration above which a call is slow, in milliseconds.
+	 * @param windowSize
+	 *            The number of calls in the rolling window.
+	 * @param minimumCalls
+	 *            The number of calls required before the rates are evaluated.
+	 * @param openDuration
+	 *            The time the breaker stays open before probing, in
+	 *            milliseconds.
+	 * @param halfOpenCalls
+	 *            The number of probe calls let through when half-open.
+	 */
+	CircuitBreaker(String host, int failureRateThreshold, int slowCallRateThreshold, long slowCallDuration,
+			int windowSize, int minimumCalls, long openDuration, int halfOpenCalls, CircuitBreakerListener listener) {
+		if (windowSize < 1 || halfOpenCalls < 1) {
+			throw new IllegalArgumentException("Circuit breaker window and half-open calls must be positive");
+		}
+		this.host = host;
+		this.failureRateThreshold = failureRateThreshold;
+		this.slowCallRateThreshold = slowCallRateThreshold;
+		this.slowCallDuration = TimeUnit.MILLISECONDS.toNanos(slowCallDuration);
+		this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+		this.openDuration = TimeUnit.MILLISECONDS.toNanos(openDuration);
+		this.halfOpenCalls = halfOpenCalls;
+		this.listener = listener;
+		this.window = new byte[windowSize];
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the percentage of failed calls in the current window.
+	 */
+	public synchronized int getFailureRate() {
+		return calls == 0 ? 0 : failures * 100 / calls;
+	}
+
+	/**
+	 * @return the percentage of slow calls in the current window.
+	 */
+	public synchronized int getSlowCallRate() {
+		return calls == 0 ? 0 : slowCalls * 100 / calls;
+	}
+
+	/**
+	 * @return <code>true</code> if a call may be sent. Every permitted call
+	 *         must be followed by {@link #onResult(boolean, long)}.
+	 */
+	boolean tryAcquire() {
+		State previous = null;
+		boolean permitted;
+		synchronized (this) {
+			if (state == State.OPEN && System.nanoTime() - openedAt >= openDuration) {
+				previous = transition(State.HALF_OPEN);
+			}
+			if (state == State.CLOSED) {
+				permitted = true;
+			} else if (state == State.HALF_OPEN && probesStarted < halfOpenCalls) {
+				probesStarted++;
+				permitted = true;
+			} else {
+				permitted = false;
+			}
+		}
+		notifyListener(previous, State.HALF_OPEN);
+		return permitted;
+	}
+
+	/**
+	 * Records the outcome of a permitted call.
+	 * 
+	 * @param failed
+	 *            Whether the call failed.
+	 * @param durationNanos
+	 *            The duration of the call.
+	 */
+	void onResult(boolean failed, long durationNanos) {
+		State previous = null;
+		State current;
+		synchronized (this) {
+			if (state == State.OPEN) {
+				return;
+			}
+			record((byte) ((failed ? FAILED : 0) | (durationNanos >= slowCallDuration ? SLOW : 0)));
+			if (state == State.CLOSED) {
+				if (calls >= minimumCalls && isAboveThresholds()) {
+					previous = transition(State.OPEN);
+				}
+			} else if (calls >= halfOpenCalls) {
+				previous = transition(isAboveThresholds() ? State.OPEN : State.CLOSED);
+			}
+			current = state;
+		}
+		notifyListener(previous, current);
+	}
+
+	/**
+	 * Ends a permitted call that was cancelled by the caller, e.g. the losing
+	 * attempt of a hedged request: it tells nothing about the destination and
+	 * is not recorded, and a half-open breaker lets another probe through
+	 * instead.
+	 */
+	synchronized void onCancelled() {
+		if (state == State.HALF_OPEN && probesStarted > 0) {
+			probesStarted--;
+		}
+	}
+
+	private void record(byte outcome) {
+		if (calls == window.length) {
+			byte evicted = window[next];
+			failures -= evicted & FAILED;
+			slowCalls -= (evicted & SLOW) >> 1;
+		} else {
+			calls++;
+		}
+		window[next] = outcome;
+		next = (next + 1) % window.length;
+		failures += outcome & FAILED;
+		slowCalls += (outcome & SLOW) >> 1;
+	}
+
+	private boolean isAboveThresholds() {
+		return failures * 100 >= failureRateThreshold * calls || slowCalls * 100 >= slowCallRateThreshold * calls;
+	}
+
+	private State transition(State to) {
+		State from = state;
+		state = to;
+		next = 0;
+		calls = 0;
+		failures = 0;
+		slowCalls = 0;
+		probesStarted = 0;
+		if (to == State.OPEN) {
+			openedAt = System.nanoTime();
+		}
+		return from;
+	}
+
+	private void notifyListener(State from, State to) {
+		if (from != null && listener != null) {
+			listener.onStateChange(host, from, to);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitBreaker[" + host + ", " + getState() + "]";
+	}
+}
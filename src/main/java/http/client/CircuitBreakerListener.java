@@ -0,0 +1,21 @@
+package http.client;
+
+
+/**
+ * 
+ * Receives the state changes of the circuit breakers of a
+ * {@link CircuitBreakerRequestInvoker}. Notifications are delivered on the
+ * thread that caused the change and must not block.
+ * 
+ */
+public interface CircuitBreakerListener {
+	/**
+	 * @param host
+	 *            The destination (host and port) of the circuit breaker.
+	 * @param from
+	 *            The previous state.
+	 * @param to
+	 *            The new state.
+	 */
+	void onStateChange(String host, CircuitBreaker.State from, CircuitBreaker.State to);
+}
@@ -0,0 +1,244 @@
+package http.client;
+
+import static http.client.HttpClientProperties.BULKHEAD_MAX_CONCURRENT;
+import static http.client.HttpClientProperties.BULKHEAD_MAX_WAIT;
+import static http.client.HttpClientProperties.CIRCUIT_BREAKER_ENABLED;
+import static http.client.HttpClientProperties.CIRCUIT_BREAKER_FAILURE_RATE;
+import static http.client.HttpClientProperties.CIRCUIT_BREAKER_HALF_OPEN_CALLS;
+import static http.client.HttpClientProperties.CIRCUIT_BREAKER_MINIMUM_CALLS;
+import static http.client.HttpClientProperties.CIRCUIT_BREAKER_OPEN_DURATION;
+import static http.client.HttpClientProperties.CIRCUIT_BREAKER_SLOW_CALL_DURATION;
+import static http.client.HttpClientProperties.CIRCUIT_BREAKER_SLOW_CALL_RATE;
+import static http.client.HttpClientProperties.CIRCUIT_BREAKER_WINDOW_SIZE;
+import static http.client.HttpClientProperties.DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE;
+import static http.client.HttpClientProperties.DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_CALLS;
+import static http.client.HttpClientProperties.DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS;
+import static http.client.HttpClientProperties.DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION;
+import static http.client.HttpClientProperties.DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_DURATION;
+import static http.client.HttpClientProperties.DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_RATE;
+import static http.client.HttpClientProperties.DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE;
+import static http.client.HttpClientProperties.getBoolean;
+import static http.client.HttpClientProperties.getInt;
+import static http.client.HttpClientProperties.getLong;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * 
+ * {@link RequestInvoker} decorator that isolates destinations from each other.
+ * Every host has its own {@link CircuitBreaker}, which counts I/O failures and
+ * 5xx responses, and optionally a bulkhead that bounds the number of requests
+ * in flight to it. Rejected requests fail fast with a
+ * {@link RequestRejectedException}. The bulkhead permit of a streamed response
+ * is released when the response is returned, not when it is consumed.
+ * 
+ */
+public class CircuitBreakerRequestInvoker extends ForwardingRequestInvoker {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreakerRequestInvoker.class);
+
+	private final ConcurrentMap<String, Destination> destinations = new ConcurrentHashMap<>();
+	private final Properties settings;
+	private final CircuitBreakerListener listener;
+	private final boolean circuitBreakerEnabled;
+	private final int maxConcurrent;
+	private final long maxWait;
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * Creates an invoker configured from the circuit.breaker.* and bulkhead.*
+	 * connection parameters (see {@link HttpClientProperties}). Circuit
+	 * breakers are used unless circuit.breaker.enabled is <code>false</code>.
+	 * 
+	 * @param listener
+	 *            Receives the state changes of the circuit breakers; may be
+	 *            <code>null</code>.
+	 */
+	public CircuitBreakerRequestInvoker(RequestInvoker delegate, Properties connectionParameters,
+			CircuitBreakerListener listener) {
+		this(delegate, connectionParameters, listener,
+				getBoolean(connectionParameters, CIRCUIT_BREAKER_ENABLED, true));
+	}
+
+	/**
+	 * @param circuitBreakerEnabled
+	 *            When <code>false</code> only the bulkheads are used.
+	 */
+	CircuitBreakerRequestInvoker(RequestInvoker delegate, Properties connectionParameters,
+			CircuitBreakerListener listener, boolean circuitBreakerEnabled) {
+		super(delegate);
+		this.settings = connectionParameters;
+		this.listener = listener;
+		this.circuitBreakerEnabled = circuitBreakerEnabled;
+		this.maxConcurrent = getInt(connectionParameters, BULKHEAD_MAX_CONCURRENT, 0);
+		this.maxWait = getLong(connectionParameters, BULKHEAD_MAX_WAIT, 0);
+	}
+
+	@Override
+	public Response doGet(URI url, Map<String, String> headers) {
+		return execute(url, () -> delegate.doGet(url, headers));
+	}
+
+	@Override
+	public Response doGetStream(URI url, Map<String, String> headers) {
+		return execute(url, () -> delegate.doGetStream(url, headers));
+	}
+
+	@Override
+	public Response doPut(URI url, String payload, Map<String, String> headers) {
+		return execute(url, () -> delegate.doPut(url, payload, headers));
+	}
+
+	@Override
+	public Response doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		return execute(url, () -> delegate.doPut(url, payload, headers));
+	}
+
+	@Override
+	public Response doDelete(URI url, Map<String, String> headers) {
+		return execute(url, () -> delegate.doDelete(url, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, String payload, Map<String, String> headers) {
+		return execute(url, () -> delegate.doPost(url, payload, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, byte[] payload, Map<String, String> headers) {
+		return execute(url, () -> delegate.doPost(url, payload, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, RequestBody payload, Map<String, String> headers) {
+		return execute(url, () -> delegate.doPost(url, payload, headers));
+	}
+
+	/**
+	 * @return the circuit breakers of every destination called so far, keyed
+	 *         by host and port.
+	 */
+	public Map<String, CircuitBreaker> getCircuitBreakers() {
+		Map<String, CircuitBreaker> breakers = new TreeMap<>();
+		for (Destination destination : destinations.values()) {
+			if (destination.breaker != null) {
+				breakers.put(destination.breaker.getHost(), destination.breaker);
+			}
+		}
+		return Collections.unmodifiableMap(breakers);
+	}
+
+	/**
+	 * @return the number of requests rejected by a circuit breaker or a
+	 *         bulkhead.
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	private Response execute(URI url, Supplier<Response> call) {
+		String host = url.getRawAuthority() == null ? "" : url.getRawAuthority();
+		Destination destination = destinations.get(host);
+		if (destination == null) {
+			destination = destinations.computeIfAbsent(host, this::createDestination);
+		}
+		if (destination.bulkhead != null && !acquire(destination.bulkhead, url)) {
+			throw reject(RequestRejectedException.Reason.BULKHEAD_FULL, host, url);
+		}
+		try {
+			CircuitBreaker breaker = destination.breaker;
+			if (breaker == null) {
+				return call.get();
+			}
+			if (!breaker.tryAcquire()) {
+				throw reject(RequestRejectedException.Reason.CIRCUIT_OPEN, host, url);
+			}
+			long start = System.nanoTime();
+			Response response;
+			try {
+				response = call.get();
+			} catch (RuntimeException | Error e) {
+				if (RequestCancellation.isCurrentExpired()) {
+					// a call as long as the deadline allowed, slow maybe but not failed
+					breaker.onResult(false, System.nanoTime() - start);
+				} else if (RequestCancellation.isCurrentCancelled()) {
+					breaker.onCancelled();
+				} else {
+					breaker.onResult(true, System.nanoTime() - start);
+				}
+				throw e;
+			}
+			breaker.onResult(response.getStatusCode() >= 500, System.nanoTime() - start);
+			return response;
+		} finally {
+			if (destination.bulkhead != null) {
+				destination.bulkhead.release();
+			}
+		}
+	}
+
+	private boolean acquire(Semaphore bulkhead, URI url) {
+		try {
+			return maxWait > 0 ? bulkhead.tryAcquire(RequestCancellation.boundWait(maxWait), TimeUnit.MILLISECONDS)
+					: bulkhead.tryAcquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HttpClientException(e, "Interrupted while waiting to send request to: " + url, url.toString());
+		}
+	}
+
+	private RequestRejectedException reject(RequestRejectedException.Reason reason, String host, URI url) {
+		rejected.increment();
+		String message = reason == RequestRejectedException.Reason.CIRCUIT_OPEN
+				? "Circuit breaker is open for " + host
+				: "Too many concurrent requests to " + host;
+		return new RequestRejectedException(reason, host, message, url.toString());
+	}
+
+	private Destination createDestination(String host) {
+		Semaphore bulkhead = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+		if (!circuitBreakerEnabled) {
+			return new Destination(null, bulkhead);
+		}
+		CircuitBreaker breaker = new CircuitBreaker(host,
+				getInt(settings, CIRCUIT_BREAKER_FAILURE_RATE, DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE),
+				getInt(settings, CIRCUIT_BREAKER_SLOW_CALL_RATE, DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_RATE),
+				getLong(settings, CIRCUIT_BREAKER_SLOW_CALL_DURATION, DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_DURATION),
+				getInt(settings, CIRCUIT_BREAKER_WINDOW_SIZE, DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE),
+				getInt(settings, CIRCUIT_BREAKER_MINIMUM_CALLS, DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS),
+				getLong(settings, CIRCUIT_BREAKER_OPEN_DURATION, DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION),
+				getInt(settings, CIRCUIT_BREAKER_HALF_OPEN_CALLS, DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_CALLS),
+				this::onStateChange);
+		return new Destination(breaker, bulkhead);
+	}
+
+	private void onStateChange(String host, CircuitBreaker.State from, CircuitBreaker.State to) {
+		LOGGER.warn("Circuit breaker of {} changed from {} to {}", host, from, to);
+		if (listener != null) {
+			listener.onStateChange(host, from, to);
+		}
+	}
+
+	private static final class Destination {
+		final CircuitBreaker breaker;
+		final Semaphore bulkhead;
+
+		Destination(CircuitBreaker breaker, Semaphore bulkhead) {
+			this.breaker = breaker;
+			this.bulkhead = bulkhead;
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package http.client;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * 
+ * {@link RequestInvoker} decorator that coalesces identical concurrent GET
+ * requests (single-flight): while a GET is in flight, callers issuing the
+ * same request wait for it instead of sending their own, and all of them
+ * receive the same immutable, buffered {@link Response} or the same
+ * exception. Requests are identical when they have the same URI and the same
+ * values of the key headers. A waiting caller stops waiting when its own
+ * {@link RequestScope} is cancelled or its deadline passes; when the caller
+ * that sent the request cancels it instead, one of the waiting callers sends
+ * it again for the others.
+ * 
+ */
+public class CoalescingRequestInvoker extends ForwardingRequestInvoker {
+	private final ConcurrentMap<String, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+	private final Collection<String> keyHeaders;
+	private final LongAdder coalesced = new LongAdder();
+
+	/**
+	 * Creates an invoker that treats requests as identical only if all their
+	 * headers are equal.
+	 */
+	public CoalescingRequestInvoker(RequestInvoker delegate) {
+		this(delegate, null);
+	}
+
+	/**
+	 * @param keyHeaders
+	 *            The names of the headers that distinguish requests (e.g.
+	 *            Accept, Authorization); other headers are ignored. When
+	 *            <code>null</code> all headers are compared.
+	 */
+	public CoalescingRequestInvoker(RequestInvoker delegate, Collection<String> keyHeaders) {
+		super(delegate);
+		if (keyHeaders == null) {
+			this.keyHeaders = null;
+		} else {
+			TreeSet<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+			names.addAll(keyHeaders);
+			this.keyHeaders = Collections.unmodifiableSet(names);
+		}
+	}
+
+	@Override
+	public Response doGet(URI url, Map<String, String> headers) {
+		String key = requestKey(url, headers);
+		boolean counted = false;
+		for (;;) {
+			CompletableFuture<Response> call = new CompletableFuture<>();
+			CompletableFuture<Response> existing = inFlight.putIfAbsent(key, call);
+			if (existing == null) {
+				return send(key, call, url, headers);
+			}
+			if (!counted) {
+				coalesced.increment();
+				counted = true;
+			}
+			Response response = await(url, existing);
+			if (response != null) {
+				return response;
+			}
+			// the caller that sent the request cancelled it, one of the waiting callers sends it again
+		}
+	}
+
+	/**
+	 * @return the number of GET requests that were served by another caller's
+	 *         in-flight request.
+	 */
+	public long getCoalescedCount() {
+		return coalesced.sum();
+	}
+
+	/**
+	 * Sends a request for the callers waiting for it. If the request is
+	 * cancelled, or its deadline passes, the waiting callers receive
+	 * <code>null</code> instead of the failure, which is not theirs.
+	 */
+	private Response send(String key, CompletableFuture<Response> call, URI url, Map<String, String> headers) {
+		try {
+			Response response = BufferedResponse.of(delegate.doGet(url, headers));
+			inFlight.remove(key, call);
+			call.complete(response);
+			return response;
+		} catch (RuntimeException | Error e) {
+			inFlight.remove(key, call);
+			if (RequestCancellation.isCurrentCancelled() || RequestCancellation.isCurrentExpired()) {
+				call.complete(null);
+			} else {
+				call.completeExceptionally(e);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the response of the request sent by another caller, or
+	 *         <code>null</code> if that caller cancelled it.
+	 */
+	private static Response await(URI url, CompletableFuture<Response> call) {
+		RequestCancellation cancellation = RequestCancellation.current();
+		if (cancellation == null) {
+			return join(call);
+		}
+		// a dependent future, so the caller gives up without cancelling the call
+		CompletableFuture<Response> wait = call.thenApply(response -> response);
+		cancellation.onCancel(() -> wait.cancel(false));
+		long remaining = cancellation.getRemainingNanos();
+		try {
+			return remaining == Long.MAX_VALUE ? wait.get() : wait.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new HttpClientException(e.getCause(), "Failed to execute request to: " + url, url.toString());
+		} catch (CancellationException | TimeoutException e) {
+			throw new HttpClientException(e, cancellation.describe(url), url.toString());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HttpClientException(e, "Interrupted while executing request to: " + url, url.toString());
+		}
+	}
+
+	private static Response join(CompletableFuture<Response> call) {
+		try {
+			return call.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private String requestKey(URI url, Map<String, String> headers) {
+		String uri = url.toString();
+		if (headers.isEmpty()) {
+			return uri;
+		}
+		List<String> parts = new ArrayList<>(headers.size());
+		for (Entry<String, String> header : headers.entrySet()) {
+			if (keyHeaders == null || keyHeaders.contains(header.getKey())) {
+				parts.add(header.getKey().toLowerCase(Locale.ROOT) + ':' + header.getValue());
+			}
+		}
+		Collections.sort(parts);
+		StringBuilder key = new StringBuilder(uri);
+		for (String part : parts) {
+			key.append('\n').append(part);
+		}
+		return key.toString();
+	}
+}
@@ -0,0 +1,195 @@
+package http.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * 
+ * {@link RequestInvoker} decorator that compresses PUT and POST bodies of at
+ * least a given size with a {@link ContentCodec} while they are written to the
+ * connection. Bodies of unknown length are always compressed, and bodies that
+ * already carry a Content-Encoding header are left alone.
+ * <p>
+ * A server that answers a compressed request with 415 (Unsupported Media
+ * Type) is remembered and receives uncompressed bodies from then on; the
+ * rejected request is re-sent uncompressed if its body can be replayed.
+ * 
+ */
+public class CompressingRequestInvoker extends ForwardingRequestInvoker {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CompressingRequestInvoker.class);
+
+	private final ContentCodec codec;
+	private final long minBytes;
+	private final Set<String> rejectingHosts = ConcurrentHashMap.newKeySet();
+	private final LongAdder compressed = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * @param delegate
+	 *            The invoker that sends the requests.
+	 * @param codec
+	 *            The content coding applied to the bodies.
+	 * @param minBytes
+	 *            The size from which bodies of known length are compressed.
+	 */
+	public CompressingRequestInvoker(RequestInvoker delegate, ContentCodec codec, long minBytes) {
+		super(delegate);
+		this.codec = codec;
+		this.minBytes = minBytes;
+	}
+
+	@Override
+	public Response doPut(URI url, String payload, Map<String, String> headers) {
+		byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+		if (!shouldCompress(url, headers, bytes.length)) {
+			return delegate.doPut(url, payload, headers);
+		}
+		return execute(url, headers, ContentType.APPLICATION_JSON, of(bytes),
+				(body, encodedHeaders) -> delegate.doPut(url, body, encodedHeaders),
+				() -> delegate.doPut(url, payload, headers));
+	}
+
+	@Override
+	public Response doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		if (!shouldCompress(url, headers, payload.getContentLength())) {
+			return delegate.doPut(url, payload, headers);
+		}
+		return execute(url, headers, null, payload,
+				(body, encodedHeaders) -> delegate.doPut(url, body, encodedHeaders),
+				() -> delegate.doPut(url, payload, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, String payload, Map<String, String> headers) {
+		byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+		if (!shouldCompress(url, headers, bytes.length)) {
+			return delegate.doPost(url, payload, headers);
+		}
+		return execute(url, headers, ContentType.APPLICATION_JSON, of(bytes),
+				(body, encodedHeaders) -> delegate.doPost(url, body, encodedHeaders),
+				() -> delegate.doPost(url, payload, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, byte[] payload, Map<String, String> headers) {
+		if (!shouldCompress(url, headers, payload.length)) {
+			return delegate.doPost(url, payload, headers);
+		}
+		return execute(url, headers, ContentType.APPLICATION_OCTET_STREAM, of(payload),
+				(body, encodedHeaders) -> delegate.doPost(url, body, encodedHeaders),
+				() -> delegate.doPost(url, payload, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, RequestBody payload, Map<String, String> headers) {
+		if (!shouldCompress(url, headers, payload.getContentLength())) {
+			return delegate.doPost(url, payload, headers);
+		}
+		return execute(url, headers, null, payload,
+				(body, encodedHeaders) -> delegate.doPost(url, body, encodedHeaders),
+				() -> delegate.doPost(url, payload, headers));
+	}
+
+	/**
+	 * @return the number of request bodies sent compressed.
+	 */
+	public long getCompressedCount() {
+		return compressed.sum();
+	}
+
+	/**
+	 * @return the number of compressed requests rejected by the server.
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	/**
+	 * @return the hosts (host and port) that do not accept compressed bodies.
+	 */
+	public Set<String> getRejectingHosts() {
+		return Collections.unmodifiableSet(rejectingHosts);
+	}
+
+	private boolean shouldCompress(URI url, Map<String, String> headers, long length) {
+		return (length < 0 || length >= minBytes)
+				&& (headers == null || !Headers.contains(headers, HttpHeaders.CONTENT_ENCODING))
+				&& !rejectingHosts.contains(url.getRawAuthority());
+	}
+
+	private Response execute(URI url, Map<String, String> headers, ContentType contentType, RequestBody payload,
+			BiFunction<RequestBody, Map<String, String>, Response> compressedCall, Supplier<Response> plainCall) {
+		Headers encodedHeaders = headers == null ? Headers.EMPTY : Headers.of(headers);
+		if (contentType != null) {
+			// the content type of String and byte[] payloads normally comes with their entity
+			encodedHeaders = encodedHeaders.withDefault(HttpHeaders.CONTENT_TYPE, contentType.toString());
+		}
+		encodedHeaders = encodedHeaders.with(HttpHeaders.CONTENT_ENCODING, codec.getEncoding());
+		Response response = compressedCall.apply(new EncodedBody(payload, codec), encodedHeaders.asMap());
+		if (response.getStatusCode() != HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE) {
+			compressed.increment();
+			return response;
+		}
+		rejected.increment();
+		if (rejectingHosts.add(url.getRawAuthority())) {
+			LOGGER.info("{} rejected a {} request body, sending uncompressed bodies from now on",
+					url.getRawAuthority(), codec.getEncoding());
+		}
+		if (!payload.isRepeatable()) {
+			return response;
+		}
+		response.close();
+		return plainCall.get();
+	}
+
+	private static RequestBody of(byte[] payload) {
+		return RequestBody.of(out -> out.write(payload));
+	}
+
+	/**
+	 * Body that streams another body through the codec. Its length is
+	 * unknown, so it is sent with chunked transfer encoding.
+	 */
+	private static final class EncodedBody extends RequestBody {
+		private final RequestBody body;
+		private final ContentCodec codec;
+
+		EncodedBody(RequestBody body, ContentCodec codec) {
+			this.body = body;
+			this.codec = codec;
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return body.isRepeatable();
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			try (OutputStream encoded = codec.encode(out)) {
+				body.writeTo(encoded);
+			}
+		}
+	}
+}
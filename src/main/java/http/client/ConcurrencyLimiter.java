@@ -0,0 +1,200 @@
+package http.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ *
+ * Adaptive limit of the requests in flight to a single destination. As in
+ * TCP Vegas, the limit follows the ratio of the no-load round trip time, the
+ * lowest smoothed round trip time of the last few hundred requests, to the
+ * current smoothed round trip time: while latency stays within the tolerance
+ * of the no-load time the limit grows by about its square root, and as
+ * requests start to queue at the destination the limit shrinks in
+ * proportion, by at most half. Dropped requests (I/O failures, 429 and 503
+ * responses) decrease the limit multiplicatively, as in AIMD. Requests over
+ * the limit wait in a bounded FIFO queue for a free slot.
+ *
+ */
+public final class ConcurrencyLimiter {
+	private static final double SMOOTHING = 0.2;
+	private static final double RTT_SMOOTHING = 0.125;
+	private static final int RTT_WINDOW = 500;
+	private static final double MIN_GRADIENT = 0.5;
+
+	private final String host;
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+	private final double backoffRatio;
+	private final int maxQueue;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+
+	private double limit;
+	private int inFlight;
+	private int waiting;
+	private long samples;
+	private long windowMinRtt = Long.MAX_VALUE;
+	private long previousMinRtt = Long.MAX_VALUE;
+	private double smoothedRtt;
+
+	/**
+	 * @param initialLimit
+	 *            The limit before any latency has been observed.
+	 * @param tolerance
+	 *            The ratio of the no-load round trip time a request may take
+	 *            before the limit decreases, e.g. 2.
+	 * @param backoffRatio
+	 *            The factor applied to the limit when a request is dropped.
+	 * @param maxQueue
+	 *            The maximum number of requests waiting for a slot.
+	 */
+	ConcurrencyLimiter(String host, int initialLimit, int minLimit, int maxLimit, double tolerance,
+			double backoffRatio, int maxQueue) {
+		if (minLimit < 1 || maxLimit < minLimit || tolerance < 1 || backoffRatio <= 0 || backoffRatio >= 1) {
+			throw new IllegalArgumentException("Invalid concurrency limit settings for " + host);
+		}
+		this.host = host;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.tolerance = tolerance;
+		this.backoffRatio = backoffRatio;
+		this.maxQueue = Math.max(0, maxQueue);
+		this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * @return the current number of requests allowed in flight.
+	 */
+	public int getLimit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of requests waiting for a slot.
+	 */
+	public int getQueueDepth() {
+		lock.lock();
+		try {
+			return waiting;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Takes a slot, waiting up to the given time behind the requests already
+	 * queued. Every successful call must be followed by
+	 * {@link #release(long, boolean)}.
+	 *
+	 * @return <code>false</code> if the queue is full or no slot freed up in
+	 *         time.
+	 */
+	boolean acquire(long maxWait, TimeUnit unit) throws InterruptedException {
+		lock.lock();
+		try {
+			if (waiting == 0 && inFlight < (int) limit) {
+				inFlight++;
+				return true;
+			}
+			long remaining = unit.toNanos(maxWait);
+			if (remaining <= 0 || waiting >= maxQueue) {
+				return false;
+			}
+			waiting++;
+			try {
+				while (inFlight >= (int) limit) {
+					if (remaining <= 0) {
+						return false;
+					}
+					remaining = available.awaitNanos(remaining);
+				}
+				inFlight++;
+				return true;
+			} finally {
+				waiting--;
+				if (waiting > 0 && inFlight < (int) limit) {
+					available.signal();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Frees the slot of a completed request and adjusts the limit.
+	 *
+	 * @param rttNanos
+	 *            The round trip time of the request, or a negative value if
+	 *            the request was not sent and tells nothing about the
+	 *            destination.
+	 * @param dropped
+	 *            Whether the request failed or the destination signaled that
+	 *            it is overloaded.
+	 */
+	void release(long rttNanos, boolean dropped) {
+		lock.lock();
+		try {
+			int inFlightBefore = inFlight--;
+			if (rttNanos >= 0) {
+				update(Math.max(1, rttNanos), dropped, inFlightBefore);
+			}
+			if (waiting > 0 && inFlight < (int) limit) {
+				available.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void update(long rtt, boolean dropped, int inFlightBefore) {
+		if (dropped) {
+			limit = Math.max(minLimit, limit * backoffRatio);
+			return;
+		}
+		smoothedRtt = smoothedRtt == 0 ? rtt : smoothedRtt + (rtt - smoothedRtt) * RTT_SMOOTHING;
+		// The minimum of two consecutive windows, so that the no-load time
+		// follows the destination without being lost when a window starts
+		windowMinRtt = Math.min(windowMinRtt, (long) smoothedRtt);
+		if (++samples % RTT_WINDOW == 0) {
+			previousMinRtt = windowMinRtt;
+			windowMinRtt = Long.MAX_VALUE;
+		}
+		long noLoadRtt = Math.min(windowMinRtt, previousMinRtt);
+		if (inFlightBefore * 2 < limit) {
+			// The limit was not what bounded these requests, so the sample says nothing about it
+			return;
+		}
+		double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * noLoadRtt / smoothedRtt));
+		double target = limit * gradient + Math.sqrt(limit);
+		limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrencyLimiter[" + host + ", limit " + getLimit() + ", in flight " + getInFlight() + ", queued "
+				+ getQueueDepth() + "]";
+	}
+}
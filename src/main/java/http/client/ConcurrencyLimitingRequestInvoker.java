@@ -0,0 +1,171 @@
+package http.client;
+
+import static http.client.HttpClientProperties.CONCURRENCY_LIMIT_BACKOFF_RATIO;
+import static http.client.HttpClientProperties.CONCURRENCY_LIMIT_INITIAL;
+import static http.client.HttpClientProperties.CONCURRENCY_LIMIT_MAX;
+import static http.client.HttpClientProperties.CONCURRENCY_LIMIT_MAX_WAIT;
+import static http.client.HttpClientProperties.CONCURRENCY_LIMIT_MIN;
+import static http.client.HttpClientProperties.CONCURRENCY_LIMIT_QUEUE_SIZE;
+import static http.client.HttpClientProperties.CONCURRENCY_LIMIT_TOLERANCE;
+import static http.client.HttpClientProperties.DEFAULT_CONCURRENCY_LIMIT_BACKOFF_RATIO;
+import static http.client.HttpClientProperties.DEFAULT_CONCURRENCY_LIMIT_INITIAL;
+import static http.client.HttpClientProperties.DEFAULT_CONCURRENCY_LIMIT_MAX;
+import static http.client.HttpClientProperties.DEFAULT_CONCURRENCY_LIMIT_MAX_WAIT;
+import static http.client.HttpClientProperties.DEFAULT_CONCURRENCY_LIMIT_MIN;
+import static http.client.HttpClientProperties.DEFAULT_CONCURRENCY_LIMIT_QUEUE_SIZE;
+import static http.client.HttpClientProperties.DEFAULT_CONCURRENCY_LIMIT_TOLERANCE;
+import static http.client.HttpClientProperties.getDouble;
+import static http.client.HttpClientProperties.getInt;
+import static http.client.HttpClientProperties.getLong;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+
+/**
+ *
+ * {@link RequestInvoker} decorator that gives every host a
+ * {@link ConcurrencyLimiter}, so that the number of requests in flight adapts
+ * to the latency of the destination instead of being tuned by hand. Requests
+ * over the limit wait in a bounded queue and fail with a
+ * {@link RequestRejectedException} when the queue is full or the wait times
+ * out. The slot of a streamed response is released when the response is
+ * returned, not when it is consumed.
+ *
+ */
+public class ConcurrencyLimitingRequestInvoker extends ForwardingRequestInvoker {
+	private final ConcurrentMap<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+	private final Properties settings;
+	private final long maxWait;
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * Creates an invoker configured from the concurrency.limit.* connection
+	 * parameters (see {@link HttpClientProperties}).
+	 */
+	public ConcurrencyLimitingRequestInvoker(RequestInvoker delegate, Properties connectionParameters) {
+		super(delegate);
+		this.settings = connectionParameters;
+		this.maxWait = getLong(connectionParameters, CONCURRENCY_LIMIT_MAX_WAIT, DEFAULT_CONCURRENCY_LIMIT_MAX_WAIT);
+		// fail fast on invalid settings rather than on the first request
+		createLimiter("");
+	}
+
+	@Override
+	public Response doGet(URI url, Map<String, String> headers) {
+		return execute(url, () -> delegate.doGet(url, headers));
+	}
+
+	@Override
+	public Response doGetStream(URI url, Map<String, String> headers) {
+		return execute(url, () -> delegate.doGetStream(url, headers));
+	}
+
+	@Override
+	public Response doPut(URI url, String payload, Map<String, String> headers) {
+		return execute(url, () -> delegate.doPut(url, payload, headers));
+	}
+
+	@Override
+	public Response doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		return execute(url, () -> delegate.doPut(url, payload, headers));
+	}
+
+	@Override
+	public Response doDelete(URI url, Map<String, String> headers) {
+		return execute(url, () -> delegate.doDelete(url, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, String payload, Map<String, String> headers) {
+		return execute(url, () -> delegate.doPost(url, payload, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, byte[] payload, Map<String, String> headers) {
+		return execute(url, () -> delegate.doPost(url, payload, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, RequestBody payload, Map<String, String> headers) {
+		return execute(url, () -> delegate.doPost(url, payload, headers));
+	}
+
+	/**
+	 * @return the limiters of every destination called so far, keyed by host
+	 *         and port.
+	 */
+	public Map<String, ConcurrencyLimiter> getLimiters() {
+		return Collections.unmodifiableMap(new TreeMap<>(limiters));
+	}
+
+	/**
+	 * @return the number of requests rejected because their destination was
+	 *         at its limit.
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	private Response execute(URI url, Supplier<Response> call) {
+		String host = url.getRawAuthority() == null ? "" : url.getRawAuthority();
+		ConcurrencyLimiter limiter = limiters.get(host);
+		if (limiter == null) {
+			limiter = limiters.computeIfAbsent(host, this::createLimiter);
+		}
+		if (!acquire(limiter, url)) {
+			rejected.increment();
+			throw new RequestRejectedException(RequestRejectedException.Reason.LIMIT_EXCEEDED, host,
+					"Concurrency limit of " + limiter.getLimit() + " reached for " + host, url.toString());
+		}
+		long start = System.nanoTime();
+		Response response;
+		try {
+			response = call.get();
+		} catch (RequestRejectedException e) {
+			limiter.release(-1, false);
+			throw e;
+		} catch (RuntimeException | Error e) {
+			if (RequestCancellation.isCurrentExpired()) {
+				// the time the request lasted is a lower bound of the round trip time
+				limiter.release(System.nanoTime() - start, false);
+			} else if (RequestCancellation.isCurrentCancelled()) {
+				// e.g. a hedge that lost, which tells nothing about the destination
+				limiter.release(-1, false);
+			} else {
+				limiter.release(System.nanoTime() - start, true);
+			}
+			throw e;
+		}
+		int statusCode = response.getStatusCode();
+		limiter.release(System.nanoTime() - start, statusCode == 429 || statusCode == 503);
+		return response;
+	}
+
+	private boolean acquire(ConcurrencyLimiter limiter, URI url) {
+		try {
+			return limiter.acquire(RequestCancellation.boundWait(maxWait), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HttpClientException(e, "Interrupted while waiting to send request to: " + url, url.toString());
+		}
+	}
+
+	private ConcurrencyLimiter createLimiter(String host) {
+		return new ConcurrencyLimiter(host,
+				getInt(settings, CONCURRENCY_LIMIT_INITIAL, DEFAULT_CONCURRENCY_LIMIT_INITIAL),
+				getInt(settings, CONCURRENCY_LIMIT_MIN, DEFAULT_CONCURRENCY_LIMIT_MIN),
+				getInt(settings, CONCURRENCY_LIMIT_MAX, DEFAULT_CONCURRENCY_LIMIT_MAX),
+				getDouble(settings, CONCURRENCY_LIMIT_TOLERANCE, DEFAULT_CONCURRENCY_LIMIT_TOLERANCE),
+				getDouble(settings, CONCURRENCY_LIMIT_BACKOFF_RATIO, DEFAULT_CONCURRENCY_LIMIT_BACKOFF_RATIO),
+				getInt(settings, CONCURRENCY_LIMIT_QUEUE_SIZE, DEFAULT_CONCURRENCY_LIMIT_QUEUE_SIZE));
+	}
+}
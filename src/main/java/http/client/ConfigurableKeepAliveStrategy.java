@@ -0,0 +1,36 @@
+package http.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.protocol.HttpContext;
+
+
+/**
+ *
+ * Keep-alive strategy that honors the server Keep-Alive header, falls back to
+ * a default duration when the header is missing and never keeps a connection
+ * alive longer than the configured maximum.
+ *
+ */
+class ConfigurableKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+	private final long defaultKeepAlive;
+	private final long maxKeepAlive;
+
+	ConfigurableKeepAliveStrategy(long defaultKeepAlive, long maxKeepAlive) {
+		this.defaultKeepAlive = defaultKeepAlive;
+		this.maxKeepAlive = maxKeepAlive;
+	}
+
+	@Override
+	public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+		long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+		if (keepAlive <= 0) {
+			keepAlive = defaultKeepAlive;
+		}
+		if (maxKeepAlive > 0 && (keepAlive <= 0 || keepAlive > maxKeepAlive)) {
+			keepAlive = maxKeepAlive;
+		}
+		return keepAlive;
+	}
+}
@@ -0,0 +1,397 @@
+package http.client;
+
+import static http.client.HttpClientProperties.CONNECTION_REQUEST_TIMEOUT;
+import static http.client.HttpClientProperties.CONNECT_TIMEOUT;
+import static http.client.HttpClientProperties.DEFAULT_CONNECTION_REQUEST_TIMEOUT;
+import static http.client.HttpClientProperties.DEFAULT_CONNECT_TIMEOUT;
+import static http.client.HttpClientProperties.DEFAULT_KEEP_ALIVE;
+import static http.client.HttpClientProperties.DEFAULT_POOL_IDLE_TIMEOUT;
+import static http.client.HttpClientProperties.DEFAULT_POOL_MAX_PER_ROUTE;
+import static http.client.HttpClientProperties.DEFAULT_POOL_MAX_TOTAL;
+import static http.client.HttpClientProperties.DEFAULT_POOL_REAPER_INTERVAL;
+import static http.client.HttpClientProperties.DEFAULT_POOL_VALIDATE_AFTER_INACTIVITY;
+import static http.client.HttpClientProperties.DNS_CACHE_ENABLED;
+import static http.client.HttpClientProperties.KEEP_ALIVE;
+import static http.client.HttpClientProperties.POOL_CONNECTION_TTL;
+import static http.client.HttpClientProperties.POOL_IDLE_TIMEOUT;
+import static http.client.HttpClientProperties.POOL_MAX_PER_ROUTE;
+import static http.client.HttpClientProperties.POOL_MAX_TOTAL;
+import static http.client.HttpClientProperties.POOL_REAPER_INTERVAL;
+import static http.client.HttpClientProperties.POOL_VALIDATE_AFTER_INACTIVITY;
+import static http.client.HttpClientProperties.VIRTUAL_THREADS;
+import static http.client.HttpClientProperties.getBoolean;
+import static http.client.HttpClientProperties.getInt;
+import static http.client.HttpClientProperties.getLong;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.UnsupportedSchemeException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ *
+ * Pool of persistent HTTP connections shared by the clients created by
+ * {@link HttpClientFactory}. The pool is configured from the connection
+ * parameters (see {@link HttpClientProperties}) and runs a background reaper
+ * that evicts expired and idle connections. Host names are resolved by the
+ * given {@link DnsResolver}, cached when {@link HttpClientProperties#DNS_CACHE_ENABLED}
+ * is set, and {@link #warmUp(Collection, int)} opens connections ahead of the
+ * first requests. TLS connections are configured by the tls.* connection
+ * parameters or an injected {@link SSLContext}, and resume the sessions
+ * cached by the context.
+ *
+ */
+public class ConnectionPool implements Closeable {
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final LeaseLimitingConnectionManager leaseLimiter;
+	private final ScheduledExecutorService reaper;
+	private final long idleTimeout;
+	private final DnsResolver dnsResolver;
+	private final TimingSSLSocketFactory sslSocketFactory;
+	private final int connectTimeout;
+	private final int connectionRequestTimeout;
+	private final long keepAlive;
+	private static final int MAX_WARM_UP_THREADS = 16;
+	private static final long UNBOUNDED_WARM_UP_WAIT = 60000;
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+	public ConnectionPool(Properties connectionParameters) {
+		this(connectionParameters, null);
+	}
+
+	/**
+	 * @param dnsResolver
+	 *            The resolver of the host names, wrapped in a
+	 *            {@link CachingDnsResolver} when the DNS cache is enabled;
+	 *            when <code>null</code> the system resolver is used.
+	 */
+	public ConnectionPool(Properties connectionParameters, DnsResolver dnsResolver) {
+		this(connectionParameters, dnsResolver, null);
+	}
+
+	/**
+	 * @param dnsResolver
+	 *            The resolver of the host names, wrapped in a
+	 *            {@link CachingDnsResolver} when the DNS cache is enabled;
+	 *            when <code>null</code> the system resolver is used.
+	 * @param sslContext
+	 *            The context of the TLS connections, whose client session
+	 *            cache is shared by the pools using the same context; when
+	 *            <code>null</code> a context is created from the tls.*
+	 *            connection parameters.
+	 */
+	public ConnectionPool(Properties connectionParameters, DnsResolver dnsResolver, SSLContext sslContext) {
+		if (getBoolean(connectionParameters, DNS_CACHE_ENABLED, false)) {
+			dnsResolver = dnsResolver == null ? new CachingDnsResolver(connectionParameters)
+					: new CachingDnsResolver(dnsResolver, connectionParameters);
+		}
+		this.dnsResolver = dnsResolver;
+		this.sslSocketFactory = TimingSSLSocketFactory.create(connectionParameters, sslContext);
+		long connectionTtl = getLong(connectionParameters, POOL_CONNECTION_TTL, -1);
+		Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory> create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", sslSocketFactory)
+				.build();
+		this.connectionManager = new PoolingHttpClientConnectionManager(socketFactories, null, null, dnsResolver,
+				connectionTtl, TimeUnit.MILLISECONDS);
+		this.connectionManager.setMaxTotal(getInt(connectionParameters, POOL_MAX_TOTAL, DEFAULT_POOL_MAX_TOTAL));
+		this.connectionManager.setDefaultMaxPerRoute(
+				getInt(connectionParameters, POOL_MAX_PER_ROUTE, DEFAULT_POOL_MAX_PER_ROUTE));
+		this.connectionManager.setValidateAfterInactivity(
+				getInt(connectionParameters, POOL_VALIDATE_AFTER_INACTIVITY, DEFAULT_POOL_VALIDATE_AFTER_INACTIVITY));
+		this.idleTimeout = getLong(connectionParameters, POOL_IDLE_TIMEOUT, DEFAULT_POOL_IDLE_TIMEOUT);
+		this.connectTimeout = getInt(connectionParameters, CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT);
+		this.connectionRequestTimeout = getInt(connectionParameters, CONNECTION_REQUEST_TIMEOUT,
+				DEFAULT_CONNECTION_REQUEST_TIMEOUT);
+		this.keepAlive = getLong(connectionParameters, KEEP_ALIVE, DEFAULT_KEEP_ALIVE);
+		this.leaseLimiter = getBoolean(connectionParameters, VIRTUAL_THREADS, false)
+				? new LeaseLimitingConnectionManager(connectionManager) : null;
+
+		long reaperInterval = getLong(connectionParameters, POOL_REAPER_INTERVAL, DEFAULT_POOL_REAPER_INTERVAL);
+		this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "http-client-pool-reaper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.reaper.scheduleWithFixedDelay(this::evictConnections, reaperInterval, reaperInterval,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return the manager the clients lease their connections from.
+	 */
+	HttpClientConnectionManager getConnectionManager() {
+		return leaseLimiter != null ? leaseLimiter : connectionManager;
+	}
+
+	/**
+	 * Closes expired connections and connections that have been idle longer
+	 * than the configured idle timeout.
+	 */
+	public void evictConnections() {
+		try {
+			connectionManager.closeExpiredConnections();
+			if (idleTimeout > 0) {
+				connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+			}
+		} catch (RuntimeException e) {
+			LOGGER.warn("Failed to evict pooled connections", e);
+		}
+	}
+
+	/**
+	 * @return the leased, pending, available and max connections of the
+	 *         whole pool.
+	 */
+	public PoolStats getTotalStats() {
+		return connectionManager.getTotalStats();
+	}
+
+	/**
+	 * @return the pool statistics of every known route, keyed by the target
+	 *         host (e.g. <code>http://localhost:8080</code>).
+	 */
+	public Map<String, PoolStats> getRouteStats() {
+		Map<String, PoolStats> stats = new TreeMap<>();
+		for (HttpRoute route : connectionManager.getRoutes()) {
+			stats.put(route.getTargetHost().toURI(), connectionManager.getStats(route));
+		}
+		return Collections.unmodifiableMap(stats);
+	}
+
+	/**
+	 * Changes the maximum number of connections of a single route.
+	 *
+	 * @param route
+	 *            The route to configure.
+	 * @param max
+	 *            The maximum number of connections.
+	 */
+	public void setMaxPerRoute(HttpRoute route, int max) {
+		connectionManager.setMaxPerRoute(route, max);
+		if (leaseLimiter != null) {
+			leaseLimiter.setMaxPerRoute(route, max);
+		}
+	}
+
+	/**
+	 * @return the resolver of the host names, or <code>null</code> for the
+	 *         system resolver.
+	 */
+	public DnsResolver getDnsResolver() {
+		return dnsResolver;
+	}
+
+	/**
+	 * @return the number of TLS handshakes done by the connections of the
+	 *         pool.
+	 */
+	public long getTlsHandshakeCount() {
+		return sslSocketFactory.getHandshakeCount();
+	}
+
+	/**
+	 * @return the number of TLS handshakes that resumed a cached session
+	 *         rather than doing a full handshake.
+	 */
+	public long getTlsResumedCount() {
+		return sslSocketFactory.getResumedCount();
+	}
+
+	/**
+	 * Opens connections to the given hosts ahead of traffic, so that the first
+	 * requests do not pay for name resolution and the TCP and TLS handshakes.
+	 * Connections already pooled count towards the number to open, which is
+	 * capped by the maximum per route. The connections are opened
+	 * concurrently and put in the pool with the default keep-alive; failures
+	 * are logged and do not stop the others. A connection is given twice the
+	 * connect timeout to open, or a minute without connect timeout. Only
+	 * direct routes are warmed: connections through a proxy are not.
+	 *
+	 * @param targets
+	 *            URIs of the hosts to connect to; only the scheme, host and
+	 *            port are used.
+	 * @param connectionsPerHost
+	 *            The number of connections to have open to every host.
+	 * @return the number of open connections pooled for the hosts.
+	 */
+	public int warmUp(Collection<URI> targets, int connectionsPerHost) {
+		Set<HttpRoute> routes = new LinkedHashSet<>();
+		for (URI target : targets) {
+			routes.add(createRoute(target));
+		}
+		HttpClientConnectionManager manager = getConnectionManager();
+		List<WarmUpConnection> connections = new ArrayList<>();
+		int open = 0;
+		try {
+			for (HttpRoute route : routes) {
+				int count = Math.min(connectionsPerHost, connectionManager.getMaxPerRoute(route));
+				for (int i = 0; i < count; i++) {
+					// leased until all are open, so that every lease gets its own connection
+					HttpClientConnection connection = lease(manager, route);
+					if (connection == null) {
+						break;
+					}
+					connections.add(new WarmUpConnection(route, connection));
+				}
+			}
+			connect(manager, connections);
+		} finally {
+			for (WarmUpConnection connection : connections) {
+				if (connection.connection.isOpen()) {
+					open++;
+				}
+				manager.releaseConnection(connection.connection, null, keepAlive, TimeUnit.MILLISECONDS);
+			}
+		}
+		return open;
+	}
+
+	private HttpClientConnection lease(HttpClientConnectionManager manager, HttpRoute route) {
+		ConnectionRequest request = manager.requestConnection(route, null);
+		try {
+			return request.get(connectionRequestTimeout, TimeUnit.MILLISECONDS);
+		} catch (ConnectionPoolTimeoutException | ExecutionException e) {
+			LOGGER.warn("Failed to lease a connection to warm up {}: {}", route.getTargetHost(), e.toString());
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			request.cancel();
+			return null;
+		}
+	}
+
+	private void connect(HttpClientConnectionManager manager, List<WarmUpConnection> connections) {
+		List<WarmUpConnection> closed = new ArrayList<>();
+		for (WarmUpConnection connection : connections) {
+			if (!connection.connection.isOpen()) {
+				closed.add(connection);
+			}
+		}
+		if (closed.isEmpty()) {
+			return;
+		}
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(closed.size(), MAX_WARM_UP_THREADS),
+				runnable -> {
+					Thread thread = new Thread(runnable, "http-client-warm-up-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		try {
+			List<Future<?>> futures = new ArrayList<>(closed.size());
+			for (WarmUpConnection connection : closed) {
+				futures.add(executor.submit(() -> connection.open(manager, connectTimeout)));
+			}
+			// 0 means no connect timeout
+			long maxWait = connectTimeout > 0 ? connectTimeout * 2L : UNBOUNDED_WARM_UP_WAIT;
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get(maxWait, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					// e.g. a TLS handshake without socket timeout: closing the socket ends it
+					closed.get(i).shutdown();
+					futures.get(i).get();
+				}
+			}
+		} catch (ExecutionException e) {
+			// not thrown: the connections log their failures
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static HttpRoute createRoute(URI target) {
+		HttpHost host = URIUtils.extractHost(target);
+		if (host == null) {
+			throw new IllegalArgumentException("URI has no host: " + target);
+		}
+		if (host.getPort() <= 0) {
+			try {
+				host = new HttpHost(host.getHostName(), DefaultSchemePortResolver.INSTANCE.resolve(host),
+						host.getSchemeName());
+			} catch (UnsupportedSchemeException e) {
+				throw new IllegalArgumentException("Unsupported scheme: " + target, e);
+			}
+		}
+		// same route as the default route planner of a direct connection
+		return new HttpRoute(host, null, "https".equalsIgnoreCase(host.getSchemeName()));
+	}
+
+	private static final class WarmUpConnection {
+		final HttpRoute route;
+		final HttpClientConnection connection;
+
+		WarmUpConnection(HttpRoute route, HttpClientConnection connection) {
+			this.route = route;
+			this.connection = connection;
+		}
+
+		void open(HttpClientConnectionManager manager, int connectTimeout) {
+			HttpClientContext context = HttpClientContext.create();
+			try {
+				manager.connect(connection, route, connectTimeout, context);
+				manager.routeComplete(connection, route, context);
+			} catch (IOException | RuntimeException e) {
+				LOGGER.warn("Failed to warm up a connection to {}: {}", route.getTargetHost(), e.toString());
+				shutdown();
+			}
+		}
+
+		void shutdown() {
+			try {
+				connection.shutdown();
+			} catch (IOException e) {
+				LOGGER.debug("Failed to shut down a connection to {}", route.getTargetHost(), e);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		reaper.shutdownNow();
+		connectionManager.close();
+	}
+}
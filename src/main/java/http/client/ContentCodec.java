@@ -0,0 +1,34 @@
+package http.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * 
+ * Content coding applied to request bodies by
+ * {@link CompressingRequestInvoker}. The built-in codecs are
+ * {@link DeflateCodec#gzip(int) gzip} and {@link DeflateCodec#deflate(int)
+ * deflate}; other encodings such as <code>zstd</code> or <code>br</code> can
+ * be plugged in by implementing this interface on top of their libraries.
+ * 
+ */
+public interface ContentCodec {
+
+	/**
+	 * @return the content coding token sent in the Content-Encoding header,
+	 *         e.g. <code>gzip</code>.
+	 */
+	String getEncoding();
+
+	/**
+	 * Returns a stream that encodes what is written to it into the given
+	 * stream. Closing the returned stream completes the encoding but must not
+	 * close the target stream.
+	 * 
+	 * @param out
+	 *            The connection output stream.
+	 * @throws IOException
+	 */
+	OutputStream encode(OutputStream out) throws IOException;
+}
@@ -0,0 +1,83 @@
+package http.client;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ *
+ * {@link RequestInvoker} decorator that sends the time left before the
+ * deadline of the {@link RequestScope} in a request header, in milliseconds,
+ * so the server can drop the work the client no longer waits for. Each
+ * attempt of a retried or hedged request carries its own value. A request
+ * whose deadline has already passed fails without being sent; requests
+ * without deadline are sent unchanged.
+ *
+ */
+public class DeadlinePropagatingRequestInvoker extends ForwardingRequestInvoker {
+	private final String headerName;
+
+	/**
+	 * @param headerName
+	 *            The name of the header, e.g. <code>X-Request-Timeout</code>.
+	 */
+	public DeadlinePropagatingRequestInvoker(RequestInvoker delegate, String headerName) {
+		super(delegate);
+		this.headerName = headerName;
+	}
+
+	@Override
+	public Response doGet(URI url, Map<String, String> headers) {
+		return delegate.doGet(url, withDeadline(url, headers));
+	}
+
+	@Override
+	public Response doGetStream(URI url, Map<String, String> headers) {
+		return delegate.doGetStream(url, withDeadline(url, headers));
+	}
+
+	@Override
+	public Response doPut(URI url, String payload, Map<String, String> headers) {
+		return delegate.doPut(url, payload, withDeadline(url, headers));
+	}
+
+	@Override
+	public Response doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		return delegate.doPut(url, payload, withDeadline(url, headers));
+	}
+
+	@Override
+	public Response doDelete(URI url, Map<String, String> headers) {
+		return delegate.doDelete(url, withDeadline(url, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, String payload, Map<String, String> headers) {
+		return delegate.doPost(url, payload, withDeadline(url, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, byte[] payload, Map<String, String> headers) {
+		return delegate.doPost(url, payload, withDeadline(url, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, RequestBody payload, Map<String, String> headers) {
+		return delegate.doPost(url, payload, withDeadline(url, headers));
+	}
+
+	private Map<String, String> withDeadline(URI url, Map<String, String> headers) {
+		RequestCancellation cancellation = RequestCancellation.current();
+		if (cancellation == null || !cancellation.hasDeadline) {
+			return headers;
+		}
+		long remaining = TimeUnit.NANOSECONDS.toMillis(cancellation.getRemainingNanos());
+		if (remaining <= 0) {
+			throw new HttpClientException(new TimeoutException(), cancellation.describe(url), url.toString());
+		}
+		Headers withDeadline = headers == null ? Headers.EMPTY : Headers.of(headers);
+		return withDeadline.with(headerName, Long.toString(remaining)).asMap();
+	}
+}
@@ -0,0 +1,149 @@
+package http.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+
+/**
+ * 
+ * <code>gzip</code> and <code>deflate</code> (zlib) content codings. The
+ * native {@link Deflater} behind every stream is taken from a pool and reset
+ * when the stream is closed, so compressing a body does not allocate and
+ * initialize a new zlib context. The codec is thread-safe.
+ * 
+ */
+public final class DeflateCodec implements ContentCodec {
+	private static final int BUFFER_SIZE = 8192;
+	private static final int DEFAULT_MAX_POOLED = 2 * Runtime.getRuntime().availableProcessors();
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	private final boolean gzip;
+	private final int level;
+	private final int maxPooled;
+	private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * @param gzip
+	 *            Whether to produce the gzip format rather than zlib.
+	 * @param level
+	 *            The compression level, 0-9 or
+	 *            {@link Deflater#DEFAULT_COMPRESSION}.
+	 * @param maxPooled
+	 *            The maximum number of idle deflaters kept.
+	 */
+	public DeflateCodec(boolean gzip, int level, int maxPooled) {
+		if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+		this.gzip = gzip;
+		this.level = level;
+		this.maxPooled = maxPooled;
+	}
+
+	public static DeflateCodec gzip(int level) {
+		return new DeflateCodec(true, level, DEFAULT_MAX_POOLED);
+	}
+
+	public static DeflateCodec deflate(int level) {
+		return new DeflateCodec(false, level, DEFAULT_MAX_POOLED);
+	}
+
+	@Override
+	public String getEncoding() {
+		return gzip ? "gzip" : "deflate";
+	}
+
+	/**
+	 * @return the number of idle deflaters in the pool.
+	 */
+	public int getPooledCount() {
+		return pooled.get();
+	}
+
+	@Override
+	public OutputStream encode(OutputStream out) throws IOException {
+		Deflater deflater = acquire();
+		if (gzip) {
+			try {
+				out.write(GZIP_HEADER);
+			} catch (IOException e) {
+				release(deflater);
+				throw e;
+			}
+		}
+		return new EncodingStream(out, deflater);
+	}
+
+	private Deflater acquire() {
+		Deflater deflater = deflaters.poll();
+		if (deflater == null) {
+			// gzip frames the raw deflate stream itself
+			return new Deflater(level, gzip);
+		}
+		pooled.decrementAndGet();
+		return deflater;
+	}
+
+	private void release(Deflater deflater) {
+		deflater.reset();
+		if (pooled.incrementAndGet() <= maxPooled) {
+			deflaters.offer(deflater);
+		} else {
+			pooled.decrementAndGet();
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Compressing stream that writes the gzip trailer, if any, and returns its
+	 * deflater to the pool on close, leaving the target stream open.
+	 */
+	private final class EncodingStream extends DeflaterOutputStream {
+		private final CRC32 crc = gzip ? new CRC32() : null;
+		private boolean closed;
+
+		EncodingStream(OutputStream out, Deflater deflater) {
+			super(out, deflater, BUFFER_SIZE);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			super.write(b, off, len);
+			if (crc != null) {
+				crc.update(b, off, len);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				finish();
+				if (crc != null) {
+					writeInt((int) crc.getValue());
+					writeInt((int) def.getBytesRead());
+				}
+				out.flush();
+			} finally {
+				release(def);
+			}
+		}
+
+		private void writeInt(int value) throws IOException {
+			out.write(value);
+			out.write(value >>> 8);
+			out.write(value >>> 16);
+			out.write(value >>> 24);
+		}
+	}
+}
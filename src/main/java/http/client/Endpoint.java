@@ -0,0 +1,138 @@
+package http.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ *
+ * One of the base URLs a client spreads its requests across, with the state
+ * the {@link LoadBalancer} chooses from: the requests in flight, an
+ * exponentially weighted moving average of the latency and the passive
+ * health of the endpoint. An endpoint that fails the configured number of
+ * consecutive requests is ejected for the ejection duration; once the
+ * duration is over it is included again, and ejected again by its first
+ * failure.
+ *
+ */
+public final class Endpoint {
+	private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	private final String baseUrl;
+	private final int ejectFailures;
+	private final long ejectDuration;
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+
+	private double latencyEwma;
+	private long lastSample;
+	private int consecutiveFailures;
+	private volatile long ejectedUntil;
+	private volatile boolean ejected;
+
+	Endpoint(String baseUrl, int ejectFailures, long ejectDuration) {
+		this.baseUrl = baseUrl;
+		this.ejectFailures = ejectFailures;
+		this.ejectDuration = TimeUnit.MILLISECONDS.toNanos(ejectDuration);
+	}
+
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	/**
+	 * @return the number of requests in flight to this endpoint.
+	 */
+	public int getOutstanding() {
+		return outstanding.get();
+	}
+
+	/**
+	 * @return the moving average of the latency in nanoseconds, 0 until a
+	 *         request has completed.
+	 */
+	public synchronized double getLatencyEwma() {
+		return latencyEwma;
+	}
+
+	public long getRequestCount() {
+		return requests.sum();
+	}
+
+	public long getFailureCount() {
+		return failures.sum();
+	}
+
+	/**
+	 * @return <code>true</code> while the endpoint is ejected for failing.
+	 */
+	public boolean isEjected() {
+		return isEjected(System.nanoTime());
+	}
+
+	boolean isEjected(long now) {
+		if (ejected && now - ejectedUntil >= 0) {
+			synchronized (this) {
+				if (ejected && now - ejectedUntil >= 0) {
+					ejected = false;
+					// on probation: the next failure ejects it again
+					consecutiveFailures = Math.max(0, ejectFailures - 1);
+				}
+			}
+		}
+		return ejected;
+	}
+
+	void onStart() {
+		outstanding.incrementAndGet();
+		requests.increment();
+	}
+
+	/**
+	 * Ends a request that was cancelled by the caller, without recording its
+	 * latency or a failure.
+	 */
+	void onCancelled() {
+		outstanding.decrementAndGet();
+	}
+
+	/**
+	 * Records the outcome of a request.
+	 *
+	 * @return <code>true</code> if the failure ejected the endpoint.
+	 */
+	boolean onComplete(boolean failed, long latencyNanos) {
+		outstanding.decrementAndGet();
+		long now = System.nanoTime();
+		synchronized (this) {
+			if (lastSample == 0 || latencyEwma == 0) {
+				latencyEwma = latencyNanos;
+			} else if (latencyNanos > latencyEwma) {
+				// Peak EWMA: latency spikes are taken at once and decay slowly
+				latencyEwma = latencyNanos;
+			} else {
+				double weight = Math.exp(-(now - lastSample) / (double) DECAY_NANOS);
+				latencyEwma = latencyEwma * weight + latencyNanos * (1 - weight);
+			}
+			lastSample = now;
+			if (!failed) {
+				consecutiveFailures = 0;
+				return false;
+			}
+			failures.increment();
+			if (ejectFailures > 0 && ++consecutiveFailures >= ejectFailures && !ejected) {
+				ejected = true;
+				ejectedUntil = now + ejectDuration;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Endpoint[" + baseUrl + ", outstanding " + getOutstanding() + (ejected ? ", ejected" : "") + "]";
+	}
+}
@@ -0,0 +1,59 @@
+package http.client;
+
+import java.net.URI;
+import java.util.Map;
+
+
+/**
+ * 
+ * {@link RequestInvoker} that forwards every request to another invoker.
+ * Decorators extend it and override only the methods they intercept.
+ * 
+ */
+public abstract class ForwardingRequestInvoker implements RequestInvoker {
+	protected final RequestInvoker delegate;
+
+	protected ForwardingRequestInvoker(RequestInvoker delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Response doGet(URI url, Map<String, String> headers) {
+		return delegate.doGet(url, headers);
+	}
+
+	@Override
+	public Response doGetStream(URI url, Map<String, String> headers) {
+		return delegate.doGetStream(url, headers);
+	}
+
+	@Override
+	public Response doPut(URI url, String payload, Map<String, String> headers) {
+		return delegate.doPut(url, payload, headers);
+	}
+
+	@Override
+	public Response doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		return delegate.doPut(url, payload, headers);
+	}
+
+	@Override
+	public Response doDelete(URI url, Map<String, String> headers) {
+		return delegate.doDelete(url, headers);
+	}
+
+	@Override
+	public Response doPost(URI url, String payload, Map<String, String> headers) {
+		return delegate.doPost(url, payload, headers);
+	}
+
+	@Override
+	public Response doPost(URI url, byte[] payload, Map<String, String> headers) {
+		return delegate.doPost(url, payload, headers);
+	}
+
+	@Override
+	public Response doPost(URI url, RequestBody payload, Map<String, String> headers) {
+		return delegate.doPost(url, payload, headers);
+	}
+}
@@ -0,0 +1,370 @@
+package http.client;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.http.Header;
+import org.apache.http.HttpMessage;
+import org.apache.http.message.BasicHeader;
+
+
+/**
+ *
+ * Immutable, ordered list of HTTP headers stored as a flat array of
+ * name/value pairs. Lookups are case-insensitive and do not allocate, and the
+ * views derived from an instance ({@link #asMap()}, {@link #asMultimap()}) are
+ * built once and cached, so a header set can be precomputed and shared by
+ * every request that uses it.
+ *
+ */
+public final class Headers {
+
+	public static final Headers EMPTY = new Headers(new String[0]);
+
+	private final String[] namesAndValues;
+	private volatile Header[] headerArray;
+	private volatile Map<String, String> map;
+	private volatile Map<String, List<String>> multimap;
+
+	private Headers(String[] namesAndValues) {
+		this.namesAndValues = namesAndValues;
+	}
+
+	/**
+	 * @param namesAndValues
+	 *            Alternating header names and values.
+	 */
+	public static Headers of(String... namesAndValues) {
+		if (namesAndValues.length % 2 != 0) {
+			throw new IllegalArgumentException("Expected alternating header names and values");
+		}
+		for (String nameOrValue : namesAndValues) {
+			if (nameOrValue == null) {
+				throw new IllegalArgumentException("Header names and values may not be null");
+			}
+		}
+		return namesAndValues.length == 0 ? EMPTY : new Headers(namesAndValues.clone());
+	}
+
+	/**
+	 * Returns the headers of the given map. A map obtained from
+	 * {@link #asMap()} is unwrapped without copying.
+	 */
+	public static Headers of(Map<String, String> headers) {
+		if (headers instanceof MapView) {
+			return ((MapView) headers).headers;
+		}
+		if (headers.isEmpty()) {
+			return EMPTY;
+		}
+		String[] namesAndValues = new String[headers.size() * 2];
+		int i = 0;
+		for (Entry<String, String> header : headers.entrySet()) {
+			namesAndValues[i++] = header.getKey();
+			namesAndValues[i++] = header.getValue();
+		}
+		return new Headers(namesAndValues);
+	}
+
+	static Headers of(Header[] headers) {
+		if (headers == null || headers.length == 0) {
+			return EMPTY;
+		}
+		String[] namesAndValues = new String[headers.length * 2];
+		for (int i = 0; i < headers.length; i++) {
+			namesAndValues[2 * i] = headers[i].getName();
+			namesAndValues[2 * i + 1] = headers[i].getValue();
+		}
+		return new Headers(namesAndValues);
+	}
+
+	public int size() {
+		return namesAndValues.length / 2;
+	}
+
+	public boolean isEmpty() {
+		return namesAndValues.length == 0;
+	}
+
+	public String getName(int index) {
+		return namesAndValues[2 * index];
+	}
+
+	public String getValue(int index) {
+		return namesAndValues[2 * index + 1];
+	}
+
+	/**
+	 * @return the first value of the given header, or <code>null</code> if it
+	 *         is not present. The name is matched case-insensitively.
+	 */
+	public String getFirst(String name) {
+		int index = indexOf(name, 0);
+		return index < 0 ? null : namesAndValues[index + 1];
+	}
+
+	/**
+	 * @return all the values of the given header, in order. The name is
+	 *         matched case-insensitively.
+	 */
+	public List<String> getAll(String name) {
+		int index = indexOf(name, 0);
+		if (index < 0) {
+			return Collections.emptyList();
+		}
+		int next = indexOf(name, index + 2);
+		if (next < 0) {
+			return Collections.singletonList(namesAndValues[index + 1]);
+		}
+		List<String> values = new ArrayList<>();
+		values.add(namesAndValues[index + 1]);
+		for (; next >= 0; next = indexOf(name, next + 2)) {
+			values.add(namesAndValues[next + 1]);
+		}
+		return Collections.unmodifiableList(values);
+	}
+
+	public boolean contains(String name) {
+		return indexOf(name, 0) >= 0;
+	}
+
+	/**
+	 * @return a copy of these headers with the given header appended.
+	 */
+	public Headers with(String name, String value) {
+		if (name == null || value == null) {
+			throw new IllegalArgumentException("Header names and values may not be null");
+		}
+		String[] copy = Arrays.copyOf(namesAndValues, namesAndValues.length + 2);
+		copy[namesAndValues.length] = name;
+		copy[namesAndValues.length + 1] = value;
+		return new Headers(copy);
+	}
+
+	/**
+	 * @return these headers if the given header is already present, otherwise
+	 *         a copy with the header appended.
+	 */
+	public Headers withDefault(String name, String value) {
+		return contains(name) ? this : with(name, value);
+	}
+
+	/**
+	 * Returns an unmodifiable map view of the first value of every header,
+	 * with case-insensitive lookup. The view is created once and can be passed
+	 * wherever the client expects a header map.
+	 */
+	public Map<String, String> asMap() {
+		Map<String, String> result = map;
+		if (result == null) {
+			result = new MapView(this);
+			map = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns an unmodifiable, case-insensitive map of all the values of every
+	 * header. The map is created once and cached.
+	 */
+	public Map<String, List<String>> asMultimap() {
+		Map<String, List<String>> result = multimap;
+		if (result == null) {
+			Map<String, List<String>> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			for (int i = 0; i < namesAndValues.length; i += 2) {
+				if (!values.containsKey(namesAndValues[i])) {
+					values.put(namesAndValues[i], getAll(namesAndValues[i]));
+				}
+			}
+			result = Collections.unmodifiableMap(values);
+			multimap = result;
+		}
+		return result;
+	}
+
+	Header[] toHeaderArray() {
+		Header[] result = headerArray;
+		if (result == null) {
+			result = new Header[size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = new BasicHeader(getName(i), getValue(i));
+			}
+			headerArray = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the given headers to a request. Headers obtained from
+	 * {@link #asMap()} reuse their cached {@link Header} instances.
+	 */
+	static void addTo(HttpMessage request, Map<String, String> headers) {
+		if (headers instanceof MapView) {
+			for (Header header : ((MapView) headers).headers.toHeaderArray()) {
+				request.addHeader(header);
+			}
+		} else {
+			for (Entry<String, String> header : headers.entrySet()) {
+				request.addHeader(header.getKey(), header.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the map contains the given header, matching
+	 *         the name case-insensitively.
+	 */
+	static boolean contains(Map<String, String> headers, String name) {
+		if (headers instanceof MapView) {
+			return ((MapView) headers).headers.contains(name);
+		}
+		if (headers.containsKey(name)) {
+			return true;
+		}
+		for (String key : headers.keySet()) {
+			if (name.equalsIgnoreCase(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the value of the given header in the map, matching the name
+	 *         case-insensitively, or <code>null</code> if it is not present.
+	 */
+	static String get(Map<String, String> headers, String name) {
+		if (headers instanceof MapView) {
+			return ((MapView) headers).headers.getFirst(name);
+		}
+		String value = headers.get(name);
+		if (value != null) {
+			return value;
+		}
+		for (Entry<String, String> header : headers.entrySet()) {
+			if (name.equalsIgnoreCase(header.getKey())) {
+				return header.getValue();
+			}
+		}
+		return null;
+	}
+
+	private int indexOf(String name, int from) {
+		for (int i = from; i < namesAndValues.length; i += 2) {
+			if (namesAndValues[i].equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof Headers && Arrays.equals(namesAndValues, ((Headers) other).namesAndValues);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(namesAndValues);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("{");
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			if (i > 0) {
+				result.append(", ");
+			}
+			result.append(namesAndValues[i]).append('=').append(namesAndValues[i + 1]);
+		}
+		return result.append('}').toString();
+	}
+
+	/**
+	 * Map view of the first value of every header.
+	 */
+	private static final class MapView extends AbstractMap<String, String> {
+		private final Headers headers;
+		private final int[] firstIndexes;
+		private Set<Entry<String, String>> entrySet;
+
+		MapView(Headers headers) {
+			this.headers = headers;
+			int[] indexes = new int[headers.size()];
+			int count = 0;
+			for (int i = 0; i < headers.namesAndValues.length; i += 2) {
+				if (headers.indexOf(headers.namesAndValues[i], 0) == i) {
+					indexes[count++] = i;
+				}
+			}
+			this.firstIndexes = Arrays.copyOf(indexes, count);
+		}
+
+		@Override
+		public String get(Object key) {
+			return key instanceof String ? headers.getFirst((String) key) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof String && headers.contains((String) key);
+		}
+
+		@Override
+		public int size() {
+			return firstIndexes.length;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return firstIndexes.length == 0;
+		}
+
+		@Override
+		public Set<Entry<String, String>> entrySet() {
+			Set<Entry<String, String>> result = entrySet;
+			if (result == null) {
+				result = new AbstractSet<Entry<String, String>>() {
+					@Override
+					public Iterator<Entry<String, String>> iterator() {
+						return new Iterator<Entry<String, String>>() {
+							private int next;
+
+							@Override
+							public boolean hasNext() {
+								return next < firstIndexes.length;
+							}
+
+							@Override
+							public Entry<String, String> next() {
+								if (!hasNext()) {
+									throw new NoSuchElementException();
+								}
+								int index = firstIndexes[next++];
+								return new SimpleImmutableEntry<>(headers.namesAndValues[index],
+										headers.namesAndValues[index + 1]);
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return firstIndexes.length;
+					}
+				};
+				entrySet = result;
+			}
+			return result;
+		}
+	}
+}
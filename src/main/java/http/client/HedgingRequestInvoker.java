@@ -0,0 +1,367 @@
+package http.client;
+
+import static http.client.HttpClientProperties.DEFAULT_HEDGING_DELAY_MIN;
+import static http.client.HttpClientProperties.DEFAULT_HEDGING_DELAY_PERCENTILE;
+import static http.client.HttpClientProperties.DEFAULT_HEDGING_MAX_RATIO;
+import static http.client.HttpClientProperties.DEFAULT_HEDGING_MAX_TOKENS;
+import static http.client.HttpClientProperties.DEFAULT_HEDGING_METHODS;
+import static http.client.HttpClientProperties.HEDGING_DELAY_MIN;
+import static http.client.HttpClientProperties.HEDGING_DELAY_PERCENTILE;
+import static http.client.HttpClientProperties.HEDGING_MAX_RATIO;
+import static http.client.HttpClientProperties.HEDGING_MAX_TOKENS;
+import static http.client.HttpClientProperties.HEDGING_METHODS;
+import static http.client.HttpClientProperties.VIRTUAL_THREADS;
+import static http.client.HttpClientProperties.getBoolean;
+import static http.client.HttpClientProperties.getDouble;
+import static http.client.HttpClientProperties.getInt;
+import static http.client.HttpClientProperties.getLong;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPut;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ *
+ * {@link RequestInvoker} decorator that hedges idempotent requests to cut tail
+ * latency: when a request has no response after the configured percentile of
+ * the recent latency of its destination, a second attempt is sent and the
+ * first response wins. The losing attempt is aborted, which releases its
+ * connection, and its response, if it completes anyway, is closed; the
+ * circuit breakers, concurrency limits and load balancing it went through do
+ * not count the abort as a failure of the destination. A failed
+ * attempt does not win while the other one may still succeed. Hedges are
+ * limited to a fraction of the requests by a token bucket, and no request is
+ * hedged until its destination has recorded enough latencies.
+ * <p>
+ * The first attempt runs on the calling thread; only hedges use another
+ * thread.
+ *
+ */
+public class HedgingRequestInvoker extends ForwardingRequestInvoker {
+	private static final Logger LOGGER = LoggerFactory.getLogger(HedgingRequestInvoker.class);
+	private static final int MIN_SAMPLES = 100;
+	private static final int WINDOW_SAMPLES = 1000;
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+	private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "http-client-hedge-" + THREAD_COUNT.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "http-client-hedge-timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final ConcurrentMap<String, Destination> destinations = new ConcurrentHashMap<>();
+	private final Set<String> methods;
+	private final double percentile;
+	private final long minDelay;
+	private final RetryBudget budget;
+	private final Executor executor;
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder won = new LongAdder();
+
+	/**
+	 * Creates an invoker configured from the hedging.* connection parameters
+	 * (see {@link HttpClientProperties}). Hedges run on virtual threads when
+	 * {@link HttpClientProperties#VIRTUAL_THREADS} is set.
+	 */
+	public HedgingRequestInvoker(RequestInvoker delegate, Properties connectionParameters) {
+		super(delegate);
+		this.percentile = getDouble(connectionParameters, HEDGING_DELAY_PERCENTILE, DEFAULT_HEDGING_DELAY_PERCENTILE);
+		this.minDelay = TimeUnit.MILLISECONDS.toNanos(
+				getLong(connectionParameters, HEDGING_DELAY_MIN, DEFAULT_HEDGING_DELAY_MIN));
+		// the token bucket of the retries caps the hedges just as well
+		this.budget = new RetryBudget(getDouble(connectionParameters, HEDGING_MAX_RATIO, DEFAULT_HEDGING_MAX_RATIO),
+				getInt(connectionParameters, HEDGING_MAX_TOKENS, DEFAULT_HEDGING_MAX_TOKENS));
+		Set<String> hedgedMethods = new HashSet<>();
+		for (String method : RetryPolicy.parseMethods(
+				connectionParameters.getProperty(HEDGING_METHODS, DEFAULT_HEDGING_METHODS))) {
+			hedgedMethods.add(method.toUpperCase(Locale.ROOT));
+		}
+		this.methods = hedgedMethods;
+		this.executor = getBoolean(connectionParameters, VIRTUAL_THREADS, false)
+				? VirtualThreads.sharedExecutor() : DEFAULT_EXECUTOR;
+		if (percentile <= 0 || percentile > 100) {
+			throw new IllegalArgumentException("Invalid value for " + HEDGING_DELAY_PERCENTILE + ": " + percentile);
+		}
+	}
+
+	@Override
+	public Response doGet(URI url, Map<String, String> headers) {
+		return execute(HttpGet.METHOD_NAME, url, true, () -> delegate.doGet(url, headers));
+	}
+
+	@Override
+	public Response doGetStream(URI url, Map<String, String> headers) {
+		return execute(HttpGet.METHOD_NAME, url, true, () -> delegate.doGetStream(url, headers));
+	}
+
+	@Override
+	public Response doPut(URI url, String payload, Map<String, String> headers) {
+		return execute(HttpPut.METHOD_NAME, url, true, () -> delegate.doPut(url, payload, headers));
+	}
+
+	@Override
+	public Response doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		return execute(HttpPut.METHOD_NAME, url, payload.isRepeatable(), () -> delegate.doPut(url, payload, headers));
+	}
+
+	@Override
+	public Response doDelete(URI url, Map<String, String> headers) {
+		return execute(HttpDelete.METHOD_NAME, url, true, () -> delegate.doDelete(url, headers));
+	}
+
+	/**
+	 * @return the number of hedges sent.
+	 */
+	public long getHedgedCount() {
+		return sent.sum();
+	}
+
+	/**
+	 * @return the number of hedges that responded before the first attempt.
+	 */
+	public long getHedgeWonCount() {
+		return won.sum();
+	}
+
+	/**
+	 * @return the current hedge delay of the given destination (host and
+	 *         port) in milliseconds, or -1 if it has not recorded enough
+	 *         latencies yet.
+	 */
+	public long getHedgeDelay(String host) {
+		Destination destination = destinations.get(host);
+		long delay = destination == null ? -1 : destination.delay;
+		return delay < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(Math.max(delay, minDelay));
+	}
+
+	private Response execute(String method, URI url, boolean repeatable, Supplier<Response> call) {
+		if (!repeatable || !methods.contains(method)) {
+			return call.get();
+		}
+		String host = url.getRawAuthority() == null ? "" : url.getRawAuthority();
+		Destination destination = destinations.get(host);
+		if (destination == null) {
+			destination = destinations.computeIfAbsent(host, key -> new Destination());
+		}
+		budget.onRequest();
+		long delay = destination.delay;
+		if (delay < 0) {
+			long start = System.nanoTime();
+			Response response = call.get();
+			destination.record(System.nanoTime() - start);
+			return response;
+		}
+
+		Race race = new Race(destination);
+		ScheduledFuture<?> timer = TIMER.schedule(() -> hedge(race, call, url), Math.max(delay, minDelay),
+				TimeUnit.NANOSECONDS);
+		race.run(race.primary, call);
+		timer.cancel(false);
+		return race.awaitOutcome(url);
+	}
+
+	private void hedge(Race race, Supplier<Response> call, URI url) {
+		if (!race.startHedge()) {
+			return;
+		}
+		if (!budget.tryAcquire()) {
+			race.cancelHedge();
+			return;
+		}
+		try {
+			executor.execute(() -> race.run(race.hedge, call));
+			sent.increment();
+			LOGGER.debug("Hedged request to {}", url);
+		} catch (RejectedExecutionException e) {
+			race.cancelHedge();
+		}
+	}
+
+	/**
+	 * Recent latencies of a destination, kept in two histograms so that the
+	 * hedge delay follows changes of latency.
+	 */
+	private final class Destination {
+		volatile LatencyHistogram current = new LatencyHistogram();
+		volatile LatencyHistogram previous;
+		volatile long delay = -1;
+		final AtomicInteger samples = new AtomicInteger();
+
+		void record(long nanos) {
+			LatencyHistogram histogram = current;
+			histogram.record(nanos);
+			if (samples.incrementAndGet() % MIN_SAMPLES != 0) {
+				return;
+			}
+			if (histogram.getCount() >= WINDOW_SAMPLES) {
+				previous = histogram;
+				current = new LatencyHistogram();
+			}
+			LatencyHistogram window = previous != null ? previous : histogram;
+			delay = window.getValueAtPercentile(percentile);
+		}
+	}
+
+	/**
+	 * The attempts of one request. The first attempt to succeed wins and the
+	 * other one is aborted; a failure only decides the race once no attempt
+	 * is left.
+	 */
+	private final class Race {
+		final RequestCancellation primary;
+		final RequestCancellation hedge;
+		private final Destination destination;
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition decided = lock.newCondition();
+		private int pending = 1;
+		private boolean primaryDone;
+		private boolean done;
+		private RequestCancellation winner;
+		private Response response;
+		private Throwable primaryFailure;
+		private Throwable hedgeFailure;
+
+		/**
+		 * Creates a race whose attempts inherit the deadline of the calling
+		 * thread and are cancelled with it.
+		 */
+		Race(Destination destination) {
+			this.destination = destination;
+			RequestCancellation caller = RequestCancellation.current();
+			this.primary = new RequestCancellation(caller);
+			this.hedge = new RequestCancellation(caller);
+		}
+
+		boolean startHedge() {
+			lock.lock();
+			try {
+				if (done || primaryDone) {
+					return false;
+				}
+				pending++;
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void cancelHedge() {
+			complete(hedge, null, null);
+		}
+
+		void run(RequestCancellation attempt, Supplier<Response> call) {
+			RequestCancellation previous = attempt.bind();
+			long start = System.nanoTime();
+			Response result = null;
+			Throwable failure = null;
+			try {
+				result = call.get();
+			} catch (RuntimeException | Error e) {
+				failure = e;
+			} finally {
+				RequestCancellation.restore(previous);
+			}
+			if (result != null && !attempt.isCancelled()) {
+				destination.record(System.nanoTime() - start);
+			}
+			if (!complete(attempt, result, failure) && result != null) {
+				result.close();
+			}
+		}
+
+		/**
+		 * @return <code>false</code> if the attempt lost the race, in which
+		 *         case its response must be closed.
+		 */
+		private boolean complete(RequestCancellation attempt, Response result, Throwable failure) {
+			RequestCancellation loser = null;
+			lock.lock();
+			try {
+				pending--;
+				if (attempt == primary) {
+					primaryDone = true;
+					primaryFailure = failure;
+				} else if (failure != null) {
+					hedgeFailure = failure;
+				}
+				if (done) {
+					return false;
+				}
+				if (result != null) {
+					done = true;
+					winner = attempt;
+					response = result;
+					loser = attempt == primary ? hedge : primary;
+				} else if (pending == 0) {
+					done = true;
+				}
+				if (done) {
+					decided.signalAll();
+				}
+				return result != null;
+			} finally {
+				lock.unlock();
+				if (loser != null) {
+					loser.cancel();
+				}
+			}
+		}
+
+		Response awaitOutcome(URI url) {
+			lock.lock();
+			try {
+				while (!done) {
+					decided.await();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				hedge.cancel();
+				throw new HttpClientException(e, "Interrupted while waiting for hedged request to: " + url,
+						url.toString());
+			} finally {
+				lock.unlock();
+				primary.detach();
+				hedge.detach();
+			}
+			if (response != null) {
+				if (winner == hedge) {
+					won.increment();
+				}
+				return response;
+			}
+			Throwable failure = primaryFailure != null ? primaryFailure : hedgeFailure;
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+			throw (RuntimeException) failure;
+		}
+	}
+}
@@ -0,0 +1,342 @@
+package http.client;
+
+import static http.client.HttpClientProperties.ASYNC_IO_THREADS;
+import static http.client.HttpClientProperties.CONNECTION_REQUEST_TIMEOUT;
+import static http.client.HttpClientProperties.CONNECT_TIMEOUT;
+import static http.client.HttpClientProperties.DEFAULT_CONNECTION_REQUEST_TIMEOUT;
+import static http.client.HttpClientProperties.DEFAULT_CONNECT_TIMEOUT;
+import static http.client.HttpClientProperties.DEFAULT_HTTP2_VERSION_POLICY;
+import static http.client.HttpClientProperties.DEFAULT_POOL_MAX_PER_ROUTE;
+import static http.client.HttpClientProperties.DEFAULT_POOL_MAX_TOTAL;
+import static http.client.HttpClientProperties.DEFAULT_SOCKET_TIMEOUT;
+import static http.client.HttpClientProperties.HTTP2_INITIAL_WINDOW_SIZE;
+import static http.client.HttpClientProperties.HTTP2_MAX_CONCURRENT_STREAMS;
+import static http.client.HttpClientProperties.HTTP2_MAX_FRAME_SIZE;
+import static http.client.HttpClientProperties.HTTP2_VERSION_POLICY;
+import static http.client.HttpClientProperties.POOL_MAX_PER_ROUTE;
+import static http.client.HttpClientProperties.POOL_MAX_TOTAL;
+import static http.client.HttpClientProperties.RETRY_MAX_ATTEMPTS;
+import static http.client.HttpClientProperties.SOCKET_TIMEOUT;
+import static http.client.HttpClientProperties.getInt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.async.methods.SimpleBody;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.Method;
+import org.apache.hc.core5.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
+import org.apache.hc.core5.http.nio.support.BasicRequestProducer;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * 
+ * Request invoker based on the HttpClient 5 asynchronous client, which speaks
+ * HTTP/2 (h2 over TLS, h2c with prior knowledge over plain connections) and
+ * falls back to HTTP/1.1 according to its version policy. HTTP/2 requests to
+ * the same host are multiplexed as concurrent streams, so the number of
+ * in-flight requests is no longer bounded by the connections of the pool.
+ * When HTTP/2 is forced, each host is served by a single connection; when it
+ * is negotiated, requests share a connection once it is known to speak
+ * HTTP/2, and a burst of requests to a new host may open several.
+ * <p>
+ * Responses are buffered by the I/O reactor and the calling thread blocks
+ * until they are complete; streamed GETs therefore return buffered responses.
+ * Request bodies other than files are written to memory before they are sent.
+ * The invoker owns the I/O reactor and must be closed.
+ * 
+ */
+public class Http2RequestInvoker implements RequestInvoker, Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(Http2RequestInvoker.class);
+
+	private final CloseableHttpAsyncClient httpClient;
+
+	public Http2RequestInvoker(CloseableHttpAsyncClient httpClient) {
+		this.httpClient = httpClient;
+		httpClient.start();
+	}
+
+	/**
+	 * Creates the asynchronous client configured by the connection
+	 * parameters. When HTTP/2 is forced, every host is served by a single
+	 * multiplexed connection and the pool limits
+	 * ({@link HttpClientProperties#POOL_MAX_TOTAL},
+	 * {@link HttpClientProperties#POOL_MAX_PER_ROUTE}) are not applied: the
+	 * HTTP/2 client has no connection pool to bound, and the requests in
+	 * flight to a host are limited by the concurrent streams the server
+	 * allows. Otherwise the HTTP/1.1 fallback uses the usual pool limits, and
+	 * an HTTP/2 connection is shared by the requests issued once it is
+	 * established.
+	 */
+	static CloseableHttpAsyncClient createHttpClient(Properties connectionParameters) {
+		H2Config defaults = H2Config.DEFAULT;
+		H2Config h2Config = H2Config.custom()
+				.setPushEnabled(false)
+				.setMaxConcurrentStreams(getInt(connectionParameters, HTTP2_MAX_CONCURRENT_STREAMS,
+						defaults.getMaxConcurrentStreams()))
+				.setInitialWindowSize(getInt(connectionParameters, HTTP2_INITIAL_WINDOW_SIZE,
+						defaults.getInitialWindowSize()))
+				.setMaxFrameSize(getInt(connectionParameters, HTTP2_MAX_FRAME_SIZE, defaults.getMaxFrameSize()))
+				.build();
+		int connectTimeout = getInt(connectionParameters, CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT);
+		int socketTimeout = getInt(connectionParameters, SOCKET_TIMEOUT, DEFAULT_SOCKET_TIMEOUT);
+		boolean retries = getInt(connectionParameters, RETRY_MAX_ATTEMPTS, 1) > 1;
+		IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+				.setIoThreadCount(getInt(connectionParameters, ASYNC_IO_THREADS,
+						Runtime.getRuntime().availableProcessors()))
+				.setSoTimeout(socketTimeout, TimeUnit.MILLISECONDS)
+				.build();
+		ConnectionConfig connectionConfig = ConnectionConfig.custom()
+				.setConnectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+				.setSocketTimeout(socketTimeout, TimeUnit.MILLISECONDS)
+				.build();
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectionRequestTimeout(Timeout.ofMilliseconds(getInt(connectionParameters,
+						CONNECTION_REQUEST_TIMEOUT, DEFAULT_CONNECTION_REQUEST_TIMEOUT)))
+				.setResponseTimeout(Timeout.ofMilliseconds(socketTimeout))
+				.build();
+		HttpVersionPolicy versionPolicy = getVersionPolicy(connectionParameters);
+
+		if (versionPolicy == HttpVersionPolicy.FORCE_HTTP_2) {
+			// the pooling manager only shares a connection after a request on it
+			// has completed, so a burst of requests would open one connection each
+			H2AsyncClientBuilder builder = HttpAsyncClients.customHttp2();
+			if (retries) {
+				builder.disableAutomaticRetries();
+			}
+			return builder.useSystemProperties()
+					.setH2Config(h2Config)
+					.setIOReactorConfig(ioReactorConfig)
+					.setDefaultConnectionConfig(connectionConfig)
+					.setDefaultRequestConfig(requestConfig)
+					.build();
+		}
+
+		HttpAsyncClientBuilder builder = HttpAsyncClients.custom();
+		if (retries) {
+			// the retry decorator replaces the built-in retry strategy
+			builder.disableAutomaticRetries();
+		}
+		return builder.useSystemProperties()
+				.setH2Config(h2Config)
+				.setIOReactorConfig(ioReactorConfig)
+				.setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+						.useSystemProperties()
+						.setMessageMultiplexing(true)
+						// applies to plain connections as well, where HTTP/2 means h2c
+						.setDefaultTlsConfig(TlsConfig.custom()
+								.setVersionPolicy(versionPolicy)
+								.build())
+						.setMaxConnTotal(getInt(connectionParameters, POOL_MAX_TOTAL, DEFAULT_POOL_MAX_TOTAL))
+						.setMaxConnPerRoute(getInt(connectionParameters, POOL_MAX_PER_ROUTE, DEFAULT_POOL_MAX_PER_ROUTE))
+						.setDefaultConnectionConfig(connectionConfig)
+						.build())
+				.setDefaultRequestConfig(requestConfig)
+				.build();
+	}
+
+	private static HttpVersionPolicy getVersionPolicy(Properties connectionParameters) {
+		String policy = connectionParameters.getProperty(HTTP2_VERSION_POLICY, DEFAULT_HTTP2_VERSION_POLICY).trim();
+		try {
+			return HttpVersionPolicy.valueOf(policy.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid value for " + HTTP2_VERSION_POLICY + ": " + policy, e);
+		}
+	}
+
+	@Override
+	public Response doGet(URI url, Map<String, String> headers) {
+		return execute(url, Method.GET, null, headers);
+	}
+
+	/**
+	 * Same as {@link #doGet(URI, Map)}: the response is not streamed but read
+	 * into memory by the I/O reactor before it is returned, so large
+	 * downloads should go through {@link HttpClientRequestInvoker} instead.
+	 */
+	@Override
+	public Response doGetStream(URI url, Map<String, String> headers) {
+		return execute(url, Method.GET, null, headers);
+	}
+
+	@Override
+	public Response doPut(URI url, String payload, Map<String, String> headers) {
+		return execute(url, Method.PUT,
+				AsyncEntityProducers.create(payload, contentType(headers, ContentType.APPLICATION_JSON)), headers);
+	}
+
+	/**
+	 * A file body is streamed from the file; any other body is first read
+	 * into memory in full.
+	 */
+	@Override
+	public Response doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		return execute(url, Method.PUT, producer(url, payload, headers), headers);
+	}
+
+	@Override
+	public Response doDelete(URI url, Map<String, String> headers) {
+		return execute(url, Method.DELETE, null, headers);
+	}
+
+	@Override
+	public Response doPost(URI url, String payload, Map<String, String> headers) {
+		return execute(url, Method.POST,
+				AsyncEntityProducers.create(payload, contentType(headers, ContentType.APPLICATION_JSON)), headers);
+	}
+
+	@Override
+	public Response doPost(URI url, byte[] payload, Map<String, String> headers) {
+		return execute(url, Method.POST,
+				AsyncEntityProducers.create(payload, contentType(headers, ContentType.APPLICATION_OCTET_STREAM)), headers);
+	}
+
+	/**
+	 * A file body is streamed from the file; any other body is first read
+	 * into memory in full.
+	 */
+	@Override
+	public Response doPost(URI url, RequestBody payload, Map<String, String> headers) {
+		return execute(url, Method.POST, producer(url, payload, headers), headers);
+	}
+
+	@Override
+	public void close() {
+		httpClient.close(CloseMode.GRACEFUL);
+	}
+
+	private static AsyncEntityProducer producer(URI url, RequestBody payload, Map<String, String> headers) {
+		ContentType contentType = contentType(headers, ContentType.APPLICATION_OCTET_STREAM);
+		if (payload instanceof RequestBody.FileBody) {
+			return AsyncEntityProducers.create(((RequestBody.FileBody) payload).getPath().toFile(), contentType);
+		}
+		try {
+			return AsyncEntityProducers.create(payload.toByteArray(), contentType);
+		} catch (IOException e) {
+			throw new HttpClientException(e, "Failed to read request body for: " + url, url.toString());
+		}
+	}
+
+	/**
+	 * @return the content type given by the request headers, which the entity
+	 *         carries instead of the request, or the given default.
+	 */
+	private static ContentType contentType(Map<String, String> headers, ContentType defaultType) {
+		String value = headers == null ? null : Headers.get(headers, HttpHeaders.CONTENT_TYPE);
+		if (value == null) {
+			return defaultType;
+		}
+		try {
+			return ContentType.parse(value);
+		} catch (RuntimeException e) {
+			return defaultType;
+		}
+	}
+
+	private Response execute(URI url, Method method, AsyncEntityProducer entity, Map<String, String> headers) {
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Executing request to: {}, method: {}, headers: {}", url, method, headers);
+		}
+		BasicHttpRequest request = new BasicHttpRequest(method, url);
+		if (headers != null) {
+			for (Entry<String, String> header : headers.entrySet()) {
+				if (isMessageHeader(header.getKey())) {
+					request.addHeader(header.getKey(), header.getValue());
+				}
+			}
+		}
+		Future<SimpleHttpResponse> execution = httpClient.execute(new BasicRequestProducer(request, entity),
+				SimpleResponseConsumer.create(), null);
+		RequestCancellation cancellation = RequestCancellation.current();
+		if (cancellation != null) {
+			cancellation.onCancel(() -> execution.cancel(true));
+		}
+		SimpleHttpResponse response;
+		try {
+			response = execution.get();
+		} catch (InterruptedException e) {
+			execution.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new HttpClientException(e, "Interrupted while executing request to: " + url, url.toString());
+		} catch (CancellationException e) {
+			String message = cancellation != null ? cancellation.describe(url) : "Request to " + url + " was cancelled";
+			throw new HttpClientException(e, message, url.toString());
+		} catch (ExecutionException e) {
+			String message = "Failed to execute request to: " + url;
+			LOGGER.error(message, e.getCause());
+			throw new HttpClientException(e.getCause(), message, url.toString());
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Request completed successfully. Status: {} {}", response.getVersion(), response.getCode());
+		}
+		return toResponse(response);
+	}
+
+	/**
+	 * @return <code>false</code> for the headers that describe the entity or
+	 *         the connection, which the client derives itself and HTTP/2
+	 *         forbids.
+	 */
+	private static boolean isMessageHeader(String name) {
+		return !(HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)
+				|| HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)
+				|| HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name)
+				|| HttpHeaders.CONNECTION.equalsIgnoreCase(name)
+				|| HttpHeaders.KEEP_ALIVE.equalsIgnoreCase(name)
+				|| HttpHeaders.UPGRADE.equalsIgnoreCase(name)
+				|| HttpHeaders.HOST.equalsIgnoreCase(name)
+				|| "Proxy-Connection".equalsIgnoreCase(name));
+	}
+
+	private static Response toResponse(SimpleHttpResponse response) {
+		SimpleBody body = response.getBody();
+		byte[] content = body != null && body.getBodyBytes() != null ? body.getBodyBytes() : new byte[0];
+		Header contentType = response.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+		List<String> namesAndValues = new ArrayList<>();
+		for (Header header : response.getHeaders()) {
+			namesAndValues.add(header.getName());
+			namesAndValues.add(header.getValue());
+		}
+		String statusText = response.getReasonPhrase();
+		if (statusText == null || statusText.isEmpty()) {
+			// HTTP/2 has no reason phrase
+			statusText = EnglishReasonPhraseCatalog.INSTANCE.getReason(response.getCode(), Locale.ENGLISH);
+		}
+		return new BufferedResponse(response.getCode(), statusText,
+				contentType == null ? null : contentType.getValue(), content.length, null, content,
+				Headers.of(namesAndValues.toArray(new String[namesAndValues.size()])));
+	}
+}
@@ -0,0 +1,200 @@
+package http.client;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.client.methods.ZeroCopyPost;
+import org.apache.http.nio.client.methods.ZeroCopyPut;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * 
+ * Non-blocking request invoker based on {@link CloseableHttpAsyncClient}.
+ * Requests are multiplexed over a small number of NIO reactor threads, so the
+ * number of in-flight requests is bounded by the connection pool rather than
+ * by the number of caller threads.
+ * 
+ */
+public class HttpAsyncClientRequestInvoker implements AsyncRequestInvoker, Closeable {
+	private final CloseableHttpAsyncClient httpClient;
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpAsyncClientRequestInvoker.class);
+
+	public HttpAsyncClientRequestInvoker(CloseableHttpAsyncClient httpClient) {
+		this.httpClient = httpClient;
+		if (!httpClient.isRunning()) {
+			httpClient.start();
+		}
+	}
+
+	@Override
+	public CompletableFuture<Response> doGet(URI url, Map<String, String> headers) {
+		return doHttp(url, new HttpGet(url), headers);
+	}
+
+	@Override
+	public CompletableFuture<Response> doPut(URI url, String payload, Map<String, String> headers) {
+		HttpPut request = new HttpPut(url);
+		request.setEntity(new StringEntity(payload, ContentType.APPLICATION_JSON));
+		return doHttp(url, request, headers);
+	}
+
+	@Override
+	public CompletableFuture<Response> doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		if (payload instanceof RequestBody.FileBody) {
+			return doZeroCopy(url, (RequestBody.FileBody) payload, headers, false);
+		}
+		if (payload instanceof RequestBody.WriterBody) {
+			return failed(url, new UnsupportedOperationException("Body writers are not supported by the async client"));
+		}
+		HttpPut request = new HttpPut(url);
+		request.setEntity(new RequestBodyEntity(payload));
+		return doHttp(url, request, headers);
+	}
+
+	@Override
+	public CompletableFuture<Response> doDelete(URI url, Map<String, String> headers) {
+		return doHttp(url, new HttpDelete(url), headers);
+	}
+
+	@Override
+	public CompletableFuture<Response> doPost(URI url, String payload, Map<String, String> headers) {
+		return postEntity(url, new StringEntity(payload, ContentType.APPLICATION_JSON), headers);
+	}
+
+	@Override
+	public CompletableFuture<Response> doPost(URI url, byte[] payload, Map<String, String> headers) {
+		return postEntity(url, new ByteArrayEntity(payload, ContentType.APPLICATION_OCTET_STREAM), headers);
+	}
+
+	@Override
+	public CompletableFuture<Response> doPost(URI url, RequestBody payload, Map<String, String> headers) {
+		if (payload instanceof RequestBody.FileBody) {
+			return doZeroCopy(url, (RequestBody.FileBody) payload, headers, true);
+		}
+		if (payload instanceof RequestBody.WriterBody) {
+			return failed(url, new UnsupportedOperationException("Body writers are not supported by the async client"));
+		}
+		return postEntity(url, new RequestBodyEntity(payload), headers);
+	}
+
+	@Override
+	public void close() throws IOException {
+		httpClient.close();
+	}
+
+	private CompletableFuture<Response> postEntity(URI url, HttpEntity entity, Map<String, String> headers) {
+		HttpPost request = new HttpPost(url);
+		request.setEntity(entity);
+		return doHttp(url, request, headers);
+	}
+
+	private CompletableFuture<Response> doZeroCopy(URI url, RequestBody.FileBody payload,
+			final Map<String, String> headers, boolean post) {
+		File file = payload.getPath().toFile();
+		ContentType contentType = ContentType.APPLICATION_OCTET_STREAM;
+		HttpAsyncRequestProducer producer;
+		try {
+			if (post) {
+				producer = new ZeroCopyPost(url, file, contentType) {
+					@Override
+					protected HttpEntityEnclosingRequest createRequest(URI requestURI, HttpEntity entity) {
+						return addHeaders(super.createRequest(requestURI, entity), headers);
+					}
+				};
+			} else {
+				producer = new ZeroCopyPut(url, file, contentType) {
+					@Override
+					protected HttpEntityEnclosingRequest createRequest(URI requestURI, HttpEntity entity) {
+						return addHeaders(super.createRequest(requestURI, entity), headers);
+					}
+				};
+			}
+		} catch (FileNotFoundException e) {
+			return failed(url, e);
+		}
+		return execute(url, post ? HttpPost.METHOD_NAME : HttpPut.METHOD_NAME, producer, headers);
+	}
+
+	private static CompletableFuture<Response> failed(URI url, Exception e) {
+		CompletableFuture<Response> result = new CompletableFuture<>();
+		result.completeExceptionally(new HttpClientException(e, "Failed to execute request to: " + url, url.toString()));
+		return result;
+	}
+
+	private static <T extends HttpRequest> T addHeaders(T request, Map<String, String> headers) {
+		Headers.addTo(request, headers);
+		return request;
+	}
+
+	private CompletableFuture<Response> doHttp(URI url, HttpUriRequest request, Map<String, String> headers) {
+		addHeaders(request, headers);
+		return execute(url, request.getMethod(), HttpAsyncMethods.create(request), headers);
+	}
+
+	private CompletableFuture<Response> execute(final URI url, String method, HttpAsyncRequestProducer producer,
+			Map<String, String> headers) {
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Executing async request to: {}, method: {}, headers: {}", url, method, headers);
+		}
+
+		final CompletableFuture<Response> result = new CompletableFuture<>();
+		final Future<HttpResponse> execution = httpClient.execute(producer, HttpAsyncMethods.createConsumer(),
+				new FutureCallback<HttpResponse>() {
+					@Override
+					public void completed(HttpResponse httpResponse) {
+						if (LOGGER.isDebugEnabled()) {
+							LOGGER.debug("Request completed successfully. Status: {}", httpResponse.getStatusLine());
+						}
+						try {
+							result.complete(new HttpClientResponse(httpResponse, url));
+						} catch (HttpClientException e) {
+							result.completeExceptionally(e);
+						}
+					}
+
+					@Override
+					public void failed(Exception e) {
+						String message = "Failed to execute request to: " + url;
+						LOGGER.error(message, e);
+						result.completeExceptionally(new HttpClientException(e, message, url.toString()));
+					}
+
+					@Override
+					public void cancelled() {
+						result.cancel(false);
+					}
+				});
+
+		result.whenComplete((response, t) -> {
+			if (result.isCancelled()) {
+				execution.cancel(true);
+			}
+		});
+		return result;
+	}
+}
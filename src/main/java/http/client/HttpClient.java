@@ -1,16 +1,31 @@
 package http.client;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
  *
  * Lightweight HTTP client that provides support to common HTTP methods e.g get,
  * post, put, and delete. In addition the client is responsible for authentication and session management.
+ * A client created with its own connection pool must be closed to release it.
+ * The methods added since the first version have default implementations based
+ * on the original ones, so that existing clients keep working.
  *
  * @author elad.avarahm@hp.com
  *
  */
-public interface HttpClient {
+public interface HttpClient extends Closeable {
 
     /**
      *
@@ -36,6 +51,25 @@ public interface HttpClient {
      */
     public Response doGet(String uri, Map<String, String> headers);
 
+    /**
+     *
+     * Sends a GET request to the specified URI and returns a streamed
+     * response. The content is read directly from the connection through
+     * {@link Response#getResponseStream()}; the response must be closed to
+     * return the connection to the pool. By default the response of
+     * {@link #doGet(String, Map)} is returned.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @return The streamed request result.
+     *
+     */
+    public default Response doGetStream(String uri, Map<String, String> headers) {
+        return doGet(uri, headers);
+    }
+
     /**
      * Sends a PUT request to the specified URI using
      * {@link javax.ws.rs.core.MediaType#APPLICATION_JSON} as
@@ -130,6 +164,218 @@ public interface HttpClient {
      */
     public Response doPost(String uri,  Map<String, String> headers, byte[] payload);
 
+    /**
+     * Sends a PUT request to the specified URI, streaming the payload
+     * to the connection. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as default content type.
+     * By default the payload is loaded and sent by
+     * {@link #doPut(String, Map, String)}, which requires it to be UTF-8 text.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The payload to put.
+     * @return The request result.
+     * @throws UnsupportedOperationException
+     *             if the client does not implement this method and the
+     *             payload is not UTF-8 text.
+     *
+     */
+    public default Response doPut(String uri, Map<String, String> headers, RequestBody payload) {
+        String text;
+        try {
+            text = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(payload.toByteArray())).toString();
+        } catch (CharacterCodingException e) {
+            throw new UnsupportedOperationException(
+                    getClass().getName() + " cannot put binary bodies, it does not implement doPut(RequestBody)", e);
+        } catch (IOException e) {
+            throw new HttpClientException(e, "Failed to read request body for: " + uri, uri);
+        }
+        return doPut(uri, headers, text);
+    }
+
+    /**
+     * Sends a PUT request to the specified URI, streaming the payload
+     * from the given stream, which is closed once it has been sent. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as default content type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The payload to put.
+     * @return The request result.
+     *
+     */
+    public default Response doPut(String uri, Map<String, String> headers, InputStream payload) {
+        return doPut(uri, headers, RequestBody.of(payload));
+    }
+
+    /**
+     * Sends a PUT request to the specified URI, streaming the payload
+     * from the given file through its file channel. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as default content type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The payload to put.
+     * @return The request result.
+     *
+     */
+    public default Response doPut(String uri, Map<String, String> headers, File payload) {
+        return doPut(uri, headers, RequestBody.of(payload));
+    }
+
+    /**
+     * Sends a PUT request to the specified URI, streaming the payload
+     * from the given file through its file channel. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as default content type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The payload to put.
+     * @return The request result.
+     *
+     */
+    public default Response doPut(String uri, Map<String, String> headers, Path payload) {
+        return doPut(uri, headers, RequestBody.of(payload));
+    }
+
+    /**
+     * Sends a PUT request to the specified URI, streaming the payload
+     * as it is produced by the given writer, using chunked transfer encoding. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as default content type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The payload to put.
+     * @return The request result.
+     *
+     */
+    public default Response doPut(String uri, Map<String, String> headers, BodyWriter payload) {
+        return doPut(uri, headers, RequestBody.of(payload));
+    }
+
+    /**
+     * Sends a POST request to the specified URI, streaming the payload
+     * to the connection. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as default content type.
+     * By default the payload is loaded and sent by
+     * {@link #doPost(String, Map, byte[])}.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The payload to post.
+     * @return The request result.
+     *
+     */
+    public default Response doPost(String uri, Map<String, String> headers, RequestBody payload) {
+        byte[] content;
+        try {
+            content = payload.toByteArray();
+        } catch (IOException e) {
+            throw new HttpClientException(e, "Failed to read request body for: " + uri, uri);
+        }
+        return doPost(uri, headers, content);
+    }
+
+    /**
+     * Sends a POST request to the specified URI, streaming the payload
+     * from the given stream, which is closed once it has been sent. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as default content type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The payload to post.
+     * @return The request result.
+     *
+     */
+    public default Response doPost(String uri, Map<String, String> headers, InputStream payload) {
+        return doPost(uri, headers, RequestBody.of(payload));
+    }
+
+    /**
+     * Sends a POST request to the specified URI, streaming the payload
+     * from the given file through its file channel. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as default content type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The payload to post.
+     * @return The request result.
+     *
+     */
+    public default Response doPost(String uri, Map<String, String> headers, File payload) {
+        return doPost(uri, headers, RequestBody.of(payload));
+    }
+
+    /**
+     * Sends a POST request to the specified URI, streaming the payload
+     * from the given file through its file channel. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as default content type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The payload to post.
+     * @return The request result.
+     *
+     */
+    public default Response doPost(String uri, Map<String, String> headers, Path payload) {
+        return doPost(uri, headers, RequestBody.of(payload));
+    }
+
+    /**
+     * Sends a POST request to the specified URI, streaming the payload
+     * as it is produced by the given writer, using chunked transfer encoding. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_OCTET_STREAM} as default content type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The payload to post.
+     * @return The request result.
+     *
+     */
+    public default Response doPost(String uri, Map<String, String> headers, BodyWriter payload) {
+        return doPost(uri, headers, RequestBody.of(payload));
+    }
+
     /**
      *
      * Sends a Delete request to the specified URI.
@@ -141,4 +387,230 @@ public interface HttpClient {
      */
     public Response doDelete(String uri);
 
+    /**
+     *
+     * Sends a GET request to the specified URI and binds the JSON response to
+     * the given type. The response is parsed as it is read from the
+     * connection, without an intermediate String. By default the response
+     * of {@link #doGetStream(String, Map)} is parsed.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param responseType
+     *            The type of the response.
+     * @return The response value, or <code>null</code> if the response has no content.
+     *
+     */
+    public default <T> T doGet(String uri, Map<String, String> headers, Class<T> responseType) {
+        return JsonCodec.DEFAULT.read(uri, doGetStream(uri, headers), responseType);
+    }
+
+    /**
+     *
+     * Sends a GET request to the specified URI and binds the JSON response to
+     * the given type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param responseType
+     *            The type of the response.
+     * @return The response value, or <code>null</code> if the response has no content.
+     *
+     */
+    public default <T> T doGet(String uri, Class<T> responseType) {
+        return doGet(uri, Collections.<String, String>emptyMap(), responseType);
+    }
+
+    /**
+     *
+     * Sends a GET request to the specified URI and iterates over the elements
+     * of the JSON array it returns. Elements are parsed one at a time as the
+     * iterator advances, so large arrays are never fully materialized. The
+     * iterator holds the connection and must be closed. By default the
+     * response of {@link #doGetStream(String, Map)} is iterated.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param elementType
+     *            The type of the array elements.
+     * @return The element iterator.
+     *
+     */
+    public default <T> JsonIterator<T> doGetArray(String uri, Map<String, String> headers, Class<T> elementType) {
+        return JsonCodec.DEFAULT.iterate(uri, doGetStream(uri, headers), elementType);
+    }
+
+    /**
+     *
+     * Sends a PUT request to the specified URI with the payload serialized to
+     * JSON straight into the connection, and binds the JSON response to the
+     * given type. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_JSON} as default content type.
+     * By default the payload is serialized to a String and sent by
+     * {@link #doPut(String, Map, String)}.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The value to put.
+     * @param responseType
+     *            The type of the response.
+     * @return The response value, or <code>null</code> if the response has no content.
+     *
+     */
+    public default <T> T doPut(String uri, Map<String, String> headers, Object payload, Class<T> responseType) {
+        Response response = doPut(uri, headers, JsonCodec.DEFAULT.text(uri, payload));
+        return JsonCodec.DEFAULT.read(uri, response, responseType);
+    }
+
+    /**
+     *
+     * Sends a PUT request to the specified URI with the payload serialized to
+     * JSON, and binds the JSON response to the given type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param payload
+     *            The value to put.
+     * @param responseType
+     *            The type of the response.
+     * @return The response value, or <code>null</code> if the response has no content.
+     *
+     */
+    public default <T> T doPut(String uri, Object payload, Class<T> responseType) {
+        return doPut(uri, Collections.<String, String>emptyMap(), payload, responseType);
+    }
+
+    /**
+     *
+     * Sends a POST request to the specified URI with the payload serialized to
+     * JSON straight into the connection, and binds the JSON response to the
+     * given type. In case the
+     * {@link javax.ws.rs.core.HttpHeaders#CONTENT_TYPE} header is not specified
+     * adding{@link javax.ws.rs.core.MediaType#APPLICATION_JSON} as default content type.
+     * By default the payload is serialized to a String and sent by
+     * {@link #doPost(String, Map, String)}.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param headers
+     *            The headers to use in the request.
+     * @param payload
+     *            The value to post.
+     * @param responseType
+     *            The type of the response.
+     * @return The response value, or <code>null</code> if the response has no content.
+     *
+     */
+    public default <T> T doPost(String uri, Map<String, String> headers, Object payload, Class<T> responseType) {
+        Response response = doPost(uri, headers, JsonCodec.DEFAULT.text(uri, payload));
+        return JsonCodec.DEFAULT.read(uri, response, responseType);
+    }
+
+    /**
+     *
+     * Sends a POST request to the specified URI with the payload serialized to
+     * JSON, and binds the JSON response to the given type.
+     *
+     * @param uri
+     *            The resource relative URI.
+     * @param payload
+     *            The value to post.
+     * @param responseType
+     *            The type of the response.
+     * @return The response value, or <code>null</code> if the response has no content.
+     *
+     */
+    public default <T> T doPost(String uri, Object payload, Class<T> responseType) {
+        return doPost(uri, Collections.<String, String>emptyMap(), payload, responseType);
+    }
+
+    /**
+     *
+     * Executes the given requests concurrently, within the limits of the
+     * {@link HttpClientProperties#BATCH_MAX_CONCURRENT} and
+     * {@link HttpClientProperties#BATCH_MAX_PER_HOST} connection parameters,
+     * and waits for all of them. A failed request does not stop the others:
+     * every request gets a result, with its buffered response or its failure.
+     * By default the default limits of these parameters are used.
+     *
+     * @param requests
+     *            The requests to execute.
+     * @return The results, in the order of the requests.
+     *
+     */
+    public default List<BatchResult> doBatch(List<BatchRequest> requests) {
+        return doBatch(requests, HttpClientProperties.DEFAULT_BATCH_MAX_CONCURRENT,
+                HttpClientProperties.DEFAULT_BATCH_MAX_PER_HOST);
+    }
+
+    /**
+     *
+     * Executes the given requests concurrently with the given limits and
+     * waits for all of them. By default the requests are sent through this
+     * client from a shared thread pool, and all the relative URIs count as
+     * one host.
+     *
+     * @param requests
+     *            The requests to execute.
+     * @param maxConcurrent
+     *            The maximum number of requests in flight.
+     * @param maxPerHost
+     *            The maximum number of requests in flight to the same host.
+     * @return The results, in the order of the requests.
+     *
+     */
+    public default List<BatchResult> doBatch(List<BatchRequest> requests, int maxConcurrent, int maxPerHost) {
+        List<String> hosts = new ArrayList<>(requests.size());
+        for (BatchRequest request : requests) {
+            String host;
+            try {
+                host = URI.create(request.getUri()).getRawAuthority();
+            } catch (IllegalArgumentException e) {
+                // reported when the request is executed
+                host = null;
+            }
+            hosts.add(host == null ? "" : host);
+        }
+        return new BatchExecution(this, requests, hosts, maxConcurrent, maxPerHost)
+                .run(BatchExecution.DEFAULT_EXECUTOR);
+    }
+
+    /**
+     *
+     * Opens connections to every base URL ahead of traffic, so that the
+     * first requests after startup do not pay for name resolution and the
+     * TCP and TLS handshakes. Connections already pooled count towards the
+     * given number.
+     *
+     * @param connectionsPerHost
+     *            The number of connections to have open to every host,
+     *            capped by {@link HttpClientProperties#POOL_MAX_PER_ROUTE}.
+     * @return The number of open connections pooled for the hosts; 0 when
+     *         the client does not send its requests through a
+     *         {@link ConnectionPool}, which is the default.
+     *
+     */
+    public default int warmUp(int connectionsPerHost) {
+        return 0;
+    }
+
+    /**
+     *
+     * Closes the connection pool the client created for itself, if any, and
+     * its connections. A pool or transport given to the client is left open
+     * for its other users.
+     *
+     */
+    @Override
+    public default void close() {
+    }
+
 }
@@ -23,6 +23,11 @@ public class HttpClientException extends RuntimeException {
 	}
 	
 
+	protected HttpClientException(String message, String uri) {
+		super(message);
+		this.uri = uri;
+	}
+
 	public HttpClientException(Throwable t, String message, String uri) {
 		super(message,t);
 		this.uri = uri;
@@ -1,9 +1,67 @@
 package http.client;
 
+import static http.client.HttpClientProperties.ASYNC_IO_THREADS;
+import static http.client.HttpClientProperties.BULKHEAD_MAX_CONCURRENT;
+import static http.client.HttpClientProperties.CACHE_MAX_BYTES;
+import static http.client.HttpClientProperties.CACHE_SPILL_FILE;
+import static http.client.HttpClientProperties.CACHE_SPILL_MAX_BYTES;
+import static http.client.HttpClientProperties.CIRCUIT_BREAKER_ENABLED;
+import static http.client.HttpClientProperties.CONCURRENCY_LIMIT_ENABLED;
+import static http.client.HttpClientProperties.DEADLINE_HEADER;
+import static http.client.HttpClientProperties.CONNECTION_REQUEST_TIMEOUT;
+import static http.client.HttpClientProperties.CONNECT_TIMEOUT;
+import static http.client.HttpClientProperties.DEFAULT_CACHE_SPILL_MAX_BYTES;
+import static http.client.HttpClientProperties.DEFAULT_CONNECTION_REQUEST_TIMEOUT;
+import static http.client.HttpClientProperties.DEFAULT_CONNECT_TIMEOUT;
+import static http.client.HttpClientProperties.DEFAULT_KEEP_ALIVE;
+import static http.client.HttpClientProperties.DEFAULT_KEEP_ALIVE_MAX;
+import static http.client.HttpClientProperties.DEFAULT_POOL_MAX_PER_ROUTE;
+import static http.client.HttpClientProperties.DEFAULT_POOL_MAX_TOTAL;
+import static http.client.HttpClientProperties.DEFAULT_REQUEST_COMPRESSION_MIN_BYTES;
+import static http.client.HttpClientProperties.DEFAULT_RETRY_BUDGET_MAX_TOKENS;
+import static http.client.HttpClientProperties.DEFAULT_RETRY_BUDGET_RATIO;
+import static http.client.HttpClientProperties.DEFAULT_SOCKET_TIMEOUT;
+import static http.client.HttpClientProperties.GET_COALESCING;
+import static http.client.HttpClientProperties.HEDGING_ENABLED;
+import static http.client.HttpClientProperties.KEEP_ALIVE;
+import static http.client.HttpClientProperties.KEEP_ALIVE_MAX;
+import static http.client.HttpClientProperties.POOL_MAX_PER_ROUTE;
+import static http.client.HttpClientProperties.POOL_MAX_TOTAL;
+import static http.client.HttpClientProperties.REQUEST_COMPRESSION;
+import static http.client.HttpClientProperties.REQUEST_COMPRESSION_LEVEL;
+import static http.client.HttpClientProperties.REQUEST_COMPRESSION_MIN_BYTES;
+import static http.client.HttpClientProperties.RESPONSE_STREAMING;
+import static http.client.HttpClientProperties.RETRY_BUDGET_MAX_TOKENS;
+import static http.client.HttpClientProperties.RETRY_BUDGET_RATIO;
+import static http.client.HttpClientProperties.RETRY_MAX_ATTEMPTS;
+import static http.client.HttpClientProperties.SOCKET_TIMEOUT;
+import static http.client.HttpClientProperties.getBoolean;
+import static http.client.HttpClientProperties.getDouble;
+import static http.client.HttpClientProperties.getInt;
+import static http.client.HttpClientProperties.getLong;
+
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
+
+import javax.net.ssl.SSLContext;
 
-import org.apache.http.impl.client.DecompressingHttpClient;
-import org.apache.http.impl.client.SystemDefaultHttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
 
 
 /**
@@ -14,15 +72,261 @@ import org.apache.http.impl.client.SystemDefaultHttpClient;
  */
 public class HttpClientFactory {
 
+    /**
+     * Creates a client with a connection pool of its own, which is released
+     * when the client is closed.
+     */
     public static HttpClient create(Properties httpConnectionParameters) {
-        DecompressingHttpClient httpClient = new DecompressingHttpClient(new SystemDefaultHttpClient());
-        configureHttpClient(httpClient);
-        return create(new HttpClientRequestInvoker(httpClient), httpConnectionParameters);
+        return create(createConnectionPool(httpConnectionParameters), httpConnectionParameters, null, true);
+    }
+
+    /**
+     * Creates a client that leases its connections from the given pool. The
+     * pool may be shared by several clients and outlives them.
+     */
+    public static HttpClient create(ConnectionPool connectionPool, Properties httpConnectionParameters) {
+        return create(connectionPool, httpConnectionParameters, null);
+    }
+
+    /**
+     * Creates a client that reports the timings (pool lease, connect, TLS,
+     * time to first byte, body read), status and size of every request to the
+     * given listener. Timing adds a few clock reads per request; clients
+     * created without a listener do not pay for it.
+     */
+    public static HttpClient create(ConnectionPool connectionPool, Properties httpConnectionParameters,
+            RequestMetricsListener metricsListener) {
+        return create(connectionPool, httpConnectionParameters, metricsListener, false);
+    }
+
+    private static HttpClient create(ConnectionPool connectionPool, Properties httpConnectionParameters,
+            RequestMetricsListener metricsListener, boolean ownsConnectionPool) {
+        CloseableHttpClient httpClient = createHttpClient(connectionPool, httpConnectionParameters,
+                metricsListener != null);
+        boolean streaming = getBoolean(httpConnectionParameters, RESPONSE_STREAMING, false);
+        RequestInvoker invoker = new HttpClientRequestInvoker(httpClient, streaming, metricsListener,
+                createRequestConfig(httpConnectionParameters));
+        return new HttpClientImpl(decorate(invoker, httpConnectionParameters), httpConnectionParameters, null,
+                connectionPool, ownsConnectionPool);
+    }
+
+    /**
+     * Wraps the invoker with the decorators enabled by the connection
+     * parameters.
+     */
+    static RequestInvoker decorate(RequestInvoker invoker, Properties httpConnectionParameters) {
+        String deadlineHeader = httpConnectionParameters.getProperty(DEADLINE_HEADER);
+        if (deadlineHeader != null && !deadlineHeader.trim().isEmpty()) {
+            invoker = new DeadlinePropagatingRequestInvoker(invoker, deadlineHeader.trim());
+        }
+        String compression = httpConnectionParameters.getProperty(REQUEST_COMPRESSION);
+        if (compression != null && !compression.trim().isEmpty()) {
+            invoker = new CompressingRequestInvoker(invoker, createCodec(compression.trim(), httpConnectionParameters),
+                    getLong(httpConnectionParameters, REQUEST_COMPRESSION_MIN_BYTES, DEFAULT_REQUEST_COMPRESSION_MIN_BYTES));
+        }
+        boolean circuitBreakerEnabled = getBoolean(httpConnectionParameters, CIRCUIT_BREAKER_ENABLED, false);
+        if (circuitBreakerEnabled || getInt(httpConnectionParameters, BULKHEAD_MAX_CONCURRENT, 0) > 0) {
+            // a bulkhead alone does not turn the circuit breakers on
+            invoker = new CircuitBreakerRequestInvoker(invoker, httpConnectionParameters, null,
+                    circuitBreakerEnabled);
+        }
+        if (getBoolean(httpConnectionParameters, CONCURRENCY_LIMIT_ENABLED, false)) {
+            invoker = new ConcurrencyLimitingRequestInvoker(invoker, httpConnectionParameters);
+        }
+        if (BaseHttpClient.getBaseURLs(httpConnectionParameters).size() > 1) {
+            invoker = new LoadBalancingRequestInvoker(invoker, httpConnectionParameters);
+        }
+        if (getBoolean(httpConnectionParameters, HEDGING_ENABLED, false)) {
+            invoker = new HedgingRequestInvoker(invoker, httpConnectionParameters);
+        }
+        if (isRetryEnabled(httpConnectionParameters)) {
+            invoker = new RetryingRequestInvoker(invoker, new RetryPolicy(httpConnectionParameters),
+                    createRetryBudget(httpConnectionParameters));
+        }
+        if (getBoolean(httpConnectionParameters, GET_COALESCING, false)) {
+            invoker = new CoalescingRequestInvoker(invoker);
+        }
+        long cacheBytes = getLong(httpConnectionParameters, CACHE_MAX_BYTES, 0);
+        if (cacheBytes > 0) {
+            String spillFile = httpConnectionParameters.getProperty(CACHE_SPILL_FILE);
+            if (spillFile == null) {
+                invoker = new CachingRequestInvoker(invoker, cacheBytes);
+            } else {
+                try {
+                    invoker = new CachingRequestInvoker(invoker, cacheBytes, Paths.get(spillFile),
+                            getInt(httpConnectionParameters, CACHE_SPILL_MAX_BYTES, DEFAULT_CACHE_SPILL_MAX_BYTES));
+                } catch (IOException e) {
+                    throw new HttpClientException(e, "Failed to map cache spill file " + spillFile, null);
+                }
+            }
+        }
+        return invoker;
+    }
+
+    /**
+     * Creates an HTTP/2 transport configured by the connection parameters (see
+     * {@link HttpClientProperties#HTTP2_VERSION_POLICY}). The transport owns an
+     * I/O reactor, may be shared by several clients and must be closed once
+     * they are no longer used.
+     */
+    public static Http2RequestInvoker createHttp2Transport(Properties httpConnectionParameters) {
+        return new Http2RequestInvoker(Http2RequestInvoker.createHttpClient(httpConnectionParameters));
+    }
+
+    /**
+     * Creates a client that sends its requests through the given HTTP/2
+     * transport, multiplexing concurrent requests to the same host over one
+     * connection.
+     */
+    public static HttpClient create(Http2RequestInvoker transport, Properties httpConnectionParameters) {
+        return create(decorate(transport, httpConnectionParameters), httpConnectionParameters);
+    }
+
+    /**
+     * Creates an executor that runs every task on its own virtual thread, for
+     * callers that issue many blocking requests concurrently. The connection
+     * pool should be created with {@link HttpClientProperties#VIRTUAL_THREADS}
+     * so that waiting for a connection does not pin carrier threads.
+     *
+     * @throws UnsupportedOperationException
+     *             if the runtime is older than Java 21.
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        return VirtualThreads.newExecutor();
+    }
+
+    public static ConnectionPool createConnectionPool(Properties httpConnectionParameters) {
+        return new ConnectionPool(httpConnectionParameters);
+    }
+
+    /**
+     * Creates a pool that resolves host names with the given resolver, behind
+     * a cache when {@link HttpClientProperties#DNS_CACHE_ENABLED} is set.
+     */
+    public static ConnectionPool createConnectionPool(Properties httpConnectionParameters, DnsResolver dnsResolver) {
+        return new ConnectionPool(httpConnectionParameters, dnsResolver);
+    }
+
+    /**
+     * Creates a pool whose TLS connections use the given context, e.g. with
+     * custom trust or key material, instead of a context created from the
+     * tls.* connection parameters. Pools sharing a context resume the TLS
+     * sessions of each other.
+     *
+     * @param dnsResolver
+     *            The resolver of the host names; may be <code>null</code>.
+     */
+    public static ConnectionPool createConnectionPool(Properties httpConnectionParameters, DnsResolver dnsResolver,
+            SSLContext sslContext) {
+        return new ConnectionPool(httpConnectionParameters, dnsResolver, sslContext);
+    }
+
+    static CloseableHttpClient createHttpClient(ConnectionPool connectionPool, Properties httpConnectionParameters,
+            boolean timed) {
+        HttpClientBuilder builder = configureHttpClient(HttpClientBuilder.create(), httpConnectionParameters)
+                .setConnectionManagerShared(true);
+        if (timed) {
+            builder.setConnectionManager(new TimingConnectionManager(connectionPool.getConnectionManager()))
+                    .setRequestExecutor(new TimingRequestExecutor());
+        } else {
+            builder.setConnectionManager(connectionPool.getConnectionManager());
+        }
+        return builder.build();
+    }
+
+    private static HttpClientBuilder configureHttpClient(HttpClientBuilder builder, Properties httpConnectionParameters) {
+        builder.useSystemProperties()
+                .setDefaultRequestConfig(createRequestConfig(httpConnectionParameters))
+                .setKeepAliveStrategy(createKeepAliveStrategy(httpConnectionParameters));
+        if (isRetryEnabled(httpConnectionParameters)) {
+            // the retry decorator replaces the built-in retry handler
+            builder.disableAutomaticRetries();
+        }
+        return builder;
+    }
+
+    /**
+     * Creates a non-blocking client. Requests are executed by a fixed number of
+     * I/O reactor threads ({@link HttpClientProperties#ASYNC_IO_THREADS}) and
+     * the returned client must be closed to stop them.
+     */
+    public static AsyncHttpClient createAsync(Properties httpConnectionParameters) {
+        CloseableHttpAsyncClient httpClient = createHttpAsyncClient(httpConnectionParameters);
+        AsyncRequestInvoker invoker = new HttpAsyncClientRequestInvoker(httpClient);
+        if (isRetryEnabled(httpConnectionParameters)) {
+            invoker = new AsyncRetryingRequestInvoker(invoker, new RetryPolicy(httpConnectionParameters),
+                    createRetryBudget(httpConnectionParameters));
+        }
+        return createAsync(invoker, httpConnectionParameters);
+    }
+
+    public static AsyncHttpClient createAsync(AsyncRequestInvoker invoker, Properties httpConnectionParameters) {
+        return new AsyncHttpClientImpl(invoker, httpConnectionParameters);
+    }
+
+    static CloseableHttpAsyncClient createHttpAsyncClient(Properties httpConnectionParameters) {
+        IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(getInt(httpConnectionParameters, ASYNC_IO_THREADS,
+                        Runtime.getRuntime().availableProcessors()))
+                .setConnectTimeout(getInt(httpConnectionParameters, CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT))
+                .setSoTimeout(getInt(httpConnectionParameters, SOCKET_TIMEOUT, DEFAULT_SOCKET_TIMEOUT))
+                .build();
+        PoolingNHttpClientConnectionManager connectionManager;
+        try {
+            // the system TLS settings, as the connection manager takes precedence over useSystemProperties()
+            connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig),
+                    RegistryBuilder.<SchemeIOSessionStrategy> create()
+                            .register("http", NoopIOSessionStrategy.INSTANCE)
+                            .register("https", SSLIOSessionStrategy.getSystemDefaultStrategy())
+                            .build());
+        } catch (IOReactorException e) {
+            throw new HttpClientException(e, "Failed to create I/O reactor", null);
+        }
+        connectionManager.setMaxTotal(getInt(httpConnectionParameters, POOL_MAX_TOTAL, DEFAULT_POOL_MAX_TOTAL));
+        connectionManager.setDefaultMaxPerRoute(
+                getInt(httpConnectionParameters, POOL_MAX_PER_ROUTE, DEFAULT_POOL_MAX_PER_ROUTE));
+        return HttpAsyncClients.custom()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(createRequestConfig(httpConnectionParameters))
+                .setKeepAliveStrategy(createKeepAliveStrategy(httpConnectionParameters))
+                .build();
+    }
+
+    private static RequestConfig createRequestConfig(Properties httpConnectionParameters) {
+        return RequestConfig.custom()
+                .setConnectTimeout(getInt(httpConnectionParameters, CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT))
+                .setSocketTimeout(getInt(httpConnectionParameters, SOCKET_TIMEOUT, DEFAULT_SOCKET_TIMEOUT))
+                .setConnectionRequestTimeout(getInt(httpConnectionParameters, CONNECTION_REQUEST_TIMEOUT,
+                        DEFAULT_CONNECTION_REQUEST_TIMEOUT))
+                .build();
+    }
+
+    private static ConfigurableKeepAliveStrategy createKeepAliveStrategy(Properties httpConnectionParameters) {
+        return new ConfigurableKeepAliveStrategy(
+                getLong(httpConnectionParameters, KEEP_ALIVE, DEFAULT_KEEP_ALIVE),
+                getLong(httpConnectionParameters, KEEP_ALIVE_MAX, DEFAULT_KEEP_ALIVE_MAX));
+    }
+
+    private static ContentCodec createCodec(String encoding, Properties httpConnectionParameters) {
+        int level = getInt(httpConnectionParameters, REQUEST_COMPRESSION_LEVEL, Deflater.DEFAULT_COMPRESSION);
+        if ("gzip".equalsIgnoreCase(encoding)) {
+            return DeflateCodec.gzip(level);
+        }
+        if ("deflate".equalsIgnoreCase(encoding)) {
+            return DeflateCodec.deflate(level);
+        }
+        throw new IllegalArgumentException("Unsupported " + REQUEST_COMPRESSION + ": " + encoding);
+    }
 
+    private static boolean isRetryEnabled(Properties httpConnectionParameters) {
+        return getInt(httpConnectionParameters, RETRY_MAX_ATTEMPTS, 1) > 1;
     }
 
-    private static void configureHttpClient(DecompressingHttpClient httpClient) {
-        //To change body of created methods use File | Settings | File Templates.
+    private static RetryBudget createRetryBudget(Properties httpConnectionParameters) {
+        return new RetryBudget(
+                getDouble(httpConnectionParameters, RETRY_BUDGET_RATIO, DEFAULT_RETRY_BUDGET_RATIO),
+                getInt(httpConnectionParameters, RETRY_BUDGET_MAX_TOKENS, DEFAULT_RETRY_BUDGET_MAX_TOKENS));
     }
 
     public static HttpClient create(RequestInvoker invoker, Properties httpConnectionParameters) {
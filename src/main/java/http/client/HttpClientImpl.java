@@ -1,17 +1,25 @@
 package http.client;
 
-import static org.apache.http.entity.ContentType.APPLICATION_JSON;
-import static org.apache.http.entity.ContentType.APPLICATION_OCTET_STREAM;
-import static org.apache.http.protocol.HTTP.CONTENT_TYPE;
+import static http.client.HttpClientProperties.BATCH_MAX_CONCURRENT;
+import static http.client.HttpClientProperties.BATCH_MAX_PER_HOST;
+import static http.client.HttpClientProperties.DEFAULT_BATCH_MAX_CONCURRENT;
+import static http.client.HttpClientProperties.DEFAULT_BATCH_MAX_PER_HOST;
+import static http.client.HttpClientProperties.VIRTUAL_THREADS;
+import static http.client.HttpClientProperties.getBoolean;
+import static http.client.HttpClientProperties.getInt;
 
+import java.io.File;
+import java.io.InputStream;
 import java.net.URI;
-import java.text.MessageFormat;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executor;
 
-import org.apache.http.protocol.HTTP;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 
 /**
@@ -21,20 +29,66 @@ import org.apache.http.protocol.HTTP;
  * @author elad.avraham@hp.com
  * 
  */
-public class HttpClientImpl implements HttpClient {
+public class HttpClientImpl extends BaseHttpClient implements HttpClient {
 
-	private final String baseURL;
 	private final RequestInvoker requestInvoker;
-	private static final String MOCK_BASE_URL = "http://localhost:8080/platform-webapp/rest/mockTenant/opb/remoting/";
+	private final JsonCodec json;
+	private final int batchMaxConcurrent;
+	private final int batchMaxPerHost;
+	private final Executor batchExecutor;
+	private final ConnectionPool connectionPool;
+	private final boolean ownsConnectionPool;
 	
 	public HttpClientImpl(RequestInvoker httpClientRequestInvoker) {
-		this.baseURL = System.getProperty("base.url", System.getProperty("base.url", MOCK_BASE_URL));
 		this.requestInvoker= httpClientRequestInvoker;
+		this.connectionPool = null;
+		this.ownsConnectionPool = false;
+		this.json = JsonCodec.DEFAULT;
+		this.batchMaxConcurrent = DEFAULT_BATCH_MAX_CONCURRENT;
+		this.batchMaxPerHost = DEFAULT_BATCH_MAX_PER_HOST;
+		this.batchExecutor = BatchExecution.DEFAULT_EXECUTOR;
 	}
 
 	public HttpClientImpl(RequestInvoker httpClientRequestInvoker, Properties connectionParameters) {
-		this.baseURL = connectionParameters.getProperty("base.url", System.getProperty("base.url", MOCK_BASE_URL));
+		this(httpClientRequestInvoker, connectionParameters, null);
+	}
+
+	/**
+	 * @param objectMapper
+	 *            The mapper used by the typed methods; when <code>null</code>
+	 *            a default mapper that ignores unknown properties is used.
+	 */
+	public HttpClientImpl(RequestInvoker httpClientRequestInvoker, Properties connectionParameters,
+			ObjectMapper objectMapper) {
+		this(httpClientRequestInvoker, connectionParameters, objectMapper, null);
+	}
+
+	/**
+	 * @param connectionPool
+	 *            The pool the requests are sent through, warmed up by
+	 *            {@link #warmUp(int)}; may be <code>null</code>.
+	 */
+	HttpClientImpl(RequestInvoker httpClientRequestInvoker, Properties connectionParameters,
+			ObjectMapper objectMapper, ConnectionPool connectionPool) {
+		this(httpClientRequestInvoker, connectionParameters, objectMapper, connectionPool, false);
+	}
+
+	/**
+	 * @param ownsConnectionPool
+	 *            Whether the pool was created for this client only, and is
+	 *            closed with it.
+	 */
+	HttpClientImpl(RequestInvoker httpClientRequestInvoker, Properties connectionParameters,
+			ObjectMapper objectMapper, ConnectionPool connectionPool, boolean ownsConnectionPool) {
+		super(connectionParameters);
 		this.requestInvoker= httpClientRequestInvoker;
+		this.connectionPool = connectionPool;
+		this.ownsConnectionPool = ownsConnectionPool && connectionPool != null;
+		this.json = objectMapper == null ? JsonCodec.DEFAULT : new JsonCodec(objectMapper);
+		this.batchMaxConcurrent = getInt(connectionParameters, BATCH_MAX_CONCURRENT, DEFAULT_BATCH_MAX_CONCURRENT);
+		this.batchMaxPerHost = getInt(connectionParameters, BATCH_MAX_PER_HOST, DEFAULT_BATCH_MAX_PER_HOST);
+		this.batchExecutor = getBoolean(connectionParameters, VIRTUAL_THREADS, false)
+				? VirtualThreads.sharedExecutor() : BatchExecution.DEFAULT_EXECUTOR;
 	}
 
 
@@ -52,6 +106,13 @@ public class HttpClientImpl implements HttpClient {
 		return handleResponse(uri, response);
 	}
 
+	@Override
+	public Response doGetStream(String uri, Map<String, String> headers) {
+		URI url = buildURL(uri);
+		Response response = requestInvoker.doGetStream(url, headers);
+		return handleResponse(uri, response);
+	}
+
 	@Override
 	public Response doPut(String uri, String payload) {
 		URI url = buildURL(uri);
@@ -84,9 +145,7 @@ public class HttpClientImpl implements HttpClient {
 	@Override
 	public Response doPost(String uri, byte[] payload) {
 		URI url = buildURL(uri);
-		Map<String, String> headers = getDefaultHeaders();
-		headers.put(HTTP.CONTENT_TYPE, APPLICATION_OCTET_STREAM.getMimeType());
-		Response response = requestInvoker.doPost(url, payload, headers );
+		Response response = requestInvoker.doPost(url, payload, getDefaultOctetHeaders());
 		return handleResponse(uri, response);
 	}
 
@@ -97,6 +156,60 @@ public class HttpClientImpl implements HttpClient {
 		return handleResponse(uri, response);
 	}
 
+	@Override
+	public Response doPut(String uri, Map<String, String> headers, RequestBody payload) {
+		URI url = buildURL(uri);
+		Response response = requestInvoker.doPut(url, payload, addDefaultHeaders(headers, true));
+		return handleResponse(uri, response);
+	}
+
+	@Override
+	public Response doPut(String uri, Map<String, String> headers, InputStream payload) {
+		return doPut(uri, headers, RequestBody.of(payload));
+	}
+
+	@Override
+	public Response doPut(String uri, Map<String, String> headers, File payload) {
+		return doPut(uri, headers, RequestBody.of(payload));
+	}
+
+	@Override
+	public Response doPut(String uri, Map<String, String> headers, Path payload) {
+		return doPut(uri, headers, RequestBody.of(payload));
+	}
+
+	@Override
+	public Response doPut(String uri, Map<String, String> headers, BodyWriter payload) {
+		return doPut(uri, headers, RequestBody.of(payload));
+	}
+
+	@Override
+	public Response doPost(String uri, Map<String, String> headers, RequestBody payload) {
+		URI url = buildURL(uri);
+		Response response = requestInvoker.doPost(url, payload, addDefaultHeaders(headers, true));
+		return handleResponse(uri, response);
+	}
+
+	@Override
+	public Response doPost(String uri, Map<String, String> headers, InputStream payload) {
+		return doPost(uri, headers, RequestBody.of(payload));
+	}
+
+	@Override
+	public Response doPost(String uri, Map<String, String> headers, File payload) {
+		return doPost(uri, headers, RequestBody.of(payload));
+	}
+
+	@Override
+	public Response doPost(String uri, Map<String, String> headers, Path payload) {
+		return doPost(uri, headers, RequestBody.of(payload));
+	}
+
+	@Override
+	public Response doPost(String uri, Map<String, String> headers, BodyWriter payload) {
+		return doPost(uri, headers, RequestBody.of(payload));
+	}
+
 	@Override
 	public Response doDelete(String uri) throws HttpClientException {
 		URI url = buildURL(uri);
@@ -104,35 +217,86 @@ public class HttpClientImpl implements HttpClient {
 		return handleResponse(uri, response);
 	}
 
-	private URI buildURL(String uri) {
-		return URI.create(baseURL + uri);
+	@Override
+	public <T> T doGet(String uri, Map<String, String> headers, Class<T> responseType) {
+		return json.read(uri, doGetStream(uri, headers), responseType);
 	}
-	
-	private Response handleResponse(String uri, Response response) throws HttpClientException {
-		int statusCode = response.getStatusCode();
-		if (statusCode >= 300) {
-			// TODO: Provide better exception handling based on MaaS exception format and exception types.
-			String message = MessageFormat.format("Failed to execute request to {0}. Message: {1}. Status code: {2}",
-							uri, response.getStatusText(), statusCode);
-			throw new HttpClientException(statusCode, response.getStatusText(),	message, uri);
-		}
-		return response;
+
+	@Override
+	public <T> T doGet(String uri, Class<T> responseType) {
+		return doGet(uri, Collections.<String, String>emptyMap(), responseType);
 	}
-	
-	private Map<String, String> getDefaultHeaders() {
-		return addDefaultHeaders(Collections.<String, String>emptyMap());
+
+	@Override
+	public <T> JsonIterator<T> doGetArray(String uri, Map<String, String> headers, Class<T> elementType) {
+		return json.iterate(uri, doGetStream(uri, headers), elementType);
+	}
+
+	@Override
+	public <T> T doPut(String uri, Map<String, String> headers, Object payload, Class<T> responseType) {
+		URI url = buildURL(uri);
+		Response response = requestInvoker.doPut(url, json.body(payload), addDefaultHeaders(headers));
+		return json.read(uri, handleResponse(uri, response), responseType);
 	}
 
-	private Map<String, String> addDefaultHeaders(Map<String,String> headers) {
-		return addDefaultHeaders(headers, false);
+	@Override
+	public <T> T doPut(String uri, Object payload, Class<T> responseType) {
+		return doPut(uri, Collections.<String, String>emptyMap(), payload, responseType);
 	}
-	
-	private Map<String, String> addDefaultHeaders(Map<String,String> headers, boolean octet) {
-		HashMap<String, String> requestHeaders = new HashMap<>(headers);
-		
-		if (!headers.containsKey(CONTENT_TYPE)) {
-			requestHeaders.put(CONTENT_TYPE, octet? APPLICATION_OCTET_STREAM.getMimeType(): APPLICATION_JSON.getMimeType());
+
+	@Override
+	public <T> T doPost(String uri, Map<String, String> headers, Object payload, Class<T> responseType) {
+		URI url = buildURL(uri);
+		Response response = requestInvoker.doPost(url, json.body(payload), addDefaultHeaders(headers));
+		return json.read(uri, handleResponse(uri, response), responseType);
+	}
+
+	@Override
+	public <T> T doPost(String uri, Object payload, Class<T> responseType) {
+		return doPost(uri, Collections.<String, String>emptyMap(), payload, responseType);
+	}
+
+	@Override
+	public List<BatchResult> doBatch(List<BatchRequest> requests) {
+		return doBatch(requests, batchMaxConcurrent, batchMaxPerHost);
+	}
+
+	@Override
+	public List<BatchResult> doBatch(List<BatchRequest> requests, int maxConcurrent, int maxPerHost) {
+		List<String> hosts = new ArrayList<>(requests.size());
+		for (BatchRequest request : requests) {
+			String host;
+			try {
+				host = buildURL(request.getUri()).getRawAuthority();
+			} catch (IllegalArgumentException e) {
+				// reported when the request is executed
+				host = null;
+			}
+			hosts.add(host == null ? "" : host);
+		}
+		return new BatchExecution(this, requests, hosts, maxConcurrent, maxPerHost).run(batchExecutor);
+	}
+
+	@Override
+	public int warmUp(int connectionsPerHost) {
+		if (connectionPool == null) {
+			return 0;
+		}
+		List<URI> targets = new ArrayList<>();
+		for (String baseURL : getBaseURLs()) {
+			URI target = URI.create(baseURL);
+			// a single base URL may be empty when the request URIs are absolute
+			if (target.getHost() != null) {
+				targets.add(target);
+			}
+		}
+		return connectionPool.warmUp(targets, connectionsPerHost);
+	}
+
+	@Override
+	public void close() {
+		if (ownsConnectionPool) {
+			connectionPool.close();
 		}
-		return requestHeaders;
 	}
 }
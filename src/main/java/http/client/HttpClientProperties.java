@@ -0,0 +1,373 @@
+package http.client;
+
+import java.util.Properties;
+
+
+/**
+ *
+ * Names of the connection parameters understood by {@link HttpClientFactory}
+ * and {@link HttpClientImpl}. All timeouts are expressed in milliseconds.
+ *
+ */
+public final class HttpClientProperties {
+
+	/**
+	 * Base URL prepended to every relative request URI. A comma separated list
+	 * of base URLs spreads the requests across replicas (see
+	 * {@link #LOAD_BALANCER}).
+	 */
+	public static final String BASE_URL = "base.url";
+
+	/**
+	 * Maximum number of pooled connections across all routes. Not applied by
+	 * the HTTP/2 transport when HTTP/2 is forced (see
+	 * {@link #HTTP2_VERSION_POLICY}).
+	 */
+	public static final String POOL_MAX_TOTAL = "pool.max.total";
+
+	/**
+	 * Maximum number of pooled connections per route (host). Not applied by
+	 * the HTTP/2 transport when HTTP/2 is forced (see
+	 * {@link #HTTP2_VERSION_POLICY}).
+	 */
+	public static final String POOL_MAX_PER_ROUTE = "pool.max.per.route";
+
+	/** Period of inactivity after which a pooled connection is re-validated before it is leased. */
+	public static final String POOL_VALIDATE_AFTER_INACTIVITY = "pool.validate.after.inactivity.ms";
+
+	/** Idle time after which the reaper closes a pooled connection. */
+	public static final String POOL_IDLE_TIMEOUT = "pool.idle.timeout.ms";
+
+	/** Interval of the background reaper that evicts expired and idle connections. */
+	public static final String POOL_REAPER_INTERVAL = "pool.reaper.interval.ms";
+
+	/** Total time to live of a pooled connection, regardless of keep-alive. */
+	public static final String POOL_CONNECTION_TTL = "pool.connection.ttl.ms";
+
+	/**
+	 * When <code>true</code> the connection pool caches resolved host
+	 * addresses and refreshes them in the background before they expire,
+	 * instead of resolving on the path of a new connection.
+	 */
+	public static final String DNS_CACHE_ENABLED = "dns.cache.enabled";
+
+	/** Time to live of a cached host resolution. */
+	public static final String DNS_CACHE_TTL = "dns.cache.ttl.ms";
+
+	/** Time an expired resolution is still used while it cannot be refreshed (e.g. DNS outage). */
+	public static final String DNS_CACHE_STALE = "dns.cache.stale.ms";
+
+	/** Comma separated TLS protocols of new connections (e.g. <code>TLSv1.3,TLSv1.2</code>); <code>https.protocols</code> or the JVM defaults when not set. */
+	public static final String TLS_PROTOCOLS = "tls.protocols";
+
+	/** Comma separated cipher suites of new TLS connections; <code>https.cipherSuites</code> or the JVM defaults when not set. */
+	public static final String TLS_CIPHER_SUITES = "tls.cipher.suites";
+
+	/** Maximum number of TLS sessions cached for resumption; 0 means no limit. */
+	public static final String TLS_SESSION_CACHE_SIZE = "tls.session.cache.size";
+
+	/** Time a cached TLS session can be resumed, rounded to seconds; 0 means no limit. */
+	public static final String TLS_SESSION_TIMEOUT = "tls.session.timeout.ms";
+
+	/**
+	 * JSSE provider of the TLS implementation: the name of an installed
+	 * provider or the class name of a provider (e.g. Conscrypt's
+	 * <code>org.conscrypt.OpenSSLProvider</code>). Ignored when the
+	 * connection pool is given an {@link javax.net.ssl.SSLContext}.
+	 * <p>
+	 * Without a given context, the pool uses the default context of the JVM,
+	 * with the key and trust stores of the <code>javax.net.ssl.*</code>
+	 * system properties, unless this property or the TLS session settings
+	 * are set: the pool then creates its own context, with the default trust
+	 * material and no client certificate, so mutual TLS needs a given context.
+	 */
+	public static final String TLS_PROVIDER = "tls.provider";
+
+	/** Keep-alive duration used when the server does not send a Keep-Alive header. */
+	public static final String KEEP_ALIVE = "keep.alive.ms";
+
+	/** Upper bound of the keep-alive duration, even if the server asks for more. */
+	public static final String KEEP_ALIVE_MAX = "keep.alive.max.ms";
+
+	/** Timeout for establishing a connection. */
+	public static final String CONNECT_TIMEOUT = "connect.timeout.ms";
+
+	/** Socket read timeout (maximum period of inactivity between two data packets). */
+	public static final String SOCKET_TIMEOUT = "socket.timeout.ms";
+
+	/** Timeout for leasing a connection from the pool. */
+	public static final String CONNECTION_REQUEST_TIMEOUT = "connection.request.timeout.ms";
+
+	/** When <code>true</code> responses are streamed from the connection instead of being buffered. */
+	public static final String RESPONSE_STREAMING = "response.streaming";
+
+	/** Number of I/O reactor threads used by the asynchronous client. */
+	public static final String ASYNC_IO_THREADS = "async.io.threads";
+
+	/** Size in bytes of the in-memory GET response cache; the cache is disabled unless set. */
+	public static final String CACHE_MAX_BYTES = "cache.max.bytes";
+
+	/** File that holds the cached responses evicted from memory; spilling is disabled unless set. */
+	public static final String CACHE_SPILL_FILE = "cache.spill.file";
+
+	/** Size in bytes of the cache spill file. */
+	public static final String CACHE_SPILL_MAX_BYTES = "cache.spill.max.bytes";
+
+	/** When <code>true</code> identical concurrent GET requests share a single in-flight request. */
+	public static final String GET_COALESCING = "get.coalescing";
+
+	/** Maximum number of attempts of a request, including the first one; retries are disabled unless greater than 1. */
+	public static final String RETRY_MAX_ATTEMPTS = "retry.max.attempts";
+
+	/** Upper bound of the randomized delay before the first retry; it doubles with every retry. */
+	public static final String RETRY_BACKOFF_INITIAL = "retry.backoff.initial.ms";
+
+	/** Upper bound of any retry delay. */
+	public static final String RETRY_BACKOFF_MAX = "retry.backoff.max.ms";
+
+	/** Longest Retry-After delay honored; responses asking for more are not retried. */
+	public static final String RETRY_AFTER_MAX = "retry.after.max.ms";
+
+	/** Comma separated status codes that are retried. */
+	public static final String RETRY_STATUSES = "retry.statuses";
+
+	/** Comma separated methods that are retried once the request may have reached the server. */
+	public static final String RETRY_METHODS = "retry.methods";
+
+	/** Number of retries allowed per request by the retry budget, e.g. 0.1 for 10%. */
+	public static final String RETRY_BUDGET_RATIO = "retry.budget.ratio";
+
+	/** Maximum number of retries banked by the retry budget. */
+	public static final String RETRY_BUDGET_MAX_TOKENS = "retry.budget.max.tokens";
+
+	/** When <code>true</code> every destination gets a circuit breaker and requests to an open one fail fast. */
+	public static final String CIRCUIT_BREAKER_ENABLED = "circuit.breaker.enabled";
+
+	/** Percentage of failed calls (I/O errors and 5xx responses) that opens a circuit breaker. */
+	public static final String CIRCUIT_BREAKER_FAILURE_RATE = "circuit.breaker.failure.rate";
+
+	/** Percentage of slow calls that opens a circuit breaker. */
+	public static final String CIRCUIT_BREAKER_SLOW_CALL_RATE = "circuit.breaker.slow.call.rate";
+
+	/** Duration above which a call counts as slow. */
+	public static final String CIRCUIT_BREAKER_SLOW_CALL_DURATION = "circuit.breaker.slow.call.duration.ms";
+
+	/** Number of calls in the rolling window of a circuit breaker. */
+	public static final String CIRCUIT_BREAKER_WINDOW_SIZE = "circuit.breaker.window.size";
+
+	/** Number of calls recorded before a circuit breaker evaluates its rates. */
+	public static final String CIRCUIT_BREAKER_MINIMUM_CALLS = "circuit.breaker.minimum.calls";
+
+	/** Time a circuit breaker stays open before letting probe calls through. */
+	public static final String CIRCUIT_BREAKER_OPEN_DURATION = "circuit.breaker.open.duration.ms";
+
+	/** Number of probe calls let through by a half-open circuit breaker. */
+	public static final String CIRCUIT_BREAKER_HALF_OPEN_CALLS = "circuit.breaker.half.open.calls";
+
+	/** Maximum number of requests in flight per destination; unbounded unless set. */
+	public static final String BULKHEAD_MAX_CONCURRENT = "bulkhead.max.concurrent";
+
+	/** Time a request waits for a free slot when its destination is at the bulkhead limit. */
+	public static final String BULKHEAD_MAX_WAIT = "bulkhead.max.wait.ms";
+
+	/** Content coding of request bodies, <code>gzip</code> or <code>deflate</code>; bodies are sent uncompressed unless set. */
+	public static final String REQUEST_COMPRESSION = "request.compression";
+
+	/** Size in bytes from which request bodies are compressed; bodies of unknown length are always compressed. */
+	public static final String REQUEST_COMPRESSION_MIN_BYTES = "request.compression.min.bytes";
+
+	/** Compression level of request bodies, from 1 (fastest) to 9 (smallest). */
+	public static final String REQUEST_COMPRESSION_LEVEL = "request.compression.level";
+
+	/**
+	 * Protocol negotiation of the HTTP/2 transport: <code>negotiate</code>
+	 * (HTTP/2 through TLS ALPN, HTTP/1.1 otherwise), <code>force_http_2</code>
+	 * (h2, or h2c with prior knowledge over plain connections) or
+	 * <code>force_http_1</code>. When HTTP/2 is forced, each host is served by
+	 * a single connection and the pool limits do not apply; the requests in
+	 * flight to a host are bounded by the number of concurrent streams the
+	 * server allows instead.
+	 */
+	public static final String HTTP2_VERSION_POLICY = "http2.version.policy";
+
+	/** Maximum number of concurrent streams the HTTP/2 transport accepts from a server. */
+	public static final String HTTP2_MAX_CONCURRENT_STREAMS = "http2.max.concurrent.streams";
+
+	/** Initial HTTP/2 flow-control window of every stream, in bytes. */
+	public static final String HTTP2_INITIAL_WINDOW_SIZE = "http2.initial.window.size";
+
+	/** Largest HTTP/2 frame payload the transport accepts, in bytes. */
+	public static final String HTTP2_MAX_FRAME_SIZE = "http2.max.frame.size";
+
+	/** Maximum number of requests of a batch in flight at once. */
+	public static final String BATCH_MAX_CONCURRENT = "batch.max.concurrent";
+
+	/** Maximum number of requests of a batch in flight to the same host. */
+	public static final String BATCH_MAX_PER_HOST = "batch.max.per.host";
+
+	/** When <code>true</code> every destination gets a concurrency limit that adapts to its latency. */
+	public static final String CONCURRENCY_LIMIT_ENABLED = "concurrency.limit.enabled";
+
+	/** Adaptive concurrency limit of a destination before any latency has been observed. */
+	public static final String CONCURRENCY_LIMIT_INITIAL = "concurrency.limit.initial";
+
+	/** Lower bound of the adaptive concurrency limit. */
+	public static final String CONCURRENCY_LIMIT_MIN = "concurrency.limit.min";
+
+	/** Upper bound of the adaptive concurrency limit. */
+	public static final String CONCURRENCY_LIMIT_MAX = "concurrency.limit.max";
+
+	/** Ratio of the no-load round trip time a request may take before the concurrency limit decreases. */
+	public static final String CONCURRENCY_LIMIT_TOLERANCE = "concurrency.limit.tolerance";
+
+	/** Factor applied to the concurrency limit when a request fails or the destination answers 429 or 503. */
+	public static final String CONCURRENCY_LIMIT_BACKOFF_RATIO = "concurrency.limit.backoff.ratio";
+
+	/** Maximum number of requests per destination waiting for the concurrency limit. */
+	public static final String CONCURRENCY_LIMIT_QUEUE_SIZE = "concurrency.limit.queue.size";
+
+	/** Time a request waits for the concurrency limit of its destination before it is rejected. */
+	public static final String CONCURRENCY_LIMIT_MAX_WAIT = "concurrency.limit.max.wait.ms";
+
+	/** When <code>true</code> idempotent requests are hedged: a slow request gets a second attempt and the first response wins. */
+	public static final String HEDGING_ENABLED = "hedging.enabled";
+
+	/** Comma separated methods that are hedged; only idempotent methods should be listed. */
+	public static final String HEDGING_METHODS = "hedging.methods";
+
+	/** Percentile of the recent latency of a destination after which a request is hedged, e.g. 95. */
+	public static final String HEDGING_DELAY_PERCENTILE = "hedging.delay.percentile";
+
+	/** Lower bound of the delay before a request is hedged. */
+	public static final String HEDGING_DELAY_MIN = "hedging.delay.min.ms";
+
+	/** Number of hedges allowed per request, e.g. 0.05 for 5%. */
+	public static final String HEDGING_MAX_RATIO = "hedging.max.ratio";
+
+	/** Maximum number of hedges banked by the hedge budget. */
+	public static final String HEDGING_MAX_TOKENS = "hedging.max.tokens";
+
+	/**
+	 * Strategy that spreads requests across several base URLs:
+	 * <code>round_robin</code> (default), <code>least_outstanding</code>,
+	 * <code>p2c</code> (power of two choices on latency) or the class name of
+	 * a {@link LoadBalancer}.
+	 */
+	public static final String LOAD_BALANCER = "load.balancer";
+
+	/** Number of consecutive failures that eject a base URL from load balancing; 0 disables ejection. */
+	public static final String LOAD_BALANCER_EJECT_FAILURES = "load.balancer.eject.failures";
+
+	/** Time an ejected base URL is left out before it is tried again. */
+	public static final String LOAD_BALANCER_EJECT_DURATION = "load.balancer.eject.duration.ms";
+
+	/**
+	 * Name of a request header that carries the time left before the
+	 * deadline of the {@link RequestScope}, in milliseconds (e.g.
+	 * <code>X-Request-Timeout</code>), so the server can give up on requests
+	 * the client no longer waits for. Not sent unless set.
+	 */
+	public static final String DEADLINE_HEADER = "deadline.header";
+
+	/**
+	 * When <code>true</code> the client is set up for callers running on the
+	 * virtual threads of Java 21: waiting for a pooled connection parks the
+	 * virtual thread instead of pinning its carrier, and batches run on
+	 * virtual threads.
+	 */
+	public static final String VIRTUAL_THREADS = "virtual.threads";
+
+	static final int DEFAULT_POOL_MAX_TOTAL = 200;
+	static final int DEFAULT_POOL_MAX_PER_ROUTE = 20;
+	static final int DEFAULT_POOL_VALIDATE_AFTER_INACTIVITY = 2000;
+	static final long DEFAULT_POOL_IDLE_TIMEOUT = 60000;
+	static final long DEFAULT_POOL_REAPER_INTERVAL = 5000;
+	static final long DEFAULT_DNS_CACHE_TTL = 30000;
+	static final long DEFAULT_DNS_CACHE_STALE = 300000;
+	static final long DEFAULT_KEEP_ALIVE = 30000;
+	static final long DEFAULT_KEEP_ALIVE_MAX = 300000;
+	static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+	static final int DEFAULT_SOCKET_TIMEOUT = 60000;
+	static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 10000;
+	static final int DEFAULT_CACHE_SPILL_MAX_BYTES = 64 * 1024 * 1024;
+	static final long DEFAULT_RETRY_BACKOFF_INITIAL = 100;
+	static final long DEFAULT_RETRY_BACKOFF_MAX = 5000;
+	static final long DEFAULT_RETRY_AFTER_MAX = 30000;
+	static final String DEFAULT_RETRY_STATUSES = "429,502,503,504";
+	static final String DEFAULT_RETRY_METHODS = "GET,HEAD,PUT,DELETE,OPTIONS";
+	static final double DEFAULT_RETRY_BUDGET_RATIO = 0.1;
+	static final int DEFAULT_RETRY_BUDGET_MAX_TOKENS = 10;
+	static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE = 50;
+	static final int DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_RATE = 100;
+	static final long DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_DURATION = 10000;
+	static final int DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE = 100;
+	static final int DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS = 20;
+	static final long DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION = 30000;
+	static final int DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_CALLS = 5;
+	static final long DEFAULT_REQUEST_COMPRESSION_MIN_BYTES = 1024;
+	static final String DEFAULT_HTTP2_VERSION_POLICY = "negotiate";
+	static final int DEFAULT_BATCH_MAX_CONCURRENT = 32;
+	static final int DEFAULT_BATCH_MAX_PER_HOST = 8;
+	static final int DEFAULT_CONCURRENCY_LIMIT_INITIAL = 20;
+	static final int DEFAULT_CONCURRENCY_LIMIT_MIN = 1;
+	static final int DEFAULT_CONCURRENCY_LIMIT_MAX = 200;
+	static final double DEFAULT_CONCURRENCY_LIMIT_TOLERANCE = 2.0;
+	static final double DEFAULT_CONCURRENCY_LIMIT_BACKOFF_RATIO = 0.9;
+	static final int DEFAULT_CONCURRENCY_LIMIT_QUEUE_SIZE = 100;
+	static final long DEFAULT_CONCURRENCY_LIMIT_MAX_WAIT = 1000;
+	static final String DEFAULT_HEDGING_METHODS = "GET";
+	static final double DEFAULT_HEDGING_DELAY_PERCENTILE = 95;
+	static final long DEFAULT_HEDGING_DELAY_MIN = 5;
+	static final double DEFAULT_HEDGING_MAX_RATIO = 0.05;
+	static final int DEFAULT_HEDGING_MAX_TOKENS = 10;
+	static final String DEFAULT_LOAD_BALANCER = "round_robin";
+	static final int DEFAULT_LOAD_BALANCER_EJECT_FAILURES = 5;
+	static final long DEFAULT_LOAD_BALANCER_EJECT_DURATION = 30000;
+
+	private HttpClientProperties() {
+	}
+
+	static int getInt(Properties properties, String name, int defaultValue) {
+		String value = properties.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for " + name + ": " + value, e);
+		}
+	}
+
+	static long getLong(Properties properties, String name, long defaultValue) {
+		String value = properties.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for " + name + ": " + value, e);
+		}
+	}
+
+	static double getDouble(Properties properties, String name, double defaultValue) {
+		String value = properties.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for " + name + ": " + value, e);
+		}
+	}
+
+	static boolean getBoolean(Properties properties, String name, boolean defaultValue) {
+		String value = properties.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		return Boolean.parseBoolean(value.trim());
+	}
+}
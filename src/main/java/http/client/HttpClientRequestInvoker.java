@@ -3,21 +3,25 @@ package http.client;
 import java.io.IOException;
 import java.net.URI;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,18 +35,60 @@ import org.slf4j.LoggerFactory;
  */
 public class HttpClientRequestInvoker implements RequestInvoker {
 	private final HttpClient httpClient;
+	private final boolean streaming;
+	private final RequestMetricsListener metricsListener;
+	private final RequestConfig defaultConfig;
 	private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientRequestInvoker.class);
 
 	public HttpClientRequestInvoker(HttpClient httpClient) {
+		this(httpClient, false);
+	}
+
+	/**
+	 * @param streaming
+	 *            When <code>true</code> every response is streamed and must be
+	 *            closed by the caller.
+	 */
+	public HttpClientRequestInvoker(HttpClient httpClient, boolean streaming) {
+		this(httpClient, streaming, null);
+	}
+
+	/**
+	 * @param metricsListener
+	 *            Receives the metrics of every request; may be
+	 *            <code>null</code>. Connect, TLS and response timings are only
+	 *            recorded by clients built by {@link HttpClientFactory} with
+	 *            the same listener.
+	 */
+	public HttpClientRequestInvoker(HttpClient httpClient, boolean streaming,
+			RequestMetricsListener metricsListener) {
+		this(httpClient, streaming, metricsListener, RequestConfig.DEFAULT);
+	}
+
+	/**
+	 * @param defaultConfig
+	 *            The default request configuration of the client, that the
+	 *            timeouts of a {@link RequestScope} override.
+	 */
+	HttpClientRequestInvoker(HttpClient httpClient, boolean streaming, RequestMetricsListener metricsListener,
+			RequestConfig defaultConfig) {
 		this.httpClient = httpClient;
+		this.streaming = streaming;
+		this.metricsListener = metricsListener;
+		this.defaultConfig = defaultConfig;
 	}
 
 	@Override
 	public Response doGet(URI url, Map<String, String> headers)
 			throws HttpClientException {
 		HttpGet request = new HttpGet(url);
-		HttpResponse httpResponse = doHttp(url, request, headers);
-		return new HttpClientResponse(httpResponse, url);
+		return execute(url, request, headers, streaming);
+	}
+
+	@Override
+	public Response doGetStream(URI url, Map<String, String> headers) {
+		HttpGet request = new HttpGet(url);
+		return execute(url, request, headers, true);
 	}
 
 	@Override
@@ -50,15 +96,20 @@ public class HttpClientRequestInvoker implements RequestInvoker {
 			Map<String, String> headers) {
 		HttpPut request = new HttpPut(url);
 		request.setEntity(new StringEntity(payload,	ContentType.APPLICATION_JSON));
-		HttpResponse httpResponse = doHttp(url, request, headers);
-		return new HttpClientResponse(httpResponse, url);
+		return execute(url, request, headers, streaming);
+	}
+
+	@Override
+	public Response doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		HttpPut request = new HttpPut(url);
+		request.setEntity(new RequestBodyEntity(payload));
+		return execute(url, request, headers, streaming);
 	}
 
 	@Override
 	public Response doDelete(URI url, Map<String, String> headers) {
 		HttpDelete request = new HttpDelete(url);
-		HttpResponse httpResponse = doHttp(url, request, headers);
-		return new HttpClientResponse(httpResponse, url);
+		return execute(url, request, headers, streaming);
 	}
 
 	@Override
@@ -73,29 +124,96 @@ public class HttpClientRequestInvoker implements RequestInvoker {
 		return postEntity(url, new ByteArrayEntity(payload,	ContentType.APPLICATION_OCTET_STREAM), headers);
 	}
 
+	@Override
+	public Response doPost(URI url, RequestBody payload, Map<String, String> headers) {
+		return postEntity(url, new RequestBodyEntity(payload), headers);
+	}
+
 	private Response postEntity(URI url, HttpEntity entity,
 			Map<String, String> headers) {
 		HttpPost request = new HttpPost(url);
 		request.setEntity(entity);
-		HttpResponse httpResponse = doHttp(url, request, headers);
-		return new HttpClientResponse(httpResponse, url);
+		return execute(url, request, headers, streaming);
+	}
+
+	private Response execute(URI url, HttpUriRequest request, Map<String, String> headers, boolean streaming) {
+		if (metricsListener == null) {
+			return new HttpClientResponse(doHttp(url, request, headers, null), url, streaming);
+		}
+		RequestTimer timer = new RequestTimer();
+		HttpClientContext context = HttpClientContext.create();
+		context.setAttribute(RequestTimer.ATTRIBUTE, timer);
+		String host = url.getRawAuthority() == null ? "" : url.getRawAuthority();
+		HttpResponse httpResponse;
+		try {
+			httpResponse = doHttp(url, request, headers, context);
+		} catch (RuntimeException | Error e) {
+			report(timer.toMetrics(host, request.getMethod(), 0, e));
+			throw e;
+		}
+
+		if (streaming && httpResponse.getEntity() != null) {
+			// reported once the body is read to its end or the response is closed
+			int statusCode = httpResponse.getStatusLine() == null ? 0 : httpResponse.getStatusLine().getStatusCode();
+			AtomicBoolean reported = new AtomicBoolean();
+			Runnable onRelease = () -> {
+				if (reported.compareAndSet(false, true)) {
+					report(timer.toMetrics(host, request.getMethod(), statusCode, null));
+				}
+			};
+			timer.onBodyEnd = onRelease;
+			return new HttpClientResponse(httpResponse, url, true, onRelease);
+		}
+
+		Response response = null;
+		Throwable failure = null;
+		try {
+			response = new HttpClientResponse(httpResponse, url, streaming);
+			return response;
+		} catch (RuntimeException | Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			report(timer.toMetrics(host, request.getMethod(), response == null ? 0 : response.getStatusCode(),
+					failure));
+		}
 	}
 
-	private HttpResponse doHttp(URI url, HttpUriRequest request, Map<String, String> headers) throws HttpClientException {
+	private void report(RequestMetrics metrics) {
+		try {
+			metricsListener.onRequestCompleted(metrics);
+		} catch (RuntimeException e) {
+			LOGGER.warn("Request metrics listener failed", e);
+		}
+	}
+
+	private HttpResponse doHttp(URI url, HttpUriRequest request, Map<String, String> headers, HttpContext context)
+			throws HttpClientException {
 
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("Executing request to: " + url + ", method : "	+ request.getMethod(), ", headers: " + headers);
 		}
 		
-		for (Entry<String, String> header : headers.entrySet()) {
-			request.addHeader(new BasicHeader(header.getKey(), header.getValue()));
+		Headers.addTo(request, headers);
+		RequestCancellation cancellation = RequestCancellation.current();
+		if (cancellation != null) {
+			RequestConfig config = configure(cancellation);
+			if (config != null && request instanceof HttpRequestBase) {
+				((HttpRequestBase) request).setConfig(config);
+			}
+			cancellation.onCancel(request::abort);
 		}
 
 		HttpResponse httpResponse = null;
 		try {
-			httpResponse = httpClient.execute(request);
+			httpResponse = httpClient.execute(request, context);
 		} catch (IOException e) {
             HttpClientUtils.closeQuietly(httpResponse);
+            if (cancellation != null && (cancellation.isCancelled() || cancellation.isExpired())) {
+                String message = cancellation.describe(url);
+                LOGGER.debug(message);
+                throw new HttpClientException(e, message, url.toString());
+            }
             String message = "Failed to execute request to: "+ url;
             LOGGER.error(message, e);
 			throw new HttpClientException(e, message, url.toString());
@@ -107,4 +225,34 @@ public class HttpClientRequestInvoker implements RequestInvoker {
 		
 		return httpResponse;
 	}
+
+	/**
+	 * @return the configuration of a request with the timeouts of its scope,
+	 *         shortened to the time left before its deadline, or
+	 *         <code>null</code> if the scope changes no timeout.
+	 */
+	private RequestConfig configure(RequestCancellation scope) {
+		long remaining = scope.getRemainingNanos();
+		if (remaining == Long.MAX_VALUE && scope.connectTimeout < 0 && scope.leaseTimeout < 0
+				&& scope.readTimeout < 0) {
+			return null;
+		}
+		int left = remaining == Long.MAX_VALUE ? -1
+				: (int) Math.max(1, Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMillis(remaining)));
+		return RequestConfig.copy(defaultConfig)
+				.setConnectTimeout(bound(scope.connectTimeout, defaultConfig.getConnectTimeout(), left))
+				.setConnectionRequestTimeout(
+						bound(scope.leaseTimeout, defaultConfig.getConnectionRequestTimeout(), left))
+				.setSocketTimeout(bound(scope.readTimeout, defaultConfig.getSocketTimeout(), left))
+				.build();
+	}
+
+	private static int bound(int timeout, int defaultTimeout, int left) {
+		int value = timeout >= 0 ? timeout : defaultTimeout;
+		if (left < 0) {
+			return value;
+		}
+		// 0 and negative timeouts mean no timeout
+		return value <= 0 ? left : Math.min(value, left);
+	}
 }
@@ -2,23 +2,21 @@ package http.client;
 
 import static org.apache.http.entity.ContentType.APPLICATION_OCTET_STREAM;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.net.URI;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.http.Consts;
-import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.entity.ContentType;
 import org.apache.http.util.EntityUtils;
@@ -41,19 +39,50 @@ class HttpClientResponse implements Response {
 	private String contentType;
 	private String responseString;
 	private byte[] responseBytes;
+	private final boolean streaming;
+	private final Runnable onRelease;
+	private boolean consumed;
+	private volatile Headers headers;
 	private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientResponse.class);
 
 	public HttpClientResponse(HttpResponse httpResponse, URI url) throws HttpClientException {
+		this(httpResponse, url, false);
+	}
+
+	/**
+	 * @param streaming
+	 *            When <code>true</code> the content is not read up front; the
+	 *            response holds the connection until it is read or closed.
+	 */
+	public HttpClientResponse(HttpResponse httpResponse, URI url, boolean streaming) throws HttpClientException {
+		this(httpResponse, url, streaming, null);
+	}
+
+	/**
+	 * @param onRelease
+	 *            Called once the content was read and the connection
+	 *            released, or the response closed; may be <code>null</code>.
+	 */
+	HttpClientResponse(HttpResponse httpResponse, URI url, boolean streaming, Runnable onRelease)
+			throws HttpClientException {
 		this.httpResponse = httpResponse;
 		this.url = url;
+		this.streaming = streaming;
+		this.onRelease = onRelease;
 		setStatusCode(httpResponse);
 		setStatusText(httpResponse);
 		setContentLength(httpResponse);
 		setContentType(httpResponse);
-		readResponse();
+		if (!streaming) {
+			readResponse();
+		}
 	}
 
 	private void readResponse() {
+		if (consumed) {
+			return;
+		}
+		consumed = true;
 		try {
 			readResponseImpl();
 		} catch (IOException e) {
@@ -62,22 +91,54 @@ class HttpClientResponse implements Response {
 			throw new HttpClientException(e, message, url.toString());
 		} finally {
 			HttpClientUtils.closeQuietly(httpResponse);
+			released();
 		}
 	}
 
 	private void readResponseImpl() throws IOException {
 		HttpEntity entity = httpResponse.getEntity();
-		ContentType contentType = ContentType.getOrDefault(entity);
-		// TODO: If isStreaming() returns true do not read the entire content
-		if (APPLICATION_OCTET_STREAM.getMimeType().equals(contentType.getMimeType())) {
+		if (entity == null) {
+			return;
+		}
+		long length = entity.getContentLength();
+		if (length < 0 || length > Integer.MAX_VALUE) {
 			responseBytes = EntityUtils.toByteArray(entity);
 		} else {
-			Charset charset = contentType.getCharset() != null ? contentType.getCharset() : Consts.UTF_8;
-			responseString = EntityUtils.toString(entity, charset);
-            contentLength = responseString != null ? responseString.length() : -1;
+			responseBytes = readFully(entity, (int) length);
+		}
+		if (responseBytes != null) {
+			contentLength = responseBytes.length;
+		}
+	}
+
+	/**
+	 * Reads content of a known length straight into an array of that size,
+	 * avoiding the growing buffer and the final copy of
+	 * {@link EntityUtils#toByteArray(HttpEntity)}.
+	 */
+	private static byte[] readFully(HttpEntity entity, int length) throws IOException {
+		try (InputStream content = entity.getContent()) {
+			if (content == null) {
+				return null;
+			}
+			byte[] bytes = new byte[length];
+			int offset = 0;
+			while (offset < length) {
+				int count = content.read(bytes, offset, length - offset);
+				if (count < 0) {
+					return Arrays.copyOf(bytes, offset);
+				}
+				offset += count;
+			}
+			return bytes;
 		}
 	}
 
+	private boolean isText() {
+		ContentType contentType = ContentType.getOrDefault(httpResponse.getEntity());
+		return !APPLICATION_OCTET_STREAM.getMimeType().equals(contentType.getMimeType());
+	}
+
 	private void setStatusText(HttpResponse httpResponse) {
 		if (httpResponse.getStatusLine() != null) {
 			statusText = httpResponse.getStatusLine().getReasonPhrase();
@@ -122,69 +183,131 @@ class HttpClientResponse implements Response {
 		return contentLength;
 	}
 
+	/**
+	 * Decodes the content on the first call and caches the result.
+	 */
 	@Override
 	public String getResponseString() {
+		readResponse();
+		if (responseString == null && responseBytes != null && isText()) {
+			responseString = new String(responseBytes, getCharset());
+		}
 		return responseString;
 	}
 
 	@Override
 	public byte[] getResponseBytes() {
+		readResponse();
 		return responseBytes;
 	}
 	
 	@Override
 	public boolean isStreaming() {
 		HttpEntity entity = httpResponse.getEntity();
-		return entity != null && entity.isStreaming();
+		return streaming && !consumed && entity != null && entity.isStreaming();
 	}
 
 	@Override
 	public InputStream getResponseStream() throws IllegalStateException, IOException {
-		return httpResponse.getEntity().getContent();
+		if (isStreaming()) {
+			return httpResponse.getEntity().getContent();
+		}
+		readResponse();
+		return new ByteArrayInputStream(responseBytes != null ? responseBytes : new byte[0]);
 	}
 
 	@Override
-	public String getHeader(String name) {
-		Header[] values = httpResponse.getHeaders(name);
-		if (values == null || values.length == 0) {
-			return null;
-		} else {
-			return values[0].getValue();
+	public PooledBody getResponseBuffers(ByteBufferPool pool) {
+		if (!streaming || consumed || httpResponse.getEntity() == null) {
+			readResponse();
+			return PooledBody.wrap(responseBytes);
+		}
+		consumed = true;
+		try (InputStream content = httpResponse.getEntity().getContent()) {
+			return PooledBody.read(content, pool);
+		} catch (IOException e) {
+			String message = "Failed to read response for: " + url;
+			LOGGER.error(message);
+			throw new HttpClientException(e, message, url.toString());
+		} finally {
+			HttpClientUtils.closeQuietly(httpResponse);
+			released();
 		}
 	}
 
+	/**
+	 * Releases the connection of a streamed response. Unread content is
+	 * drained so the connection can be reused by the pool.
+	 */
 	@Override
-	public List<String> getHeaders(String name) {
-		Header[] values = httpResponse.getHeaders(name);
-		if (values == null) {
-			return Collections.emptyList();
-		} else {
-			List<String> list = new ArrayList<>();
-			for (Header value : values) {
-				list.add(value.getValue());
+	public void close() {
+		if (consumed) {
+			return;
+		}
+		consumed = true;
+		EntityUtils.consumeQuietly(httpResponse.getEntity());
+		HttpClientUtils.closeQuietly(httpResponse);
+		released();
+	}
+
+	/**
+	 * Releases the connection of a streamed response without reading the
+	 * rest of the content. The connection is closed rather than returned to
+	 * the pool, which is cheaper than draining a large remainder.
+	 */
+	void abort() {
+		if (consumed) {
+			return;
+		}
+		consumed = true;
+		try {
+			if (!(httpResponse instanceof CloseableHttpResponse)) {
+				HttpClientUtils.closeQuietly(httpResponse);
+				return;
 			}
-			return list;
+			// unlike HttpClientUtils.closeQuietly, does not consume the entity first
+			((CloseableHttpResponse) httpResponse).close();
+		} catch (IOException e) {
+			LOGGER.debug("Failed to abort response for: {}", url, e);
+		} finally {
+			released();
 		}
 	}
 
+	private void released() {
+		if (onRelease != null) {
+			onRelease.run();
+		}
+	}
+
+	private Charset getCharset() {
+		ContentType contentType = ContentType.getOrDefault(httpResponse.getEntity());
+		return contentType.getCharset() != null ? contentType.getCharset() : Consts.UTF_8;
+	}
+
+	@Override
+	public String getHeader(String name) {
+		return getAllHeaders().getFirst(name);
+	}
+
+	@Override
+	public List<String> getHeaders(String name) {
+		return getAllHeaders().getAll(name);
+	}
+
 	@Override
 	public Map<String, List<String>> listHeaders() {
-		Header[] headers = httpResponse.getAllHeaders();
-		if (headers == null) {
-			return Collections.emptyMap();
-		} else {
-			Map<String, List<String>> map = new HashMap<>();
-			for (Header header : headers) {
-				String name = header.getName();
-				List<String> values = map.get(name);
-				if (values == null) {
-					values = new LinkedList<>();
-					map.put(name, values);
-				}
-				values.add(header.getValue());
-			}
-			return map;
+		return getAllHeaders().asMultimap();
+	}
+
+	@Override
+	public Headers getAllHeaders() {
+		Headers result = headers;
+		if (result == null) {
+			result = Headers.of(httpResponse.getAllHeaders());
+			headers = result;
 		}
+		return result;
 	}
 
 	@Override
@@ -0,0 +1,91 @@
+package http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+
+/**
+ * 
+ * Binds request and response bodies to Java objects with Jackson 2, streaming
+ * between the object mapper and the connection: request bodies are generated
+ * straight into the request stream and responses are parsed from the
+ * response stream, without intermediate Strings.
+ * 
+ */
+final class JsonCodec {
+	static final JsonCodec DEFAULT = new JsonCodec(
+			new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+
+	private final ObjectMapper mapper;
+	private final ObjectWriter writer;
+
+	JsonCodec(ObjectMapper mapper) {
+		this.mapper = mapper;
+		this.writer = mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	}
+
+	/**
+	 * @return a repeatable body that serializes the value as it is sent.
+	 */
+	RequestBody body(Object value) {
+		return RequestBody.of(out -> writer.writeValue(out, value));
+	}
+
+	/**
+	 * @return the value serialized to a String, for clients that cannot
+	 *         stream the body.
+	 */
+	String text(String uri, Object value) {
+		try {
+			return mapper.writeValueAsString(value);
+		} catch (IOException e) {
+			throw new HttpClientException(e, "Failed to serialize request of: " + uri, uri);
+		}
+	}
+
+	/**
+	 * Parses the content of the response and closes it.
+	 * 
+	 * @return the value, or <code>null</code> if the response has no content.
+	 */
+	<T> T read(String uri, Response response, Class<T> type) {
+		try (Response closing = response) {
+			if (closing.getStatusCode() == 204 || closing.getContentLength() == 0) {
+				return null;
+			}
+			InputStream content = closing.getResponseStream();
+			JsonParser parser = mapper.getFactory().createParser(content);
+			if (parser.nextToken() == null) {
+				return null;
+			}
+			return mapper.readValue(parser, type);
+		} catch (IOException e) {
+			throw new HttpClientException(e, "Failed to parse response of: " + uri, uri);
+		}
+	}
+
+	/**
+	 * Opens an iterator over the elements of the JSON array in the response.
+	 * The iterator owns the response and closes it.
+	 */
+	<T> JsonIterator<T> iterate(String uri, Response response, Class<T> elementType) {
+		try {
+			// a top-level array is unwrapped by the iterator
+			MappingIterator<T> elements = mapper.readerFor(elementType).readValues(response.getResponseStream());
+			return new JsonIterator<>(uri, response, elements);
+		} catch (IOException e) {
+			response.close();
+			throw new HttpClientException(e, "Failed to parse response of: " + uri, uri);
+		} catch (RuntimeException e) {
+			response.close();
+			throw e;
+		}
+	}
+}
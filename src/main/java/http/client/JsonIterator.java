@@ -0,0 +1,91 @@
+package http.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+
+
+/**
+ * 
+ * Lazy iterator over the elements of a JSON array response. Elements are
+ * parsed from the connection one at a time as the iterator advances, so a
+ * large array is never held in memory. The iterator holds the connection
+ * until it is exhausted or closed, and must be closed by the caller.
+ * 
+ */
+public final class JsonIterator<T> implements Iterator<T>, Closeable {
+	private final String uri;
+	private final Response response;
+	private final MappingIterator<T> elements;
+	private boolean closed;
+
+	JsonIterator(String uri, Response response, MappingIterator<T> elements) {
+		this.uri = uri;
+		this.response = response;
+		this.elements = elements;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed || elements == null) {
+			return false;
+		}
+		try {
+			if (elements.hasNextValue()) {
+				return true;
+			}
+		} catch (IOException | RuntimeJsonMappingException e) {
+			close();
+			throw new HttpClientException(e, "Failed to parse response of: " + uri, uri);
+		}
+		release(false);
+		return false;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		try {
+			return elements.nextValue();
+		} catch (IOException | RuntimeJsonMappingException e) {
+			close();
+			throw new HttpClientException(e, "Failed to parse response of: " + uri, uri);
+		}
+	}
+
+	/**
+	 * Releases the connection. If the iterator is closed before
+	 * {@link #hasNext()} reported the end of the array, the connection is
+	 * aborted rather than drained, so closing early does not download the
+	 * unread elements.
+	 */
+	@Override
+	public void close() {
+		release(true);
+	}
+
+	private void release(boolean abort) {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (abort && response instanceof HttpClientResponse) {
+			((HttpClientResponse) response).abort();
+		}
+		try {
+			if (elements != null) {
+				elements.close();
+			}
+		} catch (IOException e) {
+			// the response is closed below regardless
+		} finally {
+			response.close();
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package http.client;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+
+/**
+ * 
+ * Connection manager that lets at most as many lease requests through to the
+ * pool as it has connections, per route and overall, so that the pool itself
+ * never waits for a connection to be released. HttpCore waits for pooled
+ * connections while holding a monitor, which pins the carrier thread of a
+ * virtual thread; waiting for a permit here parks the virtual thread and
+ * frees its carrier instead.
+ * 
+ */
+class LeaseLimitingConnectionManager implements HttpClientConnectionManager {
+	private final PoolingHttpClientConnectionManager delegate;
+	private final Semaphore totalPermits;
+	private final Map<HttpRoute, Semaphore> routePermits = new ConcurrentHashMap<>();
+	private final Map<HttpClientConnection, Semaphore> leased = new ConcurrentHashMap<>();
+
+	LeaseLimitingConnectionManager(PoolingHttpClientConnectionManager delegate) {
+		this.delegate = delegate;
+		this.totalPermits = new Semaphore(delegate.getMaxTotal(), true);
+	}
+
+	/**
+	 * Resizes the permits of a route after its pool limit changed. Leases
+	 * granted under the previous limit are still returned to it.
+	 */
+	void setMaxPerRoute(HttpRoute route, int max) {
+		routePermits.put(route, new Semaphore(max, true));
+	}
+
+	@Override
+	public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+		return new ConnectionRequest() {
+			private volatile ConnectionRequest request;
+			private volatile boolean cancelled;
+
+			@Override
+			public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+					throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+				long deadline = timeout > 0 ? System.nanoTime() + timeUnit.toNanos(timeout) : 0;
+				Semaphore permits = routePermits.computeIfAbsent(route,
+						key -> new Semaphore(delegate.getMaxPerRoute(key), true));
+				acquire(permits, deadline);
+				try {
+					acquire(totalPermits, deadline);
+				} catch (InterruptedException | ConnectionPoolTimeoutException e) {
+					permits.release();
+					throw e;
+				}
+				try {
+					request = delegate.requestConnection(route, state);
+					if (cancelled) {
+						request.cancel();
+					}
+					long remaining = deadline == 0 ? 0 : Math.max(1, deadline - System.nanoTime());
+					HttpClientConnection connection = request.get(remaining, TimeUnit.NANOSECONDS);
+					leased.put(connection, permits);
+					return connection;
+				} catch (InterruptedException | ExecutionException | ConnectionPoolTimeoutException | RuntimeException e) {
+					permits.release();
+					totalPermits.release();
+					throw e;
+				}
+			}
+
+			@Override
+			public boolean cancel() {
+				cancelled = true;
+				ConnectionRequest current = request;
+				return current == null || current.cancel();
+			}
+		};
+	}
+
+	private static void acquire(Semaphore permits, long deadline)
+			throws InterruptedException, ConnectionPoolTimeoutException {
+		if (deadline == 0) {
+			permits.acquire();
+		} else if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+			throw new ConnectionPoolTimeoutException("Timeout waiting for connection from pool");
+		}
+	}
+
+	@Override
+	public void releaseConnection(HttpClientConnection conn, Object newState, long validDuration, TimeUnit timeUnit) {
+		try {
+			delegate.releaseConnection(conn, newState, validDuration, timeUnit);
+		} finally {
+			Semaphore permits = leased.remove(conn);
+			if (permits != null) {
+				permits.release();
+				totalPermits.release();
+			}
+		}
+	}
+
+	@Override
+	public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout, HttpContext context)
+			throws IOException {
+		delegate.connect(conn, route, connectTimeout, context);
+	}
+
+	@Override
+	public void upgrade(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+		delegate.upgrade(conn, route, context);
+	}
+
+	@Override
+	public void routeComplete(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+		delegate.routeComplete(conn, route, context);
+	}
+
+	@Override
+	public void closeIdleConnections(long idletime, TimeUnit timeUnit) {
+		delegate.closeIdleConnections(idletime, timeUnit);
+	}
+
+	@Override
+	public void closeExpiredConnections() {
+		delegate.closeExpiredConnections();
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+}
@@ -0,0 +1,79 @@
+package http.client;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ *
+ * Strategy that chooses the endpoint of every request when a client has
+ * several base URLs (see {@link HttpClientProperties#LOAD_BALANCER}).
+ * Implementations are called concurrently and must be thread-safe; custom
+ * implementations configured by class name need a public no-argument
+ * constructor.
+ *
+ */
+public interface LoadBalancer {
+
+	/**
+	 * @param endpoints
+	 *            The endpoints that are not ejected; never empty.
+	 * @return the endpoint the next request is sent to.
+	 */
+	Endpoint select(List<Endpoint> endpoints);
+
+	/**
+	 * @return a balancer that takes the endpoints in turn.
+	 */
+	static LoadBalancer roundRobin() {
+		AtomicInteger next = new AtomicInteger();
+		return endpoints -> endpoints.get((next.getAndIncrement() & Integer.MAX_VALUE) % endpoints.size());
+	}
+
+	/**
+	 * @return a balancer that picks the endpoint with the fewest requests in
+	 *         flight, starting its search at a random endpoint so that ties
+	 *         are spread.
+	 */
+	static LoadBalancer leastOutstanding() {
+		return endpoints -> {
+			int size = endpoints.size();
+			int start = size == 1 ? 0 : ThreadLocalRandom.current().nextInt(size);
+			Endpoint best = null;
+			for (int i = 0; i < size; i++) {
+				Endpoint endpoint = endpoints.get((start + i) % size);
+				if (best == null || endpoint.getOutstanding() < best.getOutstanding()) {
+					best = endpoint;
+				}
+			}
+			return best;
+		};
+	}
+
+	/**
+	 * @return a balancer that compares two random endpoints and picks the one
+	 *         with the lower cost, its latency moving average weighted by
+	 *         the requests in flight (power of two choices). Endpoints
+	 *         without latency yet cost nothing and get tried first.
+	 */
+	static LoadBalancer powerOfTwoChoices() {
+		return endpoints -> {
+			int size = endpoints.size();
+			if (size == 1) {
+				return endpoints.get(0);
+			}
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int first = random.nextInt(size);
+			int second = random.nextInt(size - 1);
+			if (second >= first) {
+				second++;
+			}
+			Endpoint a = endpoints.get(first);
+			Endpoint b = endpoints.get(second);
+			double costA = a.getLatencyEwma() * (a.getOutstanding() + 1);
+			double costB = b.getLatencyEwma() * (b.getOutstanding() + 1);
+			return costA <= costB ? a : b;
+		};
+	}
+}
@@ -0,0 +1,230 @@
+package http.client;
+
+import static http.client.HttpClientProperties.DEFAULT_LOAD_BALANCER;
+import static http.client.HttpClientProperties.DEFAULT_LOAD_BALANCER_EJECT_DURATION;
+import static http.client.HttpClientProperties.DEFAULT_LOAD_BALANCER_EJECT_FAILURES;
+import static http.client.HttpClientProperties.LOAD_BALANCER;
+import static http.client.HttpClientProperties.LOAD_BALANCER_EJECT_DURATION;
+import static http.client.HttpClientProperties.LOAD_BALANCER_EJECT_FAILURES;
+import static http.client.HttpClientProperties.getInt;
+import static http.client.HttpClientProperties.getLong;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ *
+ * {@link RequestInvoker} decorator that spreads requests across several base
+ * URLs. The client resolves every request against the first base URL; this
+ * invoker replaces that base URL with the endpoint chosen by the
+ * {@link LoadBalancer} and records the outcome of the request on it. I/O
+ * failures, circuit breaker rejections and 5xx responses count as failures
+ * for the passive health of the endpoint. When every endpoint is ejected the
+ * requests are spread across all of them.
+ *
+ */
+public class LoadBalancingRequestInvoker extends ForwardingRequestInvoker {
+	private static final Logger LOGGER = LoggerFactory.getLogger(LoadBalancingRequestInvoker.class);
+
+	private final URI primaryBaseUrl;
+	private final List<Endpoint> endpoints;
+	private final LoadBalancer balancer;
+	private final long ejectDuration;
+
+	/**
+	 * @param baseUrls
+	 *            The base URLs; requests are expected to be resolved against
+	 *            the first one.
+	 * @param ejectFailures
+	 *            The number of consecutive failures that eject an endpoint;
+	 *            0 disables ejection.
+	 * @param ejectDuration
+	 *            The time an endpoint stays ejected, in milliseconds.
+	 */
+	public LoadBalancingRequestInvoker(RequestInvoker delegate, List<String> baseUrls, LoadBalancer balancer,
+			int ejectFailures, long ejectDuration) {
+		super(delegate);
+		if (baseUrls.isEmpty()) {
+			throw new IllegalArgumentException("At least one base URL is required");
+		}
+		List<Endpoint> list = new ArrayList<>(baseUrls.size());
+		for (String baseUrl : baseUrls) {
+			list.add(new Endpoint(baseUrl, ejectFailures, ejectDuration));
+		}
+		this.primaryBaseUrl = URI.create(baseUrls.get(0));
+		this.endpoints = Collections.unmodifiableList(list);
+		this.balancer = balancer;
+		this.ejectDuration = ejectDuration;
+	}
+
+	/**
+	 * Creates an invoker for the base URLs of {@link HttpClientProperties#BASE_URL}
+	 * configured from the load.balancer.* connection parameters.
+	 */
+	public LoadBalancingRequestInvoker(RequestInvoker delegate, Properties connectionParameters) {
+		this(delegate, BaseHttpClient.getBaseURLs(connectionParameters),
+				createBalancer(connectionParameters.getProperty(LOAD_BALANCER, DEFAULT_LOAD_BALANCER).trim()),
+				getInt(connectionParameters, LOAD_BALANCER_EJECT_FAILURES, DEFAULT_LOAD_BALANCER_EJECT_FAILURES),
+				getLong(connectionParameters, LOAD_BALANCER_EJECT_DURATION, DEFAULT_LOAD_BALANCER_EJECT_DURATION));
+	}
+
+	@Override
+	public Response doGet(URI url, Map<String, String> headers) {
+		return execute(url, target -> delegate.doGet(target, headers));
+	}
+
+	@Override
+	public Response doGetStream(URI url, Map<String, String> headers) {
+		return execute(url, target -> delegate.doGetStream(target, headers));
+	}
+
+	@Override
+	public Response doPut(URI url, String payload, Map<String, String> headers) {
+		return execute(url, target -> delegate.doPut(target, payload, headers));
+	}
+
+	@Override
+	public Response doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		return execute(url, target -> delegate.doPut(target, payload, headers));
+	}
+
+	@Override
+	public Response doDelete(URI url, Map<String, String> headers) {
+		return execute(url, target -> delegate.doDelete(target, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, String payload, Map<String, String> headers) {
+		return execute(url, target -> delegate.doPost(target, payload, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, byte[] payload, Map<String, String> headers) {
+		return execute(url, target -> delegate.doPost(target, payload, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, RequestBody payload, Map<String, String> headers) {
+		return execute(url, target -> delegate.doPost(target, payload, headers));
+	}
+
+	/**
+	 * @return the endpoints, in the order of the base URLs.
+	 */
+	public List<Endpoint> getEndpoints() {
+		return endpoints;
+	}
+
+	private Response execute(URI url, Function<URI, Response> call) {
+		String relative = getRelativeReference(url);
+		if (relative == null) {
+			return call.apply(url);
+		}
+		Endpoint endpoint = select();
+		URI target = endpoint == endpoints.get(0) ? url : URI.create(endpoint.getBaseUrl() + relative);
+		endpoint.onStart();
+		long start = System.nanoTime();
+		Response response;
+		try {
+			response = call.apply(target);
+		} catch (RequestRejectedException e) {
+			onComplete(endpoint, e.getReason() == RequestRejectedException.Reason.CIRCUIT_OPEN, start);
+			throw e;
+		} catch (RuntimeException | Error e) {
+			if (RequestCancellation.isCurrentExpired()) {
+				onComplete(endpoint, false, start);
+			} else if (RequestCancellation.isCurrentCancelled()) {
+				endpoint.onCancelled();
+			} else {
+				onComplete(endpoint, true, start);
+			}
+			throw e;
+		}
+		onComplete(endpoint, response.getStatusCode() >= 500, start);
+		return response;
+	}
+
+	/**
+	 * @return the part of the URL that follows the primary base URL, or
+	 *         <code>null</code> if the URL is not below it. The scheme and
+	 *         authority are compared whole, so that a base URL on port 80 does
+	 *         not match a URL on port 8080.
+	 */
+	private String getRelativeReference(URI url) {
+		String basePath = primaryBaseUrl.getRawPath();
+		String path = url.getRawPath();
+		if (!equalsIgnoreCase(primaryBaseUrl.getScheme(), url.getScheme())
+				|| !equalsIgnoreCase(primaryBaseUrl.getRawAuthority(), url.getRawAuthority())
+				|| path == null || basePath == null || !path.startsWith(basePath)) {
+			return null;
+		}
+		StringBuilder relative = new StringBuilder().append(path, basePath.length(), path.length());
+		if (url.getRawQuery() != null) {
+			relative.append('?').append(url.getRawQuery());
+		}
+		if (url.getRawFragment() != null) {
+			relative.append('#').append(url.getRawFragment());
+		}
+		return relative.toString();
+	}
+
+	private static boolean equalsIgnoreCase(String a, String b) {
+		return a == null ? b == null : a.equalsIgnoreCase(b);
+	}
+
+	private Endpoint select() {
+		long now = System.nanoTime();
+		List<Endpoint> available = endpoints;
+		for (int i = 0; i < endpoints.size(); i++) {
+			if (endpoints.get(i).isEjected(now)) {
+				available = healthy(now);
+				break;
+			}
+		}
+		return balancer.select(available.isEmpty() ? endpoints : available);
+	}
+
+	private List<Endpoint> healthy(long now) {
+		List<Endpoint> healthy = new ArrayList<>(endpoints.size());
+		for (Endpoint endpoint : endpoints) {
+			if (!endpoint.isEjected(now)) {
+				healthy.add(endpoint);
+			}
+		}
+		return healthy;
+	}
+
+	private void onComplete(Endpoint endpoint, boolean failed, long start) {
+		if (endpoint.onComplete(failed, System.nanoTime() - start)) {
+			LOGGER.warn("Ejected endpoint {} for {} ms after consecutive failures", endpoint.getBaseUrl(),
+					ejectDuration);
+		}
+	}
+
+	static LoadBalancer createBalancer(String name) {
+		switch (name.toLowerCase(Locale.ROOT)) {
+		case "round_robin":
+			return LoadBalancer.roundRobin();
+		case "least_outstanding":
+			return LoadBalancer.leastOutstanding();
+		case "p2c":
+			return LoadBalancer.powerOfTwoChoices();
+		default:
+			try {
+				return Class.forName(name).asSubclass(LoadBalancer.class).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | ClassCastException e) {
+				throw new IllegalArgumentException("Invalid value for " + LOAD_BALANCER + ": " + name, e);
+			}
+		}
+	}
+}
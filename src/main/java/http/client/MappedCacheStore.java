@@ -0,0 +1,150 @@
+package http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * 
+ * Second-level store of {@link ResponseCache} backed by a memory-mapped file
+ * used as a ring buffer: entries evicted from memory are appended to the file
+ * and overwrite the oldest entries once it is full. The index is kept in
+ * memory, so the file is scratch space and is deleted on close.
+ * 
+ */
+class MappedCacheStore implements Closeable {
+	private final Path file;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final Map<String, int[]> index = new HashMap<>();
+	private final TreeMap<Integer, String> keysByOffset = new TreeMap<>();
+	private final ReentrantLock lock = new ReentrantLock();
+	private int writePosition;
+	private static final Logger LOGGER = LoggerFactory.getLogger(MappedCacheStore.class);
+
+	MappedCacheStore(Path file, int capacity) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+	}
+
+	void put(String key, CacheEntry entry) {
+		byte[] record;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			entry.writeTo(new DataOutputStream(bytes));
+			record = bytes.toByteArray();
+		} catch (IOException e) {
+			LOGGER.warn("Failed to serialize cache entry for {}", key, e);
+			invalidate(key);
+			return;
+		}
+		lock.lock();
+		try {
+			invalidate(key);
+			if (record.length > buffer.capacity()) {
+				return;
+			}
+			if (writePosition + record.length > buffer.capacity()) {
+				writePosition = 0;
+			}
+			evictRange(writePosition, writePosition + record.length);
+			ByteBuffer target = buffer.duplicate();
+			target.position(writePosition);
+			target.put(record);
+			index.put(key, new int[] { writePosition, record.length });
+			keysByOffset.put(writePosition, key);
+			writePosition += record.length;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the entry of the given key, which is removed from this store, or
+	 *         <code>null</code> if there is none.
+	 */
+	CacheEntry remove(String key) {
+		byte[] record;
+		lock.lock();
+		try {
+			int[] location = index.remove(key);
+			if (location == null) {
+				return null;
+			}
+			keysByOffset.remove(location[0]);
+			record = new byte[location[1]];
+			ByteBuffer source = buffer.duplicate();
+			source.position(location[0]);
+			source.get(record);
+		} finally {
+			lock.unlock();
+		}
+		try {
+			return CacheEntry.readFrom(new DataInputStream(new ByteArrayInputStream(record)));
+		} catch (IOException e) {
+			LOGGER.warn("Failed to read cache entry for {}", key, e);
+			return null;
+		}
+	}
+
+	void invalidate(String key) {
+		lock.lock();
+		try {
+			int[] location = index.remove(key);
+			if (location != null) {
+				keysByOffset.remove(location[0]);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void evictRange(int start, int end) {
+		Map.Entry<Integer, String> previous = keysByOffset.lowerEntry(start);
+		if (previous != null) {
+			int[] location = index.get(previous.getValue());
+			if (location[0] + location[1] > start) {
+				index.remove(previous.getValue());
+				keysByOffset.remove(previous.getKey());
+			}
+		}
+		Iterator<String> overlapping = keysByOffset.subMap(start, end).values().iterator();
+		while (overlapping.hasNext()) {
+			index.remove(overlapping.next());
+			overlapping.remove();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			index.clear();
+			keysByOffset.clear();
+			channel.close();
+			Files.deleteIfExists(file);
+		} finally {
+			lock.unlock();
+		}
+	}
+}
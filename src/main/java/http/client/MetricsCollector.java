@@ -0,0 +1,209 @@
+package http.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * 
+ * {@link RequestMetricsListener} that aggregates the metrics of every host and
+ * method into {@link LatencyHistogram}s, status code counters and byte
+ * counters, ready to be exported to a metrics system. It can be chained to
+ * another listener.
+ * 
+ */
+public class MetricsCollector implements RequestMetricsListener {
+	private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+	private final RequestMetricsListener next;
+
+	public MetricsCollector() {
+		this(null);
+	}
+
+	/**
+	 * @param next
+	 *            A listener that also receives every request metrics; may be
+	 *            <code>null</code>.
+	 */
+	public MetricsCollector(RequestMetricsListener next) {
+		this.next = next;
+	}
+
+	@Override
+	public void onRequestCompleted(RequestMetrics metrics) {
+		String key = metrics.getHost() + ' ' + metrics.getMethod();
+		EndpointMetrics endpoint = endpoints.get(key);
+		if (endpoint == null) {
+			endpoint = endpoints.computeIfAbsent(key,
+					k -> new EndpointMetrics(metrics.getHost(), metrics.getMethod()));
+		}
+		endpoint.record(metrics);
+		if (next != null) {
+			next.onRequestCompleted(metrics);
+		}
+	}
+
+	/**
+	 * @return the metrics of the given host and method, or <code>null</code>
+	 *         if no such request was made.
+	 */
+	public EndpointMetrics getEndpoint(String host, String method) {
+		return endpoints.get(host + ' ' + method);
+	}
+
+	/**
+	 * @return the metrics of every host and method seen so far.
+	 */
+	public Collection<EndpointMetrics> getEndpoints() {
+		List<EndpointMetrics> result = new ArrayList<>(endpoints.values());
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Metrics of the requests with the same host and method.
+	 */
+	public static final class EndpointMetrics {
+		private final String host;
+		private final String method;
+		private final LatencyHistogram leaseTime = new LatencyHistogram();
+		private final LatencyHistogram connectTime = new LatencyHistogram();
+		private final LatencyHistogram tlsTime = new LatencyHistogram();
+		private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+		private final LatencyHistogram bodyReadTime = new LatencyHistogram();
+		private final LatencyHistogram totalTime = new LatencyHistogram();
+		private final AtomicLongArray statusCounts = new AtomicLongArray(600);
+		private final LongAdder failures = new LongAdder();
+		private final LongAdder tlsHandshakes = new LongAdder();
+		private final LongAdder tlsResumptions = new LongAdder();
+		private final LongAdder bytesSent = new LongAdder();
+		private final LongAdder bytesReceived = new LongAdder();
+
+		EndpointMetrics(String host, String method) {
+			this.host = host;
+			this.method = method;
+		}
+
+		void record(RequestMetrics metrics) {
+			leaseTime.record(metrics.getLeaseTime());
+			connectTime.record(metrics.getConnectTime());
+			tlsTime.record(metrics.getTlsTime());
+			timeToFirstByte.record(metrics.getTimeToFirstByte());
+			bodyReadTime.record(metrics.getBodyReadTime());
+			totalTime.record(metrics.getTotalTime());
+			int status = metrics.getStatusCode();
+			if (metrics.getFailure() != null) {
+				failures.increment();
+			} else if (status > 0 && status < statusCounts.length()) {
+				statusCounts.incrementAndGet(status);
+			}
+			if (metrics.getTlsTime() >= 0) {
+				tlsHandshakes.increment();
+				if (metrics.isTlsResumed()) {
+					tlsResumptions.increment();
+				}
+			}
+			bytesSent.add(metrics.getBytesSent());
+			bytesReceived.add(metrics.getBytesReceived());
+		}
+
+		public String getHost() {
+			return host;
+		}
+
+		public String getMethod() {
+			return method;
+		}
+
+		/**
+		 * @return the time spent waiting for a pooled connection.
+		 */
+		public LatencyHistogram getLeaseTime() {
+			return leaseTime;
+		}
+
+		public LatencyHistogram getConnectTime() {
+			return connectTime;
+		}
+
+		public LatencyHistogram getTlsTime() {
+			return tlsTime;
+		}
+
+		public LatencyHistogram getTimeToFirstByte() {
+			return timeToFirstByte;
+		}
+
+		public LatencyHistogram getBodyReadTime() {
+			return bodyReadTime;
+		}
+
+		public LatencyHistogram getTotalTime() {
+			return totalTime;
+		}
+
+		/**
+		 * @return the number of responses of every status code received.
+		 */
+		public Map<Integer, Long> getStatusCounts() {
+			Map<Integer, Long> result = new TreeMap<>();
+			for (int status = 0; status < statusCounts.length(); status++) {
+				long value = statusCounts.get(status);
+				if (value > 0) {
+					result.put(status, value);
+				}
+			}
+			return Collections.unmodifiableMap(result);
+		}
+
+		/**
+		 * @return the number of requests that failed without a response.
+		 */
+		public long getFailureCount() {
+			return failures.sum();
+		}
+
+		/**
+		 * @return the number of TLS handshakes done by the requests.
+		 */
+		public long getTlsHandshakeCount() {
+			return tlsHandshakes.sum();
+		}
+
+		/**
+		 * @return the number of TLS handshakes that resumed a cached session.
+		 */
+		public long getTlsResumedCount() {
+			return tlsResumptions.sum();
+		}
+
+		/**
+		 * @return the ratio of TLS handshakes that resumed a cached session,
+		 *         0 without handshakes.
+		 */
+		public double getTlsResumptionRate() {
+			long count = tlsHandshakes.sum();
+			return count == 0 ? 0 : tlsResumptions.sum() / (double) count;
+		}
+
+		public long getBytesSent() {
+			return bytesSent.sum();
+		}
+
+		public long getBytesReceived() {
+			return bytesReceived.sum();
+		}
+
+		@Override
+		public String toString() {
+			return method + " " + host + " " + getStatusCounts() + " total[" + totalTime + "]";
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package http.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * 
+ * Response body held in a list of {@link ByteBuffer}s borrowed from a
+ * {@link ByteBufferPool}. The body is read into the buffers once, in place,
+ * and can then be written to a channel or stream without further copies. The
+ * buffers go back to the pool on {@link #release()}; the body must not be
+ * used afterwards.
+ * 
+ */
+public final class PooledBody implements Closeable {
+	private final List<ByteBuffer> buffers;
+	private final long length;
+	private final ByteBufferPool pool;
+	private boolean released;
+
+	private PooledBody(List<ByteBuffer> buffers, long length, ByteBufferPool pool) {
+		this.buffers = buffers;
+		this.length = length;
+		this.pool = pool;
+	}
+
+	/**
+	 * Reads the whole stream into buffers of the pool. The stream is not
+	 * closed.
+	 */
+	static PooledBody read(InputStream in, ByteBufferPool pool) throws IOException {
+		List<ByteBuffer> buffers = new ArrayList<>();
+		ReadableByteChannel channel = pool.isDirect() ? Channels.newChannel(in) : null;
+		long length = 0;
+		try {
+			while (true) {
+				ByteBuffer buffer = pool.acquire();
+				buffers.add(buffer);
+				int count = 0;
+				while (buffer.hasRemaining()) {
+					count = channel != null ? channel.read(buffer)
+							: in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+					if (count < 0) {
+						break;
+					}
+					if (channel == null) {
+						buffer.position(buffer.position() + count);
+					}
+				}
+				buffer.flip();
+				length += buffer.remaining();
+				if (count < 0) {
+					if (!buffer.hasRemaining()) {
+						buffers.remove(buffers.size() - 1);
+						pool.release(buffer);
+					}
+					return new PooledBody(buffers, length, pool);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			for (ByteBuffer buffer : buffers) {
+				pool.release(buffer);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @return a body that wraps the given bytes without copying; releasing it
+	 *         has no effect.
+	 */
+	static PooledBody wrap(byte[] bytes) {
+		if (bytes == null || bytes.length == 0) {
+			return new PooledBody(Collections.<ByteBuffer> emptyList(), 0, null);
+		}
+		return new PooledBody(Collections.singletonList(ByteBuffer.wrap(bytes)), bytes.length, null);
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return read-only views of the buffers, positioned at the start of the
+	 *         content. The views share the content of the pooled buffers.
+	 */
+	public List<ByteBuffer> getBuffers() {
+		checkNotReleased();
+		List<ByteBuffer> views = new ArrayList<>(buffers.size());
+		for (ByteBuffer buffer : buffers) {
+			views.add(buffer.asReadOnlyBuffer());
+		}
+		return Collections.unmodifiableList(views);
+	}
+
+	/**
+	 * Writes the body to the channel, using a gathering write when the channel
+	 * supports it.
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		ByteBuffer[] views = getBuffers().toArray(new ByteBuffer[0]);
+		if (channel instanceof GatheringByteChannel) {
+			GatheringByteChannel gathering = (GatheringByteChannel) channel;
+			long remaining = length;
+			while (remaining > 0) {
+				remaining -= gathering.write(views);
+			}
+			return;
+		}
+		for (ByteBuffer view : views) {
+			while (view.hasRemaining()) {
+				channel.write(view);
+			}
+		}
+	}
+
+	public void writeTo(OutputStream out) throws IOException {
+		checkNotReleased();
+		for (ByteBuffer buffer : buffers) {
+			if (buffer.hasArray()) {
+				out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			} else {
+				writeTo(Channels.newChannel(out));
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return a copy of the body.
+	 */
+	public byte[] toByteArray() {
+		checkNotReleased();
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Body too large for a byte array: " + length);
+		}
+		byte[] bytes = new byte[(int) length];
+		int offset = 0;
+		for (ByteBuffer buffer : buffers) {
+			ByteBuffer view = buffer.duplicate();
+			int count = view.remaining();
+			view.get(bytes, offset, count);
+			offset += count;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the buffers to the pool. Calling it more than once has no
+	 * effect.
+	 */
+	public synchronized void release() {
+		if (released) {
+			return;
+		}
+		released = true;
+		if (pool != null) {
+			for (ByteBuffer buffer : buffers) {
+				pool.release(buffer);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		release();
+	}
+
+	private synchronized void checkNotReleased() {
+		if (released) {
+			throw new IllegalStateException("The body has been released");
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package http.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * 
+ * Request payload that is written to the connection as it is sent rather than
+ * being loaded into memory first. Bodies of unknown length are sent with
+ * chunked transfer encoding.
+ * 
+ */
+public abstract class RequestBody {
+	private static final int BUFFER_SIZE = 8192;
+
+	RequestBody() {
+	}
+
+	/**
+	 * @return the number of bytes of the body, or a negative number if unknown.
+	 */
+	public abstract long getContentLength();
+
+	/**
+	 * @return <code>true</code> if the body can be written more than once.
+	 */
+	public abstract boolean isRepeatable();
+
+	/**
+	 * Writes the body to the given stream.
+	 * 
+	 * @param out
+	 *            The connection output stream.
+	 * @throws IOException
+	 */
+	public abstract void writeTo(OutputStream out) throws IOException;
+
+	/**
+	 * @return the body as a stream, for transports that pull the content.
+	 * @throws IOException
+	 */
+	InputStream getContent() throws IOException {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " can only be written");
+	}
+
+	/**
+	 * @return the body loaded into memory, for transports that cannot stream
+	 *         it.
+	 * @throws IOException
+	 */
+	byte[] toByteArray() throws IOException {
+		long length = getContentLength();
+		ByteArrayOutputStream content = new ByteArrayOutputStream(
+				length > 0 && length < Integer.MAX_VALUE ? (int) length : BUFFER_SIZE);
+		writeTo(content);
+		return content.toByteArray();
+	}
+
+	/**
+	 * Creates a body of unknown length that is read from the given stream. The
+	 * stream is closed once the body has been written.
+	 */
+	public static RequestBody of(InputStream in) {
+		return of(in, -1);
+	}
+
+	/**
+	 * Creates a body of the given length that is read from the given stream.
+	 * The stream is closed once the body has been written; writing fails if it
+	 * ends before the given length.
+	 */
+	public static RequestBody of(InputStream in, long length) {
+		return new InputStreamBody(in, length);
+	}
+
+	public static RequestBody of(File file) {
+		return of(file.toPath());
+	}
+
+	/**
+	 * Creates a body that is transferred from the given file through its
+	 * {@link FileChannel}, without copying the file into the heap.
+	 */
+	public static RequestBody of(Path path) {
+		return new FileBody(path);
+	}
+
+	public static RequestBody of(BodyWriter writer) {
+		return new WriterBody(writer);
+	}
+
+	static final class InputStreamBody extends RequestBody {
+		private final InputStream in;
+		private final long length;
+
+		InputStreamBody(InputStream in, long length) {
+			this.in = in;
+			this.length = length;
+		}
+
+		@Override
+		public long getContentLength() {
+			return length;
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return false;
+		}
+
+		@Override
+		InputStream getContent() {
+			return in;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			try (InputStream content = in) {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				long remaining = length;
+				int read;
+				while (remaining != 0 && (read = content.read(buffer, 0,
+						remaining < 0 ? BUFFER_SIZE : (int) Math.min(BUFFER_SIZE, remaining))) != -1) {
+					out.write(buffer, 0, read);
+					if (remaining > 0) {
+						remaining -= read;
+					}
+				}
+				if (remaining > 0) {
+					// the request declared a Content-Length it cannot honour
+					throw new IOException("Stream ended after " + (length - remaining) + " of " + length + " bytes");
+				}
+			}
+		}
+	}
+
+	static final class FileBody extends RequestBody {
+		private final Path path;
+
+		FileBody(Path path) {
+			this.path = path;
+		}
+
+		Path getPath() {
+			return path;
+		}
+
+		@Override
+		public long getContentLength() {
+			try {
+				return Files.size(path);
+			} catch (IOException e) {
+				return -1;
+			}
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return true;
+		}
+
+		@Override
+		InputStream getContent() throws IOException {
+			return Files.newInputStream(path);
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				WritableByteChannel target = Channels.newChannel(out);
+				long size = channel.size();
+				long position = 0;
+				while (position < size) {
+					long transferred = channel.transferTo(position, size - position, target);
+					if (transferred == 0) {
+						// the file was truncated while it was being sent
+						throw new IOException("Sent " + position + " of " + size + " bytes of " + path);
+					}
+					position += transferred;
+				}
+			}
+		}
+	}
+
+	static final class WriterBody extends RequestBody {
+		private final BodyWriter writer;
+
+		WriterBody(BodyWriter writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return true;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			writer.writeTo(out);
+		}
+	}
+}
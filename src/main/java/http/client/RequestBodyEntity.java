@@ -0,0 +1,49 @@
+package http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+
+/**
+ * 
+ * Adapts a {@link RequestBody} to an HTTP entity that is written straight to
+ * the connection.
+ * 
+ */
+class RequestBodyEntity extends AbstractHttpEntity {
+	private final RequestBody body;
+
+	RequestBodyEntity(RequestBody body) {
+		this.body = body;
+		setChunked(body.getContentLength() < 0);
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return body.isRepeatable();
+	}
+
+	@Override
+	public long getContentLength() {
+		return body.getContentLength();
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+		return body.getContent();
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		body.writeTo(out);
+		out.flush();
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return !body.isRepeatable();
+	}
+}
@@ -0,0 +1,207 @@
+package http.client;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ *
+ * Cancellation of the request executed by a thread. A caller that may need to
+ * abort a request binds a cancellation to the thread that executes it, and
+ * the transports register with it how to abort the request in flight (e.g.
+ * {@link org.apache.http.client.methods.HttpUriRequest#abort()}). Aborting
+ * releases the connection of the request and makes the executing thread fail
+ * with an {@link HttpClientException}.
+ * <p>
+ * A cancellation may also carry the deadline and the timeouts of the
+ * requests (see {@link RequestScope}). A child cancellation, e.g. of one
+ * attempt of a hedged request, inherits them and is cancelled with its
+ * parent.
+ *
+ */
+final class RequestCancellation {
+	private static final ThreadLocal<RequestCancellation> CURRENT = new ThreadLocal<>();
+
+	private final RequestCancellation parent;
+	private final AtomicReference<Runnable> abort = new AtomicReference<>();
+	private final List<RequestCancellation> children = new CopyOnWriteArrayList<>();
+	private volatile boolean cancelled;
+	private volatile boolean expired;
+
+	volatile boolean hasDeadline;
+	volatile long deadline;
+	volatile int connectTimeout = -1;
+	volatile int leaseTimeout = -1;
+	volatile int readTimeout = -1;
+
+	RequestCancellation() {
+		this(null);
+	}
+
+	/**
+	 * Creates a cancellation that inherits the deadline and the timeouts of
+	 * the given parent and is cancelled with it.
+	 *
+	 * @param parent
+	 *            May be <code>null</code>.
+	 */
+	RequestCancellation(RequestCancellation parent) {
+		this.parent = parent;
+		if (parent != null) {
+			hasDeadline = parent.hasDeadline;
+			deadline = parent.deadline;
+			connectTimeout = parent.connectTimeout;
+			leaseTimeout = parent.leaseTimeout;
+			readTimeout = parent.readTimeout;
+			parent.children.add(this);
+			if (parent.cancelled) {
+				cancel(parent.expired);
+			}
+		}
+	}
+
+	/**
+	 * @return the cancellation bound to the current thread, or
+	 *         <code>null</code>.
+	 */
+	static RequestCancellation current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * @return <code>true</code> if the request of the current thread was
+	 *         cancelled, in which case its failure tells nothing about the
+	 *         destination.
+	 */
+	static boolean isCurrentCancelled() {
+		RequestCancellation current = CURRENT.get();
+		return current != null && current.isCancelled();
+	}
+
+	/**
+	 * @return <code>true</code> if the deadline of the request of the current
+	 *         thread has passed. The destination did not fail, but it did not
+	 *         respond within the time the request lasted either.
+	 */
+	static boolean isCurrentExpired() {
+		RequestCancellation current = CURRENT.get();
+		return current != null && current.isExpired();
+	}
+
+	/**
+	 * @return the time left before the deadline of the current thread, in
+	 *         nanoseconds; {@link Long#MAX_VALUE} without deadline.
+	 */
+	static long remainingNanos() {
+		RequestCancellation current = CURRENT.get();
+		return current == null ? Long.MAX_VALUE : current.getRemainingNanos();
+	}
+
+	/**
+	 * @return the given wait, in milliseconds, shortened to the time left
+	 *         before the deadline of the current thread.
+	 */
+	static long boundWait(long maxWait) {
+		long remaining = remainingNanos();
+		if (remaining == Long.MAX_VALUE) {
+			return maxWait;
+		}
+		return Math.max(0, Math.min(maxWait, TimeUnit.NANOSECONDS.toMillis(remaining)));
+	}
+
+	/**
+	 * Binds this cancellation to the current thread.
+	 *
+	 * @return the cancellation bound before, to restore with
+	 *         {@link #restore(RequestCancellation)}.
+	 */
+	RequestCancellation bind() {
+		RequestCancellation previous = CURRENT.get();
+		CURRENT.set(this);
+		return previous;
+	}
+
+	static void restore(RequestCancellation previous) {
+		if (previous == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * Stops the parent from cancelling this cancellation once its request is
+	 * over.
+	 */
+	void detach() {
+		if (parent != null) {
+			parent.children.remove(this);
+		}
+	}
+
+	/**
+	 * Registers how to abort the request in flight, replacing the request
+	 * registered before. The action runs at once if this cancellation is
+	 * already cancelled.
+	 */
+	void onCancel(Runnable action) {
+		abort.set(action);
+		if (cancelled && abort.compareAndSet(action, null)) {
+			action.run();
+		}
+	}
+
+	/**
+	 * Aborts the request in flight, if any, and every request registered
+	 * afterwards.
+	 */
+	void cancel() {
+		cancel(false);
+	}
+
+	/**
+	 * Cancels the requests because their deadline has passed.
+	 */
+	void expire() {
+		cancel(true);
+	}
+
+	private void cancel(boolean expired) {
+		if (expired) {
+			this.expired = true;
+		}
+		cancelled = true;
+		Runnable action = abort.getAndSet(null);
+		if (action != null) {
+			action.run();
+		}
+		for (RequestCancellation child : children) {
+			child.cancel(expired);
+		}
+	}
+
+	boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return <code>true</code> if the requests were cancelled by their
+	 *         deadline.
+	 */
+	boolean isExpired() {
+		return expired || (hasDeadline && deadline - System.nanoTime() <= 0);
+	}
+
+	long getRemainingNanos() {
+		return hasDeadline ? deadline - System.nanoTime() : Long.MAX_VALUE;
+	}
+
+	/**
+	 * @return the message of a request that failed because it was cancelled.
+	 */
+	String describe(Object url) {
+		return isExpired() ? "Request to " + url + " exceeded its deadline" : "Request to " + url + " was cancelled";
+	}
+}
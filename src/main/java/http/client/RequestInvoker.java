@@ -1,13 +1,19 @@
 package http.client;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 
 /**
  * 
  * 
- * Represents request invoker for {@link HttpClientImpl}.
+ * Represents request invoker for {@link HttpClientImpl}. The methods added
+ * since the first version have default implementations based on the
+ * original ones, so that existing invokers keep working.
  * 
  * @author elad.avraham@hp.com
  * 
@@ -25,6 +31,23 @@ public interface RequestInvoker {
 	 */
 	Response doGet(URI url, Map<String, String> headers);
 
+	/**
+	 * 
+	 * Sends a Get request to the specified URI using the given headers and
+	 * returns a streamed response that reads its content directly from the
+	 * connection. The response must be closed by the caller. By default the
+	 * response of {@link #doGet(URI, Map)} is returned.
+	 * 
+	 * @param url
+	 *            The resource relative URI.
+	 * @param headers
+	 *            The headers to use in the request.
+	 * @return The streamed request result.
+	 */
+	default Response doGetStream(URI url, Map<String, String> headers) {
+		return doGet(url, headers);
+	}
+
 	/**
 	 * Sends a Put request to the specified URI using the given headers.
 	 * 
@@ -38,6 +61,36 @@ public interface RequestInvoker {
 	 */
 	Response doPut(URI url, String payload, Map<String, String> headers);
 
+	/**
+	 * Sends a Put request to the specified URI using the given headers. The
+	 * payload is streamed to the connection. By default the payload is loaded
+	 * and sent by {@link #doPut(URI, String, Map)}, which requires it to be
+	 * UTF-8 text.
+	 * 
+	 * @param url
+	 *            The resource relative URI.
+	 * @param payload
+	 *            The payload to put.
+	 * @param headers
+	 *            The headers to use in the request.
+	 * @return The request result.
+	 * @throws UnsupportedOperationException
+	 *             if the invoker does not implement this method and the
+	 *             payload is not UTF-8 text.
+	 */
+	default Response doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		String text;
+		try {
+			text = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(payload.toByteArray())).toString();
+		} catch (CharacterCodingException e) {
+			throw new UnsupportedOperationException(
+					getClass().getName() + " cannot put binary bodies, it does not implement doPut(RequestBody)", e);
+		} catch (IOException e) {
+			throw new HttpClientException(e, "Failed to read request body for: " + url, url.toString());
+		}
+		return doPut(url, text, headers);
+	}
+
 	/**
 	 * 
 	 * Sends a Delete request to the specified URI using the given headers.
@@ -77,4 +130,28 @@ public interface RequestInvoker {
 	 * @return The request result.
 	 */
 	Response doPost(URI url, byte[] payload, Map<String, String> headers);
+
+	/**
+	 * 
+	 * Sends a Post request to the specified URI using the given headers. The
+	 * payload is streamed to the connection. By default the payload is loaded
+	 * and sent by {@link #doPost(URI, byte[], Map)}.
+	 * 
+	 * @param url
+	 *            The resource relative URI.
+	 * @param payload
+	 *            The payload to post.
+	 * @param headers
+	 *            The headers to use in the request.
+	 * @return The request result.
+	 */
+	default Response doPost(URI url, RequestBody payload, Map<String, String> headers) {
+		byte[] content;
+		try {
+			content = payload.toByteArray();
+		} catch (IOException e) {
+			throw new HttpClientException(e, "Failed to read request body for: " + url, url.toString());
+		}
+		return doPost(url, content, headers);
+	}
 }
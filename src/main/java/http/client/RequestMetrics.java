@@ -0,0 +1,141 @@
+package http.client;
+
+
+/**
+ * 
+ * Timings and sizes of a single request. Durations are in nanoseconds and are
+ * -1 for the phases that did not take place, e.g. no connect time when a
+ * pooled connection was reused, or no body read time for a streamed response
+ * closed before the end of its body.
+ * 
+ */
+public final class RequestMetrics {
+	private final String host;
+	private final String method;
+	private final int statusCode;
+	private final Throwable failure;
+	private final long leaseTime;
+	private final long connectTime;
+	private final long tlsTime;
+	private final boolean tlsResumed;
+	private final long timeToFirstByte;
+	private final long bodyReadTime;
+	private final long totalTime;
+	private final long bytesSent;
+	private final long bytesReceived;
+
+	RequestMetrics(String host, String method, int statusCode, Throwable failure, long leaseTime,
+			long connectTime, long tlsTime, boolean tlsResumed, long timeToFirstByte, long bodyReadTime,
+			long totalTime, long bytesSent, long bytesReceived) {
+		this.host = host;
+		this.method = method;
+		this.statusCode = statusCode;
+		this.failure = failure;
+		this.leaseTime = leaseTime;
+		this.connectTime = connectTime;
+		this.tlsTime = tlsTime;
+		this.tlsResumed = tlsResumed;
+		this.timeToFirstByte = timeToFirstByte;
+		this.bodyReadTime = bodyReadTime;
+		this.totalTime = totalTime;
+		this.bytesSent = bytesSent;
+		this.bytesReceived = bytesReceived;
+	}
+
+	/**
+	 * @return the destination of the request (host and port).
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * @return the response status code, or 0 if the request failed.
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return the failure of the request, or <code>null</code> if a response
+	 *         was received.
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * @return the time spent waiting for a connection from the pool.
+	 */
+	public long getLeaseTime() {
+		return leaseTime;
+	}
+
+	/**
+	 * @return the time spent resolving and connecting to the host, excluding
+	 *         the TLS handshake.
+	 */
+	public long getConnectTime() {
+		return connectTime;
+	}
+
+	/**
+	 * @return the time spent in the TLS handshake.
+	 */
+	public long getTlsTime() {
+		return tlsTime;
+	}
+
+	/**
+	 * @return <code>true</code> if the TLS handshake resumed a cached session
+	 *         instead of doing a full handshake.
+	 */
+	public boolean isTlsResumed() {
+		return tlsResumed;
+	}
+
+	/**
+	 * @return the time from the end of the request to the response headers.
+	 */
+	public long getTimeToFirstByte() {
+		return timeToFirstByte;
+	}
+
+	/**
+	 * @return the time from the response headers to the end of the body.
+	 */
+	public long getBodyReadTime() {
+		return bodyReadTime;
+	}
+
+	public long getTotalTime() {
+		return totalTime;
+	}
+
+	/**
+	 * @return the number of bytes written to the connection, headers
+	 *         included.
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	/**
+	 * @return the number of response body bytes read from the connection,
+	 *         before decompression.
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	@Override
+	public String toString() {
+		return method + " " + host + " " + statusCode + " total=" + totalTime + "ns lease=" + leaseTime
+				+ "ns connect=" + connectTime + "ns tls=" + tlsTime + (tlsResumed ? "ns (resumed) ttfb=" : "ns ttfb=") + timeToFirstByte + "ns body="
+				+ bodyReadTime + "ns sent=" + bytesSent + " received=" + bytesReceived;
+	}
+}
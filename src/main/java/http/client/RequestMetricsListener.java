@@ -0,0 +1,18 @@
+package http.client;
+
+
+/**
+ * 
+ * Receives the timings and sizes of every request executed by the blocking
+ * client (see {@link HttpClientFactory#create(ConnectionPool, java.util.Properties, RequestMetricsListener)}).
+ * It is called on the request thread once the response has been read, or
+ * once the request failed; for a streamed response, it is called on the
+ * thread that reads the end of the body or closes the response. It must
+ * return quickly; {@link MetricsCollector}
+ * aggregates the metrics into histograms and counters that can be exported.
+ * 
+ */
+public interface RequestMetricsListener {
+
+	void onRequestCompleted(RequestMetrics metrics);
+}
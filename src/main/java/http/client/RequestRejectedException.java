@@ -0,0 +1,42 @@
+package http.client;
+
+
+/**
+ * 
+ * Thrown when a request is rejected by the client itself, without being sent,
+ * to protect a destination or the caller (e.g. open circuit breaker, full
+ * bulkhead, concurrency limit reached).
+ * 
+ */
+public class RequestRejectedException extends HttpClientException {
+	private static final long serialVersionUID = -3171530458406587215L;
+
+	public enum Reason {
+		/** The circuit breaker of the destination is open. */
+		CIRCUIT_OPEN,
+		/** The destination already has the maximum number of requests in flight. */
+		BULKHEAD_FULL,
+		/** The destination is at its adaptive concurrency limit and no slot freed up in time. */
+		LIMIT_EXCEEDED
+	}
+
+	private final Reason reason;
+	private final String host;
+
+	public RequestRejectedException(Reason reason, String host, String message, String uri) {
+		super(message, uri);
+		this.reason = reason;
+		this.host = host;
+	}
+
+	public Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * @return the destination (host and port) that rejected the request.
+	 */
+	public String getHost() {
+		return host;
+	}
+}
@@ -0,0 +1,162 @@
+package http.client;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *
+ * Deadline and cancellation of the requests that a thread executes while the
+ * scope is open:
+ *
+ * <pre>
+ * try (RequestScope scope = RequestScope.open(2, TimeUnit.SECONDS).readTimeout(500, TimeUnit.MILLISECONDS)) {
+ *     Item item = client.doGet("items/1", Item.class);
+ * }
+ * </pre>
+ *
+ * The deadline covers everything the client does for the requests: waits for
+ * a concurrency slot or a pooled connection, connecting, retries and their
+ * backoff, hedged attempts and reading the response body. When it passes, the
+ * request in flight is aborted, its connection is released and the request
+ * fails with an {@link HttpClientException}; so does the reading of a
+ * streamed response while the scope is open. The connect, lease and read
+ * timeouts replace the ones of the connection parameters and are shortened
+ * to the time left.
+ * <p>
+ * {@link #cancel()} may be called from any thread to abort the requests of
+ * the scope the same way. A scope opened within another one is bounded by
+ * its deadline and cancelled with it. A scope must be closed by the thread
+ * that opened it.
+ * <p>
+ * Cancelled requests are not counted as failures of their destination by
+ * the circuit breakers, concurrency limits and load balancing. Requests
+ * whose deadline passed are not failures either, but count as calls that
+ * lasted until the deadline: a destination that no longer responds in time
+ * shows up as slow, and its latency steers load balancing away from it.
+ *
+ */
+public final class RequestScope implements AutoCloseable {
+	private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+		Thread thread = new Thread(runnable, "http-client-deadline-timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static {
+		TIMER.setRemoveOnCancelPolicy(true);
+	}
+
+	private final RequestCancellation cancellation;
+	private final RequestCancellation previous;
+	private final ScheduledFuture<?> expiry;
+	private boolean closed;
+
+	private RequestScope(long timeoutNanos) {
+		this.cancellation = new RequestCancellation(RequestCancellation.current());
+		if (timeoutNanos >= 0) {
+			long deadline = System.nanoTime() + timeoutNanos;
+			if (!cancellation.hasDeadline || deadline - cancellation.deadline < 0) {
+				cancellation.deadline = deadline;
+				cancellation.hasDeadline = true;
+			}
+		}
+		this.expiry = cancellation.hasDeadline ? TIMER.schedule(cancellation::expire,
+				Math.max(0, cancellation.getRemainingNanos()), TimeUnit.NANOSECONDS) : null;
+		this.previous = cancellation.bind();
+	}
+
+	/**
+	 * Opens a scope without deadline, to cancel its requests or set their
+	 * timeouts.
+	 */
+	public static RequestScope open() {
+		return new RequestScope(-1);
+	}
+
+	/**
+	 * Opens a scope whose requests must complete within the given time.
+	 */
+	public static RequestScope open(long timeout, TimeUnit unit) {
+		return new RequestScope(Math.max(0, unit.toNanos(timeout)));
+	}
+
+	/**
+	 * Sets the timeout for establishing a connection; 0 means no timeout
+	 * other than the deadline.
+	 */
+	public RequestScope connectTimeout(long timeout, TimeUnit unit) {
+		cancellation.connectTimeout = toMillis(timeout, unit);
+		return this;
+	}
+
+	/**
+	 * Sets the maximum wait for a pooled connection.
+	 */
+	public RequestScope leaseTimeout(long timeout, TimeUnit unit) {
+		cancellation.leaseTimeout = toMillis(timeout, unit);
+		return this;
+	}
+
+	/**
+	 * Sets the maximum time to wait for data from the server (socket
+	 * timeout).
+	 */
+	public RequestScope readTimeout(long timeout, TimeUnit unit) {
+		cancellation.readTimeout = toMillis(timeout, unit);
+		return this;
+	}
+
+	/**
+	 * Aborts the request in flight and fails the requests still to come in
+	 * this scope. May be called from any thread.
+	 */
+	public void cancel() {
+		cancellation.cancel();
+	}
+
+	public boolean isCancelled() {
+		return cancellation.isCancelled();
+	}
+
+	/**
+	 * @return <code>true</code> once the deadline has passed.
+	 */
+	public boolean isExpired() {
+		return cancellation.isExpired();
+	}
+
+	/**
+	 * @return the time left before the deadline, 0 once it has passed, or
+	 *         {@link Long#MAX_VALUE} without deadline.
+	 */
+	public long getRemaining(TimeUnit unit) {
+		long remaining = cancellation.getRemainingNanos();
+		if (remaining == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+		return unit.convert(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Closes the scope and restores the scope open before, if any. Responses
+	 * received in the scope are no longer bound by its deadline.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (expiry != null) {
+			expiry.cancel(false);
+		}
+		cancellation.detach();
+		RequestCancellation.restore(previous);
+	}
+
+	private static int toMillis(long timeout, TimeUnit unit) {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(0, unit.toMillis(timeout)));
+	}
+}
@@ -0,0 +1,129 @@
+package http.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.protocol.HttpContext;
+
+
+/**
+ * 
+ * Mutable timings of a request in flight. The timer is stored in the request
+ * context and filled in by the components that execute the request
+ * ({@link TimingConnectionManager}, {@link TimingSSLSocketFactory},
+ * {@link TimingRequestExecutor}); components find no timer, and record
+ * nothing, when metrics are disabled.
+ * 
+ */
+final class RequestTimer {
+	static final String ATTRIBUTE = "http.client.request-timer";
+
+	final long start = System.nanoTime();
+	long connectTime = -1;
+	long tlsTime = -1;
+	boolean tlsResumed;
+	long sendStart;
+	long sendEnd;
+	long headersReceived;
+	long bodyEnd;
+	long bytesSent;
+	long bytesReceived;
+	/** Called when the end of the body is read; may be <code>null</code>. */
+	Runnable onBodyEnd;
+
+	static RequestTimer get(HttpContext context) {
+		return context == null ? null : (RequestTimer) context.getAttribute(ATTRIBUTE);
+	}
+
+	void addConnectTime(long nanos) {
+		connectTime = connectTime < 0 ? nanos : connectTime + nanos;
+	}
+
+	void addTlsTime(long nanos) {
+		tlsTime = tlsTime < 0 ? nanos : tlsTime + nanos;
+	}
+
+	HttpEntity wrap(HttpEntity entity) {
+		return entity == null ? null : new TimedEntity(entity);
+	}
+
+	RequestMetrics toMetrics(String host, String method, int statusCode, Throwable failure) {
+		long end = System.nanoTime();
+		long lease = -1;
+		if (sendStart > 0) {
+			lease = Math.max(0, sendStart - start - Math.max(0, connectTime));
+		}
+		return new RequestMetrics(host, method, statusCode, failure, lease,
+				connectTime < 0 ? -1 : connectTime - Math.max(0, tlsTime), tlsTime, tlsResumed,
+				headersReceived > 0 && sendEnd > 0 ? headersReceived - sendEnd : -1,
+				bodyEnd > 0 ? bodyEnd - headersReceived : -1, end - start, bytesSent, bytesReceived);
+	}
+
+	private void bodyEnded() {
+		if (bodyEnd > 0) {
+			return;
+		}
+		bodyEnd = System.nanoTime();
+		if (onBodyEnd != null) {
+			onBodyEnd.run();
+		}
+	}
+
+	/**
+	 * Response entity that counts the bytes read and records the end of the
+	 * body: the end of the stream, or its declared length, since content of a
+	 * known length is read without waiting for the end of the stream.
+	 */
+	private final class TimedEntity extends HttpEntityWrapper {
+
+		TimedEntity(HttpEntity entity) {
+			super(entity);
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			long contentLength = getContentLength();
+			InputStream content = super.getContent();
+			return content == null ? null : new FilterInputStream(content) {
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+					if (b >= 0) {
+						bytesReceived++;
+					}
+					if (b < 0 || bytesReceived == contentLength) {
+						bodyEnded();
+					}
+					return b;
+				}
+
+				@Override
+				public int read(byte[] buffer, int offset, int length) throws IOException {
+					int count = super.read(buffer, offset, length);
+					if (count >= 0) {
+						bytesReceived += count;
+					}
+					if (count < 0 || bytesReceived == contentLength) {
+						bodyEnded();
+					}
+					return count;
+				}
+			};
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			try (InputStream in = getContent()) {
+				byte[] buffer = new byte[8192];
+				int count;
+				while ((count = in.read(buffer)) >= 0) {
+					out.write(buffer, 0, count);
+				}
+			}
+		}
+	}
+}
@@ -1,18 +1,25 @@
 package http.client;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 /**
- * Represents {@link HttpClient} response.
+ * Represents {@link HttpClient} response. A streamed response holds its
+ * connection until the content is read or the response is closed, so it
+ * should be used in a try-with-resources block. The methods added since the
+ * first version have default implementations based on the original ones, so
+ * that existing implementations keep working.
  * 
  * @author elad.avraham@hp.com
  * 
  */
-public interface Response {
+public interface Response extends Closeable {
 
 	/**
 	 * Obtains the status code of this response.
@@ -44,12 +51,14 @@ public interface Response {
 	long getContentLength();
 
 	/**
-	 * @return
+	 * @return the content decoded with the charset of the response, or
+	 *         <code>null</code> for application/octet-stream content. The
+	 *         content is decoded on the first call only.
 	 */
 	String getResponseString();
 
 	/**
-	 * @return
+	 * @return the raw content, whatever its type.
 	 */
 	byte[] getResponseBytes();
 
@@ -63,29 +72,74 @@ public interface Response {
 	boolean isStreaming();
 
 	/**
-	 * @return
+	 * Returns the response content as a stream. A streamed response reads
+	 * directly from the socket; otherwise the buffered content is returned.
+	 * 
+	 * @return the content stream.
 	 * @throws IllegalStateException
 	 * @throws IOException
 	 */
 	InputStream getResponseStream() throws IllegalStateException, IOException;
 
 	/**
-	 * Returns the first value of the specified header.
+	 * Returns the response content in buffers borrowed from the given pool.
+	 * A streamed response is read from the socket straight into the pooled
+	 * buffers, without intermediate byte arrays, and is closed; otherwise the
+	 * buffered content is wrapped without copying. The caller must release
+	 * the returned body. By default the content of
+	 * {@link #getResponseBytes()} is wrapped and the pool is not used.
+	 * 
+	 * @param pool
+	 *            The pool that provides the buffers.
+	 * @return the content buffers.
+	 */
+	default PooledBody getResponseBuffers(ByteBufferPool pool) {
+		return PooledBody.wrap(getResponseBytes());
+	}
+
+	/**
+	 * Returns the first value of the specified header. The name is matched
+	 * case-insensitively.
      * @param header
 	 * @return
 	 */
 	String getHeader(String header);
 
 	/**
-     * Returns the values list of the specified header.
+     * Returns the values list of the specified header. The name is matched
+     * case-insensitively.
 	 * @param header
 	 * @return
 	 */
 	List<String> getHeaders(String header);
 
 	/**
-	 * @return
+	 * @return an unmodifiable, case-insensitive map of all the header values.
 	 */
 	Map<String, List<String>> listHeaders();
 
+	/**
+	 * @return all the response headers, in the order they were received. By
+	 *         default they are listed from {@link #listHeaders()}, grouped by
+	 *         name.
+	 */
+	default Headers getAllHeaders() {
+		List<String> namesAndValues = new ArrayList<>();
+		for (Entry<String, List<String>> header : listHeaders().entrySet()) {
+			for (String value : header.getValue()) {
+				namesAndValues.add(header.getKey());
+				namesAndValues.add(value);
+			}
+		}
+		return Headers.of(namesAndValues.toArray(new String[namesAndValues.size()]));
+	}
+
+	/**
+	 * Releases the underlying connection of a streamed response back to the
+	 * pool. Has no effect on a buffered response, which is the default.
+	 */
+	@Override
+	default void close() {
+	}
+
 }
@@ -0,0 +1,172 @@
+package http.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * 
+ * In-memory store of {@link CachingRequestInvoker} bounded by the estimated
+ * size of its entries in bytes. The least recently used entries are evicted
+ * first, and moved to the optional {@link MappedCacheStore} if there is one.
+ * <p>
+ * The spill store is read and written outside the lock of this cache, so
+ * that its serialization and file access do not block other callers. An
+ * evicted entry stays visible in {@link #spilling} until it is written, and
+ * an entry read back from the spill store is only kept if its key was not
+ * changed meanwhile ({@link #loading}).
+ * 
+ */
+class ResponseCache {
+	private final long maxBytes;
+	private final MappedCacheStore spillStore;
+	private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, CacheEntry> spilling = new HashMap<>();
+	private final Map<String, Object> loading = new HashMap<>();
+	private final ReentrantLock lock = new ReentrantLock();
+	private long bytes;
+	private long evictions;
+
+	ResponseCache(long maxBytes, MappedCacheStore spillStore) {
+		this.maxBytes = maxBytes;
+		this.spillStore = spillStore;
+	}
+
+	CacheEntry get(String key) {
+		Object token = new Object();
+		lock.lock();
+		try {
+			CacheEntry entry = entries.get(key);
+			if (entry == null) {
+				entry = spilling.get(key);
+			}
+			if (entry != null || spillStore == null) {
+				return entry;
+			}
+			if (loading.putIfAbsent(key, token) != null) {
+				// another caller is reading the entry from the spill store
+				return null;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		CacheEntry entry = spillStore.remove(key);
+		List<Map.Entry<String, CacheEntry>> evicted;
+		lock.lock();
+		try {
+			if (!loading.remove(key, token) || entry == null) {
+				// missing, or the key was changed while it was read and it may be stale
+				return null;
+			}
+			evicted = store(key, entry);
+		} finally {
+			lock.unlock();
+		}
+		spill(evicted);
+		return entry;
+	}
+
+	void put(String key, CacheEntry entry) {
+		List<Map.Entry<String, CacheEntry>> evicted;
+		lock.lock();
+		try {
+			evicted = store(key, entry);
+		} finally {
+			lock.unlock();
+		}
+		spill(evicted);
+	}
+
+	void remove(String key) {
+		lock.lock();
+		try {
+			removeLocked(key);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds the given entry and evicts the least recently used ones if the
+	 * cache is full.
+	 * 
+	 * @return the entries to write to the spill store.
+	 */
+	private List<Map.Entry<String, CacheEntry>> store(String key, CacheEntry entry) {
+		removeLocked(key);
+		List<Map.Entry<String, CacheEntry>> evicted = new ArrayList<>(0);
+		long size = entry.estimateSize();
+		if (size > maxBytes) {
+			if (spillStore != null) {
+				evicted.add(new HashMap.SimpleImmutableEntry<>(key, entry));
+				spilling.put(key, entry);
+			}
+			return evicted;
+		}
+		entries.put(key, entry);
+		bytes += size;
+		Iterator<Map.Entry<String, CacheEntry>> eldest = entries.entrySet().iterator();
+		while (bytes > maxBytes && eldest.hasNext()) {
+			Map.Entry<String, CacheEntry> next = eldest.next();
+			eldest.remove();
+			bytes -= next.getValue().estimateSize();
+			evictions++;
+			if (spillStore != null) {
+				evicted.add(new HashMap.SimpleImmutableEntry<>(next.getKey(), next.getValue()));
+				spilling.put(next.getKey(), next.getValue());
+			}
+		}
+		return evicted;
+	}
+
+	private void removeLocked(String key) {
+		CacheEntry removed = entries.remove(key);
+		if (removed != null) {
+			bytes -= removed.estimateSize();
+		}
+		if (spillStore != null) {
+			spilling.remove(key);
+			loading.remove(key);
+			spillStore.invalidate(key);
+		}
+	}
+
+	private void spill(List<Map.Entry<String, CacheEntry>> evicted) {
+		for (Map.Entry<String, CacheEntry> entry : evicted) {
+			spillStore.put(entry.getKey(), entry.getValue());
+			lock.lock();
+			try {
+				if (!spilling.remove(entry.getKey(), entry.getValue())) {
+					// the key was changed while the entry was written
+					spillStore.invalidate(entry.getKey());
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	long getBytes() {
+		lock.lock();
+		try {
+			return bytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	long getEvictionCount() {
+		lock.lock();
+		try {
+			return evictions;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
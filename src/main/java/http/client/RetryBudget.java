@@ -0,0 +1,74 @@
+package http.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * 
+ * Token bucket that limits retries to a fraction of the request rate, so that
+ * retries cannot multiply the load on a server during an outage. Every first
+ * attempt deposits <code>ratio</code> tokens, up to <code>maxTokens</code>,
+ * and every retry withdraws one token. The bucket starts full so that the
+ * occasional transient failure is always retried.
+ * 
+ */
+public final class RetryBudget {
+	private static final long SCALE = 1000;
+
+	private final long deposit;
+	private final long capacity;
+	private final AtomicLong balance;
+
+	/**
+	 * @param ratio
+	 *            The number of retries allowed per request, e.g. 0.1 for 10%.
+	 * @param maxTokens
+	 *            The maximum number of retries that can be banked.
+	 */
+	public RetryBudget(double ratio, int maxTokens) {
+		if (ratio < 0 || maxTokens < 0) {
+			throw new IllegalArgumentException("Retry budget ratio and tokens must not be negative");
+		}
+		this.deposit = Math.round(ratio * SCALE);
+		this.capacity = maxTokens * SCALE;
+		this.balance = new AtomicLong(capacity);
+	}
+
+	/**
+	 * Records a first attempt.
+	 */
+	public void onRequest() {
+		if (deposit == 0) {
+			return;
+		}
+		long current;
+		do {
+			current = balance.get();
+			if (current >= capacity) {
+				return;
+			}
+		} while (!balance.compareAndSet(current, Math.min(capacity, current + deposit)));
+	}
+
+	/**
+	 * @return <code>true</code> if a retry may be sent, in which case a token
+	 *         is withdrawn.
+	 */
+	public boolean tryAcquire() {
+		long current;
+		do {
+			current = balance.get();
+			if (current < SCALE) {
+				return false;
+			}
+		} while (!balance.compareAndSet(current, current - SCALE));
+		return true;
+	}
+
+	/**
+	 * @return the number of retries currently available.
+	 */
+	public double getAvailableTokens() {
+		return balance.get() / (double) SCALE;
+	}
+}
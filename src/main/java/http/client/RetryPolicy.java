@@ -0,0 +1,205 @@
+package http.client;
+
+import static http.client.HttpClientProperties.DEFAULT_RETRY_AFTER_MAX;
+import static http.client.HttpClientProperties.DEFAULT_RETRY_BACKOFF_INITIAL;
+import static http.client.HttpClientProperties.DEFAULT_RETRY_BACKOFF_MAX;
+import static http.client.HttpClientProperties.DEFAULT_RETRY_METHODS;
+import static http.client.HttpClientProperties.DEFAULT_RETRY_STATUSES;
+import static http.client.HttpClientProperties.RETRY_AFTER_MAX;
+import static http.client.HttpClientProperties.RETRY_BACKOFF_INITIAL;
+import static http.client.HttpClientProperties.RETRY_BACKOFF_MAX;
+import static http.client.HttpClientProperties.RETRY_MAX_ATTEMPTS;
+import static http.client.HttpClientProperties.RETRY_METHODS;
+import static http.client.HttpClientProperties.RETRY_STATUSES;
+import static http.client.HttpClientProperties.getInt;
+import static http.client.HttpClientProperties.getLong;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLException;
+
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+
+
+/**
+ * 
+ * Decides which failed requests are retried and how long to wait before each
+ * retry. Only idempotent methods are retried after the request may have
+ * reached the server; a failure to connect is retried for every method, since
+ * nothing was sent. Backoff is exponential with full jitter, and a
+ * Retry-After header sent by the server takes precedence.
+ * 
+ */
+public final class RetryPolicy {
+	static final String RETRY_AFTER = "Retry-After";
+
+	private final int maxAttempts;
+	private final long initialBackoff;
+	private final long maxBackoff;
+	private final long maxRetryAfter;
+	private final Set<Integer> retryableStatuses;
+	private final Set<String> retryableMethods;
+
+	/**
+	 * Creates a policy from the retry.* connection parameters (see
+	 * {@link HttpClientProperties}).
+	 */
+	public RetryPolicy(Properties connectionParameters) {
+		this(getInt(connectionParameters, RETRY_MAX_ATTEMPTS, 1),
+				getLong(connectionParameters, RETRY_BACKOFF_INITIAL, DEFAULT_RETRY_BACKOFF_INITIAL),
+				getLong(connectionParameters, RETRY_BACKOFF_MAX, DEFAULT_RETRY_BACKOFF_MAX),
+				getLong(connectionParameters, RETRY_AFTER_MAX, DEFAULT_RETRY_AFTER_MAX),
+				parseStatuses(connectionParameters.getProperty(RETRY_STATUSES, DEFAULT_RETRY_STATUSES)),
+				parseMethods(connectionParameters.getProperty(RETRY_METHODS, DEFAULT_RETRY_METHODS)));
+	}
+
+	/**
+	 * @param maxAttempts
+	 *            The maximum number of attempts, including the first one.
+	 * @param initialBackoff
+	 *            The upper bound of the delay before the first retry, in
+	 *            milliseconds. It doubles with every retry.
+	 * @param maxBackoff
+	 *            The upper bound of any backoff delay, in milliseconds.
+	 * @param maxRetryAfter
+	 *            The longest Retry-After delay honored, in milliseconds. A
+	 *            response asking for a longer delay is not retried.
+	 * @param retryableStatuses
+	 *            The status codes that are retried.
+	 * @param retryableMethods
+	 *            The methods that are retried after the request was sent.
+	 */
+	public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff, long maxRetryAfter,
+			Set<Integer> retryableStatuses, Set<String> retryableMethods) {
+		if (maxAttempts < 1) {
+			throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+		}
+		this.maxAttempts = maxAttempts;
+		this.initialBackoff = initialBackoff;
+		this.maxBackoff = maxBackoff;
+		this.maxRetryAfter = maxRetryAfter;
+		this.retryableStatuses = Collections.unmodifiableSet(new HashSet<>(retryableStatuses));
+		Set<String> methods = new HashSet<>();
+		for (String method : retryableMethods) {
+			methods.add(method.toUpperCase(Locale.ROOT));
+		}
+		this.retryableMethods = Collections.unmodifiableSet(methods);
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * @return <code>true</code> if a response with the given status should be
+	 *         retried.
+	 */
+	public boolean isRetryable(String method, int statusCode) {
+		return retryableStatuses.contains(statusCode) && retryableMethods.contains(method);
+	}
+
+	/**
+	 * @return <code>true</code> if the given failure is transient and the
+	 *         request can safely be sent again.
+	 */
+	public boolean isRetryable(String method, Throwable failure) {
+		RequestCancellation cancellation = RequestCancellation.current();
+		if (cancellation != null && cancellation.isCancelled()) {
+			return false;
+		}
+		Throwable cause = failure instanceof HttpClientException ? failure.getCause() : failure;
+		if (!(cause instanceof IOException) || cause instanceof UnknownHostException
+				|| cause instanceof SSLException) {
+			return false;
+		}
+		if (cause instanceof ConnectException || cause instanceof ConnectTimeoutException
+				|| cause instanceof NoRouteToHostException) {
+			return true;
+		}
+		if (cause instanceof InterruptedIOException && Thread.currentThread().isInterrupted()) {
+			return false;
+		}
+		return retryableMethods.contains(method);
+	}
+
+	/**
+	 * @param retry
+	 *            The number of the retry, starting at 1.
+	 * @param response
+	 *            The response that is retried, or <code>null</code> if the
+	 *            request failed.
+	 * @return the delay before the retry in milliseconds, or -1 if the server
+	 *         asked for a longer delay than the policy allows.
+	 */
+	public long getBackoff(int retry, Response response) {
+		if (response != null) {
+			long retryAfter = parseRetryAfter(response.getHeader(RETRY_AFTER), System.currentTimeMillis());
+			if (retryAfter >= 0) {
+				return retryAfter <= maxRetryAfter ? retryAfter : -1;
+			}
+		}
+		long bound = initialBackoff << Math.min(retry - 1, 30);
+		if (bound <= 0 || bound > maxBackoff) {
+			bound = maxBackoff;
+		}
+		return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+	}
+
+	/**
+	 * @return the delay asked by a Retry-After header value in milliseconds,
+	 *         or -1 if the value is missing or invalid.
+	 */
+	static long parseRetryAfter(String value, long now) {
+		if (value == null || value.trim().isEmpty()) {
+			return -1;
+		}
+		String trimmed = value.trim();
+		try {
+			// saturates, so that a huge delay is longer than any maximum
+			return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(trimmed)));
+		} catch (NumberFormatException e) {
+			if (trimmed.chars().allMatch(c -> c >= '0' && c <= '9')) {
+				return Long.MAX_VALUE;
+			}
+			Date date = DateUtils.parseDate(trimmed);
+			return date == null ? -1 : Math.max(0, date.getTime() - now);
+		}
+	}
+
+	private static Set<Integer> parseStatuses(String value) {
+		Set<Integer> statuses = new HashSet<>();
+		for (String status : value.split(",")) {
+			if (!status.trim().isEmpty()) {
+				try {
+					statuses.add(Integer.valueOf(status.trim()));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Invalid value for " + RETRY_STATUSES + ": " + value, e);
+				}
+			}
+		}
+		return statuses;
+	}
+
+	static Set<String> parseMethods(String value) {
+		Set<String> methods = new HashSet<>();
+		for (String method : value.split(",")) {
+			if (!method.trim().isEmpty()) {
+				methods.add(method.trim());
+			}
+		}
+		return methods;
+	}
+}
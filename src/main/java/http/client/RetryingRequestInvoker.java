@@ -0,0 +1,159 @@
+package http.client;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * 
+ * {@link RequestInvoker} decorator that retries transient failures (retryable
+ * status codes and I/O errors) according to a {@link RetryPolicy}, within the
+ * limits of a {@link RetryBudget}. Requests whose body cannot be replayed are
+ * never retried. The last response is returned as-is when the retries are
+ * exhausted, so the client reports it as usual. A request is not retried
+ * once it is cancelled, or when its backoff would outlast its deadline (see
+ * {@link RequestScope}).
+ * 
+ */
+public class RetryingRequestInvoker extends ForwardingRequestInvoker {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RetryingRequestInvoker.class);
+
+	private final RetryPolicy policy;
+	private final RetryBudget budget;
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder rejectedRetries = new LongAdder();
+
+	public RetryingRequestInvoker(RequestInvoker delegate, RetryPolicy policy, RetryBudget budget) {
+		super(delegate);
+		this.policy = policy;
+		this.budget = budget;
+	}
+
+	@Override
+	public Response doGet(URI url, Map<String, String> headers) {
+		return execute(HttpGet.METHOD_NAME, url, true, () -> delegate.doGet(url, headers));
+	}
+
+	@Override
+	public Response doGetStream(URI url, Map<String, String> headers) {
+		return execute(HttpGet.METHOD_NAME, url, true, () -> delegate.doGetStream(url, headers));
+	}
+
+	@Override
+	public Response doPut(URI url, String payload, Map<String, String> headers) {
+		return execute(HttpPut.METHOD_NAME, url, true, () -> delegate.doPut(url, payload, headers));
+	}
+
+	@Override
+	public Response doPut(URI url, RequestBody payload, Map<String, String> headers) {
+		return execute(HttpPut.METHOD_NAME, url, payload.isRepeatable(), () -> delegate.doPut(url, payload, headers));
+	}
+
+	@Override
+	public Response doDelete(URI url, Map<String, String> headers) {
+		return execute(HttpDelete.METHOD_NAME, url, true, () -> delegate.doDelete(url, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, String payload, Map<String, String> headers) {
+		return execute(HttpPost.METHOD_NAME, url, true, () -> delegate.doPost(url, payload, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, byte[] payload, Map<String, String> headers) {
+		return execute(HttpPost.METHOD_NAME, url, true, () -> delegate.doPost(url, payload, headers));
+	}
+
+	@Override
+	public Response doPost(URI url, RequestBody payload, Map<String, String> headers) {
+		return execute(HttpPost.METHOD_NAME, url, payload.isRepeatable(), () -> delegate.doPost(url, payload, headers));
+	}
+
+	/**
+	 * @return the number of retries sent.
+	 */
+	public long getRetryCount() {
+		return retries.sum();
+	}
+
+	/**
+	 * @return the number of retries that were not sent because the retry
+	 *         budget was exhausted.
+	 */
+	public long getRejectedRetryCount() {
+		return rejectedRetries.sum();
+	}
+
+	private Response execute(String method, URI url, boolean replayable, Supplier<Response> call) {
+		budget.onRequest();
+		for (int attempt = 1;; attempt++) {
+			boolean lastAttempt = !replayable || attempt >= policy.getMaxAttempts();
+			Response response;
+			try {
+				response = call.get();
+			} catch (HttpClientException e) {
+				long backoff = policy.getBackoff(attempt, null);
+				if (lastAttempt || !policy.isRetryable(method, e) || !isWithinDeadline(backoff) || !acquireRetry()) {
+					throw e;
+				}
+				sleep(url, method, attempt, backoff);
+				continue;
+			}
+			if (lastAttempt || !policy.isRetryable(method, response.getStatusCode())) {
+				return response;
+			}
+			long backoff = policy.getBackoff(attempt, response);
+			if (backoff < 0 || !isWithinDeadline(backoff) || !acquireRetry()) {
+				return response;
+			}
+			response.close();
+			sleep(url, method, attempt, backoff);
+		}
+	}
+
+	/**
+	 * @return <code>false</code> if the request was cancelled, or if its
+	 *         deadline passes before the backoff is over.
+	 */
+	private static boolean isWithinDeadline(long backoff) {
+		RequestCancellation cancellation = RequestCancellation.current();
+		if (cancellation == null) {
+			return true;
+		}
+		if (cancellation.isCancelled()) {
+			return false;
+		}
+		return TimeUnit.MILLISECONDS.toNanos(Math.max(0, backoff)) < cancellation.getRemainingNanos();
+	}
+
+	private boolean acquireRetry() {
+		if (budget.tryAcquire()) {
+			retries.increment();
+			return true;
+		}
+		rejectedRetries.increment();
+		return false;
+	}
+
+	private static void sleep(URI url, String method, int attempt, long backoff) {
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Retrying {} request to: {} in {} ms (attempt {})", method, url, backoff, attempt + 1);
+		}
+		try {
+			Thread.sleep(backoff);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HttpClientException(e, "Interrupted while waiting to retry request to: " + url, url.toString());
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package http.client;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.protocol.HttpContext;
+
+
+/**
+ * 
+ * Connection manager that delegates to the shared pool and records the time
+ * spent connecting (name resolution, TCP and TLS) in the {@link RequestTimer}
+ * of the request.
+ * 
+ */
+class TimingConnectionManager implements HttpClientConnectionManager {
+	private final HttpClientConnectionManager delegate;
+
+	TimingConnectionManager(HttpClientConnectionManager delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+		return delegate.requestConnection(route, state);
+	}
+
+	@Override
+	public void releaseConnection(HttpClientConnection conn, Object newState, long validDuration, TimeUnit timeUnit) {
+		delegate.releaseConnection(conn, newState, validDuration, timeUnit);
+	}
+
+	@Override
+	public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout, HttpContext context)
+			throws IOException {
+		RequestTimer timer = RequestTimer.get(context);
+		long start = System.nanoTime();
+		try {
+			delegate.connect(conn, route, connectTimeout, context);
+		} finally {
+			if (timer != null) {
+				timer.addConnectTime(System.nanoTime() - start);
+			}
+		}
+	}
+
+	@Override
+	public void upgrade(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+		RequestTimer timer = RequestTimer.get(context);
+		long start = System.nanoTime();
+		try {
+			delegate.upgrade(conn, route, context);
+		} finally {
+			if (timer != null) {
+				timer.addConnectTime(System.nanoTime() - start);
+			}
+		}
+	}
+
+	@Override
+	public void routeComplete(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+		delegate.routeComplete(conn, route, context);
+	}
+
+	@Override
+	public void closeIdleConnections(long idletime, TimeUnit timeUnit) {
+		delegate.closeIdleConnections(idletime, timeUnit);
+	}
+
+	@Override
+	public void closeExpiredConnections() {
+		delegate.closeExpiredConnections();
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+}
@@ -0,0 +1,54 @@
+package http.client;
+
+import java.io.IOException;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+
+/**
+ * 
+ * Request executor that records when the request is written and when the
+ * response headers arrive in the {@link RequestTimer} of the request, and
+ * wraps the response entity to time the body.
+ * 
+ */
+class TimingRequestExecutor extends HttpRequestExecutor {
+
+	@Override
+	protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn, HttpContext context)
+			throws IOException, HttpException {
+		RequestTimer timer = RequestTimer.get(context);
+		if (timer == null) {
+			return super.doSendRequest(request, conn, context);
+		}
+		HttpConnectionMetrics metrics = conn.getMetrics();
+		long sent = metrics.getSentBytesCount();
+		if (timer.sendStart == 0) {
+			timer.sendStart = System.nanoTime();
+		}
+		try {
+			return super.doSendRequest(request, conn, context);
+		} finally {
+			timer.sendEnd = System.nanoTime();
+			timer.bytesSent += metrics.getSentBytesCount() - sent;
+		}
+	}
+
+	@Override
+	protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn, HttpContext context)
+			throws HttpException, IOException {
+		HttpResponse response = super.doReceiveResponse(request, conn, context);
+		RequestTimer timer = RequestTimer.get(context);
+		if (timer != null) {
+			timer.headersReceived = System.nanoTime();
+			response.setEntity(timer.wrap(response.getEntity()));
+		}
+		return response;
+	}
+}
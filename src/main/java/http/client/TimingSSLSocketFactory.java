@@ -0,0 +1,183 @@
+package http.client;
+
+import static http.client.HttpClientProperties.TLS_CIPHER_SUITES;
+import static http.client.HttpClientProperties.TLS_PROTOCOLS;
+import static http.client.HttpClientProperties.TLS_PROVIDER;
+import static http.client.HttpClientProperties.TLS_SESSION_CACHE_SIZE;
+import static http.client.HttpClientProperties.TLS_SESSION_TIMEOUT;
+import static http.client.HttpClientProperties.getInt;
+import static http.client.HttpClientProperties.getLong;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+
+
+/**
+ *
+ * Default TLS socket factory that records the duration of the handshake in
+ * the {@link RequestTimer} of the request, and counts the handshakes and the
+ * sessions resumed. Sessions are cached by the client session context of the
+ * {@link SSLContext} for the host and port of the connection, so the
+ * connections of a pool, and of the pools sharing an injected context,
+ * resume the sessions of each other instead of doing full handshakes.
+ *
+ */
+class TimingSSLSocketFactory extends SSLConnectionSocketFactory {
+	private static final String HTTPS_PROTOCOLS = "https.protocols";
+	private static final String HTTPS_CIPHER_SUITES = "https.cipherSuites";
+
+	private final LongAdder handshakes = new LongAdder();
+	private final LongAdder resumptions = new LongAdder();
+
+	TimingSSLSocketFactory() {
+		this(SSLContexts.createSystemDefault(), split(System.getProperty(HTTPS_PROTOCOLS)),
+				split(System.getProperty(HTTPS_CIPHER_SUITES)));
+	}
+
+	TimingSSLSocketFactory(SSLContext sslContext, String[] protocols, String[] cipherSuites) {
+		super(sslContext, protocols, cipherSuites, getDefaultHostnameVerifier());
+	}
+
+	/**
+	 * Creates a factory configured from the tls.* connection parameters, and
+	 * from the https.protocols and https.cipherSuites system properties when
+	 * they are not set.
+	 *
+	 * @param sslContext
+	 *            The context of the connections. When <code>null</code> the
+	 *            default context of the JVM is used, which honours the
+	 *            javax.net.ssl.* system properties (e.g. the client
+	 *            certificate of <code>javax.net.ssl.keyStore</code>); but if
+	 *            a provider or session settings are configured, a context
+	 *            with the default trust material is created from the
+	 *            provider instead, so the JVM default is left alone. The
+	 *            session settings are applied to a given context, and so to
+	 *            its other users.
+	 */
+	static TimingSSLSocketFactory create(Properties connectionParameters, SSLContext sslContext) {
+		String provider = connectionParameters.getProperty(TLS_PROVIDER);
+		int cacheSize = getInt(connectionParameters, TLS_SESSION_CACHE_SIZE, -1);
+		long timeout = getLong(connectionParameters, TLS_SESSION_TIMEOUT, -1);
+		if (sslContext == null) {
+			sslContext = (provider == null || provider.trim().isEmpty()) && cacheSize < 0 && timeout < 0
+					? SSLContexts.createSystemDefault()
+					: createSslContext(provider);
+		}
+		SSLSessionContext sessions = sslContext.getClientSessionContext();
+		if (cacheSize >= 0 && sessions != null) {
+			sessions.setSessionCacheSize(cacheSize);
+		}
+		if (timeout >= 0 && sessions != null) {
+			// in seconds, where 0 means no limit
+			int seconds = (int) Math.min(Integer.MAX_VALUE, TimeUnit.MILLISECONDS.toSeconds(timeout));
+			sessions.setSessionTimeout(timeout == 0 ? 0 : Math.max(1, seconds));
+		}
+		return new TimingSSLSocketFactory(sslContext,
+				split(connectionParameters.getProperty(TLS_PROTOCOLS, System.getProperty(HTTPS_PROTOCOLS))),
+				split(connectionParameters.getProperty(TLS_CIPHER_SUITES, System.getProperty(HTTPS_CIPHER_SUITES))));
+	}
+
+	@Override
+	public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context)
+			throws IOException {
+		RequestTimer timer = RequestTimer.get(context);
+		long startMillis = System.currentTimeMillis();
+		long start = System.nanoTime();
+		try {
+			Socket layered = super.createLayeredSocket(socket, target, port, context);
+			boolean resumed = isResumed(layered, startMillis);
+			handshakes.increment();
+			if (resumed) {
+				resumptions.increment();
+			}
+			if (timer != null) {
+				timer.tlsResumed = resumed;
+			}
+			return layered;
+		} finally {
+			if (timer != null) {
+				timer.addTlsTime(System.nanoTime() - start);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of TLS handshakes completed.
+	 */
+	long getHandshakeCount() {
+		return handshakes.sum();
+	}
+
+	/**
+	 * @return the number of handshakes that resumed a cached session.
+	 */
+	long getResumedCount() {
+		return resumptions.sum();
+	}
+
+	/**
+	 * A resumed session was created by an earlier handshake, while a full
+	 * handshake creates its session.
+	 */
+	private static boolean isResumed(Socket socket, long startMillis) {
+		return socket instanceof SSLSocket && ((SSLSocket) socket).getSession().getCreationTime() < startMillis;
+	}
+
+	private static SSLContext createSslContext(String provider) {
+		if (provider == null || provider.trim().isEmpty()) {
+			return SSLContexts.createDefault();
+		}
+		try {
+			SSLContext sslContext = SSLContext.getInstance("TLS", loadProvider(provider.trim()));
+			sslContext.init(null, null, null);
+			return sslContext;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalArgumentException("Invalid value for " + TLS_PROVIDER + ": " + provider, e);
+		}
+	}
+
+	/**
+	 * @return the installed provider of the given name, or a new instance of
+	 *         the provider class of the given name.
+	 */
+	private static Provider loadProvider(String name) {
+		Provider provider = Security.getProvider(name);
+		if (provider != null) {
+			return provider;
+		}
+		try {
+			return Class.forName(name).asSubclass(Provider.class).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new IllegalArgumentException("Invalid value for " + TLS_PROVIDER + ": " + name, e);
+		}
+	}
+
+	private static String[] split(String value) {
+		if (value == null) {
+			return null;
+		}
+		List<String> values = new ArrayList<>();
+		for (String item : value.split(",")) {
+			if (!item.trim().isEmpty()) {
+				values.add(item.trim());
+			}
+		}
+		return values.isEmpty() ? null : values.toArray(new String[values.size()]);
+	}
+}
@@ -0,0 +1,88 @@
+package http.client;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+
+/**
+ *
+ * Builder of a relative URI with query parameters, so that callers do not
+ * have to concatenate and encode query strings themselves:
+ *
+ * <pre>
+ * client.doGet(UriBuilder.of("/items").query("q", text).query("page", 2).build());
+ * </pre>
+ *
+ * Parameter names and values are percent-encoded as query components.
+ * Builders are created from a path with {@link #of(String)} or from a
+ * {@link UriTemplate}, and are not thread-safe.
+ *
+ */
+public final class UriBuilder {
+	private final StringBuilder uri;
+	private boolean hasQuery;
+
+	UriBuilder(StringBuilder uri, boolean hasQuery) {
+		this.uri = uri;
+		this.hasQuery = hasQuery;
+	}
+
+	/**
+	 * @param path
+	 *            The relative URI to start from, used as is; it may already
+	 *            have a query string.
+	 */
+	public static UriBuilder of(String path) {
+		return new UriBuilder(new StringBuilder(path.length() + 32).append(path), path.indexOf('?') >= 0);
+	}
+
+	/**
+	 * Adds a query parameter. Iterable and array values add the parameter
+	 * once per element; <code>null</code> values and elements are skipped.
+	 */
+	public UriBuilder query(String name, Object value) {
+		if (value instanceof Iterable) {
+			for (Object element : (Iterable<?>) value) {
+				query(name, element);
+			}
+		} else if (value instanceof Object[]) {
+			for (Object element : (Object[]) value) {
+				query(name, element);
+			}
+		} else if (value != null) {
+			if (!hasQuery) {
+				uri.append('?');
+				hasQuery = true;
+			} else if (uri.charAt(uri.length() - 1) != '?' && uri.charAt(uri.length() - 1) != '&') {
+				uri.append('&');
+			}
+			UriEncoder.appendQueryComponent(uri, name);
+			uri.append('=');
+			UriEncoder.appendQueryComponent(uri, value.toString());
+		}
+		return this;
+	}
+
+	/**
+	 * Adds every entry of the given map as a query parameter, in the
+	 * iteration order of the map.
+	 */
+	public UriBuilder query(Map<String, ?> parameters) {
+		for (Entry<String, ?> parameter : parameters.entrySet()) {
+			query(parameter.getKey(), parameter.getValue());
+		}
+		return this;
+	}
+
+	/**
+	 * @return the encoded relative URI.
+	 */
+	public String build() {
+		return uri.toString();
+	}
+
+	@Override
+	public String toString() {
+		return uri.toString();
+	}
+}
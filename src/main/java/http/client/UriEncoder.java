@@ -0,0 +1,105 @@
+package http.client;
+
+import java.util.Arrays;
+
+
+/**
+ *
+ * Percent-encoding of URI components as defined by RFC 3986. Characters that
+ * are allowed in the component are appended as is, everything else is
+ * encoded as UTF-8 octets. Strings that need no encoding, by far the most
+ * common case, are appended without any intermediate allocation.
+ *
+ */
+final class UriEncoder {
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+	private static final boolean[] PATH_SEGMENT = allowed("!$&'()*+,;=:@");
+	private static final boolean[] QUERY_COMPONENT = allowed("!$'()*,;:@/?");
+
+	private UriEncoder() {
+	}
+
+	/**
+	 * Appends a value that stands for a single path segment; slashes in the
+	 * value are encoded, and so are the values <code>.</code> and
+	 * <code>..</code>, which would otherwise be removed as dot-segments and
+	 * change the path the request is sent to.
+	 */
+	static void appendPathSegment(StringBuilder target, String value) {
+		if (value.equals(".")) {
+			target.append("%2E");
+		} else if (value.equals("..")) {
+			target.append("%2E%2E");
+		} else {
+			append(target, value, PATH_SEGMENT);
+		}
+	}
+
+	/**
+	 * Appends the name or value of a query parameter; <code>&amp;</code>,
+	 * <code>=</code>, <code>+</code> and <code>#</code> in the value are
+	 * encoded.
+	 */
+	static void appendQueryComponent(StringBuilder target, String value) {
+		append(target, value, QUERY_COMPONENT);
+	}
+
+	private static void append(StringBuilder target, String value, boolean[] allowed) {
+		int length = value.length();
+		int i = 0;
+		while (i < length) {
+			char c = value.charAt(i);
+			if (c >= 128 || !allowed[c]) {
+				break;
+			}
+			i++;
+		}
+		target.append(value, 0, i);
+		while (i < length) {
+			char c = value.charAt(i++);
+			if (c < 128) {
+				if (allowed[c]) {
+					target.append(c);
+				} else {
+					appendOctet(target, c);
+				}
+			} else if (c < 0x800) {
+				appendOctet(target, 0xC0 | (c >> 6));
+				appendOctet(target, 0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(value.charAt(i))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(i++));
+				appendOctet(target, 0xF0 | (codePoint >> 18));
+				appendOctet(target, 0x80 | ((codePoint >> 12) & 0x3F));
+				appendOctet(target, 0x80 | ((codePoint >> 6) & 0x3F));
+				appendOctet(target, 0x80 | (codePoint & 0x3F));
+			} else {
+				if (Character.isSurrogate(c)) {
+					// Unpaired surrogates cannot be encoded as UTF-8
+					c = '\uFFFD';
+				}
+				appendOctet(target, 0xE0 | (c >> 12));
+				appendOctet(target, 0x80 | ((c >> 6) & 0x3F));
+				appendOctet(target, 0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	private static void appendOctet(StringBuilder target, int octet) {
+		target.append('%').append(HEX[octet >> 4]).append(HEX[octet & 0xF]);
+	}
+
+	private static boolean[] allowed(String delimiters) {
+		boolean[] allowed = new boolean[128];
+		Arrays.fill(allowed, 'a', 'z' + 1, true);
+		Arrays.fill(allowed, 'A', 'Z' + 1, true);
+		Arrays.fill(allowed, '0', '9' + 1, true);
+		allowed['-'] = true;
+		allowed['.'] = true;
+		allowed['_'] = true;
+		allowed['~'] = true;
+		for (int i = 0; i < delimiters.length(); i++) {
+			allowed[delimiters.charAt(i)] = true;
+		}
+		return allowed;
+	}
+}
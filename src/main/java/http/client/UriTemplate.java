@@ -0,0 +1,200 @@
+package http.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ *
+ * Precompiled relative URI with named variables, e.g.
+ * <code>/tenants/{id}/items/{item}</code>. The template is parsed once, when
+ * it is compiled, so it is meant to be kept in a constant and expanded for
+ * every request:
+ *
+ * <pre>
+ * static final UriTemplate ITEM = UriTemplate.compile("/tenants/{id}/items/{item}");
+ *
+ * client.doGet(ITEM.expand(tenantId, itemId));
+ * client.doGet(ITEM.builder(tenantId, itemId).query("fields", "name,price").build());
+ * </pre>
+ *
+ * Variables of the path are encoded as a single path segment, so a value
+ * containing <code>/</code>, or equal to <code>.</code> or <code>..</code>,
+ * cannot escape its segment; variables after the <code>?</code> of the
+ * template are encoded as query components. The literal parts of the
+ * template are used as is and must already be encoded. Instances are
+ * immutable and thread-safe.
+ *
+ */
+public final class UriTemplate {
+	private final String template;
+	private final String[] literals;
+	private final int[] variables;
+	private final boolean[] inQuery;
+	private final List<String> variableNames;
+	private final boolean hasQuery;
+	private final int literalLength;
+
+	private UriTemplate(String template, String[] literals, int[] variables, boolean[] inQuery,
+			List<String> variableNames) {
+		this.template = template;
+		this.literals = literals;
+		this.variables = variables;
+		this.inQuery = inQuery;
+		this.variableNames = variableNames;
+		this.hasQuery = template.indexOf('?') >= 0;
+		int length = 0;
+		for (String literal : literals) {
+			length += literal.length();
+		}
+		this.literalLength = length;
+	}
+
+	/**
+	 * @param template
+	 *            The relative URI, with variables enclosed in braces.
+	 * @throws IllegalArgumentException
+	 *             if a brace is not matched or a variable has no name.
+	 */
+	public static UriTemplate compile(String template) {
+		List<String> literals = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		List<Integer> variables = new ArrayList<>();
+		List<Boolean> inQuery = new ArrayList<>();
+		int start = 0;
+		for (int open = template.indexOf('{'); open >= 0; open = template.indexOf('{', start)) {
+			int close = template.indexOf('}', open + 1);
+			if (close < 0) {
+				throw new IllegalArgumentException("Unclosed variable in URI template: " + template);
+			}
+			String name = template.substring(open + 1, close).trim();
+			if (name.isEmpty() || name.indexOf('{') >= 0) {
+				throw new IllegalArgumentException("Invalid variable in URI template: " + template);
+			}
+			String literal = template.substring(start, open);
+			if (literal.indexOf('}') >= 0) {
+				throw new IllegalArgumentException("Unmatched '}' in URI template: " + template);
+			}
+			literals.add(literal);
+			int index = names.indexOf(name);
+			if (index < 0) {
+				index = names.size();
+				names.add(name);
+			}
+			variables.add(index);
+			inQuery.add(template.lastIndexOf('?', open) >= 0);
+			start = close + 1;
+		}
+		String tail = template.substring(start);
+		if (tail.indexOf('}') >= 0) {
+			throw new IllegalArgumentException("Unmatched '}' in URI template: " + template);
+		}
+		literals.add(tail);
+
+		int[] variableIndexes = new int[variables.size()];
+		boolean[] queryVariables = new boolean[variables.size()];
+		for (int i = 0; i < variableIndexes.length; i++) {
+			variableIndexes[i] = variables.get(i);
+			queryVariables[i] = inQuery.get(i);
+		}
+		return new UriTemplate(template, literals.toArray(new String[literals.size()]), variableIndexes,
+				queryVariables, Collections.unmodifiableList(names));
+	}
+
+	/**
+	 * @return the distinct variable names, in the order of their first
+	 *         appearance in the template.
+	 */
+	public List<String> getVariableNames() {
+		return variableNames;
+	}
+
+	/**
+	 * Expands the template with the given values, matched to the variables
+	 * in the order of {@link #getVariableNames()}. Values are converted with
+	 * <code>toString()</code> and percent-encoded.
+	 *
+	 * @return the encoded relative URI.
+	 * @throws IllegalArgumentException
+	 *             if the number of values does not match the number of
+	 *             variables or a value is <code>null</code>.
+	 */
+	public String expand(Object... values) {
+		return expandTo(new StringBuilder(literalLength + 16 * variables.length), values).toString();
+	}
+
+	/**
+	 * Expands the template with the values of the given map, keyed by
+	 * variable name.
+	 *
+	 * @return the encoded relative URI.
+	 * @throws IllegalArgumentException
+	 *             if a variable has no value.
+	 */
+	public String expand(Map<String, ?> values) {
+		return expand(toArray(values));
+	}
+
+	/**
+	 * @return a builder that starts from the expanded template, to add query
+	 *         parameters to.
+	 */
+	public UriBuilder builder(Object... values) {
+		return new UriBuilder(expandTo(new StringBuilder(literalLength + 16 * variables.length + 32), values),
+				hasQuery);
+	}
+
+	/**
+	 * @return a builder that starts from the template expanded with the values
+	 *         of the given map.
+	 */
+	public UriBuilder builder(Map<String, ?> values) {
+		return builder(toArray(values));
+	}
+
+	private StringBuilder expandTo(StringBuilder target, Object[] values) {
+		if (values.length != variableNames.size()) {
+			throw new IllegalArgumentException("Expected " + variableNames.size() + " values for URI template "
+					+ template + ", got " + values.length);
+		}
+		for (int i = 0; i < variables.length; i++) {
+			target.append(literals[i]);
+			Object value = values[variables[i]];
+			if (value == null) {
+				throw new IllegalArgumentException("No value for variable " + variableNames.get(variables[i])
+						+ " of URI template " + template);
+			}
+			if (inQuery[i]) {
+				UriEncoder.appendQueryComponent(target, value.toString());
+			} else {
+				UriEncoder.appendPathSegment(target, value.toString());
+			}
+		}
+		return target.append(literals[variables.length]);
+	}
+
+	private Object[] toArray(Map<String, ?> values) {
+		Object[] result = new Object[variableNames.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = values.get(variableNames.get(i));
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof UriTemplate && template.equals(((UriTemplate) other).template);
+	}
+
+	@Override
+	public int hashCode() {
+		return template.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return template;
+	}
+}
@@ -0,0 +1,66 @@
+package http.client;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * 
+ * Access to the virtual threads of Java 21 from code compiled for Java 8.
+ * 
+ */
+final class VirtualThreads {
+	private static final MethodHandle NEW_EXECUTOR = findExecutorFactory();
+
+	private VirtualThreads() {
+	}
+
+	static boolean isAvailable() {
+		return NEW_EXECUTOR != null;
+	}
+
+	/**
+	 * @return an executor that runs every task on a new virtual thread.
+	 * @throws UnsupportedOperationException
+	 *             if the runtime has no virtual threads.
+	 */
+	static ExecutorService newExecutor() {
+		if (NEW_EXECUTOR == null) {
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+		}
+		try {
+			return (ExecutorService) NEW_EXECUTOR.invokeExact();
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IllegalStateException("Failed to create a virtual thread executor", t);
+		}
+	}
+
+	/**
+	 * @return the executor shared by the clients running in virtual thread
+	 *         mode.
+	 */
+	static ExecutorService sharedExecutor() {
+		if (NEW_EXECUTOR == null) {
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+		}
+		return SharedExecutor.INSTANCE;
+	}
+
+	private static MethodHandle findExecutorFactory() {
+		try {
+			return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+					MethodType.methodType(ExecutorService.class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	private static final class SharedExecutor {
+		static final ExecutorService INSTANCE = newExecutor();
+	}
+}
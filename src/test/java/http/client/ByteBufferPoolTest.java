@@ -0,0 +1,97 @@
+package http.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class ByteBufferPoolTest {
+
+	@Test
+	public void releasedBufferIsReusedCleared() {
+		ByteBufferPool pool = new ByteBufferPool(16, 4, false);
+		ByteBuffer buffer = pool.acquire();
+		buffer.put((byte) 1).flip();
+		pool.release(buffer);
+		assertEquals(1, pool.getPooledCount());
+
+		ByteBuffer reused = pool.acquire();
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+		assertEquals(16, reused.limit());
+		assertEquals(0, pool.getPooledCount());
+		assertNotSame(reused, pool.acquire());
+	}
+
+	@Test
+	public void keepsAtMostMaxPooledBuffers() {
+		ByteBufferPool pool = new ByteBufferPool(16, 2, false);
+		ByteBuffer[] buffers = { pool.acquire(), pool.acquire(), pool.acquire() };
+		for (ByteBuffer buffer : buffers) {
+			pool.release(buffer);
+		}
+		assertEquals(2, pool.getPooledCount());
+	}
+
+	@Test
+	public void ignoresForeignBuffers() {
+		ByteBufferPool pool = new ByteBufferPool(16, 4, true);
+		pool.release(ByteBuffer.allocate(16));
+		pool.release(ByteBuffer.allocateDirect(32));
+		pool.release(ByteBuffer.allocateDirect(16).asReadOnlyBuffer());
+		assertEquals(0, pool.getPooledCount());
+		assertTrue(pool.acquire().isDirect());
+	}
+
+	@Test
+	public void bodySpansBuffersAndReturnsThemOnce() throws Exception {
+		for (boolean direct : new boolean[] { false, true }) {
+			ByteBufferPool pool = new ByteBufferPool(1024, 8, direct);
+			byte[] content = new byte[2500];
+			new Random(7).nextBytes(content);
+
+			PooledBody body = PooledBody.read(new ByteArrayInputStream(content), pool);
+			assertEquals(content.length, body.getLength());
+			assertEquals(3, body.getBuffers().size());
+			assertArrayEquals(content, body.toByteArray());
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			body.writeTo(out);
+			assertArrayEquals(content, out.toByteArray());
+
+			body.release();
+			body.release();
+			assertEquals(3, pool.getPooledCount());
+
+			PooledBody next = PooledBody.read(new ByteArrayInputStream(content), pool);
+			assertEquals(0, pool.getPooledCount());
+			next.close();
+		}
+	}
+
+	@Test
+	public void exactMultipleLeavesNoEmptyBuffer() throws Exception {
+		ByteBufferPool pool = new ByteBufferPool(1024, 8, false);
+		PooledBody body = PooledBody.read(new ByteArrayInputStream(new byte[2048]), pool);
+		assertEquals(2, body.getBuffers().size());
+		assertEquals(1, pool.getPooledCount());
+		body.release();
+		assertEquals(3, pool.getPooledCount());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void releasedBodyCannotBeRead() throws Exception {
+		ByteBufferPool pool = new ByteBufferPool(1024, 8, false);
+		PooledBody body = PooledBody.read(new ByteArrayInputStream(new byte[10]), pool);
+		body.release();
+		body.toByteArray();
+	}
+}
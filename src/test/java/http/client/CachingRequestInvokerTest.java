@@ -0,0 +1,216 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Scanner;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+
+
+public class CachingRequestInvokerTest {
+	private static final int BODY_LENGTH = 1000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private LocalHttpServer server;
+	private CloseableHttpClient httpClient;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+		httpClient = HttpClients.createDefault();
+		server.handle("/fresh/", exchange -> respond(exchange, 200, "max-age=60", null));
+		server.handle("/private/", exchange -> respond(exchange, 200, "no-store", null));
+		server.handle("/tagged/", exchange -> {
+			if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				respond(exchange, 304, "no-cache", "\"v1\"");
+			} else {
+				respond(exchange, 200, "no-cache", "\"v1\"");
+			}
+		});
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+		httpClient.close();
+	}
+
+	@Test
+	public void freshResponseIsServedFromMemory() throws Exception {
+		CachingRequestInvoker invoker = createInvoker(Long.MAX_VALUE);
+		URI url = server.uri("/fresh/a");
+
+		assertEquals(body(url), invoker.doGet(url, Collections.emptyMap()).getResponseString());
+		assertEquals(body(url), invoker.doGet(url, Collections.emptyMap()).getResponseString());
+		assertEquals(1, server.getRequestCount());
+		assertEquals(1, invoker.getHitCount());
+		assertEquals(1, invoker.getMissCount());
+	}
+
+	@Test
+	public void noStoreResponseIsNotCached() throws Exception {
+		CachingRequestInvoker invoker = createInvoker(Long.MAX_VALUE);
+		URI url = server.uri("/private/a");
+
+		invoker.doGet(url, Collections.emptyMap()).close();
+		invoker.doGet(url, Collections.emptyMap()).close();
+		assertEquals(2, server.getRequestCount());
+		assertEquals(0, invoker.getCachedBytes());
+	}
+
+	@Test
+	public void noStoreRequestBypassesCache() throws Exception {
+		CachingRequestInvoker invoker = createInvoker(Long.MAX_VALUE);
+		URI url = server.uri("/fresh/a");
+
+		invoker.doGet(url, Collections.emptyMap()).close();
+		invoker.doGet(url, Collections.singletonMap("Cache-Control", "no-store")).close();
+		assertEquals(2, server.getRequestCount());
+		assertEquals(0, invoker.getHitCount());
+	}
+
+	@Test
+	public void staleResponseIsRevalidatedWithETag() throws Exception {
+		CachingRequestInvoker invoker = createInvoker(Long.MAX_VALUE);
+		URI url = server.uri("/tagged/a");
+
+		assertEquals(body(url), invoker.doGet(url, Collections.emptyMap()).getResponseString());
+		Response revalidated = invoker.doGet(url, Collections.emptyMap());
+		assertEquals(200, revalidated.getStatusCode());
+		assertEquals(body(url), revalidated.getResponseString());
+		assertEquals(2, server.getRequestCount());
+		assertEquals(1, invoker.getRevalidationCount());
+		assertEquals(1, invoker.getNotModifiedCount());
+	}
+
+	@Test
+	public void unsafeMethodInvalidatesEntry() throws Exception {
+		CachingRequestInvoker invoker = createInvoker(Long.MAX_VALUE);
+		URI url = server.uri("/fresh/a");
+
+		invoker.doGet(url, Collections.emptyMap()).close();
+		invoker.doPut(url, "{}", Collections.emptyMap()).close();
+		invoker.doGet(url, Collections.emptyMap()).close();
+		assertEquals(3, server.getRequestCount());
+	}
+
+	@Test
+	public void leastRecentlyUsedEntryIsEvictedBySize() throws Exception {
+		long entryBytes = measureEntryBytes();
+		CachingRequestInvoker invoker = createInvoker(2 * entryBytes);
+		URI a = server.uri("/fresh/a");
+		URI b = server.uri("/fresh/b");
+		URI c = server.uri("/fresh/c");
+
+		invoker.doGet(a, Collections.emptyMap()).close();
+		invoker.doGet(b, Collections.emptyMap()).close();
+		invoker.doGet(a, Collections.emptyMap()).close();
+		invoker.doGet(c, Collections.emptyMap()).close();
+		assertEquals(4, server.getRequestCount());
+		assertEquals(1, invoker.getEvictionCount());
+		assertEquals(2 * entryBytes, invoker.getCachedBytes());
+
+		invoker.doGet(a, Collections.emptyMap()).close();
+		assertEquals(4, server.getRequestCount());
+		invoker.doGet(b, Collections.emptyMap()).close();
+		assertEquals(5, server.getRequestCount());
+	}
+
+	@Test
+	public void evictedEntryIsServedFromSpillFile() throws Exception {
+		long entryBytes = measureEntryBytes();
+		try (CachingRequestInvoker invoker = new CachingRequestInvoker(new HttpClientRequestInvoker(httpClient),
+				entryBytes, folder.getRoot().toPath().resolve("spill"), 64 * 1024)) {
+			URI a = server.uri("/fresh/a");
+			URI b = server.uri("/fresh/b");
+
+			invoker.doGet(a, Collections.emptyMap()).close();
+			invoker.doGet(b, Collections.emptyMap()).close();
+			assertEquals(1, invoker.getEvictionCount());
+
+			assertEquals(body(a), invoker.doGet(a, Collections.emptyMap()).getResponseString());
+			assertEquals(body(b), invoker.doGet(b, Collections.emptyMap()).getResponseString());
+			assertEquals(3, server.getRequestCount());
+			assertEquals(2, invoker.getHitCount());
+		}
+	}
+
+	@Test
+	public void streamedGetIsServedFromCache() throws Exception {
+		CachingRequestInvoker invoker = createInvoker(Long.MAX_VALUE);
+		URI url = server.uri("/fresh/a");
+
+		invoker.doGet(url, Collections.emptyMap()).close();
+		try (Response response = invoker.doGetStream(url, Collections.emptyMap());
+				Scanner scanner = new Scanner(response.getResponseStream(), "UTF-8")) {
+			assertEquals(body(url), scanner.useDelimiter("\\A").next());
+		}
+		assertEquals(1, server.getRequestCount());
+		assertEquals(1, invoker.getHitCount());
+
+		try (Response response = invoker.doGetStream(server.uri("/fresh/b"), Collections.emptyMap());
+				InputStream in = response.getResponseStream()) {
+			assertTrue(in.read() >= 0);
+		}
+		assertEquals(2, server.getRequestCount());
+	}
+
+	/**
+	 * @return the size of one cached response, all responses being the same
+	 *         size.
+	 */
+	private long measureEntryBytes() {
+		CachingRequestInvoker invoker = createInvoker(Long.MAX_VALUE);
+		invoker.doGet(server.uri("/fresh/z"), Collections.emptyMap()).close();
+		return invoker.getCachedBytes();
+	}
+
+	private CachingRequestInvoker createInvoker(long maxBytes) {
+		return new CachingRequestInvoker(new HttpClientRequestInvoker(httpClient), maxBytes);
+	}
+
+	private static void respond(HttpExchange exchange, int status, String cacheControl, String etag)
+			throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+		exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+		if (etag != null) {
+			exchange.getResponseHeaders().set("ETag", etag);
+		}
+		if (status == 304) {
+			exchange.sendResponseHeaders(status, -1);
+		} else {
+			byte[] body = body(exchange.getRequestURI()).getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(status, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+		exchange.close();
+	}
+
+	private static String body(URI url) {
+		String path = url.getPath();
+		StringBuilder body = new StringBuilder();
+		while (body.length() < BODY_LENGTH) {
+			body.append(path);
+		}
+		return body.substring(0, BODY_LENGTH);
+	}
+}
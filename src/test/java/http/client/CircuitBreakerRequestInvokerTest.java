@@ -0,0 +1,92 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class CircuitBreakerRequestInvokerTest {
+	private LocalHttpServer server;
+	private CloseableHttpClient httpClient;
+	private CircuitBreakerRequestInvoker invoker;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+		Properties properties = new Properties();
+		properties.setProperty(HttpClientProperties.CIRCUIT_BREAKER_SLOW_CALL_DURATION, "50");
+		httpClient = HttpClients.createDefault();
+		invoker = new CircuitBreakerRequestInvoker(new HttpClientRequestInvoker(httpClient), properties, null);
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+		server.close();
+		httpClient.close();
+	}
+
+	@Test
+	public void cancelledRequestIsNotRecorded() throws Exception {
+		URI url = server.uri("/items");
+		server.holdNext(1);
+		AtomicReference<RequestScope> scope = new AtomicReference<>();
+		Future<Response> call = executor.submit(() -> {
+			try (RequestScope opened = RequestScope.open()) {
+				scope.set(opened);
+				return invoker.doGet(url, Collections.emptyMap());
+			}
+		});
+		assertTrue(server.awaitRequests(1));
+		// longer than a slow call
+		Thread.sleep(100);
+		scope.get().cancel();
+
+		try {
+			call.get(5, TimeUnit.SECONDS);
+			fail("The cancelled request returned a response");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof HttpClientException);
+		}
+		CircuitBreaker breaker = invoker.getCircuitBreakers().get(url.getRawAuthority());
+		assertEquals(0, breaker.getFailureRate());
+		assertEquals(0, breaker.getSlowCallRate());
+	}
+
+	@Test
+	public void expiredRequestIsRecordedAsSlowCall() throws Exception {
+		URI url = server.uri("/items");
+		server.holdNext(1);
+
+		RequestScope scope = RequestScope.open(100, TimeUnit.MILLISECONDS);
+		try {
+			invoker.doGet(url, Collections.emptyMap());
+			fail("The request returned a response after its deadline");
+		} catch (HttpClientException e) {
+			assertTrue(scope.isExpired());
+		} finally {
+			scope.close();
+		}
+		CircuitBreaker breaker = invoker.getCircuitBreakers().get(url.getRawAuthority());
+		assertEquals(0, breaker.getFailureRate());
+		assertEquals(100, breaker.getSlowCallRate());
+	}
+}
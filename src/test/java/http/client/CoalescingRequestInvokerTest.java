@@ -0,0 +1,104 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class CoalescingRequestInvokerTest {
+	private LocalHttpServer server;
+	private CloseableHttpClient httpClient;
+	private CoalescingRequestInvoker invoker;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+		httpClient = HttpClients.createDefault();
+		invoker = new CoalescingRequestInvoker(new HttpClientRequestInvoker(httpClient));
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+		server.close();
+		httpClient.close();
+	}
+
+	@Test
+	public void followerSendsRequestAgainWhenLeaderIsCancelled() throws Exception {
+		URI url = server.uri("/items");
+		server.holdNext(1);
+		AtomicReference<RequestScope> leaderScope = new AtomicReference<>();
+		Future<Response> leader = executor.submit(() -> {
+			try (RequestScope opened = RequestScope.open()) {
+				leaderScope.set(opened);
+				return invoker.doGet(url, Collections.emptyMap());
+			}
+		});
+		assertTrue(server.awaitRequests(1));
+		Future<Response> follower = executor.submit(() -> invoker.doGet(url, Collections.emptyMap()));
+		awaitCoalesced(1);
+
+		leaderScope.get().cancel();
+
+		try {
+			leader.get(5, TimeUnit.SECONDS);
+			fail("The cancelled request returned a response");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof HttpClientException);
+		}
+		Response response = follower.get(5, TimeUnit.SECONDS);
+		assertEquals(200, response.getStatusCode());
+		assertEquals("ok", response.getResponseString());
+		assertEquals(2, server.getRequestCount());
+	}
+
+	@Test
+	public void followerDeadlineDoesNotCancelLeader() throws Exception {
+		URI url = server.uri("/items");
+		server.holdNext(1);
+		Future<Response> leader = executor.submit(() -> invoker.doGet(url, Collections.emptyMap()));
+		assertTrue(server.awaitRequests(1));
+
+		RequestScope scope = RequestScope.open(100, TimeUnit.MILLISECONDS);
+		try {
+			invoker.doGet(url, Collections.emptyMap());
+			fail("The request returned a response after its deadline");
+		} catch (HttpClientException e) {
+			assertTrue(scope.isExpired());
+		} finally {
+			scope.close();
+		}
+		server.release();
+
+		Response response = leader.get(5, TimeUnit.SECONDS);
+		assertEquals(200, response.getStatusCode());
+		assertEquals(1, server.getRequestCount());
+		assertEquals(1, invoker.getCoalescedCount());
+	}
+
+	private void awaitCoalesced(long count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (invoker.getCoalescedCount() < count) {
+			assertTrue("No request was coalesced", System.nanoTime() - deadline < 0);
+			Thread.sleep(5);
+		}
+	}
+}
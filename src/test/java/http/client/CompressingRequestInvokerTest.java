@@ -0,0 +1,150 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+
+public class CompressingRequestInvokerTest {
+	private static final int MIN_BYTES = 64;
+
+	private final ConcurrentLinkedQueue<String> encodings = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<String> bodies = new ConcurrentLinkedQueue<>();
+	private LocalHttpServer server;
+	private CloseableHttpClient httpClient;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+		httpClient = HttpClients.createDefault();
+		server.handle("/items", this::record);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+		httpClient.close();
+	}
+
+	@Test
+	public void gzipBodyRoundTrips() throws Exception {
+		CompressingRequestInvoker invoker = createInvoker(DeflateCodec.gzip(6));
+		String payload = repeat("{\"name\":\"value\"}", 100);
+
+		assertEquals(200, invoker.doPost(server.uri("/items"), payload, Collections.emptyMap()).getStatusCode());
+		assertEquals("gzip", encodings.poll());
+		assertEquals(payload, bodies.poll());
+		assertEquals(1, invoker.getCompressedCount());
+	}
+
+	@Test
+	public void deflateBodyRoundTrips() throws Exception {
+		CompressingRequestInvoker invoker = createInvoker(DeflateCodec.deflate(6));
+		byte[] payload = repeat("0123456789", 100).getBytes(StandardCharsets.US_ASCII);
+
+		assertEquals(200, invoker.doPost(server.uri("/items"), payload, Collections.emptyMap()).getStatusCode());
+		assertEquals("deflate", encodings.poll());
+		assertEquals(new String(payload, StandardCharsets.US_ASCII), bodies.poll());
+	}
+
+	@Test
+	public void smallBodyIsSentAsIs() throws Exception {
+		CompressingRequestInvoker invoker = createInvoker(DeflateCodec.gzip(6));
+		String payload = repeat("a", MIN_BYTES - 1);
+
+		assertEquals(200, invoker.doPut(server.uri("/items"), payload, Collections.emptyMap()).getStatusCode());
+		assertNull(encodings.poll());
+		assertEquals(payload, bodies.poll());
+		assertEquals(0, invoker.getCompressedCount());
+	}
+
+	@Test
+	public void thresholdCountsEncodedBytes() throws Exception {
+		CompressingRequestInvoker invoker = createInvoker(DeflateCodec.gzip(6));
+		// fewer characters than the threshold, but three UTF-8 bytes each
+		String payload = repeat("\u20ac", MIN_BYTES / 2);
+
+		assertEquals(200, invoker.doPut(server.uri("/items"), payload, Collections.emptyMap()).getStatusCode());
+		assertEquals("gzip", encodings.poll());
+		assertEquals(payload, bodies.poll());
+	}
+
+	@Test
+	public void rejectingHostReceivesPlainBodies() throws Exception {
+		server.handle("/strict", exchange -> {
+			if (exchange.getRequestHeaders().containsKey("Content-Encoding")) {
+				read(exchange.getRequestBody());
+				exchange.sendResponseHeaders(415, -1);
+				exchange.close();
+			} else {
+				record(exchange);
+			}
+		});
+		CompressingRequestInvoker invoker = createInvoker(DeflateCodec.gzip(6));
+		String payload = repeat("x", MIN_BYTES * 2);
+		URI url = server.uri("/strict");
+
+		for (int i = 0; i < 2; i++) {
+			assertEquals(200, invoker.doPost(url, payload, Collections.emptyMap()).getStatusCode());
+			assertEquals(payload, bodies.poll());
+		}
+		assertEquals(3, server.getRequestCount());
+		assertEquals(1, invoker.getRejectedCount());
+		assertTrue(invoker.getRejectingHosts().contains(url.getRawAuthority()));
+	}
+
+	private CompressingRequestInvoker createInvoker(ContentCodec codec) {
+		return new CompressingRequestInvoker(new HttpClientRequestInvoker(httpClient), codec, MIN_BYTES);
+	}
+
+	private void record(HttpExchange exchange) throws IOException {
+		String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+		InputStream in = exchange.getRequestBody();
+		if ("gzip".equals(encoding)) {
+			in = new GZIPInputStream(in);
+		} else if ("deflate".equals(encoding)) {
+			in = new InflaterInputStream(in);
+		}
+		if (encoding != null) {
+			encodings.add(encoding);
+		}
+		bodies.add(new String(read(in), StandardCharsets.UTF_8));
+		exchange.sendResponseHeaders(200, -1);
+		exchange.close();
+	}
+
+	private static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int n; (n = in.read(buffer)) != -1;) {
+			body.write(buffer, 0, n);
+		}
+		return body.toByteArray();
+	}
+
+	private static String repeat(String value, int count) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			builder.append(value);
+		}
+		return builder.toString();
+	}
+}
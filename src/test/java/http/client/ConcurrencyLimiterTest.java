@@ -0,0 +1,119 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+
+public class ConcurrencyLimiterTest {
+	private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void droppedRequestsHalveLimitDownToMinimum() throws Exception {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("host", 20, 3, 100, 2, 0.5, 0);
+		int[] expected = { 10, 5, 3, 3 };
+		for (int limit : expected) {
+			assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+			limiter.release(MILLISECOND, true);
+			assertEquals(limit, limiter.getLimit());
+		}
+	}
+
+	@Test
+	public void steadyLatencyRaisesLimitUpToMaximum() throws Exception {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("host", 10, 1, 40, 2, 0.5, 0);
+		for (int round = 0; round < 200; round++) {
+			saturate(limiter, MILLISECOND);
+		}
+		assertEquals(40, limiter.getLimit());
+	}
+
+	@Test
+	public void growingLatencyLowersLimit() throws Exception {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("host", 20, 1, 100, 2, 0.5, 0);
+		for (int round = 0; round < 5; round++) {
+			saturate(limiter, MILLISECOND);
+		}
+		int unloaded = limiter.getLimit();
+		for (int round = 0; round < 20; round++) {
+			saturate(limiter, 10 * MILLISECOND);
+		}
+		assertTrue(limiter.getLimit() + " < " + unloaded, limiter.getLimit() < unloaded / 2);
+	}
+
+	@Test
+	public void underusedLimitIsLeftAlone() throws Exception {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("host", 20, 1, 100, 2, 0.5, 0);
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+			limiter.release(MILLISECOND, false);
+		}
+		assertEquals(20, limiter.getLimit());
+	}
+
+	@Test
+	public void requestsOverQueueBoundAreRejected() throws Exception {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("host", 1, 1, 1, 2, 0.5, 1);
+		assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+		Future<Boolean> queued = executor.submit(() -> limiter.acquire(5, TimeUnit.SECONDS));
+		awaitQueueDepth(limiter, 1);
+
+		long start = System.nanoTime();
+		assertFalse(limiter.acquire(5, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+		limiter.release(MILLISECOND, false);
+		assertTrue(queued.get(5, TimeUnit.SECONDS));
+		assertEquals(1, limiter.getInFlight());
+		assertEquals(0, limiter.getQueueDepth());
+	}
+
+	@Test
+	public void queuedRequestTimesOut() throws Exception {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("host", 1, 1, 1, 2, 0.5, 4);
+		assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+		assertFalse(limiter.acquire(0, TimeUnit.MILLISECONDS));
+		assertFalse(limiter.acquire(50, TimeUnit.MILLISECONDS));
+		assertEquals(0, limiter.getQueueDepth());
+		assertEquals(1, limiter.getInFlight());
+	}
+
+	/**
+	 * Fills every slot, then releases them all with the given round trip
+	 * time.
+	 */
+	private static void saturate(ConcurrencyLimiter limiter, long rttNanos) throws InterruptedException {
+		int limit = limiter.getLimit();
+		for (int i = 0; i < limit; i++) {
+			assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+		}
+		for (int i = 0; i < limit; i++) {
+			limiter.release(rttNanos, false);
+		}
+	}
+
+	private static void awaitQueueDepth(ConcurrencyLimiter limiter, int depth) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (limiter.getQueueDepth() != depth) {
+			if (System.nanoTime() - deadline > 0) {
+				throw new AssertionError("Queue depth " + limiter.getQueueDepth() + " instead of " + depth);
+			}
+			Thread.sleep(5);
+		}
+	}
+}
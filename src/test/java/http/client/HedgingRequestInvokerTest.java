@@ -0,0 +1,70 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class HedgingRequestInvokerTest {
+	private LocalHttpServer server;
+	private CloseableHttpClient httpClient;
+	private CircuitBreakerRequestInvoker breakers;
+	private ConcurrencyLimitingRequestInvoker limiters;
+	private LoadBalancingRequestInvoker balancer;
+	private HedgingRequestInvoker hedging;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+		Properties properties = new Properties();
+		properties.setProperty(HttpClientProperties.HEDGING_DELAY_PERCENTILE, "50");
+		properties.setProperty(HttpClientProperties.HEDGING_DELAY_MIN, "20");
+		httpClient = HttpClients.createDefault();
+		// the order of HttpClientFactory.decorate
+		breakers = new CircuitBreakerRequestInvoker(new HttpClientRequestInvoker(httpClient), properties, null);
+		limiters = new ConcurrencyLimitingRequestInvoker(breakers, properties);
+		balancer = new LoadBalancingRequestInvoker(limiters, Collections.singletonList(server.getBaseURL()),
+				LoadBalancer.roundRobin(), 1, 30000);
+		hedging = new HedgingRequestInvoker(balancer, properties);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+		httpClient.close();
+	}
+
+	@Test
+	public void abortedAttemptIsNotCountedAsFailure() throws Exception {
+		URI url = server.uri("/items");
+		// enough latencies to set the hedge delay
+		for (int i = 0; i < 100; i++) {
+			assertEquals(200, hedging.doGet(url, Collections.emptyMap()).getStatusCode());
+		}
+
+		server.holdNext(1);
+		Response response = hedging.doGet(url, Collections.emptyMap());
+
+		assertEquals(200, response.getStatusCode());
+		assertEquals(1, hedging.getHedgedCount());
+		assertEquals(1, hedging.getHedgeWonCount());
+		String host = url.getRawAuthority();
+		CircuitBreaker breaker = breakers.getCircuitBreakers().get(host);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(0, breaker.getFailureRate());
+		assertEquals(0, limiters.getLimiters().get(host).getInFlight());
+		Endpoint endpoint = balancer.getEndpoints().get(0);
+		assertEquals(0, endpoint.getFailureCount());
+		assertEquals(0, endpoint.getOutstanding());
+		assertFalse(endpoint.isEjected());
+	}
+}
@@ -0,0 +1,141 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.DiscardingEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.nio.support.BasicServerExchangeHandler;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class Http2RequestInvokerTest {
+	private static final int CONCURRENT_REQUESTS = 20;
+
+	private final Set<String> connections = ConcurrentHashMap.newKeySet();
+	private final Set<String> versions = ConcurrentHashMap.newKeySet();
+	private final List<Runnable> heldResponses = new ArrayList<>();
+	private HttpAsyncServer server;
+	private Http2RequestInvoker transport;
+	private URI baseUrl;
+
+	@Before
+	public void setUp() throws Exception {
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		server = H2ServerBootstrap.bootstrap()
+				// requests to another authority are answered with 421 Misdirected Request
+				.setCanonicalHostName(loopback.getHostAddress())
+				.setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+				.register("*", () -> new BasicServerExchangeHandler<>(new HoldingHandler()))
+				.create();
+		server.start();
+		ListenerEndpoint endpoint = server.listen(new InetSocketAddress(loopback, 0), URIScheme.HTTP).get();
+		InetSocketAddress address = (InetSocketAddress) endpoint.getAddress();
+		baseUrl = URI.create("http://" + loopback.getHostAddress() + ":" + address.getPort());
+
+		Properties properties = new Properties();
+		properties.setProperty(HttpClientProperties.HTTP2_VERSION_POLICY, "force_http_2");
+		transport = HttpClientFactory.createHttp2Transport(properties);
+	}
+
+	@After
+	public void tearDown() {
+		transport.close();
+		server.close(CloseMode.IMMEDIATE);
+	}
+
+	@Test
+	public void multiplexesConcurrentRequestsOverOneConnection() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+		try {
+			List<Future<Response>> responses = new ArrayList<>();
+			for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+				responses.add(executor.submit(() -> transport.doGet(baseUrl.resolve("/held"), Collections.emptyMap())));
+			}
+			// the server answers once all the requests are in flight
+			for (Future<Response> response : responses) {
+				assertEquals(200, response.get(10, TimeUnit.SECONDS).getStatusCode());
+				assertEquals("ok", response.get().getResponseString());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, connections.size());
+		assertEquals(Collections.singleton("HTTP/2.0"), versions);
+	}
+
+	/**
+	 * Holds the responses until {@link #CONCURRENT_REQUESTS} requests have
+	 * been received.
+	 */
+	private final class HoldingHandler implements AsyncServerRequestHandler<Message<HttpRequest, Void>> {
+
+		@Override
+		public AsyncRequestConsumer<Message<HttpRequest, Void>> prepare(HttpRequest request,
+				EntityDetails entityDetails, HttpContext context) {
+			return new BasicRequestConsumer<>(entityDetails != null ? new DiscardingEntityConsumer<>() : null);
+		}
+
+		@Override
+		public void handle(Message<HttpRequest, Void> request, ResponseTrigger trigger, HttpContext context)
+				throws HttpException, IOException {
+			HttpCoreContext coreContext = HttpCoreContext.cast(context);
+			connections.add(String.valueOf(coreContext.getEndpointDetails().getRemoteAddress()));
+			versions.add(String.valueOf(coreContext.getProtocolVersion()));
+			List<Runnable> ready = null;
+			synchronized (heldResponses) {
+				heldResponses.add(() -> {
+					try {
+						respond(trigger, context);
+					} catch (HttpException | IOException e) {
+						throw new IllegalStateException(e);
+					}
+				});
+				if (heldResponses.size() == CONCURRENT_REQUESTS) {
+					ready = new ArrayList<>(heldResponses);
+				}
+			}
+			if (ready != null) {
+				ready.forEach(Runnable::run);
+			}
+		}
+
+		private void respond(ResponseTrigger trigger, HttpContext context) throws HttpException, IOException {
+			trigger.submitResponse(AsyncResponseBuilder.create(HttpStatus.SC_OK)
+					.setEntity("ok", ContentType.TEXT_PLAIN).build(), context);
+		}
+	}
+}
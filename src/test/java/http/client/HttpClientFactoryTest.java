@@ -0,0 +1,63 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class HttpClientFactoryTest {
+	private LocalHttpServer server;
+	private Properties properties;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+		properties = new Properties();
+		properties.setProperty(HttpClientProperties.BASE_URL, server.getBaseURL());
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void ownedPoolIsClosedWithClient() throws Exception {
+		HttpClient client = HttpClientFactory.create(properties);
+		assertEquals("ok", client.doGet("/").getResponseString());
+		client.close();
+
+		try {
+			client.doGet("/");
+			fail("The pool of a closed client must be shut down");
+		} catch (RuntimeException expected) {
+			// the connection manager refuses new leases
+		}
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void sharedPoolOutlivesClients() throws Exception {
+		try (ConnectionPool pool = HttpClientFactory.createConnectionPool(properties)) {
+			HttpClient first = HttpClientFactory.create(pool, properties);
+			HttpClient second = HttpClientFactory.create(pool, properties);
+			assertEquals("ok", first.doGet("/").getResponseString());
+			first.close();
+
+			assertEquals("ok", second.doGet("/").getResponseString());
+			second.close();
+
+			HttpClient third = HttpClientFactory.create(pool, properties);
+			assertEquals("ok", third.doGet("/").getResponseString());
+			third.close();
+			// the connection opened by the first client was reused by the others
+			assertEquals(1, pool.getTotalStats().getAvailable());
+		}
+		assertEquals(3, server.getRequestCount());
+	}
+}
@@ -0,0 +1,107 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class HttpClientRequestInvokerTest {
+	private static final byte[] BODY = new byte[64 * 1024];
+
+	private final List<RequestMetrics> metrics = new CopyOnWriteArrayList<>();
+	private LocalHttpServer server;
+	private ConnectionPool pool;
+	private CloseableHttpClient httpClient;
+	private HttpClientRequestInvoker invoker;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+		server.handle("/large", exchange -> {
+			exchange.sendResponseHeaders(200, BODY.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(BODY);
+			}
+		});
+		pool = HttpClientFactory.createConnectionPool(new Properties());
+		httpClient = HttpClientFactory.createHttpClient(pool, new Properties(), true);
+		invoker = new HttpClientRequestInvoker(httpClient, false, metrics::add);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		httpClient.close();
+		pool.close();
+		server.close();
+	}
+
+	@Test
+	public void bufferedResponseIsReportedWithBody() throws Exception {
+		invoker.doGet(server.uri("/large"), Collections.emptyMap());
+
+		assertEquals(1, metrics.size());
+		RequestMetrics reported = metrics.get(0);
+		assertEquals(200, reported.getStatusCode());
+		assertNull(reported.getFailure());
+		assertEquals(BODY.length, reported.getBytesReceived());
+		assertTrue(reported.getBodyReadTime() >= 0);
+	}
+
+	@Test
+	public void streamedResponseIsReportedAtEndOfBody() throws Exception {
+		try (Response response = invoker.doGetStream(server.uri("/large"), Collections.emptyMap())) {
+			assertEquals(0, metrics.size());
+			try (InputStream in = response.getResponseStream()) {
+				byte[] buffer = new byte[8192];
+				while (in.read(buffer) >= 0) {
+					// read to the end
+				}
+			}
+			assertEquals(1, metrics.size());
+		}
+
+		assertEquals(1, metrics.size());
+		RequestMetrics reported = metrics.get(0);
+		assertEquals(200, reported.getStatusCode());
+		assertEquals(BODY.length, reported.getBytesReceived());
+		assertTrue(reported.getBodyReadTime() >= 0);
+		assertTrue(reported.getTotalTime() >= reported.getBodyReadTime());
+	}
+
+	@Test
+	public void streamedResponseIsReportedWhenRead() throws Exception {
+		try (Response response = invoker.doGetStream(server.uri("/large"), Collections.emptyMap())) {
+			assertEquals(0, metrics.size());
+			assertEquals(BODY.length, response.getResponseBytes().length);
+			assertEquals(1, metrics.size());
+		}
+		assertEquals(1, metrics.size());
+		assertEquals(BODY.length, metrics.get(0).getBytesReceived());
+	}
+
+	@Test
+	public void streamedResponseIsReportedWhenClosed() throws Exception {
+		Response response = invoker.doGetStream(server.uri("/"), Collections.emptyMap());
+		assertEquals(0, metrics.size());
+		response.close();
+
+		assertEquals(1, metrics.size());
+		assertEquals(200, metrics.get(0).getStatusCode());
+		// the rest of the body is drained without being timed
+		assertEquals(-1, metrics.get(0).getBodyReadTime());
+		response.close();
+		assertEquals(1, metrics.size());
+	}
+}
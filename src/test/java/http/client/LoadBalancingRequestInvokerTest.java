@@ -0,0 +1,148 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class LoadBalancingRequestInvokerTest {
+	private static final long EJECT_DURATION = 300;
+
+	private List<LocalHttpServer> servers;
+	private CloseableHttpClient httpClient;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception {
+		servers = Arrays.asList(new LocalHttpServer(), new LocalHttpServer(), new LocalHttpServer());
+		httpClient = HttpClients.createDefault();
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+		for (LocalHttpServer server : servers) {
+			server.close();
+		}
+		httpClient.close();
+	}
+
+	@Test
+	public void roundRobinTakesEndpointsInTurn() throws Exception {
+		LoadBalancingRequestInvoker invoker = createInvoker(LoadBalancer.roundRobin(), 0, servers);
+		for (int i = 0; i < 9; i++) {
+			Response response = invoker.doGet(servers.get(0).uri("/items?page=" + i), Collections.emptyMap());
+			assertEquals("ok", response.getResponseString());
+		}
+		for (int i = 0; i < servers.size(); i++) {
+			assertEquals(3, servers.get(i).getRequestCount());
+			assertEquals(3, invoker.getEndpoints().get(i).getRequestCount());
+		}
+	}
+
+	@Test
+	public void leastOutstandingAvoidsBusyEndpoint() throws Exception {
+		List<LocalHttpServer> pair = servers.subList(0, 2);
+		LoadBalancingRequestInvoker invoker = createInvoker(LoadBalancer.leastOutstanding(), 0, pair);
+		URI url = pair.get(0).uri("/items");
+		pair.get(0).holdNext(1);
+		pair.get(1).holdNext(1);
+		Future<Response> held = executor.submit(() -> invoker.doGet(url, Collections.emptyMap()));
+		LocalHttpServer busy = awaitFirstRequest(pair);
+		LocalHttpServer idle = pair.get(0) == busy ? pair.get(1) : pair.get(0);
+		idle.holdNext(0);
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals(200, invoker.doGet(url, Collections.emptyMap()).getStatusCode());
+		}
+		assertEquals(5, idle.getRequestCount());
+		assertEquals(1, busy.getRequestCount());
+
+		busy.release();
+		assertEquals(200, held.get(5, TimeUnit.SECONDS).getStatusCode());
+	}
+
+	@Test
+	public void failingEndpointIsEjectedAndReadmitted() throws Exception {
+		List<LocalHttpServer> pair = servers.subList(0, 2);
+		AtomicBoolean failing = new AtomicBoolean(true);
+		pair.get(1).handle("/items", exchange -> {
+			exchange.sendResponseHeaders(failing.get() ? 503 : 200, -1);
+			exchange.close();
+		});
+		LoadBalancingRequestInvoker invoker = createInvoker(LoadBalancer.roundRobin(), 1, pair);
+		Endpoint endpoint = invoker.getEndpoints().get(1);
+		URI url = pair.get(0).uri("/items");
+
+		assertEquals(200, invoker.doGet(url, Collections.emptyMap()).getStatusCode());
+		assertEquals(503, invoker.doGet(url, Collections.emptyMap()).getStatusCode());
+		assertTrue(endpoint.isEjected());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(200, invoker.doGet(url, Collections.emptyMap()).getStatusCode());
+		}
+		assertEquals(1, pair.get(1).getRequestCount());
+
+		failing.set(false);
+		Thread.sleep(EJECT_DURATION + 50);
+		assertFalse(endpoint.isEjected());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(200, invoker.doGet(url, Collections.emptyMap()).getStatusCode());
+		}
+		assertEquals(3, pair.get(1).getRequestCount());
+		assertEquals(1, endpoint.getFailureCount());
+	}
+
+	@Test
+	public void requestOutsidePrimaryBaseUrlIsNotRedirected() throws Exception {
+		LoadBalancingRequestInvoker invoker = new LoadBalancingRequestInvoker(
+				new HttpClientRequestInvoker(httpClient),
+				Arrays.asList(servers.get(0).getBaseURL() + "/api/", servers.get(1).getBaseURL() + "/api/"),
+				LoadBalancer.roundRobin(), 0, EJECT_DURATION);
+		for (int i = 0; i < 2; i++) {
+			assertEquals(200, invoker.doGet(servers.get(0).uri("/other"), Collections.emptyMap()).getStatusCode());
+		}
+		assertEquals(2, servers.get(0).getRequestCount());
+		assertEquals(0, servers.get(1).getRequestCount());
+		assertEquals(0, invoker.getEndpoints().get(0).getRequestCount());
+	}
+
+	private LoadBalancingRequestInvoker createInvoker(LoadBalancer balancer, int ejectFailures,
+			List<LocalHttpServer> targets) {
+		String[] baseUrls = new String[targets.size()];
+		for (int i = 0; i < baseUrls.length; i++) {
+			baseUrls[i] = targets.get(i).getBaseURL();
+		}
+		return new LoadBalancingRequestInvoker(new HttpClientRequestInvoker(httpClient), Arrays.asList(baseUrls),
+				balancer, ejectFailures, EJECT_DURATION);
+	}
+
+	private static LocalHttpServer awaitFirstRequest(List<LocalHttpServer> targets) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (System.nanoTime() - deadline < 0) {
+			for (LocalHttpServer server : targets) {
+				if (server.getRequestCount() > 0) {
+					return server;
+				}
+			}
+			Thread.sleep(5);
+		}
+		throw new AssertionError("No server received the request");
+	}
+}
@@ -0,0 +1,221 @@
+package http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+
+/**
+ *
+ * In-process HTTP server used by the tests and as the benchmark target, so
+ * that the numbers reflect the client and the loopback stack rather than a
+ * remote service.
+ * <p>
+ * <code>/json</code>, <code>/upload</code>, <code>/slow</code> and
+ * <code>/headers</code> serve the benchmarks; every other path answers
+ * <code>ok</code>, and {@link #holdNext(int)} makes the next of those requests
+ * wait until {@link #release()}, so that a test can act while they are in
+ * flight.
+ *
+ */
+class LocalHttpServer implements AutoCloseable {
+	static final int RESPONSE_HEADER_COUNT = 30;
+	static final long SLOW_RESPONSE_MILLIS = 200;
+	static final byte[] SMALL_JSON = ("{\"id\":42,\"name\":\"benchmark\",\"tags\":[\"a\",\"b\",\"c\"],"
+			+ "\"nested\":{\"enabled\":true,\"ratio\":0.75,\"description\":\"small json document\"}}")
+			.getBytes(StandardCharsets.UTF_8);
+	static final byte[] OK = "ok".getBytes(StandardCharsets.UTF_8);
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger toHold = new AtomicInteger();
+	private final CountDownLatch released = new CountDownLatch(1);
+
+	LocalHttpServer() throws IOException {
+		this(Executors.newFixedThreadPool(64));
+	}
+
+	/**
+	 * @param executor
+	 *            The executor that handles the exchanges, which bounds the
+	 *            number of requests the server serves concurrently.
+	 */
+	LocalHttpServer(ExecutorService executor) throws IOException {
+		this(executor, null);
+	}
+
+	/**
+	 * @param sslContext
+	 *            The context of an HTTPS server.
+	 */
+	LocalHttpServer(SSLContext sslContext) throws IOException {
+		this(Executors.newCachedThreadPool(), sslContext);
+	}
+
+	private LocalHttpServer(ExecutorService executor, SSLContext sslContext) throws IOException {
+		// Without TCP_NODELAY the server's separate header and body writes hit
+		// Nagle + delayed ACK and every round trip costs ~40ms.
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		// The server closes idle connections beyond 200 by default, which
+		// breaks clients that keep more connections alive.
+		System.setProperty("sun.net.httpserver.maxIdleConnections", "4096");
+		InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+		if (sslContext == null) {
+			server = HttpServer.create(address, 1024);
+		} else {
+			HttpsServer https = HttpsServer.create(address, 1024);
+			https.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+			server = https;
+		}
+		this.executor = executor;
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.createContext("/json", exchange -> respond(exchange, SMALL_JSON));
+		server.createContext("/upload", exchange -> {
+			long received = drain(exchange.getRequestBody());
+			respond(exchange, ("{\"received\":" + received + "}").getBytes(StandardCharsets.UTF_8));
+		});
+		server.createContext("/slow", exchange -> {
+			try {
+				Thread.sleep(SLOW_RESPONSE_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			respond(exchange, SMALL_JSON);
+		});
+		server.createContext("/headers", exchange -> {
+			Headers headers = exchange.getResponseHeaders();
+			for (int i = 0; i < RESPONSE_HEADER_COUNT; i++) {
+				headers.add("X-Benchmark-Header-" + i, "value-" + i);
+			}
+			respond(exchange, SMALL_JSON);
+		});
+		server.start();
+	}
+
+	String getBaseURL() {
+		String scheme = server instanceof HttpsServer ? "https" : "http";
+		return scheme + "://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+	}
+
+	URI uri(String path) {
+		return URI.create(getBaseURL() + path);
+	}
+
+	/**
+	 * Serves the requests to a path, and to the paths below it, with the
+	 * given handler instead of answering <code>ok</code>.
+	 */
+	void handle(String path, HttpHandler handler) {
+		server.createContext(path, exchange -> {
+			requests.incrementAndGet();
+			handler.handle(exchange);
+		});
+	}
+
+	/**
+	 * @return the number of requests received so far, other than the ones to
+	 *         the benchmark paths.
+	 */
+	int getRequestCount() {
+		return requests.get();
+	}
+
+	/**
+	 * Holds the next requests until {@link #release()} is called.
+	 */
+	void holdNext(int count) {
+		toHold.set(count);
+	}
+
+	/**
+	 * Lets the held requests, and every later one, through.
+	 */
+	void release() {
+		released.countDown();
+	}
+
+	/**
+	 * Waits until the server has received the given number of requests.
+	 *
+	 * @return <code>false</code> if it did not within 5 seconds.
+	 */
+	boolean awaitRequests(int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (requests.get() < count) {
+			if (System.nanoTime() - deadline > 0) {
+				return false;
+			}
+			Thread.sleep(5);
+		}
+		return true;
+	}
+
+	@Override
+	public void close() {
+		release();
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		if (toHold.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		try {
+			drain(exchange.getRequestBody());
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+			exchange.sendResponseHeaders(200, OK.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(OK);
+			}
+		} catch (IOException e) {
+			// the client aborted the request while it was held
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static long drain(InputStream in) throws IOException {
+		byte[] buffer = new byte[8192];
+		long total = 0;
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			total += read;
+		}
+		return total;
+	}
+
+	private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+		drain(exchange.getRequestBody());
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package http.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class RequestBodyTest {
+	private static final byte[] CONTENT = new byte[64 * 1024];
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void writesStreamUpToDeclaredLength() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RequestBody.of(new ByteArrayInputStream(CONTENT), 100).writeTo(out);
+		assertEquals(100, out.size());
+	}
+
+	@Test
+	public void failsWhenStreamIsShorterThanDeclaredLength() throws Exception {
+		try {
+			RequestBody.of(new ByteArrayInputStream(CONTENT), CONTENT.length + 1).writeTo(new ByteArrayOutputStream());
+			fail("The body was written without its last byte");
+		} catch (IOException e) {
+			assertEquals("Stream ended after 65536 of 65537 bytes", e.getMessage());
+		}
+	}
+
+	@Test
+	public void transfersFile() throws Exception {
+		Path file = folder.newFile().toPath();
+		Files.write(file, CONTENT);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RequestBody.of(file).writeTo(out);
+		assertArrayEquals(CONTENT, out.toByteArray());
+	}
+
+	@Test(timeout = 5000)
+	public void failsWhenFileIsTruncatedWhileSent() throws Exception {
+		Path file = folder.newFile().toPath();
+		Files.write(file, CONTENT);
+		OutputStream truncating = new ByteArrayOutputStream() {
+			@Override
+			public void write(byte[] b, int off, int len) {
+				super.write(b, off, len);
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+					channel.truncate(size());
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+		try {
+			RequestBody.of(file).writeTo(truncating);
+			fail("The truncated file was sent as complete");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
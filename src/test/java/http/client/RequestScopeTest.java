@@ -0,0 +1,146 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class RequestScopeTest {
+	private static final String DEADLINE_HEADER = "X-Request-Timeout";
+	private static final int DEFAULT_TIMEOUT = 10000;
+
+	private LocalHttpServer server;
+	private CloseableHttpClient httpClient;
+	private RequestInvoker invoker;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+		RequestConfig config = RequestConfig.custom().setSocketTimeout(DEFAULT_TIMEOUT).build();
+		httpClient = HttpClients.custom().setDefaultRequestConfig(config).build();
+		invoker = new HttpClientRequestInvoker(httpClient, false, null, config);
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+		server.release();
+		server.close();
+		httpClient.close();
+	}
+
+	@Test
+	public void readTimeoutReplacesDefault() throws Exception {
+		server.holdNext(1);
+		long start = System.nanoTime();
+		try (RequestScope scope = RequestScope.open().readTimeout(200, TimeUnit.MILLISECONDS)) {
+			invoker.doGet(server.uri("/"), Collections.emptyMap());
+			fail("The request must time out");
+		} catch (HttpClientException e) {
+			assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof SocketTimeoutException);
+		}
+		assertElapsedBetween(start, 150, 2000);
+	}
+
+	@Test
+	public void deadlineShortensLongerTimeouts() throws Exception {
+		server.holdNext(1);
+		long start = System.nanoTime();
+		try (RequestScope scope = RequestScope.open(300, TimeUnit.MILLISECONDS).readTimeout(DEFAULT_TIMEOUT,
+				TimeUnit.MILLISECONDS)) {
+			try {
+				invoker.doGet(server.uri("/"), Collections.emptyMap());
+				fail("The request must fail at its deadline");
+			} catch (HttpClientException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("exceeded its deadline"));
+			}
+			assertTrue(scope.isExpired());
+			assertEquals(0, scope.getRemaining(TimeUnit.MILLISECONDS));
+		}
+		assertElapsedBetween(start, 250, 2000);
+	}
+
+	@Test
+	public void nestedScopeKeepsOuterDeadline() throws Exception {
+		try (RequestScope outer = RequestScope.open(200, TimeUnit.MILLISECONDS);
+				RequestScope inner = RequestScope.open(10, TimeUnit.SECONDS)) {
+			assertTrue(inner.getRemaining(TimeUnit.MILLISECONDS) <= 200);
+		}
+	}
+
+	@Test
+	public void cancelAbortsRequestInFlight() throws Exception {
+		server.holdNext(1);
+		AtomicReference<RequestScope> scope = new AtomicReference<>();
+		executor.submit(() -> {
+			server.awaitRequests(1);
+			scope.get().cancel();
+			return null;
+		});
+		long start = System.nanoTime();
+		try (RequestScope opened = RequestScope.open()) {
+			scope.set(opened);
+			invoker.doGet(server.uri("/"), Collections.emptyMap());
+			fail("The request must be cancelled");
+		} catch (HttpClientException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("was cancelled"));
+		}
+		assertElapsedBetween(start, 0, 2000);
+	}
+
+	@Test
+	public void remainingTimeIsPropagatedInHeader() throws Exception {
+		AtomicReference<String> received = new AtomicReference<>();
+		server.handle("/items", exchange -> {
+			received.set(exchange.getRequestHeaders().getFirst(DEADLINE_HEADER));
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		RequestInvoker propagating = new DeadlinePropagatingRequestInvoker(invoker, DEADLINE_HEADER);
+		URI url = server.uri("/items");
+
+		propagating.doGet(url, Collections.emptyMap()).close();
+		assertNull(received.get());
+
+		try (RequestScope scope = RequestScope.open(5, TimeUnit.SECONDS)) {
+			propagating.doGet(url, Collections.emptyMap()).close();
+		}
+		long remaining = Long.parseLong(received.get());
+		assertTrue(String.valueOf(remaining), remaining > 0 && remaining <= 5000);
+	}
+
+	@Test
+	public void expiredRequestIsNotSent() throws Exception {
+		RequestInvoker propagating = new DeadlinePropagatingRequestInvoker(invoker, DEADLINE_HEADER);
+		try (RequestScope scope = RequestScope.open(0, TimeUnit.MILLISECONDS)) {
+			propagating.doGet(server.uri("/"), Collections.emptyMap());
+			fail("The request must fail without being sent");
+		} catch (HttpClientException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("exceeded its deadline"));
+		}
+		assertEquals(0, server.getRequestCount());
+	}
+
+	private static void assertElapsedBetween(long start, long minMillis, long maxMillis) {
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue(elapsed + " ms", elapsed >= minMillis && elapsed < maxMillis);
+	}
+}
@@ -0,0 +1,56 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+public class RetryBudgetTest {
+
+	@Test
+	public void startsFull() {
+		RetryBudget budget = new RetryBudget(0.1, 3);
+		for (int i = 0; i < 3; i++) {
+			assertTrue(budget.tryAcquire());
+		}
+		assertFalse(budget.tryAcquire());
+		assertEquals(0, budget.getAvailableTokens(), 0);
+	}
+
+	@Test
+	public void requestsDepositRatio() {
+		RetryBudget budget = new RetryBudget(0.1, 3);
+		while (budget.tryAcquire()) {
+			// empty the bucket
+		}
+		for (int i = 0; i < 9; i++) {
+			budget.onRequest();
+		}
+		assertEquals(0.9, budget.getAvailableTokens(), 1e-9);
+		assertFalse(budget.tryAcquire());
+		budget.onRequest();
+		assertTrue(budget.tryAcquire());
+		assertFalse(budget.tryAcquire());
+	}
+
+	@Test
+	public void depositsStopAtCapacity() {
+		RetryBudget budget = new RetryBudget(0.5, 2);
+		for (int i = 0; i < 100; i++) {
+			budget.onRequest();
+		}
+		assertEquals(2, budget.getAvailableTokens(), 0);
+	}
+
+	@Test
+	public void zeroRatioNeverRefills() {
+		RetryBudget budget = new RetryBudget(0, 1);
+		assertTrue(budget.tryAcquire());
+		for (int i = 0; i < 100; i++) {
+			budget.onRequest();
+		}
+		assertFalse(budget.tryAcquire());
+	}
+}
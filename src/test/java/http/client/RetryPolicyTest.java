@@ -0,0 +1,96 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+
+public class RetryPolicyTest {
+	private static final long INITIAL_BACKOFF = 100;
+	private static final long MAX_BACKOFF = 1000;
+	private static final long MAX_RETRY_AFTER = 30000;
+
+	private final RetryPolicy policy = new RetryPolicy(5, INITIAL_BACKOFF, MAX_BACKOFF, MAX_RETRY_AFTER,
+			new HashSet<>(Arrays.asList(503, 504)), new HashSet<>(Arrays.asList("get", "PUT")));
+
+	@Test
+	public void backoffDoublesUpToMaximum() {
+		for (int retry = 1; retry <= 40; retry++) {
+			long bound = Math.min(MAX_BACKOFF, INITIAL_BACKOFF << Math.min(retry - 1, 30));
+			long longest = 0;
+			for (int i = 0; i < 1000; i++) {
+				long backoff = policy.getBackoff(retry, null);
+				assertTrue(retry + ": " + backoff, backoff >= 0 && backoff <= bound);
+				longest = Math.max(longest, backoff);
+			}
+			// full jitter spreads the delays over the whole range
+			assertTrue(retry + ": " + longest, longest > bound / 2);
+		}
+	}
+
+	@Test
+	public void retryAfterSecondsTakePrecedence() {
+		assertEquals(2000, policy.getBackoff(1, response("2")));
+		assertEquals(0, policy.getBackoff(3, response("0")));
+	}
+
+	@Test
+	public void retryAfterLongerThanMaximumIsNotRetried() {
+		assertEquals(-1, policy.getBackoff(1, response("31")));
+		assertEquals(-1, policy.getBackoff(1, response("9223372036854776")));
+		assertEquals(-1, policy.getBackoff(1, response("99999999999999999999")));
+	}
+
+	@Test
+	public void parsesRetryAfterDate() {
+		long now = 1_700_000_000_000L;
+		assertEquals(5000, RetryPolicy.parseRetryAfter(DateUtils.formatDate(new Date(now + 5000)), now));
+		assertEquals(0, RetryPolicy.parseRetryAfter(DateUtils.formatDate(new Date(now - 5000)), now));
+		assertEquals(-1, RetryPolicy.parseRetryAfter("soon", now));
+		assertEquals(-1, RetryPolicy.parseRetryAfter(" ", now));
+	}
+
+	@Test
+	public void invalidRetryAfterFallsBackToBackoff() {
+		long backoff = policy.getBackoff(1, response("soon"));
+		assertTrue(String.valueOf(backoff), backoff >= 0 && backoff <= INITIAL_BACKOFF);
+	}
+
+	@Test
+	public void retriesStatusesOfIdempotentMethods() {
+		assertTrue(policy.isRetryable("GET", 503));
+		assertTrue(policy.isRetryable("PUT", 504));
+		assertFalse(policy.isRetryable("GET", 500));
+		assertFalse(policy.isRetryable("POST", 503));
+	}
+
+	@Test
+	public void retriesConnectFailuresOfEveryMethod() {
+		assertTrue(policy.isRetryable("POST", new ConnectException()));
+		assertFalse(policy.isRetryable("POST", new SocketTimeoutException()));
+		assertTrue(policy.isRetryable("GET", new HttpClientException(new SocketTimeoutException(), "timeout", "")));
+		assertFalse(policy.isRetryable("GET", new UnknownHostException()));
+		assertFalse(policy.isRetryable("GET", new IllegalStateException()));
+		assertTrue(policy.isRetryable("GET", new IOException()));
+	}
+
+	private static Response response(String retryAfter) {
+		BasicHttpResponse httpResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, 503, "Service Unavailable");
+		httpResponse.setHeader(RetryPolicy.RETRY_AFTER, retryAfter);
+		return new HttpClientResponse(httpResponse, URI.create("http://localhost/"));
+	}
+}
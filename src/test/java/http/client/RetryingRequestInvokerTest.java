@@ -0,0 +1,76 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class RetryingRequestInvokerTest {
+	private LocalHttpServer server;
+	private CloseableHttpClient httpClient;
+	private RetryingRequestInvoker invoker;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+		httpClient = HttpClients.createDefault();
+		RetryPolicy policy = new RetryPolicy(3, 10, 100, 1000, new HashSet<>(Arrays.asList(503)),
+				RetryPolicy.parseMethods("GET"));
+		invoker = new RetryingRequestInvoker(new HttpClientRequestInvoker(httpClient), policy,
+				new RetryBudget(0.1, 10));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+		httpClient.close();
+	}
+
+	@Test
+	public void waitsForRetryAfterBeforeRetrying() throws Exception {
+		AtomicInteger attempts = new AtomicInteger();
+		server.handle("/items", exchange -> {
+			if (attempts.incrementAndGet() == 1) {
+				exchange.getResponseHeaders().set(RetryPolicy.RETRY_AFTER, "1");
+				exchange.sendResponseHeaders(503, -1);
+			} else {
+				exchange.sendResponseHeaders(200, -1);
+			}
+			exchange.close();
+		});
+
+		long start = System.nanoTime();
+		Response response = invoker.doGet(server.uri("/items"), Collections.emptyMap());
+
+		assertEquals(200, response.getStatusCode());
+		assertEquals(2, attempts.get());
+		assertEquals(1, invoker.getRetryCount());
+		assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(1));
+	}
+
+	@Test
+	public void hugeRetryAfterIsNotRetried() throws Exception {
+		server.handle("/items", exchange -> {
+			exchange.getResponseHeaders().set(RetryPolicy.RETRY_AFTER, "9223372036854776");
+			exchange.sendResponseHeaders(503, -1);
+			exchange.close();
+		});
+
+		URI url = server.uri("/items");
+		assertEquals(503, invoker.doGet(url, Collections.emptyMap()).getStatusCode());
+		assertEquals(1, server.getRequestCount());
+		assertEquals(0, invoker.getRetryCount());
+	}
+}
@@ -0,0 +1,123 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class TimingSSLSocketFactoryTest {
+	private static final char[] PASSWORD = "secret".toCharArray();
+	private static final int POOLS = 5;
+	// a new connection for every request
+	private static final Map<String, String> CLOSE = Collections.singletonMap("Connection", "close");
+
+	@ClassRule
+	public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+	private static TrustManagerFactory trustManagers;
+	private static LocalHttpServer server;
+
+	@BeforeClass
+	public static void startServer() throws Exception {
+		File keyStoreFile = new File(FOLDER.getRoot(), "server.p12");
+		String keytool = new File(System.getProperty("java.home"), "bin/keytool").getPath();
+		Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "server", "-keyalg", "EC",
+				"-groupname", "secp256r1", "-dname", "CN=localhost", "-ext", "SAN=ip:127.0.0.1", "-validity", "2",
+				"-storetype", "PKCS12", "-keystore", keyStoreFile.getPath(), "-storepass", new String(PASSWORD),
+				"-keypass", new String(PASSWORD)).inheritIO().start();
+		assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+		assertEquals(0, process.exitValue());
+
+		KeyStore keyStore = KeyStore.getInstance("PKCS12");
+		try (InputStream in = new FileInputStream(keyStoreFile)) {
+			keyStore.load(in, PASSWORD);
+		}
+		KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagers.init(keyStore, PASSWORD);
+		trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustManagers.init(keyStore);
+		SSLContext serverContext = SSLContext.getInstance("TLS");
+		serverContext.init(keyManagers.getKeyManagers(), null, null);
+		server = new LocalHttpServer(serverContext);
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	@Test
+	public void connectionsResumeSessionsOfSharedContext() throws Exception {
+		for (String protocol : Arrays.asList("TLSv1.2", "TLSv1.3")) {
+			long[] counts = sendRequests(protocol, createClientContext());
+			assertEquals(protocol, POOLS * 2, counts[0]);
+			// only the first connection does a full handshake
+			assertEquals(protocol, POOLS * 2 - 1, counts[1]);
+		}
+	}
+
+	@Test
+	public void connectionsOfSeparateContextsDoFullHandshakes() throws Exception {
+		for (String protocol : Arrays.asList("TLSv1.2", "TLSv1.3")) {
+			long[] counts = sendRequests(protocol, null);
+			assertEquals(protocol, POOLS * 2, counts[0]);
+			// the pools resume the sessions of their own connections only
+			assertEquals(protocol, POOLS, counts[1]);
+		}
+	}
+
+	/**
+	 * Sends two requests, on two connections, through each of several pools.
+	 *
+	 * @param sslContext
+	 *            The context shared by the pools, or <code>null</code> for a
+	 *            new context per pool.
+	 * @return the number of handshakes and of resumed sessions.
+	 */
+	private static long[] sendRequests(String protocol, SSLContext sslContext) throws Exception {
+		long handshakes = 0;
+		long resumed = 0;
+		for (int i = 0; i < POOLS; i++) {
+			Properties properties = new Properties();
+			properties.setProperty(HttpClientProperties.BASE_URL, server.getBaseURL());
+			properties.setProperty(HttpClientProperties.TLS_PROTOCOLS, protocol);
+			try (ConnectionPool pool = HttpClientFactory.createConnectionPool(properties, null,
+					sslContext != null ? sslContext : createClientContext())) {
+				HttpClient client = HttpClientFactory.create(pool, properties);
+				for (int request = 0; request < 2; request++) {
+					assertEquals("ok", client.doGet("/items", CLOSE).getResponseString());
+				}
+				handshakes += pool.getTlsHandshakeCount();
+				resumed += pool.getTlsResumedCount();
+			}
+		}
+		return new long[] { handshakes, resumed };
+	}
+
+	private static SSLContext createClientContext() throws Exception {
+		SSLContext sslContext = SSLContext.getInstance("TLS");
+		sslContext.init(null, trustManagers.getTrustManagers(), null);
+		return sslContext;
+	}
+}
@@ -0,0 +1,27 @@
+package http.client;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+
+public class UriTemplateTest {
+	private static final UriTemplate ITEM = UriTemplate.compile("tenants/{tenant}/items/{item}?fields={fields}");
+
+	@Test
+	public void encodesPathVariablesAsOneSegment() {
+		assertEquals("tenants/a%2Fb/items/x%20y?fields=name,price",
+				ITEM.expand("a/b", "x y", "name,price"));
+	}
+
+	@Test
+	public void encodesDotSegments() {
+		assertEquals("tenants/%2E/items/%2E%2E?fields=..", ITEM.expand(".", "..", ".."));
+		assertEquals("tenants/.a/items/...?fields=.", ITEM.expand(".a", "...", "."));
+	}
+
+	@Test
+	public void encodesQueryDelimiters() {
+		assertEquals("tenants/t/items/1?fields=a%26b%3Dc%2Bd%23e", ITEM.expand("t", 1, "a&b=c+d#e"));
+	}
+}